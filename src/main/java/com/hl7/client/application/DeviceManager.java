@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
@@ -135,13 +136,25 @@ public class DeviceManager {
             }
 
             // 检查设备是否已存在
-            if (devices.containsKey(device.getId())) {
+            Device existing = devices.get(device.getId());
+            if (existing != null) {
                 log.warn("设备 {} 已存在，更新设备信息", device.getName());
+                // 连接参数变更后释放旧适配器，服务器模式设备随之关闭旧端口
+                if (!Objects.equals(existing.getConnectionType(), device.getConnectionType())
+                        || !Objects.equals(existing.getConnectionParams(), device.getConnectionParams())) {
+                    deviceService.release(existing);
+                    device.setStatus(DeviceStatus.DISCONNECTED);
+                }
             }
 
             // 存储设备信息
             devices.put(device.getId(), device);
 
+            // 服务器模式设备注册后立即绑定监听端口，等待仪器连入
+            if (isNetworkServerMode(device) && DeviceStatus.CONNECTED != device.getStatus()) {
+                connectSingleDevice(device);
+            }
+
             // 保存配置
             saveDevices();
 
@@ -172,10 +185,8 @@ public class DeviceManager {
         }
 
         try {
-            // 先断开连接
-            if (DeviceStatus.CONNECTED == device.getStatus()) {
-                deviceService.disconnect(device);
-            }
+            // 先断开连接并释放适配器，服务器模式设备即使没有客户端连入也要关闭监听端口
+            deviceService.release(device);
 
             // 移除设备
             devices.remove(deviceId);
@@ -6,6 +6,7 @@ import com.hl7.client.domain.model.Message;
 import com.hl7.client.domain.model.MessageStatus;
 import com.hl7.client.domain.service.DeviceService;
 import com.hl7.client.domain.service.MessageProcessService;
+import com.hl7.client.infrastructure.adapter.common.BackpressureController;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +20,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -32,6 +34,7 @@ public class MessageProcessor {
 
     private final DeviceService deviceService;
     private final MessageProcessService messageProcessService;
+    private final BackpressureController backpressureController;
 
     @Lazy
     private final DeviceManager deviceManager;
@@ -54,23 +57,25 @@ public class MessageProcessor {
     // 队列相关配置
     @Value("${" + ApplicationConstants.PropertyKeys.MESSAGE_QUEUE_MAX_SIZE + ":"
             + ApplicationConstants.MessageProcessing.MAX_QUEUE_SIZE + "}")
-    private int maxQueueSize;
+    private int maxQueueSize = ApplicationConstants.MessageProcessing.MAX_QUEUE_SIZE;
 
     @Value("${" + ApplicationConstants.PropertyKeys.MESSAGE_PROCESS_INTERVAL + ":"
             + ApplicationConstants.MessageProcessing.MESSAGE_PROCESS_INTERVAL_MS + "}")
-    private int messageProcessInterval;
+    private int messageProcessInterval = ApplicationConstants.MessageProcessing.MESSAGE_PROCESS_INTERVAL_MS;
 
     @Value("${" + ApplicationConstants.PropertyKeys.MESSAGE_BATCH_SIZE + ":"
             + ApplicationConstants.MessageProcessing.BATCH_SIZE + "}")
-    private int batchSize;
+    private int batchSize = ApplicationConstants.MessageProcessing.BATCH_SIZE;
 
     @Autowired
     public MessageProcessor(DeviceService deviceService,
                            @Lazy MessageProcessService messageProcessService,
-                           @Lazy DeviceManager deviceManager) {
+                           @Lazy DeviceManager deviceManager,
+                           BackpressureController backpressureController) {
         this.deviceService = deviceService;
         this.messageProcessService = messageProcessService;
         this.deviceManager = deviceManager;
+        this.backpressureController = backpressureController;
 
         // 初始化使用有界队列
         this.messageQueue = new LinkedBlockingQueue<>(
@@ -99,6 +104,13 @@ public class MessageProcessor {
             return null;
         }
 
+        // 队列已满时不从设备取消息，消息留在设备的接收队列中，由设备适配器的背压减慢接收
+        if (messageQueue.size() >= maxQueueSize) {
+            queueHealthy = false;
+            log.warn("消息队列已满 (大小: {})，暂不从设备 {} 接收消息", messageQueue.size(), deviceId);
+            return null;
+        }
+
         // 接收消息
         Message message = deviceService.receiveMessage(device);
         if (message != null) {
@@ -112,10 +124,9 @@ public class MessageProcessor {
             if (added) {
                 log.info("消息 {} 已加入处理队列", message.getId());
             } else {
-                log.error("无法将消息 {} 加入队列，队列已满", message.getId());
-                // 如果队列已满，标记消息为错误状态
-                message.setStatus(MessageStatus.ERROR.name());
-                message.setErrorMessage("消息队列已满，无法处理");
+                // 只有本方法向队列添加消息，取消息前已检查容量，这里只在并发接收时发生
+                log.warn("消息队列已满，消息 {} 改为立即处理", message.getId());
+                processMessageImmediately(message);
             }
         }
 
@@ -137,6 +148,10 @@ public class MessageProcessor {
         }
 
         boolean added = messageQueue.offer(message);
+        if (added) {
+            // 处理完成前计入待处理消息数
+            backpressureController.acquire();
+        }
 
         // 如果队列大小低于警戒线，标记为健康
         if (messageQueue.size() < maxQueueSize / 2) {
@@ -155,16 +170,26 @@ public class MessageProcessor {
     public Message processMessageImmediately(Message message) {
         long startTime = System.currentTimeMillis();
 
+        // 大批量结果按医嘱组边解析边发送
+        if (messageProcessService.shouldProcessInGroups(message)) {
+            boolean sent = messageProcessService.processAndSendInGroups(message);
+            recordGroupedResult(message, sent, startTime);
+            commit(message, sent);
+            return message;
+        }
+
         // 处理消息
         Message processedMessage = messageProcessService.processMessage(message);
 
         if (MessageStatus.INCOMPLETE.name().equals(processedMessage.getStatus())) {
+            commit(processedMessage, false);
             return processedMessage;
         }
 
         // 发送到服务端
         boolean sent = messageProcessService.sendToServer(processedMessage);
 //        boolean sent = true;
+        commit(processedMessage, sent);
         if (sent) {
             log.info("消息 {} 已处理并发送成功", processedMessage.getId());
             successMessagesCount.incrementAndGet();
@@ -183,6 +208,22 @@ public class MessageProcessor {
         return processedMessage;
     }
 
+    /**
+     * 记录按医嘱组处理的消息
+     */
+    private void recordGroupedResult(Message message, boolean sent, long startTime) {
+        if (sent) {
+            log.info("消息 {} 已按医嘱组处理并发送成功", message.getId());
+            successMessagesCount.incrementAndGet();
+        } else {
+            log.warn("消息 {} 已按医嘱组处理但部分发送失败", message.getId());
+            failedMessagesCount.incrementAndGet();
+        }
+        totalMessagesProcessed.incrementAndGet();
+        totalProcessingTimeMs.addAndGet(System.currentTimeMillis() - startTime);
+        processedMessages.put(message.getId(), message);
+    }
+
     /**
      * 异步处理消息
      *
@@ -190,34 +231,75 @@ public class MessageProcessor {
      * @return 包含处理结果的CompletableFuture
      */
     public CompletableFuture<Message> processMessageAsynchronously(Message message) {
+        return processMessageAsynchronously(message, () -> { });
+    }
+
+    /**
+     * 异步处理消息，消息发送到服务端完成后（发送失败、不完整或处理异常时同样）调用onFinished
+     * 返回的future在处理完成、发送开始后即完成，不等待发送结果
+     *
+     * @param message 需要处理的消息
+     * @param onFinished 消息离开处理流程时调用，只调用一次
+     * @return 包含处理结果的CompletableFuture
+     */
+    private CompletableFuture<Message> processMessageAsynchronously(Message message, Runnable onFinished) {
+        AtomicBoolean finished = new AtomicBoolean();
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                onFinished.run();
+            }
+        };
         return CompletableFuture.supplyAsync(() -> {
             long startTime = System.currentTimeMillis();
 
+            if (messageProcessService.shouldProcessInGroups(message)) {
+                boolean sent = messageProcessService.processAndSendInGroups(message);
+                recordGroupedResult(message, sent, startTime);
+                commit(message, sent);
+                finish.run();
+                return message;
+            }
+
             // 先处理消息
             Message processedMessage = messageProcessService.processMessage(message);
 
             if (!MessageStatus.INCOMPLETE.name().equals(processedMessage.getStatus())) {
-                // 异步发送到服务端
+                // 异步发送到服务端，发送完成前消息仍计入背压
                 messageProcessService.sendToServerAsync(processedMessage)
-                    .thenAccept(sent -> {
-                        if (Boolean.TRUE.equals(sent)) {
-                            log.info("异步消息 {} 已处理并发送成功", processedMessage.getId());
-                            successMessagesCount.incrementAndGet();
-                        } else {
-                            log.warn("异步消息 {} 已处理但发送失败", processedMessage.getId());
-                            failedMessagesCount.incrementAndGet();
+                    .whenComplete((result, error) -> {
+                        try {
+                            boolean sent = error == null && Boolean.TRUE.equals(result);
+                            commit(processedMessage, sent);
+                            if (sent) {
+                                log.info("异步消息 {} 已处理并发送成功", processedMessage.getId());
+                                successMessagesCount.incrementAndGet();
+                            } else {
+                                log.warn("异步消息 {} 已处理但发送失败{}", processedMessage.getId(),
+                                        error != null ? ": " + error.getMessage() : "");
+                                failedMessagesCount.incrementAndGet();
+                            }
+
+                            // 更新处理总数和处理时间
+                            totalMessagesProcessed.incrementAndGet();
+                            totalProcessingTimeMs.addAndGet(System.currentTimeMillis() - startTime);
+
+                            // 存储处理过的消息
+                            processedMessages.put(processedMessage.getId(), processedMessage);
+                        } finally {
+                            finish.run();
                         }
-
-                        // 更新处理总数和处理时间
-                        totalMessagesProcessed.incrementAndGet();
-                        totalProcessingTimeMs.addAndGet(System.currentTimeMillis() - startTime);
-
-                        // 存储处理过的消息
-                        processedMessages.put(processedMessage.getId(), processedMessage);
                     });
+            } else {
+                commit(processedMessage, false);
+                finish.run();
             }
 
             return processedMessage;
+        }).whenComplete((result, error) -> {
+            // 处理过程中抛出异常时没有发送
+            if (error != null) {
+                finish.run();
+            }
         });
     }
 
@@ -250,17 +332,17 @@ public class MessageProcessor {
         int processedCount = 0;
         List<CompletableFuture<Message>> futures = new ArrayList<>();
 
-        // 使用批量处理模式
-        while ((message = messageQueue.poll()) != null && processedCount < batchSize) {
+        // 使用批量处理模式，先判断批次大小再取消息，避免多取出的一条消息丢失
+        while (processedCount < batchSize && (message = messageQueue.poll()) != null) {
             try {
-                // 使用异步处理替代同步处理
-                CompletableFuture<Message> future = processMessageAsynchronously(message);
-                futures.add(future);
+                // 使用异步处理替代同步处理，消息发送到服务端完成后才从背压中释放
+                futures.add(processMessageAsynchronously(message, backpressureController::release));
                 processedCount++;
             } catch (Exception e) {
                 log.error("处理队列中的消息 {} 时发生异常: {}",
                     message.getId(), e.getMessage());
                 failedMessagesCount.incrementAndGet();
+                backpressureController.release();
             }
         }
 
@@ -299,6 +381,7 @@ public class MessageProcessor {
             try {
                 boolean retried = messageProcessService.retryFailedMessage(message);
                 if (retried) {
+                    commit(message, true);
                     log.info("消息 {} 重试成功", message.getId());
                     successMessagesCount.incrementAndGet();
                 } else {
@@ -312,6 +395,19 @@ public class MessageProcessor {
         }
     }
 
+    /**
+     * 向接收消息的设备确认处理结果，文件适配器在消息发送成功后才推进读取进度
+     *
+     * @param message 接收到的消息
+     * @param delivered 是否已处理并发送成功
+     */
+    private void commit(Message message, boolean delivered) {
+        Device device = deviceManager.getDevice(message.getDeviceId());
+        if (device != null) {
+            deviceService.commitMessage(device, message, delivered);
+        }
+    }
+
     /**
      * 定时记录处理统计信息
      */
@@ -371,6 +467,9 @@ public class MessageProcessor {
         Duration uptime = Duration.between(lastStatsResetTime, LocalDateTime.now());
         stats.put("statsDuration", uptime.toString());
 
+        // 背压统计：暂停/恢复读取次数和暂停时长
+        stats.put("backpressure", backpressureController.getStatistics());
+
         return stats;
     }
 
@@ -381,8 +480,11 @@ public class MessageProcessor {
      * @return 清除的消息数量
      */
     public int clearQueue() {
-        int size = messageQueue.size();
-        messageQueue.clear();
+        int size = 0;
+        while (messageQueue.poll() != null) {
+            backpressureController.release();
+            size++;
+        }
         log.warn("消息队列已清空，移除了 {} 条消息", size);
         return size;
     }
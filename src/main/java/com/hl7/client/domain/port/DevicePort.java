@@ -40,6 +40,15 @@ public interface DevicePort {
      */
     Message receiveMessage(Device device);
 
+    /**
+     * 确认接收到的消息已处理并发送
+     *
+     * @param device 设备信息
+     * @param message 接收到的消息
+     * @param delivered 是否已处理并发送成功
+     */
+    void commitMessage(Device device, Message message, boolean delivered);
+
     /**
      * 检查设备连接状态
      *
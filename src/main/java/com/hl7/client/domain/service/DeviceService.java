@@ -160,6 +160,29 @@ public class DeviceService implements DevicePort {
         }
     }
 
+    @Override
+    public void commitMessage(Device device, Message message, boolean delivered) {
+        try {
+            adapterCache.getAdapter(device).commit(message.getRawContent(), delivered);
+        } catch (Exception e) {
+            log.error("确认设备 {} 的消息 {} 时发生异常: {}", device.getName(), message.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 释放设备适配器
+     * 断开连接并移除缓存的适配器，服务器模式设备同时关闭监听端口；设备被移除或连接参数变更时调用
+     *
+     * @param device 设备
+     */
+    public void release(Device device) {
+        if (device == null || device.getId() == null) {
+            return;
+        }
+        adapterCache.clearAdapter(device.getId());
+        device.setStatus(DeviceStatus.DISCONNECTED);
+    }
+
     @Override
     public boolean isConnected(Device device) {
         String methodName = Thread.currentThread().getStackTrace()[1].getMethodName();
@@ -1,6 +1,9 @@
 package com.hl7.client.domain.service;
 
+import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
 
 import java.util.Map;
 
@@ -10,6 +13,12 @@ import java.util.Map;
  */
 public interface MessageParser {
 
+    /**
+     * 解析结果中由解析器直接生成的处理结果JSON（String）；
+     * 有这一项时它就是整个解析结果的JSON，处理服务直接使用，不再序列化解析结果
+     */
+    String SERIALIZED_RESULT = "serializedResult";
+
     /**
      * 解析消息
      *
@@ -18,6 +27,19 @@ public interface MessageParser {
      */
     Map<String, Object> parse(Message message);
 
+    /**
+     * 解析消息到可重复使用的解析结果
+     * 默认实现调用parse(Message)，把返回的Map接入解析结果；解析器可以覆盖此方法直接填充字段和观察结果
+     *
+     * @param message 原始消息
+     * @param result 解析结果，先清空再填充
+     * @return 传入的解析结果
+     */
+    default ParseResult parse(Message message, ParseResult result) {
+        result.reset();
+        return result.adopt(parse(message));
+    }
+
     /**
      * 获取解析器类型
      *
@@ -34,4 +56,17 @@ public interface MessageParser {
     boolean supports(Message message);
 
     String checkMessageCompleteness(Message message);
+
+    /**
+     * 增量检查新到达的数据，约定同MessageCompletionStrategy.onData
+     * 默认实现兼容旧接口，每次把整个缓冲区交给checkMessageCompleteness检查
+     *
+     * @param chunk 本次新到达的数据
+     * @param state 连接的分帧状态
+     * @param device 接收数据的设备
+     * @return 切出的完整消息和回复内容
+     */
+    default FrameResult onData(CharSequence chunk, FrameState state, Device device) {
+        return FrameResult.fromLegacyCheck(state, device, this::checkMessageCompleteness);
+    }
 }
@@ -1,6 +1,9 @@
 package com.hl7.client.domain.service;
 
+import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -68,7 +71,35 @@ public class MessageParserFactory {
         return getParser(message).parse(message);
     }
 
+    /**
+     * 解析消息到可重复使用的解析结果
+     *
+     * @param message 待解析的消息
+     * @param result 解析结果，先清空再填充
+     * @return 传入的解析结果
+     */
+    public ParseResult parseMessage(Message message, ParseResult result) {
+        return getParser(message).parse(message, result);
+    }
+
     public String checkMessageCompleteness(Message message) {
         return getParser(message).checkMessageCompleteness(message);
     }
+
+    /**
+     * 按设备型号和连接的消息类型选择解析器，增量检查新到达的数据
+     *
+     * @param device 接收数据的设备
+     * @param chunk 本次新到达的数据
+     * @param state 连接的分帧状态
+     * @return 切出的完整消息和回复内容
+     */
+    public FrameResult onData(Device device, CharSequence chunk, FrameState state) {
+        // 选择解析器只看型号和类型，不需要复制缓冲区内容
+        Message probe = Message.builder()
+                .deviceId(device.getId())
+                .deviceModel(device.getModel())
+                .build();
+        return getParser(probe).onData(chunk, state, device);
+    }
 }
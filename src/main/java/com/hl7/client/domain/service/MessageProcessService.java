@@ -1,6 +1,5 @@
 package com.hl7.client.domain.service;
 
-import cn.hutool.core.map.MapUtil;
 import cn.hutool.http.HttpException;
 import cn.hutool.http.HttpRequest;
 import cn.hutool.http.HttpResponse;
@@ -9,7 +8,9 @@ import com.hl7.client.domain.constants.ApplicationConstants;
 import com.hl7.client.domain.model.Message;
 import com.hl7.client.domain.model.MessageStatus;
 import com.hl7.client.domain.port.MessageProcessPort;
+import com.hl7.client.domain.service.impl.Hl7MessageParser;
 import com.hl7.client.infrastructure.exception.MessageProcessingException;
+import com.hl7.client.infrastructure.util.JsonEscapeWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,8 +18,14 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
@@ -53,9 +60,22 @@ public class MessageProcessService implements MessageProcessPort {
     @Value("${hl7.fail.retry:10}")
     private int maxRetryCount;
 
+    // 达到这个长度的v2.5 ORU^R01消息按医嘱组流式解析，每组解析完立即发送，默认256K字符；
+    // 必须小于连接的消息缓冲区上限，超过上限的帧在到达解析器之前就被丢弃
+    @Value("${hl7.parser.streaming.threshold-chars:262144}")
+    private int streamingThresholdChars = 262144;
+
+    // 连接的消息缓冲区上限（字符数），只用于检查流式阈值的配置
+    @Value("${" + ApplicationConstants.PropertyKeys.MESSAGE_BUFFER_MAX_SIZE + ":"
+        + ApplicationConstants.MessageProcessing.MAX_BUFFER_SIZE_BYTES + "}")
+    private int maxBufferSize = ApplicationConstants.MessageProcessing.MAX_BUFFER_SIZE_BYTES;
+
     // HTTP请求超时时间（毫秒）
     private static final int HTTP_TIMEOUT_MS = 15000;
 
+    // 每个处理线程一个解析结果，解析前清空，观察结果数组重复使用
+    private static final ThreadLocal<ParseResult> PARSE_RESULTS = ThreadLocal.withInitial(ParseResult::new);
+
     /**
      * 重试信息类，记录失败消息的重试相关信息
      */
@@ -145,10 +165,10 @@ public class MessageProcessService implements MessageProcessPort {
             // 更新消息状态为处理中
             message.setStatus(MessageStatus.PROCESSING.name());
 
-            // 解析消息
-            Map<String, Object> parsedData = messageParserFactory.parseMessage(message);
-            if (parsedData.containsKey("error") && (boolean) parsedData.get("error")) {
-                String errorMessage = (String) parsedData.get("errorMessage");
+            // 解析消息，每个处理线程重复使用同一个解析结果
+            ParseResult parsed = messageParserFactory.parseMessage(message, PARSE_RESULTS.get());
+            if (parsed.getStatus() == ParseResult.Status.ERROR) {
+                String errorMessage = parsed.getErrorMessage();
                 message.setStatus(MessageStatus.ERROR.name());
                 message.setProcessResult("解析失败: " + errorMessage);
                 message.setErrorMessage(errorMessage);
@@ -160,14 +180,14 @@ public class MessageProcessService implements MessageProcessPort {
             }
 
             // 判断消息是否完整
-            if (parsedData.containsKey("INCOMPLETE") && !(boolean) parsedData.get("INCOMPLETE")) {
+            if (parsed.getStatus() == ParseResult.Status.INCOMPLETE) {
                 message.setStatus(MessageStatus.INCOMPLETE.name());
                 log.debug("消息 {} 不完整，等待后续数据", message.getId());
                 return message;
             }
 
-            // 设置处理结果
-            message.setProcessResult(JSONUtil.toJsonStr(parsedData));
+            // 设置处理结果，直接从解析结果写出JSON
+            message.setProcessResult(parsed.toJson());
             message.setStatus(MessageStatus.PROCESSED.name());
             log.info("消息 {} 处理完成", message.getId());
 
@@ -186,6 +206,108 @@ public class MessageProcessService implements MessageProcessPort {
         }
     }
 
+    /**
+     * 检查流式阈值：不小于消息缓冲区上限时，网络和串口设备的大批次在分帧时就被丢弃，只有文件设备能走到按组处理
+     */
+    @PostConstruct
+    public void checkStreamingThreshold() {
+        if (streamingThresholdChars >= maxBufferSize) {
+            log.warn("流式解析阈值 {} 不小于消息缓冲区上限 {}，网络和串口设备的大批次会在分帧时被丢弃，"
+                    + "请调小hl7.parser.streaming.threshold-chars或调大{}", streamingThresholdChars, maxBufferSize,
+                    ApplicationConstants.PropertyKeys.MESSAGE_BUFFER_MAX_SIZE);
+        }
+    }
+
+    /**
+     * 是否按医嘱组流式处理：足够大的、可以流式解析的ORU^R01消息
+     *
+     * @param message 消息
+     * @return 是否按医嘱组处理
+     */
+    public boolean shouldProcessInGroups(Message message) {
+        if (message.getRawContent() == null || message.getRawContent().length() < streamingThresholdChars) {
+            return false;
+        }
+        MessageParser parser;
+        try {
+            parser = messageParserFactory.getParser(message);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return parser instanceof Hl7MessageParser && ((Hl7MessageParser) parser).supportsStreaming(message);
+    }
+
+    /**
+     * 按医嘱组流式解析并发送
+     * 每个医嘱组解析完成后作为一条子消息（ID为原消息ID加组序号）立即发送，不等整条消息解析完，
+     * 也不生成整条消息的解析结果；发送失败的子消息进入失败列表单独重试。
+     * 原消息的处理结果记录组数和发送情况。
+     * 内存上限：原始消息本身仍是Message中的一个完整字符串（网络和串口设备受消息缓冲区上限约束，文件设备受文件大小约束），
+     * 按组处理省掉的是整条消息的解析结果和处理结果JSON，额外占用只有当前一组的结果、原始段和请求体
+     *
+     * @param message 需要处理的消息，调用前用shouldProcessInGroups检查
+     * @return 是否所有组都发送成功
+     */
+    public boolean processAndSendInGroups(Message message) {
+        log.info("开始按医嘱组处理消息，ID: {}, 长度: {}", message.getId(), message.getRawContent().length());
+        message.setStatus(MessageStatus.PROCESSING.name());
+        Hl7MessageParser parser = (Hl7MessageParser) messageParserFactory.getParser(message);
+        int[] sent = new int[1];
+        List<String> failed = new ArrayList<>();
+        int groups;
+        try {
+            groups = parser.parseGroups(message, group -> {
+                Message part = Message.builder()
+                        .id(message.getId() + "-" + (sent[0] + failed.size() + 1))
+                        .deviceId(message.getDeviceId())
+                        .deviceModel(message.getDeviceModel())
+                        .messageProcessor(message.getMessageProcessor())
+                        .messageType(message.getMessageType())
+                        .receivedTime(message.getReceivedTime())
+                        .rawContent(group.getRawContent())
+                        .processResult(JSONUtil.toJsonStr(group.getResult()))
+                        .status(MessageStatus.PROCESSED.name())
+                        .build();
+                boolean ok;
+                try {
+                    ok = sendToServer(part);
+                } catch (MessageProcessingException e) {
+                    // 已记入失败列表，继续发送后面的组
+                    ok = false;
+                }
+                if (ok) {
+                    sent[0]++;
+                } else {
+                    failed.add(part.getId());
+                }
+            });
+        } catch (Exception e) {
+            log.error("按医嘱组处理消息 {} 过程中发生异常: {}", message.getId(), e.getMessage());
+            message.setStatus(MessageStatus.ERROR.name());
+            message.setProcessResult("处理异常: " + e.getMessage());
+            message.setErrorMessage(e.getMessage());
+            addToFailedMessages(message, e.getMessage());
+            throw new MessageProcessingException("001", "处理消息失败: " + message.getId(), e);
+        }
+
+        Map<String, Object> summary = new HashMap<>(4);
+        summary.put("groups", groups);
+        summary.put("sent", sent[0]);
+        summary.put("failed", failed);
+        message.setProcessResult(JSONUtil.toJsonStr(summary));
+        if (failed.isEmpty()) {
+            message.setStatus(MessageStatus.PROCESSED.name());
+            log.info("消息 {} 按医嘱组处理完成，共 {} 组", message.getId(), groups);
+            return true;
+        }
+        // 失败的组已单独进入失败列表，原消息不再整体重试
+        String errorMessage = String.format("%d/%d 组发送失败", failed.size(), groups);
+        message.setStatus(MessageStatus.ERROR.name());
+        message.setErrorMessage(errorMessage);
+        log.warn("消息 {} {}", message.getId(), errorMessage);
+        return false;
+    }
+
     /**
      * 添加消息到失败列表
      *
@@ -225,22 +347,13 @@ public class MessageProcessService implements MessageProcessPort {
      */
     @Override
     public boolean sendToServer(Message message) {
-        Map<String, Object> requestBody = MapUtil.builder(new HashMap<String, Object>(5))
-            .put("messageId", message.getId())
-            .put("deviceId", message.getDeviceId())
-            .put("deviceModel", message.getDeviceModel())
-            .put("content", message.getRawContent())
-            .put("processResult", message.getProcessResult())
-            .put("type", message.getMessageType())
-            .build();
-
         HttpResponse response = null;
         try {
             log.debug("开始发送消息到服务端ID: {}", message.getId());
 
             // 使用try-with-resources确保资源释放
             response = HttpRequest.post(serverAddress)
-                .body(JSONUtil.toJsonStr(requestBody))
+                .body(requestBody(message))
                 .header("Content-Type", "application/json;charset=UTF-8") // 显式设置Content-Type
                 .header("Connection", "close") // 使用短连接，避免连接泄漏
                 .timeout(HTTP_TIMEOUT_MS) // 设置超时
@@ -286,6 +399,51 @@ public class MessageProcessService implements MessageProcessPort {
         }
     }
 
+    /**
+     * 生成发送给服务端的请求体
+     * 原始内容和处理结果直接转义写入一个预先分配好大小的缓冲区，不再经过Map和JSONUtil；
+     * 字段按固定顺序写出：messageId、deviceId、deviceModel、type、content、processResult，不依赖HashMap的遍历顺序，
+     * 服务端按字段名取值；空值省略和转义与原来用JSONUtil.toJsonStr序列化Map的结果相同
+     *
+     * @param message 需要发送的消息
+     * @return 请求体JSON
+     */
+    public static String requestBody(Message message) {
+        int size = 128 + length(message.getRawContent()) + length(message.getProcessResult()) * 5 / 4;
+        StringBuilder body = new StringBuilder(size);
+        try {
+            body.append('{');
+            boolean first = appendField(body, true, "messageId", message.getId());
+            first = appendField(body, first, "deviceId", message.getDeviceId());
+            first = appendField(body, first, "deviceModel", message.getDeviceModel());
+            first = appendField(body, first, "type", message.getMessageType());
+            first = appendField(body, first, "content", message.getRawContent());
+            appendField(body, first, "processResult", message.getProcessResult());
+            body.append('}');
+        } catch (IOException e) {
+            // 写入StringBuilder不会失败
+            throw new UncheckedIOException(e);
+        }
+        return body.toString();
+    }
+
+    private static boolean appendField(StringBuilder body, boolean first, String name, String value)
+            throws IOException {
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            body.append(',');
+        }
+        body.append('"').append(name).append("\":");
+        JsonEscapeWriter.quote(value, body);
+        return false;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
     /**
      * 使用退避重试算法发送消息
      *
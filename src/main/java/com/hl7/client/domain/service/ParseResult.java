@@ -0,0 +1,400 @@
+package com.hl7.client.domain.service;
+
+import cn.hutool.json.JSONUtil;
+import com.hl7.client.infrastructure.util.JsonEscapeWriter;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 解析结果
+ * 代替Map&lt;String, Object&gt;：解析状态用枚举表示，消息头、患者和医嘱是普通字段，
+ * 观察结果按列存放在并行数组中，不为每个观察结果创建Map；
+ * reset后可以重复使用，处理线程各保留一个实例；直接写出发送给服务端的处理结果JSON。
+ * JSON字段按固定顺序写出（见writeJson），不依赖HashMap的遍历顺序；服务端按字段名取值，与顺序无关。
+ *
+ * 还没有直接填充结果的解析器通过adopt接入：按原来的约定从Map中识别error、INCOMPLETE，
+ * 序列化时与原来对Map调用JSONUtil.toJsonStr相同；Map中有MessageParser.SERIALIZED_RESULT时直接使用。
+ * 实例不是线程安全的
+ */
+public final class ParseResult {
+
+    /** 观察结果默认容量 */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** reset时保留的最大容量，超过时释放，避免一条超大消息之后一直占用内存 */
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+
+    private static final Column[] COLUMNS = Column.values();
+
+    /**
+     * 解析状态
+     */
+    public enum Status {
+        /** 解析完成 */
+        PARSED,
+        /** 消息不完整，等待后续数据 */
+        INCOMPLETE,
+        /** 解析失败 */
+        ERROR
+    }
+
+    /**
+     * 观察结果的列，名称即处理结果JSON中的字段名，声明顺序即写出顺序
+     */
+    public enum Column {
+        SEQUENCE("sequence"),
+        TEST_ID("testId"),
+        TEST_NAME("testName"),
+        VALUE("value"),
+        UNITS("units"),
+        REFERENCE_RANGE("referenceRange"),
+        STATUS("status");
+
+        @Getter
+        private final String key;
+
+        Column(String key) {
+            this.key = key;
+        }
+    }
+
+    @Getter
+    private Status status = Status.PARSED;
+
+    @Getter
+    private String errorMessage;
+
+    /** 消息头 */
+    @Getter @Setter
+    private String messageType;
+    @Getter @Setter
+    private String sendingApplication;
+    @Getter @Setter
+    private String sendingFacility;
+    @Getter @Setter
+    private String receivingApplication;
+    @Getter @Setter
+    private String messageControlId;
+    @Getter @Setter
+    private String messageDateTime;
+
+    /** 患者和医嘱 */
+    @Getter @Setter
+    private String patientId;
+    @Getter @Setter
+    private String patientName;
+    @Getter @Setter
+    private String observationDateTime;
+    @Getter @Setter
+    private String orderNumber;
+    @Getter @Setter
+    private String universalServiceID;
+
+    /** 是否为带患者、医嘱和观察结果的结果消息 */
+    @Getter
+    private boolean orderResult;
+
+    /** 观察结果，每列一个数组 */
+    private final String[][] columns = new String[COLUMNS.length][];
+    @Getter
+    private int observationCount;
+
+    /** 解析器直接生成的处理结果JSON */
+    private String serialized;
+
+    /** 通过adopt接入的Map结果 */
+    private Map<String, Object> adopted;
+
+    public ParseResult() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * 清空结果以便重复使用，保留已分配的观察结果数组
+     *
+     * @return 当前实例
+     */
+    public ParseResult reset() {
+        status = Status.PARSED;
+        errorMessage = null;
+        messageType = null;
+        sendingApplication = null;
+        sendingFacility = null;
+        receivingApplication = null;
+        messageControlId = null;
+        messageDateTime = null;
+        patientId = null;
+        patientName = null;
+        observationDateTime = null;
+        orderNumber = null;
+        universalServiceID = null;
+        orderResult = false;
+        serialized = null;
+        adopted = null;
+        if (columns[0].length > MAX_RETAINED_CAPACITY) {
+            allocate(INITIAL_CAPACITY);
+        } else {
+            for (String[] column : columns) {
+                Arrays.fill(column, 0, observationCount, null);
+            }
+        }
+        observationCount = 0;
+        return this;
+    }
+
+    /**
+     * 标记消息不完整
+     *
+     * @return 当前实例
+     */
+    public ParseResult incomplete() {
+        status = Status.INCOMPLETE;
+        return this;
+    }
+
+    /**
+     * 标记解析失败
+     *
+     * @param message 错误信息
+     * @return 当前实例
+     */
+    public ParseResult error(String message) {
+        status = Status.ERROR;
+        errorMessage = message;
+        return this;
+    }
+
+    /**
+     * 使用解析器直接生成的处理结果JSON
+     *
+     * @param json 处理结果JSON
+     * @return 当前实例
+     */
+    public ParseResult serialized(String json) {
+        serialized = json;
+        return this;
+    }
+
+    /**
+     * 接入返回Map的解析器，按原来的约定识别状态：
+     * error为true（或其他非false的值）时解析失败，错误信息取errorMessage（没有时取error的值）；
+     * INCOMPLETE为false时消息不完整
+     *
+     * @param map 解析器返回的Map
+     * @return 当前实例
+     */
+    public ParseResult adopt(Map<String, Object> map) {
+        adopted = map;
+        Object error = map.get("error");
+        if (error != null && !Boolean.FALSE.equals(error)) {
+            Object message = map.get("errorMessage");
+            return error(message != null ? message.toString() : error instanceof Boolean ? null : error.toString());
+        }
+        if (Boolean.FALSE.equals(map.get("INCOMPLETE"))) {
+            return incomplete();
+        }
+        Object json = map.get(MessageParser.SERIALIZED_RESULT);
+        if (json instanceof String) {
+            serialized = (String) json;
+        }
+        return this;
+    }
+
+    /**
+     * 开始填充结果消息：处理结果中带患者、医嘱字段和观察结果列表（可以为空）
+     *
+     * @return 当前实例
+     */
+    public ParseResult beginOrderResult() {
+        orderResult = true;
+        return this;
+    }
+
+    /**
+     * 添加一个观察结果
+     */
+    public void addObservation(String sequence, String testId, String testName, String value, String units,
+                               String referenceRange, String resultStatus) {
+        orderResult = true;
+        if (observationCount == columns[0].length) {
+            grow();
+        }
+        int row = observationCount++;
+        columns[Column.SEQUENCE.ordinal()][row] = sequence;
+        columns[Column.TEST_ID.ordinal()][row] = testId;
+        columns[Column.TEST_NAME.ordinal()][row] = testName;
+        columns[Column.VALUE.ordinal()][row] = value;
+        columns[Column.UNITS.ordinal()][row] = units;
+        columns[Column.REFERENCE_RANGE.ordinal()][row] = referenceRange;
+        columns[Column.STATUS.ordinal()][row] = resultStatus;
+    }
+
+    /**
+     * 取观察结果的值
+     *
+     * @param row 行号，从0开始
+     * @param column 列
+     * @return 值
+     */
+    public String getObservation(int row, Column column) {
+        if (row < 0 || row >= observationCount) {
+            throw new IndexOutOfBoundsException("观察结果行号超出范围: " + row);
+        }
+        return columns[column.ordinal()][row];
+    }
+
+    private void allocate(int capacity) {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new String[capacity];
+        }
+    }
+
+    private void grow() {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Arrays.copyOf(columns[i], columns[i].length * 2);
+        }
+    }
+
+    /**
+     * 转换为原来的Map结果，供仍然使用Map的调用方
+     *
+     * @return 解析结果Map
+     */
+    public Map<String, Object> toMap() {
+        if (adopted != null) {
+            return adopted;
+        }
+        Map<String, Object> map = new HashMap<>();
+        if (status == Status.ERROR) {
+            map.put("error", true);
+            map.put("errorMessage", errorMessage);
+            return map;
+        }
+        if (status == Status.INCOMPLETE) {
+            map.put("INCOMPLETE", false);
+            return map;
+        }
+        if (serialized != null) {
+            map.put(MessageParser.SERIALIZED_RESULT, serialized);
+            return map;
+        }
+        map.put("messageType", messageType);
+        map.put("sendingApplication", sendingApplication);
+        map.put("sendingFacility", sendingFacility);
+        if (receivingApplication != null) {
+            map.put("receivingApplication", receivingApplication);
+        }
+        map.put("messageControlId", messageControlId);
+        map.put("messageDateTime", messageDateTime);
+        if (orderResult) {
+            map.put("patientId", patientId);
+            map.put("patientName", patientName);
+            map.put("observationDateTime", observationDateTime);
+            map.put("orderNumber", orderNumber);
+            map.put("universalServiceID", universalServiceID);
+            List<Map<String, Object>> observations = new ArrayList<>(observationCount);
+            for (int row = 0; row < observationCount; row++) {
+                Map<String, Object> observation = new HashMap<>();
+                for (Column column : COLUMNS) {
+                    observation.put(column.getKey(), columns[column.ordinal()][row]);
+                }
+                observations.add(observation);
+            }
+            map.put("observations", observations);
+        }
+        return map;
+    }
+
+    /**
+     * 生成处理结果JSON
+     *
+     * @return 处理结果JSON
+     */
+    public String toJson() {
+        if (serialized != null) {
+            return serialized;
+        }
+        if (adopted != null) {
+            return JSONUtil.toJsonStr(adopted);
+        }
+        StringBuilder json = new StringBuilder(256 + observationCount * 128);
+        try {
+            writeJson(json);
+        } catch (IOException e) {
+            // 写入StringBuilder不会失败
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    /**
+     * 写出处理结果JSON
+     * 字段按固定顺序写出：messageType、sendingApplication、sendingFacility、receivingApplication、
+     * messageControlId、messageDateTime，结果消息再写patientId、patientName、observationDateTime、orderNumber、
+     * universalServiceID、observations；观察结果的字段按Column的声明顺序。
+     * 值为null的字段省略，转义与JSONUtil.toJsonStr相同
+     *
+     * @param out 目标
+     * @throws IOException 目标写入失败
+     */
+    public void writeJson(Appendable out) throws IOException {
+        if (serialized != null || adopted != null) {
+            out.append(toJson());
+            return;
+        }
+        out.append('{');
+        boolean first = field(out, true, "messageType", messageType);
+        first = field(out, first, "sendingApplication", sendingApplication);
+        first = field(out, first, "sendingFacility", sendingFacility);
+        first = field(out, first, "receivingApplication", receivingApplication);
+        first = field(out, first, "messageControlId", messageControlId);
+        first = field(out, first, "messageDateTime", messageDateTime);
+        if (orderResult) {
+            first = field(out, first, "patientId", patientId);
+            first = field(out, first, "patientName", patientName);
+            first = field(out, first, "observationDateTime", observationDateTime);
+            first = field(out, first, "orderNumber", orderNumber);
+            first = field(out, first, "universalServiceID", universalServiceID);
+            separator(out, first);
+            out.append("\"observations\":[");
+            for (int row = 0; row < observationCount; row++) {
+                if (row > 0) {
+                    out.append(',');
+                }
+                out.append('{');
+                boolean firstColumn = true;
+                for (Column column : COLUMNS) {
+                    firstColumn = field(out, firstColumn, column.getKey(), columns[column.ordinal()][row]);
+                }
+                out.append('}');
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    private static boolean field(Appendable out, boolean first, String name, String value) throws IOException {
+        if (value == null) {
+            return first;
+        }
+        separator(out, first);
+        out.append('"').append(name).append("\":");
+        JsonEscapeWriter.quote(value, out);
+        return false;
+    }
+
+    private static boolean separator(Appendable out, boolean first) throws IOException {
+        if (!first) {
+            out.append(',');
+        }
+        return false;
+    }
+}
@@ -0,0 +1,167 @@
+package com.hl7.client.domain.service.impl;
+
+import cn.hutool.core.util.CharUtil;
+
+import java.util.Arrays;
+
+/**
+ * ASTM记录扫描器
+ * 在原始文本上逐行扫描，每行只走一遍，记录字段的起止位置，取值时才创建字符串，不用正则也不生成字段数组。
+ * 行按\n分隔，字段按|分隔，组件按^分隔；空白行跳过。
+ * 字段数和组件数与String.split的结果相同：末尾的空字段和空组件不计，行尾的\r留在最后一个字段里。
+ * 实例不是线程安全的，每条消息创建一个
+ */
+final class AstmRecordScanner {
+
+    private static final char LINE_SEPARATOR = '\n';
+    private static final char FIELD_SEPARATOR = '|';
+    private static final char COMPONENT_SEPARATOR = '^';
+
+    private final CharSequence text;
+    private int position;
+
+    /** 当前行每个字段的起止位置 */
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+
+    AstmRecordScanner(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * 移到下一个非空白行
+     *
+     * @return 是否还有记录
+     */
+    boolean next() {
+        int length = text.length();
+        while (position < length) {
+            int lineStart = position;
+            int lineEnd = lineStart;
+            boolean blank = true;
+            while (lineEnd < length && text.charAt(lineEnd) != LINE_SEPARATOR) {
+                blank &= CharUtil.isBlankChar(text.charAt(lineEnd));
+                lineEnd++;
+            }
+            position = lineEnd + 1;
+            if (!blank) {
+                index(lineStart, lineEnd);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void index(int start, int end) {
+        fieldCount = 0;
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == FIELD_SEPARATOR) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        addField(fieldStart, end);
+        // 与String.split一致，去掉末尾的空字段
+        while (fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+            fieldCount--;
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * 当前行的字段数，末尾的空字段不计
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * 字段是否包含指定文本
+     */
+    boolean fieldContains(int field, String value) {
+        if (field >= fieldCount) {
+            return false;
+        }
+        int end = fieldEnds[field] - value.length();
+        for (int i = fieldStarts[field]; i <= end; i++) {
+            if (regionMatches(i, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 字段的原始文本，不存在时返回null
+     */
+    String field(int field) {
+        return field < fieldCount ? text.subSequence(fieldStarts[field], fieldEnds[field]).toString() : null;
+    }
+
+    /**
+     * 字段中的组件数，末尾的空组件不计
+     */
+    int componentCount(int field) {
+        if (field >= fieldCount) {
+            return 0;
+        }
+        int count = 0;
+        int components = 1;
+        boolean empty = true;
+        for (int i = fieldStarts[field]; i < fieldEnds[field]; i++) {
+            if (text.charAt(i) == COMPONENT_SEPARATOR) {
+                if (!empty) {
+                    count = components;
+                }
+                components++;
+                empty = true;
+            } else {
+                empty = false;
+            }
+        }
+        // 没有分隔符时与String.split一样返回整个字段
+        return components == 1 ? 1 : empty ? count : components;
+    }
+
+    /**
+     * 字段中第n个组件（从0开始）的原始文本，不存在时返回null
+     */
+    String component(int field, int component) {
+        if (field >= fieldCount) {
+            return null;
+        }
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == COMPONENT_SEPARATOR) {
+                if (n == component) {
+                    return text.subSequence(start, i).toString();
+                }
+                n++;
+                start = i + 1;
+            }
+        }
+        return n == component ? text.subSequence(start, end).toString() : null;
+    }
+
+    private boolean regionMatches(int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(offset + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
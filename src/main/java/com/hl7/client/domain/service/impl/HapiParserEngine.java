@@ -0,0 +1,184 @@
+package com.hl7.client.domain.service.impl;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.CanonicalModelClassFactory;
+import ca.uhn.hl7v2.parser.PipeParser;
+import ca.uhn.hl7v2.validation.builder.support.DefaultValidationBuilder;
+import ca.uhn.hl7v2.validation.builder.support.DefaultValidationWithoutTNBuilder;
+import ca.uhn.hl7v2.validation.builder.support.NoValidationBuilder;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HAPI解析引擎
+ * 位置索引处理不了的消息才交给HAPI完整解析，这里把HAPI的开销降到最低：
+ * 模型类固定使用随程序发布的hapi-structures-v25（CanonicalModelClassFactory），不再按每条消息的版本查找模型类包，
+ * 其他版本的消息也解析成v2.5结构；默认不校验，也可以只启用指定的规则集；
+ * 启动时解析常见消息类型完成模型类的加载和缓存；每个线程使用自己的PipeParser，多个处理线程并行解析时互不影响
+ */
+@Slf4j
+@Component
+public class HapiParserEngine {
+
+    /** 非Spring环境下使用的默认实例 */
+    private static volatile HapiParserEngine defaultInstance;
+
+    /**
+     * 校验方式：NONE不校验，DEFAULT为HAPI默认规则，DEFAULT_WITHOUT_TN为不检查电话号码格式的默认规则，
+     * 也可以填写ValidationRuleBuilder子类的完整类名
+     */
+    @Getter @Setter
+    @Value("${hl7.parser.hapi.validation:NONE}")
+    private String validation = "NONE";
+
+    /** 解析使用的模型版本，需与随程序发布的hapi-structures一致 */
+    @Getter @Setter
+    @Value("${hl7.parser.hapi.model-version:2.5}")
+    private String modelVersion = "2.5";
+
+    /** 启动时预热的消息类型，逗号分隔 */
+    @Getter @Setter
+    @Value("${hl7.parser.hapi.warm-up-types:ORU^R01,ORM^O01,OUL^R22,ADT^A01,QRY^Q02,ACK}")
+    private String warmUpTypes = "ORU^R01,ORM^O01,OUL^R22,ADT^A01,QRY^Q02,ACK";
+
+    private volatile HapiContext context;
+
+    /** 每个线程自己的解析器 */
+    private final ThreadLocal<PipeParser> parsers = ThreadLocal.withInitial(() -> new PipeParser(context()));
+
+    /**
+     * 获取非Spring环境下的默认实例（如独立运行的测试程序），首次获取时预热
+     *
+     * @return 默认解析引擎
+     */
+    public static HapiParserEngine getDefault() {
+        if (defaultInstance == null) {
+            synchronized (HapiParserEngine.class) {
+                if (defaultInstance == null) {
+                    HapiParserEngine engine = new HapiParserEngine();
+                    engine.warmUp();
+                    defaultInstance = engine;
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * 在当前线程的解析器上解析消息
+     *
+     * @param message 原始消息
+     * @return HAPI消息对象
+     * @throws HL7Exception 解析或校验失败
+     */
+    public Message parse(String message) throws HL7Exception {
+        return parsers.get().parse(message);
+    }
+
+    /**
+     * 解析常见消息类型，提前加载模型类并填充HAPI的类缓存
+     */
+    @PostConstruct
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        List<String> warmed = new ArrayList<>();
+        for (String type : warmUpTypes.split(",")) {
+            String messageType = type.trim();
+            if (messageType.isEmpty()) {
+                continue;
+            }
+            try {
+                parse(warmUpMessage(messageType));
+                warmed.add(messageType);
+            } catch (HL7Exception e) {
+                log.warn("预热HAPI消息类型 {} 失败: {}", messageType, e.getMessage());
+            }
+        }
+        log.info("HAPI解析引擎预热完成，模型版本: {}，校验: {}，消息类型: {}，耗时 {}ms", modelVersion, validation, warmed,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 包含常见段的预热消息，不属于该消息结构的段按HAPI默认行为作为附加段解析
+     */
+    private String warmUpMessage(String messageType) {
+        return "MSH|^~\\&|WARMUP|WARMUP|WARMUP|WARMUP|20240101000000||" + messageType + "|WARMUP|P|" + modelVersion
+                + "\rPID|1||1^^^WARMUP^MR||WARMUP^WARMUP||20000101|U"
+                + "\rPV1|1|O"
+                + "\rORC|NW|1"
+                + "\rOBR|1|1||1^WARMUP|||20240101000000"
+                + "\rOBX|1|NM|1^WARMUP||1|U|0-1|N|||F"
+                + "\rNTE|1||WARMUP";
+    }
+
+    /**
+     * 获取HAPI上下文，首次使用时按配置创建
+     *
+     * @return HAPI上下文
+     */
+    HapiContext context() {
+        if (context == null) {
+            synchronized (this) {
+                if (context == null) {
+                    context = createContext();
+                }
+            }
+        }
+        return context;
+    }
+
+    private HapiContext createContext() {
+        DefaultHapiContext hapiContext = new DefaultHapiContext(new CanonicalModelClassFactory(modelVersion));
+        String rules = validation == null ? "NONE" : validation.trim();
+        switch (rules.toUpperCase()) {
+            case "NONE":
+                // 解析时完全跳过校验，不逐个字段检查规则
+                hapiContext.setValidationRuleBuilder(new NoValidationBuilder());
+                hapiContext.getParserConfiguration().setValidating(false);
+                break;
+            case "DEFAULT":
+                hapiContext.setValidationRuleBuilder(new DefaultValidationBuilder());
+                break;
+            case "DEFAULT_WITHOUT_TN":
+                hapiContext.setValidationRuleBuilder(new DefaultValidationWithoutTNBuilder());
+                break;
+            default:
+                try {
+                    hapiContext.setValidationRuleBuilder(rules);
+                } catch (RuntimeException e) {
+                    log.warn("无法加载HL7校验规则 {}，不进行校验: {}", rules, e.getMessage());
+                    hapiContext.setValidationRuleBuilder(new NoValidationBuilder());
+                    hapiContext.getParserConfiguration().setValidating(false);
+                }
+                break;
+        }
+        return hapiContext;
+    }
+
+    /**
+     * 关闭HAPI上下文，应用退出时调用
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (context != null) {
+            try {
+                context.close();
+            } catch (IOException e) {
+                log.debug("关闭HAPI上下文失败: {}", e.getMessage());
+            }
+            context = null;
+        }
+    }
+}
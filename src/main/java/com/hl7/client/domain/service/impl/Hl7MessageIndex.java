@@ -0,0 +1,460 @@
+package com.hl7.client.domain.service.impl;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * HL7 v2消息的位置索引
+ * 在原始文本上扫描一遍，记录每个段和每个字段的起止位置，不复制文本、不创建HAPI对象；
+ * 分隔符取自MSH-1和MSH-2，段之间的\r、\n、\r\n都可以。
+ * 重复、组件和子组件只在取值时在对应字段的范围内查找，取值时才创建字符串，并按HL7转义规则还原\F\、\S\等。
+ *
+ * 字段和组件从1开始编号，重复从0开始编号，与HAPI一致；MSH-1是字段分隔符本身，MSH-2是编码字符。
+ * 值为空时返回null，与HAPI中getValue()的结果一致。实例不是线程安全的，每条消息创建一个
+ */
+public final class Hl7MessageIndex {
+
+    private static final String MSH = "MSH";
+
+    private final CharSequence text;
+
+    /** 字段分隔符和编码字符 */
+    @Getter
+    private final char fieldSeparator;
+    @Getter
+    private final char componentSeparator;
+    @Getter
+    private final char repetitionSeparator;
+    @Getter
+    private final char escapeCharacter;
+    @Getter
+    private final char subcomponentSeparator;
+
+    /** 每个段的第一个字段（段名）在字段数组中的位置，最后一项是字段总数 */
+    private int[] segmentFields;
+    private int segmentCount;
+
+    /** 每个字段（包括段名）的起止位置 */
+    private int[] fieldStarts;
+    private int[] fieldEnds;
+    private int fieldCount;
+
+    private Hl7MessageIndex(CharSequence text, int start) {
+        this.text = text;
+        this.segmentFields = new int[16];
+        this.fieldStarts = new int[256];
+        this.fieldEnds = new int[256];
+        this.fieldSeparator = text.charAt(start + 3);
+        // MSH-2可能少于4个字符，缺少的编码字符使用默认值
+        int encoding = start + 4;
+        int encodingEnd = encoding;
+        while (encodingEnd < text.length() && encodingEnd < encoding + 4 && text.charAt(encodingEnd) != fieldSeparator
+                && !isSegmentTerminator(text.charAt(encodingEnd))) {
+            encodingEnd++;
+        }
+        this.componentSeparator = encoding < encodingEnd ? text.charAt(encoding) : '^';
+        this.repetitionSeparator = encoding + 1 < encodingEnd ? text.charAt(encoding + 1) : '~';
+        this.escapeCharacter = encoding + 2 < encodingEnd ? text.charAt(encoding + 2) : '\\';
+        this.subcomponentSeparator = encoding + 3 < encodingEnd ? text.charAt(encoding + 3) : '&';
+    }
+
+    private Hl7MessageIndex(CharSequence text, Hl7MessageIndex header) {
+        this.text = text;
+        this.segmentFields = new int[2];
+        this.fieldStarts = new int[32];
+        this.fieldEnds = new int[32];
+        this.fieldSeparator = header.fieldSeparator;
+        this.componentSeparator = header.componentSeparator;
+        this.repetitionSeparator = header.repetitionSeparator;
+        this.escapeCharacter = header.escapeCharacter;
+        this.subcomponentSeparator = header.subcomponentSeparator;
+    }
+
+    /**
+     * 建立消息的索引
+     *
+     * @param text 原始消息，索引期间和使用期间不能修改
+     * @return 消息索引
+     * @throws IllegalArgumentException 消息不以MSH段开头
+     */
+    public static Hl7MessageIndex parse(CharSequence text) {
+        int start = 0;
+        int length = text.length();
+        while (start < length && isSegmentTerminator(text.charAt(start))) {
+            start++;
+        }
+        if (length - start < 8 || !regionMatches(text, start, MSH)) {
+            throw new IllegalArgumentException("不是HL7消息：缺少MSH段");
+        }
+        Hl7MessageIndex index = new Hl7MessageIndex(text, start);
+        index.scan(start);
+        return index;
+    }
+
+    /**
+     * 按消息头的分隔符建立单个段的索引，用于逐段读取的场景，段号固定为0
+     *
+     * @param segment 一个段的原始文本，不含段结束符，不能是MSH段
+     * @param header 同一条消息MSH段的索引
+     * @return 段索引
+     */
+    static Hl7MessageIndex parseSegment(CharSequence segment, Hl7MessageIndex header) {
+        Hl7MessageIndex index = new Hl7MessageIndex(segment, header);
+        index.scan(0);
+        return index;
+    }
+
+    private void scan(int position) {
+        int length = text.length();
+        int fieldStart = position;
+        beginSegment();
+        for (int i = position; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == fieldSeparator) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            } else if (isSegmentTerminator(c)) {
+                addField(fieldStart, i);
+                while (i + 1 < length && isSegmentTerminator(text.charAt(i + 1))) {
+                    i++;
+                }
+                fieldStart = i + 1;
+                if (fieldStart < length) {
+                    beginSegment();
+                }
+            }
+        }
+        if (fieldStart < length) {
+            addField(fieldStart, length);
+        }
+        segmentFields[segmentCount] = fieldCount;
+    }
+
+    private void beginSegment() {
+        if (segmentCount + 1 >= segmentFields.length) {
+            segmentFields = Arrays.copyOf(segmentFields, segmentFields.length * 2);
+        }
+        segmentFields[segmentCount++] = fieldCount;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * 段数
+     *
+     * @return 段数
+     */
+    public int segmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * 判断段名，不创建字符串
+     *
+     * @param segment 段序号，从0开始
+     * @param name 段名，如OBX
+     * @return 段名相同时返回true
+     */
+    public boolean isSegment(int segment, String name) {
+        int field = segmentFields[segment];
+        return fieldEnds[field] - fieldStarts[field] == name.length() && regionMatches(text, fieldStarts[field], name);
+    }
+
+    /**
+     * 从指定段开始查找段
+     *
+     * @param name 段名
+     * @param from 开始查找的段序号
+     * @return 段序号，没有找到时返回-1
+     */
+    public int findSegment(String name, int from) {
+        for (int segment = Math.max(0, from); segment < segmentCount; segment++) {
+            if (isSegment(segment, name)) {
+                return segment;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 段的名称
+     *
+     * @param segment 段序号
+     * @return 段名
+     */
+    public String segmentName(int segment) {
+        int field = segmentFields[segment];
+        return text.subSequence(fieldStarts[field], fieldEnds[field]).toString();
+    }
+
+    /**
+     * 取字段第一个重复的第一个组件，相当于HAPI中基本类型字段的值
+     *
+     * @param segment 段序号
+     * @param field 字段号
+     * @return 值，为空时返回null
+     */
+    public String getValue(int segment, int field) {
+        return getValue(segment, field, 0, 1, 1);
+    }
+
+    /**
+     * 取字段第一个重复中的组件
+     *
+     * @param segment 段序号
+     * @param field 字段号
+     * @param component 组件号
+     * @return 值，为空时返回null
+     */
+    public String getValue(int segment, int field, int component) {
+        return getValue(segment, field, 0, component, 1);
+    }
+
+    /**
+     * 取字段中的子组件
+     *
+     * @param segment 段序号
+     * @param field 字段号
+     * @param repetition 重复序号，从0开始
+     * @param component 组件号
+     * @param subcomponent 子组件号
+     * @return 值，为空时返回null
+     */
+    public String getValue(int segment, int field, int repetition, int component, int subcomponent) {
+        if (segment < 0 || segment >= segmentCount) {
+            return null;
+        }
+        if (field == 1 && isSegment(segment, MSH)) {
+            return String.valueOf(fieldSeparator);
+        }
+        int token = token(segment, field);
+        if (token < 0) {
+            return null;
+        }
+        int start = fieldStarts[token];
+        int end = fieldEnds[token];
+        if (field == 2 && isSegment(segment, MSH)) {
+            // 编码字符本身不拆分、不转义
+            return repetition == 0 && component == 1 && subcomponent == 1 && end > start
+                    ? text.subSequence(start, end).toString() : null;
+        }
+        long range = part(start, end, repetitionSeparator, repetition);
+        range = part(start(range), end(range), componentSeparator, component - 1);
+        range = part(start(range), end(range), subcomponentSeparator, subcomponent - 1);
+        return unescape(start(range), end(range));
+    }
+
+    /**
+     * 取字段中一个重复的编码文本，保留组件分隔符和转义序列，去掉末尾的空组件，与HAPI中encode()的结果一致
+     *
+     * @param segment 段序号
+     * @param field 字段号
+     * @param repetition 重复序号，从0开始
+     * @return 编码文本，为空时返回null
+     */
+    public String getEncoded(int segment, int field, int repetition) {
+        int token = token(segment, field);
+        if (token < 0) {
+            return null;
+        }
+        long range = part(fieldStarts[token], fieldEnds[token], repetitionSeparator, repetition);
+        int start = start(range);
+        int end = end(range);
+        while (end > start && (text.charAt(end - 1) == componentSeparator
+                || text.charAt(end - 1) == subcomponentSeparator)) {
+            end--;
+        }
+        return end > start ? text.subSequence(start, end).toString() : null;
+    }
+
+    /**
+     * 取整数值
+     *
+     * @param segment 段序号
+     * @param field 字段号
+     * @param defaultValue 为空或不是整数时返回的值
+     * @return 整数值
+     */
+    public int getInt(int segment, int field, int defaultValue) {
+        int token = token(segment, field);
+        if (token < 0) {
+            return defaultValue;
+        }
+        long range = part(fieldStarts[token], fieldEnds[token], repetitionSeparator, 0);
+        range = part(start(range), end(range), componentSeparator, 0);
+        int start = start(range);
+        int end = end(range);
+        if (start == end || end - start > 9) {
+            return defaultValue;
+        }
+        int value = 0;
+        boolean negative = text.charAt(start) == '-';
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return defaultValue;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 判断字段是否为空
+     *
+     * @param segment 段序号
+     * @param field 字段号
+     * @return 字段不存在或没有内容时返回true
+     */
+    public boolean isEmpty(int segment, int field) {
+        int token = token(segment, field);
+        return token < 0 || fieldStarts[token] == fieldEnds[token];
+    }
+
+    /**
+     * 字段的重复次数
+     *
+     * @param segment 段序号
+     * @param field 字段号
+     * @return 重复次数，字段为空时返回0
+     */
+    public int repetitionCount(int segment, int field) {
+        int token = token(segment, field);
+        if (token < 0 || fieldStarts[token] == fieldEnds[token]) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = fieldStarts[token]; i < fieldEnds[token]; i++) {
+            if (text.charAt(i) == repetitionSeparator) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 字段在字段数组中的位置，MSH段的字段号比位置大1
+     */
+    private int token(int segment, int field) {
+        if (segment < 0 || segment >= segmentCount || field < 1) {
+            return -1;
+        }
+        int first = segmentFields[segment];
+        int token;
+        if (isSegment(segment, MSH)) {
+            // MSH-1是字段分隔符，没有对应的位置
+            token = field < 2 ? -1 : first + field - 1;
+        } else {
+            token = first + field;
+        }
+        return token >= 0 && token < segmentFields[segment + 1] ? token : -1;
+    }
+
+    /**
+     * 在范围内按分隔符取第n部分，不存在时返回空范围
+     */
+    private long part(int start, int end, char separator, int n) {
+        int partStart = start;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == separator) {
+                if (n == 0) {
+                    return range(partStart, i);
+                }
+                n--;
+                partStart = i + 1;
+            }
+        }
+        return n == 0 ? range(partStart, end) : range(end, end);
+    }
+
+    private static long range(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    private static int start(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int end(long range) {
+        return (int) range;
+    }
+
+    /**
+     * 取值并还原转义序列，没有转义字符时直接截取
+     */
+    private String unescape(int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        int escape = -1;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == escapeCharacter) {
+                escape = i;
+                break;
+            }
+        }
+        if (escape < 0) {
+            return text.subSequence(start, end).toString();
+        }
+        StringBuilder value = new StringBuilder(end - start);
+        value.append(text, start, escape);
+        int i = escape;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == escapeCharacter && i + 2 < end && text.charAt(i + 2) == escapeCharacter) {
+                char replacement = escaped(text.charAt(i + 1));
+                if (replacement != 0) {
+                    value.append(replacement);
+                    i += 3;
+                    continue;
+                }
+            }
+            // 其他转义序列（如\H\、\X..\）原样保留
+            value.append(c);
+            i++;
+        }
+        return value.toString();
+    }
+
+    private char escaped(char code) {
+        switch (code) {
+            case 'F':
+                return fieldSeparator;
+            case 'S':
+                return componentSeparator;
+            case 'T':
+                return subcomponentSeparator;
+            case 'R':
+                return repetitionSeparator;
+            case 'E':
+                return escapeCharacter;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean isSegmentTerminator(char c) {
+        return c == '\r' || c == '\n';
+    }
+
+    private static boolean regionMatches(CharSequence text, int offset, String value) {
+        if (offset + value.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(offset + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
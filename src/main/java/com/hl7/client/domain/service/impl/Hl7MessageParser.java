@@ -1,8 +1,6 @@
 package com.hl7.client.domain.service.impl;
 
-import ca.uhn.hl7v2.DefaultHapiContext;
 import ca.uhn.hl7v2.HL7Exception;
-import ca.uhn.hl7v2.HapiContext;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.model.v25.datatype.CE;
 import ca.uhn.hl7v2.model.v25.datatype.ST;
@@ -11,34 +9,87 @@ import ca.uhn.hl7v2.model.v25.message.ORU_R01;
 import ca.uhn.hl7v2.model.v25.segment.MSH;
 import ca.uhn.hl7v2.model.v25.segment.OBR;
 import ca.uhn.hl7v2.model.v25.segment.OBX;
-import ca.uhn.hl7v2.parser.Parser;
 import cn.hutool.core.text.CharSequenceUtil;
 import com.hl7.client.domain.model.MessageType;
 import com.hl7.client.domain.service.MessageParser;
+import com.hl7.client.domain.service.ParseResult;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * HL7消息解析器
  * 解析标准HL7消息
+ *
+ * v2.5的ORU^R01结果消息只需要MSH、PID、OBR、OBX中的少数字段，直接在原始文本的位置索引上取值，
+ * 不创建HAPI对象、不做校验；其他消息类型和版本交给HapiParserEngine完整解析。
+ * 包含多个患者、多个医嘱组的大批量结果可以用parseGroups按医嘱组流式解析。
+ * 位置索引直接填充ParseResult；HAPI解析的结果仍是Map，通过adopt接入
  */
 @Slf4j
 @Service
 public class Hl7MessageParser implements MessageParser {
 
-    private final HapiContext context = new DefaultHapiContext();
+    /**
+     * HAPI解析引擎，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private HapiParserEngine hapiParserEngine;
+
+    /** 是否对v2.5的ORU^R01消息使用位置索引直接取值 */
+    @Getter @Setter
+    @Value("${hl7.parser.fast-path.enabled:true}")
+    private boolean fastPathEnabled = true;
+
+    /** 按医嘱组流式解析时单组最多包含的观察结果数，0表示不拆分 */
+    @Getter @Setter
+    @Value("${hl7.parser.streaming.max-observations-per-group:500}")
+    private int maxObservationsPerGroup = 500;
+
+    @Override
+    public ParseResult parse(com.hl7.client.domain.model.Message domainMessage, ParseResult result) {
+        result.reset();
+        if (fastPathEnabled && domainMessage.getRawContent() != null
+                && parseFast(domainMessage.getRawContent(), result)) {
+            return result;
+        }
+        return result.adopt(parseWithHapi(domainMessage));
+    }
 
     @Override
     public Map<String, Object> parse(com.hl7.client.domain.model.Message domainMessage) {
+        if (fastPathEnabled && domainMessage.getRawContent() != null) {
+            ParseResult result = new ParseResult();
+            if (parseFast(domainMessage.getRawContent(), result)) {
+                return result.toMap();
+            }
+        }
+        return parseWithHapi(domainMessage);
+    }
+
+    /**
+     * 使用HAPI完整解析消息
+     *
+     * @param domainMessage 消息
+     * @return 解析结果
+     */
+    private Map<String, Object> parseWithHapi(com.hl7.client.domain.model.Message domainMessage) {
         try {
             // 创建解析结果Map
             Map<String, Object> result = new HashMap<>();
 
             // 解析原始HL7消息
-            Parser parser = context.getPipeParser();
-            Message hapiMessage = parser.parse(domainMessage.getRawContent());
+            Message hapiMessage = hapiEngine().parse(domainMessage.getRawContent());
 
             // 如果是ORU_R01消息（常见的结果消息类型）
             if (hapiMessage instanceof ORU_R01) {
@@ -66,6 +117,90 @@ public class Hl7MessageParser implements MessageParser {
         }
     }
 
+    /**
+     * 是否可以按医嘱组流式解析，只看MSH段：v2.5的ORU^R01消息，且启用了位置索引
+     *
+     * @param domainMessage 消息
+     * @return 是否可以流式解析
+     */
+    public boolean supportsStreaming(com.hl7.client.domain.model.Message domainMessage) {
+        String raw = domainMessage.getRawContent();
+        if (!fastPathEnabled || raw == null) {
+            return false;
+        }
+        int start = 0;
+        while (start < raw.length() && (raw.charAt(start) == '\r' || raw.charAt(start) == '\n')) {
+            start++;
+        }
+        int end = start;
+        while (end < raw.length() && raw.charAt(end) != '\r' && raw.charAt(end) != '\n') {
+            end++;
+        }
+        Hl7MessageIndex header;
+        try {
+            header = Hl7MessageIndex.parse(raw.substring(start, end));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return "ORU".equals(header.getValue(0, 9, 1)) && "R01".equals(header.getValue(0, 9, 2))
+                && "2.5".equals(header.getValue(0, 12));
+    }
+
+    /**
+     * 按医嘱组流式解析ORU^R01消息，每个医嘱组（OBX超过单组上限时为其中一部分）完成时立即交给处理方，
+     * 不生成整条消息的解析结果
+     *
+     * @param domainMessage 消息，调用前用supportsStreaming检查
+     * @param handler 组处理方，在调用线程上依次调用
+     * @return 交出的组数
+     * @throws IllegalArgumentException 消息不以MSH段开头
+     */
+    public int parseGroups(com.hl7.client.domain.model.Message domainMessage,
+                           Consumer<Hl7OruStreamReader.Group> handler) {
+        Hl7OruStreamReader reader = new Hl7OruStreamReader(new StringReader(domainMessage.getRawContent()));
+        reader.setMaxObservationsPerGroup(maxObservationsPerGroup);
+        try {
+            return reader.read(handler);
+        } catch (IOException e) {
+            // 读取内存中的字符串不会失败
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 获取HAPI解析引擎
+     *
+     * @return HAPI解析引擎
+     */
+    private HapiParserEngine hapiEngine() {
+        if (hapiParserEngine == null) {
+            hapiParserEngine = HapiParserEngine.getDefault();
+        }
+        return hapiParserEngine;
+    }
+
+    /**
+     * 通过位置索引解析消息
+     *
+     * @param rawContent 原始消息
+     * @param result 解析结果
+     * @return 是否已解析，不是v2.5的ORU^R01消息时返回false，由HAPI解析
+     */
+    private boolean parseFast(String rawContent, ParseResult result) {
+        Hl7MessageIndex index;
+        try {
+            index = Hl7MessageIndex.parse(rawContent);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (!"ORU".equals(index.getValue(0, 9, 1)) || !"R01".equals(index.getValue(0, 9, 2))
+                || !"2.5".equals(index.getValue(0, 12))) {
+            return false;
+        }
+        parseORU_R01Message(index, result);
+        return true;
+    }
+
     /**
      * 从TS类型获取时间值
      *
@@ -148,6 +283,49 @@ public class Hl7MessageParser implements MessageParser {
         return result;
     }
 
+    /**
+     * 从位置索引解析ORU_R01消息，取值与HAPI解析的结果相同
+     * 患者取第一个OBR之前的PID，观察结果取第一个OBR之后、下一个ORC、OBR、SPM或PID之前的OBX，
+     * 与HAPI中PATIENT_RESULT(0)和ORDER_OBSERVATION(0)对应的段一致
+     *
+     * @param index 消息索引
+     * @param result 解析结果
+     */
+    private void parseORU_R01Message(Hl7MessageIndex index, ParseResult result) {
+        // 获取基本信息
+        result.setMessageType("ORU_R01");
+        result.setSendingApplication(index.getValue(0, 3));
+        result.setSendingFacility(index.getValue(0, 4));
+        result.setMessageControlId(index.getValue(0, 10));
+        result.setMessageDateTime(index.getValue(0, 7));
+
+        // 获取患者信息
+        int obr = index.findSegment("OBR", 1);
+        int pid = index.findSegment("PID", 1);
+        if (obr >= 0 && pid > obr) {
+            pid = -1;
+        }
+        result.beginOrderResult();
+        result.setPatientId(index.getValue(pid, 2));
+        result.setPatientName(index.getValue(pid, 5, 0, 1, 1));
+
+        // 获取OBR信息（请求信息）
+        result.setObservationDateTime(index.getValue(obr, 7));
+        result.setOrderNumber(index.getValue(obr, 2));
+        result.setUniversalServiceID(index.getValue(obr, 4));
+
+        // 获取OBX信息（结果信息）
+        for (int segment = obr + 1; obr >= 0 && segment < index.segmentCount(); segment++) {
+            if (index.isSegment(segment, "ORC") || index.isSegment(segment, "OBR")
+                    || index.isSegment(segment, "SPM") || index.isSegment(segment, "PID")) {
+                break;
+            }
+            if (index.isSegment(segment, "OBX")) {
+                Hl7OruStreamReader.addObservation(index, segment, result);
+            }
+        }
+    }
+
     @Override
     public String getType() {
         return MessageType.HL7.name();
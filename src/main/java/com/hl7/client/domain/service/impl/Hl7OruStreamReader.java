@@ -0,0 +1,281 @@
+package com.hl7.client.domain.service.impl;
+
+import com.hl7.client.domain.service.ParseResult;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * ORU^R01结果消息的流式读取器
+ * 逐段读取原始消息，每个医嘱组（ORC、OBR及其后的OBX）结束时立即交给处理方，不保留整条消息的解析结果：
+ * 读取器自身只保留消息头、当前患者、当前医嘱和尚未交出的观察结果，与批次中的患者数、医嘱数和OBX总数无关；
+ * 输入本身占用的内存由调用方决定，从内存中的字符串读取时整条原始消息仍然在内存中。
+ * 设置单组观察结果上限后，OBX很多的医嘱组分成多个部分依次交出。
+ *
+ * 每组的结果字段与Hl7MessageParser对单条消息的解析结果相同，另外带有患者序号、医嘱序号和分段信息；
+ * 同时附带只包含MSH、所属PID、ORC、OBR和本部分OBX的原始消息，可以作为一条独立的ORU^R01消息转发。
+ * 一个输入中有多条消息时，遇到新的MSH段重新开始。实例不是线程安全的，每个输入创建一个
+ */
+public final class Hl7OruStreamReader {
+
+    private static final char SEGMENT_TERMINATOR = '\r';
+
+    private final BufferedReader reader;
+
+    /** 单组最多包含的观察结果数，0表示不拆分 */
+    @Getter @Setter
+    private int maxObservationsPerGroup;
+
+    /** 当前消息头 */
+    private Hl7MessageIndex header;
+    private String headerLine;
+
+    /** 当前患者 */
+    private String patientLine;
+    private String patientId;
+    private String patientName;
+    private int patientIndex = -1;
+
+    /** 还没有遇到OBR的ORC段 */
+    private String pendingOrcLine;
+
+    /** 当前医嘱组 */
+    private boolean orderOpen;
+    private boolean inSpecimen;
+    private int orderIndex = -1;
+    private String orcLine;
+    private String obrLine;
+    private String observationDateTime;
+    private String orderNumber;
+    private String universalServiceID;
+    private int part;
+    private List<Map<String, Object>> observations = new ArrayList<>();
+    private final StringBuilder observationLines = new StringBuilder();
+
+    /** 已交出的组数 */
+    @Getter
+    private int groupCount;
+
+    /**
+     * 创建读取器
+     *
+     * @param reader 原始消息，段之间的\r、\n、\r\n都可以
+     */
+    public Hl7OruStreamReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * 读到输入结束，每个医嘱组（或其中一部分）完成时交给处理方
+     *
+     * @param handler 组处理方，在读取线程上调用
+     * @return 交出的组数
+     * @throws IOException 读取失败
+     * @throws IllegalArgumentException 输入不以MSH段开头
+     */
+    public int read(Consumer<Group> handler) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("MSH")) {
+                closeOrder(handler);
+                startMessage(line);
+                continue;
+            }
+            if (header == null) {
+                throw new IllegalArgumentException("不是HL7消息：缺少MSH段");
+            }
+            if (isSegment(line, "OBX")) {
+                if (orderOpen && !inSpecimen) {
+                    addObservation(line, handler);
+                }
+            } else if (isSegment(line, "OBR")) {
+                closeOrder(handler);
+                openOrder(line);
+            } else if (isSegment(line, "ORC")) {
+                closeOrder(handler);
+                pendingOrcLine = line;
+            } else if (isSegment(line, "PID")) {
+                closeOrder(handler);
+                startPatient(line);
+            } else if (isSegment(line, "SPM")) {
+                // SPM之后的OBX属于标本，不是观察结果
+                inSpecimen = true;
+            }
+        }
+        closeOrder(handler);
+        return groupCount;
+    }
+
+    private void startMessage(String line) {
+        header = Hl7MessageIndex.parse(line);
+        headerLine = line;
+        patientLine = null;
+        patientId = null;
+        patientName = null;
+        patientIndex = -1;
+        pendingOrcLine = null;
+        orderIndex = -1;
+    }
+
+    private void startPatient(String line) {
+        Hl7MessageIndex pid = Hl7MessageIndex.parseSegment(line, header);
+        patientLine = line;
+        patientId = pid.getValue(0, 2);
+        patientName = pid.getValue(0, 5, 0, 1, 1);
+        patientIndex++;
+        pendingOrcLine = null;
+    }
+
+    private void openOrder(String line) {
+        Hl7MessageIndex obr = Hl7MessageIndex.parseSegment(line, header);
+        orderOpen = true;
+        inSpecimen = false;
+        orderIndex++;
+        orcLine = pendingOrcLine;
+        pendingOrcLine = null;
+        obrLine = line;
+        observationDateTime = obr.getValue(0, 7);
+        orderNumber = obr.getValue(0, 2);
+        universalServiceID = obr.getValue(0, 4);
+        part = 0;
+    }
+
+    private void addObservation(String line, Consumer<Group> handler) {
+        if (maxObservationsPerGroup > 0 && observations.size() >= maxObservationsPerGroup) {
+            // 后面还有OBX，先交出已满的部分
+            emit(handler, false);
+        }
+        observations.add(observation(Hl7MessageIndex.parseSegment(line, header), 0));
+        observationLines.append(line).append(SEGMENT_TERMINATOR);
+    }
+
+    /**
+     * 从OBX段取观察结果，取值与HAPI解析的结果相同
+     *
+     * @param index 消息或段索引
+     * @param segment OBX段号
+     * @return 观察结果
+     */
+    static Map<String, Object> observation(Hl7MessageIndex index, int segment) {
+        Map<String, Object> observation = new HashMap<>();
+        observation.put("sequence", index.getValue(segment, 1));
+        observation.put("testId", index.getValue(segment, 3, 1));
+        observation.put("testName", index.getValue(segment, 3, 2));
+        observation.put("value", observationValue(index, segment));
+        observation.put("units", index.getValue(segment, 6));
+        observation.put("referenceRange", index.getValue(segment, 7));
+        observation.put("status", index.getValue(segment, 11));
+        return observation;
+    }
+
+    /**
+     * 从OBX段取观察结果，直接添加到解析结果
+     *
+     * @param index 消息或段索引
+     * @param segment OBX段号
+     * @param result 解析结果
+     */
+    static void addObservation(Hl7MessageIndex index, int segment, ParseResult result) {
+        result.addObservation(index.getValue(segment, 1), index.getValue(segment, 3, 1),
+                index.getValue(segment, 3, 2), observationValue(index, segment), index.getValue(segment, 6),
+                index.getValue(segment, 7), index.getValue(segment, 11));
+    }
+
+    private static String observationValue(Hl7MessageIndex index, int segment) {
+        if ("ST".equals(index.getValue(segment, 2))) {
+            return index.getValue(segment, 5);
+        }
+        // 与HAPI的encode()一致，空值编码为空字符串
+        String encoded = index.getEncoded(segment, 5, 0);
+        return encoded != null ? encoded : "";
+    }
+
+    private void closeOrder(Consumer<Group> handler) {
+        if (orderOpen) {
+            emit(handler, true);
+            orderOpen = false;
+            inSpecimen = false;
+            orcLine = null;
+            obrLine = null;
+        }
+    }
+
+    private void emit(Consumer<Group> handler, boolean lastPart) {
+        part++;
+        Map<String, Object> result = new HashMap<>();
+        result.put("messageType", "ORU_R01");
+        result.put("sendingApplication", header.getValue(0, 3));
+        result.put("sendingFacility", header.getValue(0, 4));
+        result.put("messageControlId", header.getValue(0, 10));
+        result.put("messageDateTime", header.getValue(0, 7));
+        result.put("patientId", patientId);
+        result.put("patientName", patientName);
+        result.put("observationDateTime", observationDateTime);
+        result.put("orderNumber", orderNumber);
+        result.put("universalServiceID", universalServiceID);
+        result.put("observations", observations);
+        result.put("patientIndex", patientIndex);
+        result.put("orderIndex", orderIndex);
+        result.put("part", part);
+        result.put("lastPart", lastPart);
+
+        StringBuilder raw = new StringBuilder(headerLine.length() + obrLine.length() + observationLines.length() + 128);
+        raw.append(headerLine).append(SEGMENT_TERMINATOR);
+        if (patientLine != null) {
+            raw.append(patientLine).append(SEGMENT_TERMINATOR);
+        }
+        if (orcLine != null) {
+            raw.append(orcLine).append(SEGMENT_TERMINATOR);
+        }
+        raw.append(obrLine).append(SEGMENT_TERMINATOR).append(observationLines);
+
+        // 交出后不再引用，由处理方决定保留多久
+        observations = new ArrayList<>();
+        observationLines.setLength(0);
+        groupCount++;
+        handler.accept(new Group(result, raw.toString()));
+    }
+
+    private boolean isSegment(String line, String name) {
+        return line.startsWith(name) && (line.length() == name.length()
+                || line.charAt(name.length()) == header.getFieldSeparator());
+    }
+
+    /**
+     * 一个医嘱组或其中的一部分
+     */
+    @Getter
+    public static final class Group {
+
+        /** 解析结果，字段与单条消息的解析结果相同 */
+        private final Map<String, Object> result;
+
+        /** 只包含本组段的原始消息 */
+        private final String rawContent;
+
+        Group(Map<String, Object> result, String rawContent) {
+            this.result = result;
+            this.rawContent = rawContent;
+        }
+
+        /**
+         * 是否为医嘱组的最后一部分
+         *
+         * @return 是否最后一部分
+         */
+        public boolean isLastPart() {
+            return Boolean.TRUE.equals(result.get("lastPart"));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.hl7.client.domain.service.impl;
+
+import com.hl7.client.domain.model.Hl7StorageModel;
+import com.hl7.client.infrastructure.util.JsonEscapeWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 入库模型的JSON输出
+ * 直接按字段写出，不经过Bean到Map的转换；字段顺序、空值省略和转义与JSONUtil.toJsonStr的结果相同，
+ * 服务端收到的文本不变。目标是JsonEscapeWriter时，写出的就是外层JSON里的字符串值
+ */
+final class Hl7StorageModelWriter {
+
+    private final Appendable out;
+    private boolean first;
+
+    private Hl7StorageModelWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * 写出模型列表
+     *
+     * @param models 模型列表
+     * @param out 目标
+     * @throws IOException 目标写入失败
+     */
+    static void writeModels(List<Hl7StorageModel> models, Appendable out) throws IOException {
+        Hl7StorageModelWriter writer = new Hl7StorageModelWriter(out);
+        out.append('[');
+        for (int i = 0; i < models.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            writer.writeModel(models.get(i));
+        }
+        out.append(']');
+    }
+
+    private void writeModel(Hl7StorageModel model) throws IOException {
+        beginObject();
+        field("organizationCode", model.getOrganizationCode());
+        field("instrumentCode", model.getInstrumentCode());
+        field("outCode", model.getOutCode());
+        field("orgType", model.getOrgType());
+        field("sampleCode", model.getSampleCode());
+        if (model.getItemTime() != null) {
+            key("itemTime");
+            out.append(Long.toString(model.getItemTime().getTime()));
+        }
+        field("barcode", model.getBarcode());
+        field("testDate", model.getTestDate());
+        if (model.getItemList() != null) {
+            key("itemList");
+            out.append('[');
+            for (int i = 0; i < model.getItemList().size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                Hl7StorageModel.Item item = model.getItemList().get(i);
+                beginObject();
+                field("channelCode", item.getChannelCode());
+                field("result", item.getResult());
+                field("susceptibility", item.getSusceptibility());
+                out.append('}');
+            }
+            out.append(']');
+            // 回到模型的字段
+            first = false;
+        }
+        if (model.getImageList() != null) {
+            key("imageList");
+            out.append('[');
+            for (int i = 0; i < model.getImageList().size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                Hl7StorageModel.Image image = model.getImageList().get(i);
+                beginObject();
+                field("base64str", image.getBase64str());
+                field("channelCode", image.getChannelCode());
+                out.append('}');
+            }
+            out.append(']');
+            // 回到模型的字段
+            first = false;
+        }
+        if (model.getIsMir() != null) {
+            key("isMir");
+            out.append(model.getIsMir().toString());
+        }
+        out.append('}');
+    }
+
+    private void beginObject() throws IOException {
+        out.append('{');
+        first = true;
+    }
+
+    private void key(String name) throws IOException {
+        if (!first) {
+            out.append(',');
+        }
+        first = false;
+        out.append('"').append(name).append("\":");
+    }
+
+    private void field(String name, String value) throws IOException {
+        if (value != null) {
+            key(name);
+            JsonEscapeWriter.quote(value, out);
+        }
+    }
+}
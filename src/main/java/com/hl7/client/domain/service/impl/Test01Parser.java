@@ -1,21 +1,27 @@
 package com.hl7.client.domain.service.impl;
 
 import cn.hutool.core.text.CharSequenceUtil;
-import cn.hutool.json.JSONUtil;
+import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.model.Hl7StorageModel;
 import com.hl7.client.domain.model.Message;
 import com.hl7.client.domain.model.MessageType;
-import com.hl7.client.domain.constants.NormalSymbol;
 import com.hl7.client.domain.model.TargetDatabaseCode;
 import com.hl7.client.domain.service.MessageParser;
+import com.hl7.client.domain.service.ParseResult;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.common.Hl7TextFramer;
+import com.hl7.client.infrastructure.util.JsonEscapeWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
  * HL7消息解析器
  * 解析特定仪器格式的HL7消息，专用于凝血仪数据解析
+ * 逐行扫描一遍直接填充入库模型，处理结果JSON只生成一次
  */
 @Slf4j
 @Service
@@ -38,8 +44,8 @@ public class Test01Parser implements MessageParser {
     private static final String UNIT_UG_ML = "ug/mL";
 
     // 消息状态常量
-    private static final String STATUS_INCOMPLETE = "INCOMPLETE";
     private static final String STATUS_COMPLETE = "COMPLETE";
+    private static final String RESULT_NOT_COMPLETE = "{\"" + STATUS_COMPLETE + "\":false}";
     private static final String PROCESS_RESULT_COMPLETE = "消息完整";
     private static final String PROCESS_RESULT_ACK = "ack";
 
@@ -56,40 +62,43 @@ public class Test01Parser implements MessageParser {
 
     @Override
     public Map<String, Object> parse(Message domainMessage) {
-        Map<String, Object> result = new HashMap<>();
+        return parse(domainMessage, new ParseResult()).toMap();
+    }
+
+    @Override
+    public ParseResult parse(Message domainMessage, ParseResult result) {
+        result.reset();
 
         try {
 
             String messageContent = domainMessage.getRawContent();
             if (CharSequenceUtil.isBlank(messageContent)) {
                 log.warn("消息内容为空，无法解析");
-                result.put(STATUS_INCOMPLETE, false);
                 domainMessage.setProcessResult("消息内容为空");
-                return result;
+                return result.incomplete();
             }
 
             // 解析消息内容
-            List<Hl7StorageModel> parsedModels = parseMessageContent(messageContent);
+            Hl7StorageModel model = parseMessageContent(messageContent);
 
             // 记录解析结果
-            if (!parsedModels.isEmpty()) {
-                result.put("models", JSONUtil.toJsonStr(parsedModels));
-                //目标数据库（aid,emis等）
-                result.put("targetDatabase", TargetDatabaseCode.EMIS.name());
-                result.put(STATUS_COMPLETE, true);
-
-                // 将解析结果输出到日志
-                log.info("解析结果: {}", JSONUtil.toJsonStr(parsedModels));
+            if (model != null) {
+                // 目标数据库（aid,emis等）；处理结果只序列化这一次，之后原样放进发送给服务端的请求体
+                String serialized = serializeResult(model, TargetDatabaseCode.EMIS.name());
+                result.serialized(serialized);
+
+                log.info("解析结果: 样本号 {}，条码 {}，测试日期 {}，{} 个结果", model.getSampleCode(), model.getBarcode(),
+                        model.getTestDate(), model.getItemList().size());
+                log.debug("解析结果: {}", serialized);
             } else {
                 log.warn("未能从消息中提取有效数据");
-                result.put(STATUS_COMPLETE, false);
+                result.serialized(RESULT_NOT_COMPLETE);
             }
 
             domainMessage.setProcessResult(PROCESS_RESULT_COMPLETE);
         } catch (Exception e) {
             log.error("解析消息时发生异常", e);
-            result.put("error", e.getMessage());
-            result.put(STATUS_COMPLETE, false);
+            result.error(e.getMessage());
             domainMessage.setProcessResult("解析异常: " + e.getMessage());
         }
 
@@ -97,167 +106,149 @@ public class Test01Parser implements MessageParser {
     }
 
     /**
-     * 解析HL7消息内容，提取关键数据
+     * 生成处理结果JSON：{"models":"[...]","COMPLETE":true,"targetDatabase":"..."}
+     * models是模型列表JSON文本作为字符串值，边生成边转义写入外层，不先生成再转义；
+     * 字段按上面的固定顺序写出，服务端按字段名取值；转义与JSONUtil.toJsonStr相同
+     *
+     * @param model 存储模型
+     * @param targetDatabase 目标数据库
+     * @return 处理结果JSON
+     * @throws IOException 不会发生，写入的是StringBuilder
+     */
+    private String serializeResult(Hl7StorageModel model, String targetDatabase) throws IOException {
+        StringBuilder json = new StringBuilder(160 + model.getItemList().size() * 64);
+        json.append("{\"models\":\"");
+        Hl7StorageModelWriter.writeModels(Collections.singletonList(model), new JsonEscapeWriter(json));
+        json.append("\",\"").append(STATUS_COMPLETE).append("\":true,\"targetDatabase\":");
+        JsonEscapeWriter.quote(targetDatabase, json);
+        return json.append('}').toString();
+    }
+
+    /**
+     * 扫描消息内容，提取关键数据
+     * 每行只扫描一遍，直接填充存储模型；记录类型、字段和组件的判断与按|、^分割时相同
      *
-     * @param messageContent HL7消息内容
-     * @return 解析后的存储模型列表
+     * @param messageContent 消息内容
+     * @return 存储模型，没有结果项时返回null
      */
-    private List<Hl7StorageModel> parseMessageContent(String messageContent) {
-        List<Hl7StorageModel> models = new ArrayList<>();
+    private Hl7StorageModel parseMessageContent(String messageContent) {
         Hl7StorageModel model = new Hl7StorageModel();
         List<Hl7StorageModel.Item> resultItems = new ArrayList<>();
 
-        // 分行处理消息
-        String[] lines = messageContent.split(NormalSymbol.NEW_LINE);
-
-        for (String line : lines) {
-            if (CharSequenceUtil.isBlank(line)) {
+        AstmRecordScanner record = new AstmRecordScanner(messageContent);
+        while (record.next()) {
+            if (record.fieldCount() == 0) {
                 continue;
             }
 
-            String[] segments = line.split(NormalSymbol.HL7_SPLIT);
-            if (segments.length == 0) {
-                continue;
-            }
-
-            String recordType = segments[INDEX_RECORD_TYPE];
-
             // 处理结果记录行
-            if (recordType.contains(RECORD_TYPE_R)) {
-                processResultLine(segments, resultItems);
+            if (record.fieldContains(INDEX_RECORD_TYPE, RECORD_TYPE_R)) {
+                processResultLine(record, resultItems);
             }
             // 处理头部信息行
-            else if (recordType.contains(RECORD_TYPE_H)) {
-                processHeaderLine(segments, model);
+            else if (record.fieldContains(INDEX_RECORD_TYPE, RECORD_TYPE_H)) {
+                processHeaderLine(record, model);
             }
             // 处理订单信息行
-            else if (recordType.contains(RECORD_TYPE_O)) {
-                processOrderLine(segments, model);
+            else if (record.fieldContains(INDEX_RECORD_TYPE, RECORD_TYPE_O)) {
+                processOrderLine(record, model);
             }
         }
 
         // 填充解析结果
-        if (!resultItems.isEmpty()) {
-            model.setItemList(resultItems);
-            models.add(model);
+        if (resultItems.isEmpty()) {
+            return null;
         }
-
-        return models;
+        model.setItemList(resultItems);
+        return model;
     }
 
     /**
      * 处理结果行记录
      *
-     * @param segments 分割后的行片段
+     * @param record 当前记录
      * @param resultItems 结果项集合
      */
-    private void processResultLine(String[] segments, List<Hl7StorageModel.Item> resultItems) {
-        if (segments.length <= Math.max(INDEX_CHANNEL_INFO, INDEX_RESULT_UNIT)) {
-            log.warn("结果行段数不足，跳过: {}", String.join(", ", segments));
+    private void processResultLine(AstmRecordScanner record, List<Hl7StorageModel.Item> resultItems) {
+        if (record.fieldCount() <= Math.max(INDEX_CHANNEL_INFO, INDEX_RESULT_UNIT)) {
+            log.warn("结果行段数不足，跳过: {}", record.field(INDEX_RECORD_TYPE));
             return;
         }
 
-        try {
-            // 获取通道信息
-            String channelInfo = segments[INDEX_CHANNEL_INFO];
-            String[] channelParts = channelInfo.split(NormalSymbol.DIVISION);
-
-            if (channelParts.length <= 3) {
-                log.warn("通道信息格式不正确: {}", channelInfo);
-                return;
-            }
-
-            String channelType = channelParts[3].trim();
-            String resultValue = segments[INDEX_RESULT_VALUE];
-            String resultUnit = segments[INDEX_RESULT_UNIT];
+        // 获取通道信息
+        if (record.componentCount(INDEX_CHANNEL_INFO) <= 3) {
+            log.warn("通道信息格式不正确: {}", record.field(INDEX_CHANNEL_INFO));
+            return;
+        }
 
-            // 根据不同通道和单位决定是否添加结果项
+        String channelType = record.component(INDEX_CHANNEL_INFO, 3).trim();
+        String resultValue = record.field(INDEX_RESULT_VALUE);
+        String resultUnit = record.field(INDEX_RESULT_UNIT);
+
+        // 根据不同通道和单位决定是否添加结果项
+        String channelCode;
+        if (CHANNEL_PT.equals(channelType)) {
+            channelCode = resultUnit.contains(UNIT_S_OR_INR) || resultUnit.contains(UNIT_INR) ? resultUnit.trim() : null;
+        } else if (channelType.contains(CHANNEL_FIB)) {
+            channelCode = resultUnit.contains(UNIT_G_L) ? channelType : null;
+        } else if (channelType.contains(CHANNEL_D_DIMER)) {
+            channelCode = resultUnit.contains(UNIT_UG_ML) ? channelType : null;
+        } else {
+            // 其他通道直接添加
+            channelCode = channelType;
+        }
+        if (channelCode != null) {
             Hl7StorageModel.Item item = new Hl7StorageModel.Item();
-
-            if (CHANNEL_PT.equals(channelType)) {
-                if (resultUnit.contains(UNIT_S_OR_INR) || resultUnit.contains(UNIT_INR)) {
-                    item.setChannelCode(resultUnit.trim());
-                    item.setResult(resultValue);
-                    resultItems.add(item);
-                }
-            } else if (channelType.contains(CHANNEL_FIB)) {
-                if (resultUnit.contains(UNIT_G_L)) {
-                    item.setChannelCode(channelType);
-                    item.setResult(resultValue);
-                    resultItems.add(item);
-                }
-            } else if (channelType.contains(CHANNEL_D_DIMER)) {
-                if (resultUnit.contains(UNIT_UG_ML)) {
-                    item.setChannelCode(channelType);
-                    item.setResult(resultValue);
-                    resultItems.add(item);
-                }
-            } else {
-                // 其他通道直接添加
-                item.setChannelCode(channelType);
-                item.setResult(resultValue);
-                resultItems.add(item);
-            }
-        } catch (Exception e) {
-            log.warn("处理结果行时发生异常: {}", e.getMessage());
+            item.setChannelCode(channelCode);
+            item.setResult(resultValue);
+            resultItems.add(item);
         }
     }
 
     /**
      * 处理头部信息行
      *
-     * @param segments 分割后的行片段
+     * @param record 当前记录
      * @param model 存储模型
      */
-    private void processHeaderLine(String[] segments, Hl7StorageModel model) {
-        if (segments.length <= INDEX_TEST_DATE) {
+    private void processHeaderLine(AstmRecordScanner record, Hl7StorageModel model) {
+        if (record.fieldCount() <= INDEX_TEST_DATE) {
             log.warn("头部信息行段数不足，跳过");
             return;
         }
 
-        try {
-            String dateStr = segments[INDEX_TEST_DATE];
-            if (dateStr.length() >= DATE_LENGTH) {
-                model.setTestDate(dateStr.substring(0, DATE_LENGTH));
-            } else {
-                log.warn("测试日期格式不正确: {}", dateStr);
-            }
-        } catch (Exception e) {
-            log.warn("处理头部行时发生异常: {}", e.getMessage());
+        String dateStr = record.field(INDEX_TEST_DATE);
+        if (dateStr.length() >= DATE_LENGTH) {
+            model.setTestDate(dateStr.substring(0, DATE_LENGTH));
+        } else {
+            log.warn("测试日期格式不正确: {}", dateStr);
         }
     }
 
     /**
      * 处理订单信息行
      *
-     * @param segments 分割后的行片段
+     * @param record 当前记录
      * @param model 存储模型
      */
-    private void processOrderLine(String[] segments, Hl7StorageModel model) {
-        if (segments.length <= INDEX_CHANNEL_INFO) {
+    private void processOrderLine(AstmRecordScanner record, Hl7StorageModel model) {
+        if (record.fieldCount() <= INDEX_CHANNEL_INFO) {
             log.warn("订单信息行段数不足，跳过");
             return;
         }
 
-        try {
-            String barcode = segments[INDEX_CHANNEL_INFO];
-            String[] barcodeParts = barcode.split(NormalSymbol.DIVISION);
-
-            if (barcodeParts.length <= INDEX_SAMPLE_ID) {
-                log.warn("条码信息格式不正确: {}", barcode);
-                return;
-            }
+        if (record.componentCount(INDEX_CHANNEL_INFO) <= INDEX_SAMPLE_ID) {
+            log.warn("条码信息格式不正确: {}", record.field(INDEX_CHANNEL_INFO));
+            return;
+        }
 
-            String sampleId = barcodeParts[INDEX_SAMPLE_ID];
+        String sampleId = record.component(INDEX_CHANNEL_INFO, INDEX_SAMPLE_ID);
 
-            // 根据条码长度决定是样本编号还是条形码
-            if (sampleId.length() < 5) {
-                model.setSampleCode(sampleId);
-            } else {
-                model.setBarcode(sampleId);
-            }
-        } catch (Exception e) {
-            log.warn("处理订单行时发生异常: {}", e.getMessage());
+        // 根据条码长度决定是样本编号还是条形码
+        if (sampleId.length() < 5) {
+            model.setSampleCode(sampleId);
+        } else {
+            model.setBarcode(sampleId);
         }
     }
 
@@ -296,4 +287,22 @@ public class Test01Parser implements MessageParser {
         }
         return "ack";
     }
+
+    /**
+     * 增量检查消息是否完整
+     * 一次读取包含多条消息时按段首的MSH|切开，前面的消息直接完整；
+     * 最后一条以回车结尾时也完整，否则留在缓冲区等待后续数据。
+     * 缓冲区的结尾就是新数据的结尾，只需看新数据的最后一个字符，不再复制整个缓冲区
+     */
+    @Override
+    public FrameResult onData(CharSequence chunk, FrameState state, Device device) {
+        List<String> frames = Hl7TextFramer.takeCompleteMessages(state);
+        if (chunk.length() > 0 && chunk.charAt(chunk.length() - 1) == 13 && state.length() > 0) {
+            if (frames.isEmpty()) {
+                return FrameResult.frame(state.takeAll());
+            }
+            frames.add(state.takeAll());
+        }
+        return FrameResult.of(frames, state.length() > 0 ? "ack" : null);
+    }
 }
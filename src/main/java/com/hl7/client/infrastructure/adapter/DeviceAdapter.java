@@ -1,6 +1,9 @@
 package com.hl7.client.infrastructure.adapter;
 
 import com.hl7.client.domain.model.Device;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 设备适配器接口
@@ -21,6 +24,16 @@ public interface DeviceAdapter {
      */
     boolean connect();
 
+    /**
+     * 异步连接设备
+     * 默认在专用的连接线程中执行connect()，连接尚未完成时再次调用返回同一个结果；支持非阻塞连接的适配器应覆盖此方法
+     *
+     * @return 连接结果，true表示连接成功
+     */
+    default CompletableFuture<Boolean> connectAsync() {
+        return DeviceConnector.connect(this);
+    }
+
     /**
      * 断开连接
      */
@@ -41,6 +54,17 @@ public interface DeviceAdapter {
      */
     String receive();
 
+    /**
+     * 确认receive()取走的消息已处理完毕
+     * 处理流程在消息处理并发送到服务端后调用；需要在消息送达后才推进接收进度的适配器（如文件适配器）覆盖此方法，
+     * 发送失败的消息不推进进度，重新连接后重新接收。默认不需要确认
+     *
+     * @param rawContent receive()返回的消息内容
+     * @param delivered 是否已处理并发送成功
+     */
+    default void commit(String rawContent, boolean delivered) {
+    }
+
     /**
      * 检查连接状态
      *
@@ -61,4 +85,28 @@ public interface DeviceAdapter {
      * @return 如果需要响应，返回响应内容；否则返回null
      */
     String processReceivedData(String rawData);
+
+    /**
+     * 处理某个连接接收到的原始数据
+     * 多连接适配器（如服务器模式）按连接传入各自的分帧状态，默认实现忽略该状态
+     *
+     * @param rawData 接收到的原始数据字符串
+     * @param frameState 连接的分帧状态
+     * @return 如果需要响应，返回响应内容；否则返回null
+     */
+    default String processReceivedData(String rawData, FrameState frameState) {
+        return processReceivedData(rawData);
+    }
+
+    /**
+     * 处理帧解码器已切分好的完整消息
+     * 帧边界由解码器确定，无需再缓冲和判断完整性；默认实现按原始数据处理
+     *
+     * @param frame 完整消息内容（不含帧头帧尾）
+     * @param frameState 连接的分帧状态
+     * @return 如果需要响应，返回响应内容；否则返回null
+     */
+    default String processFrame(String frame, FrameState frameState) {
+        return processReceivedData(frame, frameState);
+    }
 }
@@ -0,0 +1,91 @@
+package com.hl7.client.infrastructure.adapter;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阻塞式连接的后台执行器
+ * 没有非阻塞连接的适配器（串口、文件等）在这里执行connect()，不占用消息处理使用的公共线程池；
+ * 同一适配器的连接尚未完成时再次发起，返回进行中的同一个结果，不重复连接
+ */
+@Slf4j
+final class DeviceConnector {
+
+    /** 连接线程数 */
+    private static final int CONNECT_THREADS = 4;
+
+    /** 等待连接线程的最大请求数，超出时连接直接以失败完成 */
+    private static final int MAX_PENDING_CONNECTS = 1024;
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    /** 进行中的连接，按适配器实例区分 */
+    private static final Map<DeviceAdapter, CompletableFuture<Boolean>> IN_FLIGHT = new IdentityHashMap<>();
+
+    private DeviceConnector() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(CONNECT_THREADS, CONNECT_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(MAX_PENDING_CONNECTS), new DefaultThreadFactory("hl7-device-connect", true));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 在连接线程中执行适配器的connect()
+     *
+     * @param adapter 设备适配器
+     * @return 连接结果，true表示连接成功
+     */
+    static CompletableFuture<Boolean> connect(DeviceAdapter adapter) {
+        CompletableFuture<Boolean> future;
+        synchronized (IN_FLIGHT) {
+            future = IN_FLIGHT.get(adapter);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            IN_FLIGHT.put(adapter, future);
+        }
+        CompletableFuture<Boolean> result = future;
+        try {
+            EXECUTOR.execute(() -> {
+                boolean connected;
+                try {
+                    connected = adapter.connect();
+                } catch (Throwable e) {
+                    finish(adapter, result);
+                    result.completeExceptionally(e);
+                    return;
+                }
+                finish(adapter, result);
+                result.complete(connected);
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("等待连接的设备超过 {} 个，本次连接失败", MAX_PENDING_CONNECTS);
+            finish(adapter, result);
+            result.complete(false);
+        }
+        return result;
+    }
+
+    /**
+     * 连接结束，先移除进行中的记录，回调中再次发起连接时开始新的一次
+     */
+    private static void finish(DeviceAdapter adapter, CompletableFuture<Boolean> future) {
+        synchronized (IN_FLIGHT) {
+            if (IN_FLIGHT.get(adapter) == future) {
+                IN_FLIGHT.remove(adapter);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 录制读取到的字节的串口输入流
+ */
+public class CapturingInputStream extends FilterInputStream {
+
+    private final TrafficRecorder recorder;
+    private final String connection;
+
+    public CapturingInputStream(InputStream in, TrafficRecorder recorder, String connection) {
+        super(in);
+        this.recorder = recorder;
+        this.connection = connection;
+        recorder.opened(connection);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            recorder.inbound(connection, new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            recorder.inbound(connection, b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        recorder.closed(connection);
+        super.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 录制写出的字节的串口输出流
+ */
+public class CapturingOutputStream extends FilterOutputStream {
+
+    private final TrafficRecorder recorder;
+    private final String connection;
+
+    public CapturingOutputStream(OutputStream out, TrafficRecorder recorder, String connection) {
+        super(out);
+        this.recorder = recorder;
+        this.connection = connection;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        recorder.outbound(connection, new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream默认逐字节写出，这里直接整块写出
+        out.write(b, off, len);
+        recorder.outbound(connection, b, off, len);
+    }
+}
@@ -0,0 +1,96 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流量回放结果
+ * 延迟：回放到适配器时为一次processReceivedData调用的耗时，回放到TCP端口时为写出数据到收到应答的时间
+ */
+@Getter
+public final class ReplayReport {
+
+    /** 回放速度倍数，0表示不等待、尽快回放 */
+    private final double speed;
+
+    /** 回放的收到数据记录数 */
+    private final long records;
+
+    /** 回放的字节数 */
+    private final long bytes;
+
+    /** 录制中的发出数据记录数，即期望的应答数 */
+    private final long expectedReplies;
+
+    /** 回放时实际产生的应答数 */
+    private final long replies;
+
+    /** 回放耗时（纳秒） */
+    private final long elapsedNanos;
+
+    /** 录制时长（纳秒） */
+    private final long recordedNanos;
+
+    /** 实际发送时间晚于计划时间的最大值（纳秒） */
+    private final long maxLagNanos;
+
+    private final long p50LatencyNanos;
+    private final long p99LatencyNanos;
+    private final long maxLatencyNanos;
+
+    ReplayReport(double speed, long records, long bytes, long expectedReplies, long replies, long elapsedNanos,
+                 long recordedNanos, long maxLagNanos, long[] latencies, int latencyCount) {
+        this.speed = speed;
+        this.records = records;
+        this.bytes = bytes;
+        this.expectedReplies = expectedReplies;
+        this.replies = replies;
+        this.elapsedNanos = elapsedNanos;
+        this.recordedNanos = recordedNanos;
+        this.maxLagNanos = maxLagNanos;
+
+        Arrays.sort(latencies, 0, latencyCount);
+        this.p50LatencyNanos = percentile(latencies, latencyCount, 50);
+        this.p99LatencyNanos = percentile(latencies, latencyCount, 99);
+        this.maxLatencyNanos = latencyCount > 0 ? latencies[latencyCount - 1] : 0;
+    }
+
+    private static long percentile(long[] sorted, int count, int percent) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(count * percent / 100.0) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * 回放吞吐（字节/秒）
+     *
+     * @return 字节/秒
+     */
+    public long getBytesPerSecond() {
+        return elapsedNanos > 0 ? (long) (bytes * 1e9 / elapsedNanos) : 0;
+    }
+
+    /**
+     * 回放吞吐（记录/秒）
+     *
+     * @return 记录/秒
+     */
+    public long getRecordsPerSecond() {
+        return elapsedNanos > 0 ? (long) (records * 1e9 / elapsedNanos) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("回放 %s：%d 条记录，%d 字节，应答 %d/%d，录制时长 %dms，回放耗时 %dms，"
+                        + "%d 字节/秒，延迟 p50 %dµs / p99 %dµs / 最大 %dµs，最大调度滞后 %dµs",
+                speed > 0 ? speed + "x" : "尽快", records, bytes, replies, expectedReplies,
+                TimeUnit.NANOSECONDS.toMillis(recordedNanos), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                getBytesPerSecond(), TimeUnit.NANOSECONDS.toMicros(p50LatencyNanos),
+                TimeUnit.NANOSECONDS.toMicros(p99LatencyNanos), TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos),
+                TimeUnit.NANOSECONDS.toMicros(maxLagNanos));
+    }
+}
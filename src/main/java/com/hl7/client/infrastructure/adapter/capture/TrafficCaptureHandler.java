@@ -0,0 +1,55 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Netty流量录制处理器
+ * 放在通道处理器链最前面，记录解码前收到的和编码后发出的原始字节，不修改数据
+ */
+public class TrafficCaptureHandler extends ChannelDuplexHandler {
+
+    private final TrafficRecorder recorder;
+    private String connection;
+
+    public TrafficCaptureHandler(TrafficRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        recorder.opened(connection(ctx));
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            recorder.record(true, connection(ctx), (ByteBuf) msg);
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf) {
+            recorder.record(false, connection(ctx), (ByteBuf) msg);
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        recorder.closed(connection(ctx));
+        super.channelInactive(ctx);
+    }
+
+    private String connection(ChannelHandlerContext ctx) {
+        if (connection == null) {
+            connection = String.valueOf(ctx.channel().remoteAddress());
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,146 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流量录制文件读取器，文件格式见 {@link TrafficRecorder}
+ */
+@Getter
+public final class TrafficCaptureReader implements Closeable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final String deviceId;
+    private final String deviceName;
+    private final String model;
+    private final String connectionType;
+    private final String connectionParams;
+    private final long startEpochMillis;
+
+    private final DataInputStream in;
+    private final Map<Integer, String> connections = new HashMap<>();
+    private long timestampNanos;
+
+    /**
+     * 打开录制文件并读取文件头
+     *
+     * @param file 录制文件
+     * @throws IOException 文件不存在或不是录制文件
+     */
+    public TrafficCaptureReader(File file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            byte[] magic = new byte[TrafficRecorder.MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, TrafficRecorder.MAGIC)) {
+                throw new IOException("不是流量录制文件: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != TrafficRecorder.VERSION) {
+                throw new IOException("不支持的录制文件版本: " + version);
+            }
+            this.deviceId = in.readUTF();
+            this.deviceName = in.readUTF();
+            this.model = in.readUTF();
+            this.connectionType = in.readUTF();
+            this.connectionParams = in.readUTF();
+            this.startEpochMillis = in.readLong();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return 记录，文件结束时返回null；录制中断导致的不完整尾部记录被忽略
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public TrafficRecord next() throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return null;
+        }
+        try {
+            timestampNanos += readVarLong();
+            int index = (int) readVarLong();
+            switch (type) {
+                case TrafficRecorder.TYPE_OPEN: {
+                    String connection = in.readUTF();
+                    connections.put(index, connection);
+                    return new TrafficRecord(TrafficRecord.Type.OPEN, connection, timestampNanos, EMPTY);
+                }
+                case TrafficRecorder.TYPE_IN:
+                case TrafficRecorder.TYPE_OUT: {
+                    byte[] data = new byte[(int) readVarLong()];
+                    in.readFully(data);
+                    return new TrafficRecord(type == TrafficRecorder.TYPE_IN ? TrafficRecord.Type.IN
+                            : TrafficRecord.Type.OUT, connection(index), timestampNanos, data);
+                }
+                case TrafficRecorder.TYPE_CLOSE:
+                    return new TrafficRecord(TrafficRecord.Type.CLOSE, connections.remove(index), timestampNanos, EMPTY);
+                default:
+                    throw new IOException("录制文件格式错误，未知记录类型: " + type);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 读取全部记录
+     *
+     * @param file 录制文件
+     * @return 按时间顺序的记录
+     * @throws IOException 读取失败
+     */
+    public static List<TrafficRecord> readAll(File file) throws IOException {
+        try (TrafficCaptureReader reader = new TrafficCaptureReader(file)) {
+            List<TrafficRecord> records = new ArrayList<>();
+            TrafficRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+            return records;
+        }
+    }
+
+    private String connection(int index) throws IOException {
+        String connection = connections.get(index);
+        if (connection == null) {
+            throw new IOException("录制文件格式错误，连接序号 " + index + " 没有OPEN记录");
+        }
+        return connection;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("录制文件格式错误，变长整数过长");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import com.hl7.client.domain.model.Device;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 流量录制服务
+ * 开启后，适配器连接时为设备创建录制文件，记录收发的原始字节，断开时关闭；
+ * 录制文件可用 {@link TrafficReplayer} 在没有串口和仪器的机器上按原始节奏或加速回放
+ */
+@Slf4j
+@Component
+public class TrafficCaptureService {
+
+    /** 录制文件扩展名 */
+    public static final String FILE_EXTENSION = ".hl7cap";
+
+    /** 非Spring环境下使用的默认实例 */
+    private static volatile TrafficCaptureService defaultInstance;
+
+    /** 是否开启录制 */
+    @Getter @Setter
+    @Value("${hl7.capture.enabled:false}")
+    private boolean enabled = false;
+
+    /** 录制文件目录 */
+    @Getter @Setter
+    @Value("${hl7.capture.directory:capture}")
+    private String directory = "capture";
+
+    /** 只录制这些型号的设备，逗号分隔，为空时录制所有设备 */
+    @Getter @Setter
+    @Value("${hl7.capture.models:}")
+    private String models = "";
+
+    /**
+     * 获取非Spring环境下的默认实例（如独立运行的测试程序）
+     *
+     * @return 默认录制服务
+     */
+    public static TrafficCaptureService getDefault() {
+        if (defaultInstance == null) {
+            synchronized (TrafficCaptureService.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new TrafficCaptureService();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * 为设备创建录制器
+     *
+     * @param device 设备信息
+     * @return 录制器；未开启录制、设备不在录制范围或创建文件失败时返回null
+     */
+    public TrafficRecorder open(Device device) {
+        if (!enabled || device == null || !matchesModel(device.getModel())) {
+            return null;
+        }
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            log.error("创建流量录制目录 {} 失败", dir.getAbsolutePath());
+            return null;
+        }
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        File file = new File(dir, safeFileName(device.getName()) + "-" + time + FILE_EXTENSION);
+        try {
+            TrafficRecorder recorder = TrafficRecorder.create(file, device);
+            log.info("开始录制设备 {} 的流量: {}", device.getName(), file.getAbsolutePath());
+            return recorder;
+        } catch (IOException e) {
+            log.error("创建流量录制文件 {} 失败: {}", file.getAbsolutePath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean matchesModel(String model) {
+        if (models == null || models.trim().isEmpty()) {
+            return true;
+        }
+        for (String candidate : models.split(",")) {
+            if (candidate.trim().equalsIgnoreCase(model)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String safeFileName(String name) {
+        if (name == null || name.isEmpty()) {
+            return "device";
+        }
+        return name.replaceAll("[\\\\/:*?\"<>|\\s]", "_");
+    }
+}
@@ -0,0 +1,47 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import lombok.Getter;
+
+/**
+ * 录制文件中的一条记录
+ */
+@Getter
+public final class TrafficRecord {
+
+    /**
+     * 记录类型
+     */
+    public enum Type {
+        /** 连接建立 */
+        OPEN,
+        /** 收到的原始数据 */
+        IN,
+        /** 发出的原始数据 */
+        OUT,
+        /** 连接关闭 */
+        CLOSE
+    }
+
+    private final Type type;
+
+    /** 连接标识（串口名或远端地址） */
+    private final String connection;
+
+    /** 距录制开始的纳秒数 */
+    private final long timestampNanos;
+
+    /** 原始数据，OPEN/CLOSE记录为空数组 */
+    private final byte[] data;
+
+    public TrafficRecord(Type type, String connection, long timestampNanos, byte[] data) {
+        this.type = type;
+        this.connection = connection;
+        this.timestampNanos = timestampNanos;
+        this.data = data;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficRecord(" + type + ", " + connection + ", " + timestampNanos + "ns, " + data.length + " bytes)";
+    }
+}
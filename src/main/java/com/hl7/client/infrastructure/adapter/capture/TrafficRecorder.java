@@ -0,0 +1,288 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import com.hl7.client.domain.model.Device;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备流量录制器
+ * 按到达顺序记录设备收发的原始字节和纳秒时间戳，写入紧凑的二进制文件，供 {@link TrafficReplayer} 回放。
+ *
+ * 文件格式：
+ * <pre>
+ * 文件头: "HL7CAP" 版本(1字节) 设备ID 设备名称 型号 连接类型 连接参数(均为UTF) 录制开始时间(long, 毫秒)
+ * 记录:   类型(1字节) 距上条记录的纳秒数(变长整数) 连接序号(变长整数)
+ *         OPEN: 连接标识(UTF)；IN/OUT: 长度(变长整数) 原始数据；CLOSE: 无
+ * </pre>
+ * 连接序号在该连接的OPEN记录中首次出现，服务器模式一个端口上的多个连接各自编号
+ *
+ * 录制写入失败时只记录一次日志并停止录制，不影响设备通信
+ */
+@Slf4j
+public final class TrafficRecorder implements Closeable {
+
+    static final byte[] MAGIC = "HL7CAP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    static final int TYPE_OPEN = 1;
+    static final int TYPE_IN = 2;
+    static final int TYPE_OUT = 3;
+    static final int TYPE_CLOSE = 4;
+
+    /** 缓冲数据最长保留时间，超过后写入磁盘，进程异常退出时最多丢失这段时间的数据 */
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Getter
+    private final File file;
+    private final DataOutputStream out;
+    private final long startNanos;
+    private long lastNanos;
+    private long lastFlushNanos;
+    private final Map<String, Integer> connections = new HashMap<>();
+
+    @Getter
+    private long records;
+    @Getter
+    private long bytesIn;
+    @Getter
+    private long bytesOut;
+
+    private boolean closed;
+
+    private TrafficRecorder(File file, DataOutputStream out) {
+        this.file = file;
+        this.out = out;
+        this.startNanos = System.nanoTime();
+        this.lastNanos = startNanos;
+        this.lastFlushNanos = startNanos;
+    }
+
+    /**
+     * 创建录制文件并写入文件头
+     *
+     * @param file 录制文件
+     * @param device 设备信息
+     * @return 录制器
+     * @throws IOException 创建文件失败
+     */
+    public static TrafficRecorder create(File file, Device device) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        try {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(nullToEmpty(device.getId()));
+            out.writeUTF(nullToEmpty(device.getName()));
+            out.writeUTF(nullToEmpty(device.getModel()));
+            out.writeUTF(nullToEmpty(device.getConnectionType()));
+            out.writeUTF(nullToEmpty(device.getConnectionParams()));
+            out.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+        return new TrafficRecorder(file, out);
+    }
+
+    /**
+     * 记录连接建立
+     *
+     * @param connection 连接标识
+     */
+    public synchronized void opened(String connection) {
+        if (closed) {
+            return;
+        }
+        try {
+            connectionIndex(connection);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 记录收到的数据
+     *
+     * @param connection 连接标识
+     * @param data 数据
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public synchronized void inbound(String connection, byte[] data, int offset, int length) {
+        if (closed || length <= 0) {
+            return;
+        }
+        try {
+            writeHeader(TYPE_IN, connection);
+            writeVarLong(out, length);
+            out.write(data, offset, length);
+            bytesIn += length;
+            afterRecord();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 记录发出的数据
+     *
+     * @param connection 连接标识
+     * @param data 数据
+     * @param offset 起始位置
+     * @param length 长度
+     */
+    public synchronized void outbound(String connection, byte[] data, int offset, int length) {
+        if (closed || length <= 0) {
+            return;
+        }
+        try {
+            writeHeader(TYPE_OUT, connection);
+            writeVarLong(out, length);
+            out.write(data, offset, length);
+            bytesOut += length;
+            afterRecord();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 记录Netty通道收发的数据，不改变ByteBuf的读写位置
+     *
+     * @param inbound 是否为收到的数据
+     * @param connection 连接标识
+     * @param buf 数据
+     */
+    public synchronized void record(boolean inbound, String connection, ByteBuf buf) {
+        int length = buf.readableBytes();
+        if (closed || length <= 0) {
+            return;
+        }
+        try {
+            writeHeader(inbound ? TYPE_IN : TYPE_OUT, connection);
+            writeVarLong(out, length);
+            buf.getBytes(buf.readerIndex(), out, length);
+            if (inbound) {
+                bytesIn += length;
+            } else {
+                bytesOut += length;
+            }
+            afterRecord();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 记录连接关闭
+     *
+     * @param connection 连接标识
+     */
+    public synchronized void closed(String connection) {
+        if (closed || !connections.containsKey(connection)) {
+            return;
+        }
+        try {
+            writeHeader(TYPE_CLOSE, connection);
+            connections.remove(connection);
+            afterRecord();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+            log.info("流量录制已结束: {}，共 {} 条记录，收 {} 字节，发 {} 字节", file, records, bytesIn, bytesOut);
+        } catch (IOException e) {
+            log.error("关闭流量录制文件 {} 失败: {}", file, e.getMessage());
+        }
+    }
+
+    private void writeHeader(int type, String connection) throws IOException {
+        int index = connectionIndex(connection);
+        long now = System.nanoTime();
+        out.writeByte(type);
+        writeVarLong(out, now - lastNanos);
+        writeVarLong(out, index);
+        lastNanos = now;
+    }
+
+    /**
+     * 获取连接序号，新连接先写入OPEN记录
+     */
+    private int connectionIndex(String connection) throws IOException {
+        Integer index = connections.get(connection);
+        if (index != null) {
+            return index;
+        }
+        index = connections.size();
+        while (connections.containsValue(index)) {
+            index++;
+        }
+        connections.put(connection, index);
+
+        long now = System.nanoTime();
+        out.writeByte(TYPE_OPEN);
+        writeVarLong(out, now - lastNanos);
+        writeVarLong(out, index);
+        out.writeUTF(connection);
+        lastNanos = now;
+        afterRecord();
+        return index;
+    }
+
+    private void afterRecord() throws IOException {
+        records++;
+        if (lastNanos - lastFlushNanos >= FLUSH_INTERVAL_NANOS) {
+            out.flush();
+            lastFlushNanos = lastNanos;
+        }
+    }
+
+    private void fail(IOException e) {
+        log.error("写入流量录制文件 {} 失败，停止录制: {}", file, e.getMessage());
+        close();
+    }
+
+    /**
+     * 写入无符号变长整数，每字节7位，高位表示后面还有字节
+     */
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * 录制开始后经过的纳秒数
+     *
+     * @return 纳秒数
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
@@ -0,0 +1,284 @@
+package com.hl7.client.infrastructure.adapter.capture;
+
+import com.hl7.client.infrastructure.adapter.common.AbstractCommunicationAdapter;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 流量回放驱动
+ * 把 {@link TrafficRecorder} 录制的收到数据按录制时的时间间隔重新送入适配器或TCP端口，
+ * 速度可按倍数加快，或不等待尽快回放，用于在没有串口和仪器的机器上重复测量接收、分帧、解析、应答全流程的吞吐和延迟
+ *
+ * 录制中的发出数据不回放，只用于统计期望的应答数
+ */
+@Slf4j
+public class TrafficReplayer {
+
+    /** TCP回放时等待应答的最长时间 */
+    private static final long REPLY_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    @Getter
+    private final List<TrafficRecord> records;
+
+    /** 速度倍数，小于等于0表示不等待、尽快回放 */
+    @Getter
+    private final double speed;
+
+    /**
+     * @param file 录制文件
+     * @param speed 速度倍数，1为原始节奏，10为十倍速，小于等于0为尽快回放
+     * @throws IOException 读取录制文件失败
+     */
+    public TrafficReplayer(File file, double speed) throws IOException {
+        this(TrafficCaptureReader.readAll(file), speed);
+    }
+
+    public TrafficReplayer(List<TrafficRecord> records, double speed) {
+        this.records = records;
+        this.speed = speed;
+    }
+
+    /**
+     * 回放到适配器的processReceivedData，每个录制连接使用各自的分帧状态
+     *
+     * @param adapter 已初始化的适配器，不需要连接
+     * @param charset 数据字符集，应与设备实际使用的一致
+     * @return 回放结果
+     */
+    public ReplayReport replayTo(AbstractCommunicationAdapter adapter, Charset charset) {
+        Map<String, Connection> connections = new HashMap<>();
+        long[] latencies = new long[records.size()];
+        int latencyCount = 0;
+        long inbound = 0;
+        long bytes = 0;
+        long expectedReplies = 0;
+        long replies = 0;
+        long maxLag = 0;
+
+        long start = System.nanoTime();
+        for (TrafficRecord record : records) {
+            if (record.getType() == TrafficRecord.Type.OUT) {
+                expectedReplies++;
+                continue;
+            }
+            if (record.getType() != TrafficRecord.Type.IN) {
+                continue;
+            }
+            maxLag = Math.max(maxLag, awaitSchedule(start, record.getTimestampNanos()));
+
+            Connection connection = connections.computeIfAbsent(record.getConnection(),
+                    name -> new Connection(name, charset));
+            String text = connection.decode(record.getData());
+            long begin = System.nanoTime();
+            String reply = adapter.processReceivedData(text, connection.frameState);
+            latencies[latencyCount++] = System.nanoTime() - begin;
+            if (reply != null) {
+                replies++;
+            }
+            inbound++;
+            bytes += record.getData().length;
+        }
+        return new ReplayReport(speed, inbound, bytes, expectedReplies, replies, System.nanoTime() - start,
+                recordedNanos(), maxLag, latencies, latencyCount);
+    }
+
+    /**
+     * 回放到TCP端口，每个录制连接建立一个Socket连接
+     * 录制中某次收到数据后紧接着有应答时，等待对端应答并记录写出到收到应答的时间
+     *
+     * @param host 主机
+     * @param port 端口
+     * @return 回放结果
+     * @throws IOException 连接或写出失败
+     */
+    public ReplayReport replayOverTcp(String host, int port) throws IOException {
+        Map<String, SocketConnection> connections = new HashMap<>();
+        long[] latencies = new long[records.size()];
+        int latencyCount = 0;
+        long inbound = 0;
+        long bytes = 0;
+        long expectedReplies = 0;
+        long maxLag = 0;
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                TrafficRecord record = records.get(i);
+                switch (record.getType()) {
+                    case OUT:
+                        expectedReplies++;
+                        break;
+                    case CLOSE: {
+                        SocketConnection connection = connections.remove(record.getConnection());
+                        if (connection != null) {
+                            connection.close();
+                        }
+                        break;
+                    }
+                    case IN: {
+                        maxLag = Math.max(maxLag, awaitSchedule(start, record.getTimestampNanos()));
+                        SocketConnection connection = connections.get(record.getConnection());
+                        if (connection == null) {
+                            connection = new SocketConnection(host, port, record.getConnection());
+                            connections.put(record.getConnection(), connection);
+                        }
+                        long repliedBefore = connection.replyBytes.get();
+                        long begin = System.nanoTime();
+                        connection.out.write(record.getData());
+                        connection.out.flush();
+                        if (nextIsReply(i)) {
+                            long replied = connection.awaitReply(repliedBefore, begin + REPLY_TIMEOUT_NANOS);
+                            if (replied > 0) {
+                                latencies[latencyCount++] = replied - begin;
+                            }
+                        }
+                        inbound++;
+                        bytes += record.getData().length;
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            connections.values().forEach(SocketConnection::close);
+        }
+        long replies = latencyCount;
+        return new ReplayReport(speed, inbound, bytes, expectedReplies, replies, System.nanoTime() - start,
+                recordedNanos(), maxLag, latencies, latencyCount);
+    }
+
+    /**
+     * 同一连接的下一条数据记录是否为发出的应答
+     */
+    private boolean nextIsReply(int index) {
+        String connection = records.get(index).getConnection();
+        for (int i = index + 1; i < records.size(); i++) {
+            TrafficRecord next = records.get(i);
+            if (connection.equals(next.getConnection())) {
+                return next.getType() == TrafficRecord.Type.OUT;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 等待记录的计划回放时间
+     *
+     * @return 实际时间晚于计划时间的纳秒数
+     */
+    private long awaitSchedule(long start, long timestampNanos) {
+        if (speed <= 0) {
+            return 0;
+        }
+        long target = start + (long) (timestampNanos / speed);
+        long now;
+        while ((now = System.nanoTime()) < target) {
+            LockSupport.parkNanos(target - now);
+        }
+        return now - target;
+    }
+
+    private long recordedNanos() {
+        return records.isEmpty() ? 0 : records.get(records.size() - 1).getTimestampNanos();
+    }
+
+    /**
+     * 回放到适配器时的连接状态，解码器跨记录保留被拆开的多字节字符
+     */
+    private static final class Connection {
+        private final FrameState frameState;
+        private final CharsetDecoder decoder;
+        private ByteBuffer pending = ByteBuffer.allocate(0);
+
+        Connection(String name, Charset charset) {
+            this.frameState = new FrameState(name);
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        String decode(byte[] data) {
+            ByteBuffer in = ByteBuffer.allocate(pending.remaining() + data.length);
+            in.put(pending).put(data).flip();
+            CharBuffer out = CharBuffer.allocate((int) (in.remaining() * (double) decoder.maxCharsPerByte()) + 1);
+            decoder.decode(in, out, false);
+            pending = in;
+            out.flip();
+            return out.toString();
+        }
+    }
+
+    /**
+     * 回放到TCP端口的连接，后台线程读取应答并记录首个应答字节的到达时间
+     */
+    private static final class SocketConnection {
+        private final Socket socket;
+        private final OutputStream out;
+        private final AtomicLong replyBytes = new AtomicLong();
+        private volatile long lastReplyNanos;
+
+        SocketConnection(String host, int port, String name) throws IOException {
+            this.socket = new Socket(host, port);
+            this.socket.setTcpNoDelay(true);
+            this.out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            Thread reader = new Thread(() -> {
+                byte[] buffer = new byte[4096];
+                try {
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        lastReplyNanos = System.nanoTime();
+                        replyBytes.addAndGet(n);
+                    }
+                } catch (IOException ignored) {
+                    // 连接关闭
+                }
+            }, "hl7-replay-reply-" + name);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * 等待新的应答数据
+         *
+         * @return 应答到达时间，超时返回0
+         */
+        long awaitReply(long repliedBefore, long deadline) {
+            while (replyBytes.get() == repliedBefore) {
+                if (System.nanoTime() > deadline) {
+                    log.warn("等待应答超时: {}", socket.getRemoteSocketAddress());
+                    return 0;
+                }
+                LockSupport.parkNanos(10_000);
+            }
+            return lastReplyNanos;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 已关闭
+            }
+        }
+    }
+}
@@ -2,21 +2,22 @@ package com.hl7.client.infrastructure.adapter.common;
 
 import com.hl7.client.domain.constants.ApplicationConstants;
 import com.hl7.client.domain.model.Device;
-import com.hl7.client.domain.model.Message;
-import com.hl7.client.domain.model.MessageStatus;
 import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import com.hl7.client.infrastructure.adapter.capture.TrafficCaptureService;
+import com.hl7.client.infrastructure.adapter.capture.TrafficRecorder;
 import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
 import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategyManager;
-import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
-import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -37,31 +38,78 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
     @Getter
     protected final BlockingQueue<String> receivedMessages;
 
-    @Getter @Setter
-    protected StringBuilder messageBuffer = new StringBuilder();
-
+    /**
+     * 默认分帧状态
+     * 串口、客户端模式等单连接场景使用；服务器模式的每个通道持有各自的FrameState
+     */
     @Getter
-    protected LocalDateTime lastMessageTime = LocalDateTime.now();
+    protected final FrameState defaultFrameState = new FrameState("default");
+
+    /** 最后一次收到数据的时间（毫秒），读取路径上不创建LocalDateTime */
+    private volatile long lastMessageMillis = System.currentTimeMillis();
 
     @Autowired
+    @Setter
     protected MessageHandlerDelegate messageHandlerDelegate;
 
     @Autowired
+    @Setter
     protected MessageCompletionStrategyManager strategyManager;
 
+    /**
+     * 背压控制器，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private BackpressureController backpressureController;
+
+    /**
+     * 流量录制服务，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private TrafficCaptureService trafficCaptureService;
+
+    /** 当前连接的流量录制器，未开启录制时为null */
+    @Getter
+    private volatile TrafficRecorder trafficRecorder;
+
+    /**
+     * 读取状态锁，切换读取状态和为新连接应用读取状态时持有
+     */
+    protected final Object readStateLock = new Object();
+
+    private final BackpressureController.Listener backpressureListener = this::updateReadState;
+
+    /** 当前是否已暂停读取 */
+    private boolean readingPaused;
+
+    /** 拉取队列是否积压（消息未交给处理流程、只能等待receive()取走时） */
+    private volatile boolean pullQueueBacklogged;
+
+    /**
+     * 拉取队列已满时暂存的未处理消息，按到达顺序在恢复读取前移回拉取队列
+     * 暂停读取前解码器已读出的消息放在这里，数量不超过暂停前一次读取切出的消息数
+     */
+    private final Deque<String> pullOverflow = new ArrayDeque<>();
+
     @Value("${" + ApplicationConstants.PropertyKeys.MESSAGE_QUEUE_MAX_SIZE + ":"
         + ApplicationConstants.MessageProcessing.MAX_RECEIVED_QUEUE_SIZE + "}")
-    private int maxQueueSize;
+    private int maxQueueSize = ApplicationConstants.MessageProcessing.MAX_RECEIVED_QUEUE_SIZE;
 
+    @Getter
     @Value("${" + ApplicationConstants.PropertyKeys.MESSAGE_BUFFER_MAX_SIZE + ":"
         + ApplicationConstants.MessageProcessing.MAX_BUFFER_SIZE_BYTES + "}")
-    private int maxBufferSize;
+    private int maxBufferSize = ApplicationConstants.MessageProcessing.MAX_BUFFER_SIZE_BYTES;
 
     // 消息统计
     private final AtomicLong totalReceivedBytes = new AtomicLong(0);
     private final AtomicLong totalReceivedMessages = new AtomicLong(0);
     private final AtomicLong totalInvalidMessages = new AtomicLong(0);
-    private LocalDateTime lastStatsResetTime = LocalDateTime.now();
+    private final AtomicLong readPauseCount = new AtomicLong(0);
+    private final AtomicLong totalReadPausedMillis = new AtomicLong(0);
+    private long readPausedSinceMillis;
+    private volatile long lastStatsResetMillis = System.currentTimeMillis();
 
     /**
      * 构造函数，初始化接收消息队列
@@ -79,6 +127,8 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
     @Override
     public void initialize(Device device) {
         this.device = device;
+        // 设备型号可能变化，重新解析完整性检查策略
+        defaultFrameState.setCompletionStrategy(null);
         log.info("设备 {} ({}) 初始化", device.getName(), device.getModel());
     }
 
@@ -90,72 +140,164 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
      */
     @Override
     public String processReceivedData(String rawData) {
+        return processReceivedData(rawData, defaultFrameState);
+    }
+
+    /**
+     * 处理某个连接接收到的原始数据
+     * 数据追加到该连接自己的缓冲区，不同连接之间互不影响
+     *
+     * @param rawData 接收到的原始数据字符串
+     * @param frameState 连接的分帧状态
+     * @return 如果需要响应，返回响应内容；否则返回null
+     */
+    @Override
+    public String processReceivedData(String rawData, FrameState frameState) {
         if (rawData == null || rawData.isEmpty()) {
             return null;
         }
 
+        try {
+            // 1~3. 加入缓冲区并增量切出完整消息
+            FrameResult result = frameReceivedData(rawData, frameState);
+
+            // 4. 按到达顺序处理完整消息并加入队列
+            for (String frame : result.getFrames()) {
+                processAndQueueMessage(frame, frameState);
+            }
+
+            // 5. 记录统计信息
+            if (result.hasFrames()) {
+                logStatsPeriodically();
+            }
+
+            return result.getReply();
+        } catch (Exception e) {
+            log.error("处理接收数据时发生错误: {}", e.getMessage(), e);
+            frameState.reset();
+            return null;
+        }
+    }
+
+    /**
+     * 把新数据加入连接缓冲区并增量切出完整消息，不处理消息
+     * 串口读取线程在读取线程上分帧、在处理线程上处理时使用；出错时清空该连接的缓冲区
+     *
+     * @param data 新到达的数据，只在调用期间读取
+     * @param frameState 连接的分帧状态
+     * @return 切出的完整消息和回复内容
+     */
+    protected FrameResult frameReceivedData(CharSequence data, FrameState frameState) {
+        if (data == null || data.length() == 0) {
+            return FrameResult.none();
+        }
+
         try {
             updateLastMessageTime();
-            totalReceivedBytes.addAndGet(rawData.length());
+            frameState.touch();
+            totalReceivedBytes.addAndGet(data.length());
 
             // 1. 检查缓冲区大小并添加数据
-            if (!addToBuffer(rawData)) {
-                return null;
+            if (!addToBuffer(data, frameState)) {
+                return FrameResult.none();
             }
 
             // 2. 检查设备是否初始化
             if (!isDeviceInitialized()) {
-                return null;
+                return FrameResult.none();
             }
 
-            // 3. 创建消息对象和检查完整性
-            String fullMsg = messageBuffer.toString();
-            Message message = createMessage(fullMsg);
+            // 3. 增量检查新数据，切出完整消息；未完成的部分留在缓冲区
+            return checkNewData(data, frameState);
+        } catch (Exception e) {
+            log.error("处理接收数据时发生错误: {}", e.getMessage(), e);
+            frameState.reset();
+            return FrameResult.none();
+        }
+    }
 
-            // 4. 检查消息是否完整，如果不完整或需要响应，则返回响应
-            String responseToSend = messageHandlerDelegate.isMessageComplete(message);
-            if (responseToSend != null) {
-                return responseToSend;
-            }
+    /**
+     * 处理帧解码器输出的完整消息
+     * 帧边界已由解码器确定，跳过缓冲和完整性检查，直接处理并入队
+     *
+     * @param frame 完整消息内容（不含帧头帧尾）
+     * @param frameState 连接的分帧状态
+     * @return 如果需要响应，返回响应内容；否则返回null
+     */
+    @Override
+    public String processFrame(String frame, FrameState frameState) {
+        if (frame == null || frame.isEmpty()) {
+            return null;
+        }
 
-            // 5. 处理完整消息并加入队列
-            processAndQueueMessage(fullMsg);
+        try {
+            updateLastMessageTime();
+            frameState.touch();
+            totalReceivedBytes.addAndGet(frame.length());
 
-            // 6. 记录统计信息
-            logStatsPeriodically();
+            if (!isDeviceInitialized()) {
+                return null;
+            }
 
+            processAndQueueMessage(frame, frameState);
+            logStatsPeriodically();
             return null;
         } catch (Exception e) {
-            log.error("处理接收数据时发生错误: {}", e.getMessage(), e);
-            resetBuffer();
+            log.error("处理完整帧时发生错误: {}", e.getMessage(), e);
             return null;
         }
     }
 
+    /**
+     * 处理已由frameReceivedData切出的完整消息
+     * 数据到达时已计入统计，这里只处理并入队
+     *
+     * @param frame 完整消息
+     * @param frameState 连接的分帧状态
+     */
+    protected void processFramedMessage(String frame, FrameState frameState) {
+        try {
+            processAndQueueMessage(frame, frameState);
+            logStatsPeriodically();
+        } catch (Exception e) {
+            log.error("处理完整消息时发生错误: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * 更新最后消息时间
      */
     private void updateLastMessageTime() {
-        lastMessageTime = LocalDateTime.now();
+        lastMessageMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 获取最后一次收到数据的时间
+     *
+     * @return 最后消息时间
+     */
+    public LocalDateTime getLastMessageTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastMessageMillis), ZoneId.systemDefault());
     }
 
     /**
      * 添加数据到缓冲区，并检查缓冲区大小
      *
      * @param rawData 接收的原始数据
+     * @param frameState 连接的分帧状态
      * @return 是否成功添加（如果缓冲区溢出则返回false）
      */
-    private boolean addToBuffer(String rawData) {
+    private boolean addToBuffer(CharSequence rawData, FrameState frameState) {
         // 检查缓冲区大小，如果超过限制，清空缓冲区并返回错误
-        if (messageBuffer.length() + rawData.length() > maxBufferSize) {
-            log.error("消息缓冲区超过最大限制 {} 字节，当前: {} 字节，新数据: {} 字节",
-                maxBufferSize, messageBuffer.length(), rawData.length());
-            resetBuffer();
+        if (frameState.length() + rawData.length() > maxBufferSize) {
+            log.error("连接 {} 的消息缓冲区超过最大限制 {} 字节，当前: {} 字节，新数据: {} 字节",
+                frameState.getConnectionId(), maxBufferSize, frameState.length(), rawData.length());
+            frameState.reset();
             return false;
         }
 
         // 添加到缓冲区
-        messageBuffer.append(rawData);
+        frameState.append(rawData);
         return true;
     }
 
@@ -173,81 +315,227 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
     }
 
     /**
-     * 创建消息对象
+     * 增量检查新到达的数据
+     * 没有处理委托时，每次到达的数据直接作为一条消息
      *
-     * @param content 消息内容
-     * @return 消息对象
+     * @param rawData 本次新到达的数据，已追加到缓冲区
+     * @param frameState 连接的分帧状态
+     * @return 切出的完整消息和回复内容
      */
-    private Message createMessage(String content) {
-        return Message.builder()
-            .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
-            .deviceId(device.getId())
-            .deviceModel(device.getModel())
-            .rawContent(content)
-            .receivedTime(LocalDateTime.now())
-            .status(MessageStatus.NEW.name())
-            .build();
+    private FrameResult checkNewData(CharSequence rawData, FrameState frameState) {
+        if (messageHandlerDelegate == null) {
+            return FrameResult.frame(frameState.takeAll());
+        }
+        return messageHandlerDelegate.onData(device, rawData, frameState);
     }
 
     /**
      * 处理完整的消息并将其加入队列
      *
      * @param fullMsg 完整消息内容
+     * @param frameState 连接的分帧状态
      */
-    private void processAndQueueMessage(String fullMsg) {
+    private void processAndQueueMessage(String fullMsg, FrameState frameState) {
         // 处理消息
         log.info("接收到完整消息，长度: {}", fullMsg.length());
-        messageHandlerDelegate.processMessage(device, fullMsg);
+        String messageType = frameState.getMessageType() != null ? frameState.getMessageType() : defaultMessageType();
+        boolean handled = messageHandlerDelegate != null
+                && messageHandlerDelegate.processMessage(device, fullMsg, messageType);
 
         // 添加到队列
-        addToQueue(fullMsg);
-
-        // 重置缓冲区
-        resetBuffer();
+        addToQueue(fullMsg, handled);
 
         // 更新计数器
         totalReceivedMessages.incrementAndGet();
     }
 
     /**
-     * 添加消息到队列
+     * 按连接配置确定的消息类型，子类按协议覆盖
+     *
+     * @return 消息类型，null表示由处理委托按消息内容判断
+     */
+    protected String defaultMessageType() {
+        return null;
+    }
+
+    /**
+     * 添加消息到拉取队列
+     * 不阻塞读取线程，也不丢弃未处理的消息：
+     * 已交给处理流程的消息在队列满时不再保存副本；未交给处理流程的消息只能由receive()取走，
+     * 队列达到高水位时暂停读取，由传输层流控让设备等待；暂停前已读出、队列放不下的消息暂存到溢出列表
      *
      * @param fullMsg 完整消息内容
+     * @param handled 消息是否已交给处理流程
      */
-    private void addToQueue(String fullMsg) {
-        // 添加到消息队列，如果队列已满，不阻塞而是丢弃最老的消息
-        if (receivedMessages.size() >= maxQueueSize) {
-            String oldestMessage = receivedMessages.poll();
-            if (oldestMessage != null) {
-                log.warn("接收队列已满，丢弃最早的消息: {}",
-                    oldestMessage.substring(0, Math.min(20, oldestMessage.length())) + "...");
+    private void addToQueue(String fullMsg, boolean handled) {
+        boolean backlogged;
+        synchronized (pullOverflow) {
+            // 溢出列表中还有消息时，新消息排在它们之后，保持到达顺序
+            if (pullOverflow.isEmpty() && receivedMessages.offer(fullMsg)) {
+                backlogged = !handled && receivedMessages.size() >= pullQueueHighWaterMark();
+            } else if (handled) {
+                log.debug("拉取队列已满，消息已交给处理流程，不再保存副本");
+                return;
+            } else {
+                pullOverflow.addLast(fullMsg);
+                log.warn("拉取队列已满，未处理的消息暂存到溢出列表，当前暂存 {} 条", pullOverflow.size());
+                backlogged = true;
             }
+            if (backlogged) {
+                pullQueueBacklogged = true;
+            }
+        }
+        if (backlogged) {
+            updateReadState();
         }
+    }
 
-        // 尝试添加消息到队列，如果失败则记录错误
-        try {
-            if (!receivedMessages.offer(fullMsg, 1, TimeUnit.SECONDS)) {
-                log.error("无法将消息添加到队列，队列可能已满");
+    /**
+     * 从拉取队列取出消息，先把溢出列表中的消息移回队列，全部移回且队列回落到低水位后恢复读取
+     *
+     * @param timeout 等待时间
+     * @param unit 时间单位
+     * @return 消息内容，超时返回null
+     * @throws InterruptedException 等待时被中断
+     */
+    protected String pollReceivedMessage(long timeout, TimeUnit unit) throws InterruptedException {
+        String message = receivedMessages.poll(timeout, unit);
+        boolean resume;
+        synchronized (pullOverflow) {
+            while (!pullOverflow.isEmpty() && receivedMessages.offer(pullOverflow.peekFirst())) {
+                pullOverflow.pollFirst();
             }
-        } catch (InterruptedException e) {
-            log.error("添加消息到队列时被中断: {}", e.getMessage());
-            Thread.currentThread().interrupt();
+            resume = pullQueueBacklogged && pullOverflow.isEmpty()
+                    && receivedMessages.size() <= pullQueueHighWaterMark() / 2;
+            if (resume) {
+                pullQueueBacklogged = false;
+            }
+        }
+        if (resume) {
+            updateReadState();
         }
+        return message;
+    }
+
+    private int pullQueueHighWaterMark() {
+        return Math.min(maxQueueSize, receivedMessages.size() + receivedMessages.remainingCapacity()) * 3 / 4;
     }
 
     /**
-     * 重置缓冲区
+     * 获取背压控制器
+     *
+     * @return 背压控制器
      */
-    private void resetBuffer() {
-        messageBuffer.setLength(0);
+    protected BackpressureController backpressure() {
+        if (backpressureController == null) {
+            backpressureController = BackpressureController.getDefault();
+        }
+        return backpressureController;
+    }
+
+    /**
+     * 开始参与背压控制，连接建立后调用
+     */
+    protected void startFlowControl() {
+        backpressure().register(backpressureListener);
+        updateReadState();
+    }
+
+    /**
+     * 停止参与背压控制，断开连接时调用
+     */
+    protected void stopFlowControl() {
+        backpressure().unregister(backpressureListener);
+        synchronized (readStateLock) {
+            if (readingPaused) {
+                totalReadPausedMillis.addAndGet(System.currentTimeMillis() - readPausedSinceMillis);
+                readingPaused = false;
+            }
+        }
+    }
+
+    /**
+     * 获取流量录制服务
+     *
+     * @return 流量录制服务
+     */
+    protected TrafficCaptureService captureService() {
+        if (trafficCaptureService == null) {
+            trafficCaptureService = TrafficCaptureService.getDefault();
+        }
+        return trafficCaptureService;
+    }
+
+    /**
+     * 开始录制流量，建立连接前调用，未开启录制时不做任何事
+     *
+     * @return 录制器，未开启录制时返回null
+     */
+    protected TrafficRecorder startCapture() {
+        stopCapture();
+        trafficRecorder = captureService().open(device);
+        return trafficRecorder;
+    }
+
+    /**
+     * 结束录制流量，断开连接后调用
+     */
+    protected void stopCapture() {
+        TrafficRecorder recorder = trafficRecorder;
+        if (recorder != null) {
+            trafficRecorder = null;
+            recorder.close();
+        }
+    }
+
+    /**
+     * 根据全局背压和拉取队列状态暂停或恢复读取
+     */
+    protected void updateReadState() {
+        synchronized (readStateLock) {
+            boolean shouldPause = backpressure().isPaused() || pullQueueBacklogged;
+            if (shouldPause == readingPaused) {
+                return;
+            }
+            readingPaused = shouldPause;
+            if (shouldPause) {
+                readPauseCount.incrementAndGet();
+                readPausedSinceMillis = System.currentTimeMillis();
+            } else {
+                totalReadPausedMillis.addAndGet(System.currentTimeMillis() - readPausedSinceMillis);
+            }
+            String deviceName = device != null ? device.getName() : "未知";
+            log.info("设备 {} {}读取", deviceName, shouldPause ? "暂停" : "恢复");
+            setReadingEnabled(!shouldPause);
+        }
+    }
+
+    /**
+     * 当前是否已暂停读取
+     *
+     * @return 是否暂停
+     */
+    protected boolean isReadingPaused() {
+        synchronized (readStateLock) {
+            return readingPaused;
+        }
+    }
+
+    /**
+     * 开启或停止从设备读取数据，在持有readStateLock时调用，不能阻塞
+     * 子类按传输方式实现，默认不做处理
+     *
+     * @param enabled 是否读取
+     */
+    protected void setReadingEnabled(boolean enabled) {
     }
 
     /**
      * 定期记录统计信息
      */
     private void logStatsPeriodically() {
-        LocalDateTime now = LocalDateTime.now();
-        if (ChronoUnit.HOURS.between(lastStatsResetTime, now) >= 1) {
+        long now = System.currentTimeMillis();
+        if (now - lastStatsResetMillis >= TimeUnit.HOURS.toMillis(1)) {
             String deviceName = device != null ? device.getName() : "未知";
             String deviceModel = device != null ? device.getModel() : "未知";
 
@@ -258,7 +546,7 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
                 totalInvalidMessages.get());
 
             // 重置统计数据
-            lastStatsResetTime = now;
+            lastStatsResetMillis = now;
             totalReceivedBytes.set(0);
             totalReceivedMessages.set(0);
             totalInvalidMessages.set(0);
@@ -267,16 +555,16 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
 
     /**
      * 检查并清理过期的消息缓冲
-     * 如果消息缓冲区中的数据长时间未更新，则清空缓冲区
+     * 如果默认缓冲区中的数据长时间未更新，则清空缓冲区
      */
     public void checkAndCleanBuffer() {
-        if (messageBuffer.length() > 0) {
-            long millisSinceLastMessage = Duration.between(lastMessageTime, LocalDateTime.now()).toMillis();
+        if (defaultFrameState.length() > 0) {
+            long millisSinceLastMessage = System.currentTimeMillis() - defaultFrameState.getLastActivityMillis();
 
             if (millisSinceLastMessage > ApplicationConstants.Timeout.MESSAGE_BUFFER_TIMEOUT_MS) {
                 log.warn("消息缓冲区数据已超时 ({} ms)，当前缓冲区大小: {} 字节，清空缓冲区",
-                    millisSinceLastMessage, messageBuffer.length());
-                resetBuffer();
+                    millisSinceLastMessage, defaultFrameState.length());
+                defaultFrameState.reset();
             }
         }
     }
@@ -294,7 +582,7 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
      * @return 缓冲区大小（字节）
      */
     public int getMessageBufferSize() {
-        return messageBuffer.length();
+        return defaultFrameState.length();
     }
 
     /**
@@ -307,8 +595,18 @@ public abstract class AbstractCommunicationAdapter implements DeviceAdapter {
         stats.put("receivedBytes", totalReceivedBytes.get());
         stats.put("invalidMessages", totalInvalidMessages.get());
         stats.put("queueSize", receivedMessages.size());
-        stats.put("bufferSize", messageBuffer.length());
-        stats.put("lastMessageTime", lastMessageTime);
+        synchronized (pullOverflow) {
+            stats.put("overflowSize", pullOverflow.size());
+        }
+        stats.put("bufferSize", defaultFrameState.length());
+        stats.put("lastMessageTime", getLastMessageTime());
+        synchronized (readStateLock) {
+            long currentPausedMillis = readingPaused ? System.currentTimeMillis() - readPausedSinceMillis : 0;
+            stats.put("readPaused", readingPaused);
+            stats.put("readPauseCount", readPauseCount.get());
+            stats.put("readPausedMillis", totalReadPausedMillis.get() + currentPausedMillis);
+        }
+        stats.put("backpressure", backpressure().getStatistics());
         return stats;
     }
 
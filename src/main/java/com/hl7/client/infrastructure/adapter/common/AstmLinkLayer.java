@@ -0,0 +1,319 @@
+package com.hl7.client.infrastructure.adapter.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/**
+ * ASTM E1381 低层协议状态机
+ * 与传输方式无关，Netty通道和串口都按字节依次喂入数据：
+ * <pre>
+ * ENQ                                   -> 回复ACK，建立会话
+ * STX FN text ETB|ETX C1 C2 CR LF       -> 校验帧号和校验和，回复ACK或NAK
+ * EOT                                   -> 会话结束，交出完整消息
+ * </pre>
+ * 每个字节只处理一次；ETB中间帧与后续帧拼接成完整记录，每条记录以CR LF结尾，
+ * 与仪器逐行输出的格式一致，按换行拆分记录的解析器（E1394）可以直接使用
+ *
+ * 状态机不是线程安全的，只能由所属连接的读线程使用
+ */
+@Slf4j
+public class AstmLinkLayer {
+
+    public static final byte STX = 0x02;
+    public static final byte ETX = 0x03;
+    public static final byte EOT = 0x04;
+    public static final byte ENQ = 0x05;
+    public static final byte ACK = 0x06;
+    public static final byte LF = 0x0A;
+    public static final byte CR = 0x0D;
+    public static final byte NAK = 0x15;
+    public static final byte ETB = 0x17;
+
+    /** 无需回复 */
+    public static final byte NO_REPLY = 0;
+
+    /**
+     * 接收状态
+     */
+    private enum State {
+        /** 等待ENQ */
+        IDLE,
+        /** 会话已建立，等待STX或EOT */
+        ESTABLISHED,
+        /** 等待帧号 */
+        FRAME_NUMBER,
+        /** 接收帧文本，直到ETB或ETX */
+        TEXT,
+        /** 等待校验和高位 */
+        CHECKSUM_HIGH,
+        /** 等待校验和低位 */
+        CHECKSUM_LOW,
+        /** 等待CR */
+        FRAME_CR,
+        /** 等待LF */
+        FRAME_LF
+    }
+
+    private final int maxMessageLength;
+
+    private State state = State.IDLE;
+
+    /** 当前会话已接收的记录内容 */
+    private byte[] message = new byte[256];
+    private int messageLength;
+
+    /** 当前帧文本在message中的起始位置，帧校验失败时回退到这里 */
+    private int frameStart;
+
+    /** 下一帧期望的帧号，-1表示接受任意帧号 */
+    private int expectedFrameNumber = -1;
+    private int frameNumber;
+    private int checksum;
+    private int receivedChecksum;
+    private boolean lastFrame;
+    private boolean frameValid;
+
+    /** 已完成但尚未取走的消息 */
+    private byte[] completedMessage;
+
+    // 统计
+    private long acceptedFrames;
+    private long rejectedFrames;
+
+    /**
+     * 构造函数
+     *
+     * @param maxMessageLength 单个会话消息的最大长度（字节）
+     */
+    public AstmLinkLayer(int maxMessageLength) {
+        if (maxMessageLength <= 0) {
+            throw new IllegalArgumentException("最大消息长度必须大于0: " + maxMessageLength);
+        }
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * 处理一个字节
+     * 处理后如有完整消息，可通过 {@link #pollMessage()} 取出
+     *
+     * @param b 接收到的字节
+     * @return 需要回复的控制字符（ACK/NAK），无需回复时返回 {@link #NO_REPLY}
+     */
+    public byte accept(byte b) {
+        switch (state) {
+            case IDLE:
+                return onIdle(b);
+            case ESTABLISHED:
+                return onEstablished(b);
+            case FRAME_NUMBER:
+                return onFrameNumber(b);
+            case TEXT:
+                return onText(b);
+            case CHECKSUM_HIGH:
+                receivedChecksum = hexValue(b) << 4;
+                frameValid &= receivedChecksum >= 0;
+                state = State.CHECKSUM_LOW;
+                return NO_REPLY;
+            case CHECKSUM_LOW:
+                int low = hexValue(b);
+                frameValid &= low >= 0;
+                receivedChecksum |= low;
+                state = State.FRAME_CR;
+                return NO_REPLY;
+            case FRAME_CR:
+                frameValid &= b == CR;
+                state = State.FRAME_LF;
+                return NO_REPLY;
+            case FRAME_LF:
+                frameValid &= b == LF;
+                return endFrame();
+            default:
+                return NO_REPLY;
+        }
+    }
+
+    /**
+     * 取出已完成的消息
+     *
+     * @return 完整消息内容，没有时返回null
+     */
+    public byte[] pollMessage() {
+        byte[] result = completedMessage;
+        completedMessage = null;
+        return result;
+    }
+
+    /**
+     * 丢弃当前会话的未完成数据，回到空闲状态
+     */
+    public void reset() {
+        state = State.IDLE;
+        messageLength = 0;
+        frameStart = 0;
+        expectedFrameNumber = -1;
+    }
+
+    /**
+     * 是否处于会话中（已收到ENQ或帧数据但尚未收到EOT）
+     *
+     * @return 是否处于会话中
+     */
+    public boolean isInSession() {
+        return state != State.IDLE;
+    }
+
+    /**
+     * 当前会话已缓存的消息长度
+     *
+     * @return 字节数
+     */
+    public int getBufferedLength() {
+        return messageLength;
+    }
+
+    public long getAcceptedFrames() {
+        return acceptedFrames;
+    }
+
+    public long getRejectedFrames() {
+        return rejectedFrames;
+    }
+
+    private byte onIdle(byte b) {
+        if (b == ENQ) {
+            startSession();
+            state = State.ESTABLISHED;
+            return ACK;
+        }
+        if (b == STX) {
+            // 部分仪器省略ENQ直接发送数据帧
+            startSession();
+            state = State.FRAME_NUMBER;
+        }
+        return NO_REPLY;
+    }
+
+    private byte onEstablished(byte b) {
+        switch (b) {
+            case STX:
+                state = State.FRAME_NUMBER;
+                return NO_REPLY;
+            case EOT:
+                endSession();
+                return NO_REPLY;
+            case ENQ:
+                // 发送方未收到我们的ACK而重发ENQ，或重新建立会话
+                log.debug("会话中再次收到ENQ，重新开始会话");
+                startSession();
+                return ACK;
+            default:
+                // 帧之间的多余字节（如重复的CR LF）直接忽略
+                return NO_REPLY;
+        }
+    }
+
+    private byte onFrameNumber(byte b) {
+        frameStart = messageLength;
+        frameNumber = b - '0';
+        checksum = b & 0xFF;
+        frameValid = frameNumber >= 0 && frameNumber <= 7;
+        state = State.TEXT;
+        return NO_REPLY;
+    }
+
+    private byte onText(byte b) {
+        checksum += b & 0xFF;
+        if (b == ETB || b == ETX) {
+            lastFrame = b == ETX;
+            state = State.CHECKSUM_HIGH;
+            return NO_REPLY;
+        }
+        if (b == STX || b == EOT || b == ENQ) {
+            // 帧未正常结束就出现控制字符，丢弃当前帧
+            log.debug("帧 {} 未正常结束即收到控制字符 0x{}，丢弃该帧", frameNumber, Integer.toHexString(b));
+            messageLength = frameStart;
+            rejectedFrames++;
+            state = State.ESTABLISHED;
+            return onEstablished(b);
+        }
+        append(b);
+        return NO_REPLY;
+    }
+
+    private byte endFrame() {
+        state = State.ESTABLISHED;
+
+        if (frameValid && (checksum & 0xFF) != receivedChecksum) {
+            log.debug("帧 {} 校验和错误，期望 {}，收到 {}", frameNumber,
+                    String.format("%02X", checksum & 0xFF), String.format("%02X", receivedChecksum));
+            frameValid = false;
+        }
+
+        if (frameValid && expectedFrameNumber >= 0 && frameNumber != expectedFrameNumber) {
+            if (frameNumber == previousFrameNumber(expectedFrameNumber)) {
+                // 发送方没收到上一帧的ACK而重发，确认但不重复保存
+                log.debug("收到重复帧 {}，忽略内容并回复ACK", frameNumber);
+                messageLength = frameStart;
+                return ACK;
+            }
+            log.debug("帧号错误，期望 {}，收到 {}", expectedFrameNumber, frameNumber);
+            frameValid = false;
+        }
+
+        if (!frameValid || messageLength > maxMessageLength) {
+            messageLength = frameStart;
+            rejectedFrames++;
+            return NAK;
+        }
+
+        if (lastFrame && messageLength > 0 && message[messageLength - 1] == CR) {
+            // 记录以CR LF结尾，便于按行拆分
+            append(LF);
+        }
+        expectedFrameNumber = (frameNumber + 1) % 8;
+        acceptedFrames++;
+        return ACK;
+    }
+
+    private void startSession() {
+        messageLength = 0;
+        frameStart = 0;
+        expectedFrameNumber = -1;
+    }
+
+    private void endSession() {
+        if (messageLength > 0) {
+            completedMessage = Arrays.copyOf(message, messageLength);
+        }
+        reset();
+    }
+
+    private void append(byte b) {
+        if (messageLength == message.length) {
+            if (messageLength > maxMessageLength) {
+                // 已超长，丢弃后续内容，帧结束时回复NAK
+                return;
+            }
+            message = Arrays.copyOf(message, Math.min(message.length << 1, maxMessageLength + 2));
+        }
+        message[messageLength++] = b;
+    }
+
+    private static int previousFrameNumber(int frameNumber) {
+        return (frameNumber + 7) % 8;
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+}
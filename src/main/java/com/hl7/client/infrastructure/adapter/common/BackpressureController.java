@@ -0,0 +1,202 @@
+package com.hl7.client.infrastructure.adapter.common;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 背压控制器
+ * 统计已接收但尚未处理完成的消息数，超过高水位时通知所有适配器暂停读取（Netty通道关闭autoRead、串口停止读取），
+ * 回落到低水位后恢复读取；积压期间的数据留在TCP窗口和串口缓冲区中，由传输层流控减慢仪器发送，而不是丢弃消息
+ */
+@Slf4j
+@Component
+public class BackpressureController {
+
+    /** 非Spring环境下使用的默认实例 */
+    private static volatile BackpressureController defaultInstance;
+
+    /** 高水位：待处理消息数达到此值时暂停读取 */
+    @Getter
+    @Value("${hl7.backpressure.high-water-mark:500}")
+    private int highWaterMark = 500;
+
+    /** 低水位：待处理消息数回落到此值时恢复读取 */
+    @Getter
+    @Value("${hl7.backpressure.low-water-mark:250}")
+    private int lowWaterMark = 250;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean paused;
+    private long pausedSinceNanos;
+
+    // 背压统计
+    private long pauseCount;
+    private long resumeCount;
+    private long totalPausedMillis;
+    private long maxPausedMillis;
+
+    /**
+     * 背压状态监听器
+     * 通知可能乱序到达，监听器应通过 {@link #isPaused()} 读取当前状态而不是依赖通知顺序
+     */
+    public interface Listener {
+
+        /**
+         * 背压状态发生变化
+         */
+        void onBackpressureChanged();
+    }
+
+    /**
+     * 获取非Spring环境下的默认实例（如独立运行的测试程序）
+     *
+     * @return 默认背压控制器
+     */
+    public static BackpressureController getDefault() {
+        if (defaultInstance == null) {
+            synchronized (BackpressureController.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new BackpressureController();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * 设置水位
+     *
+     * @param lowWaterMark 低水位
+     * @param highWaterMark 高水位
+     */
+    public void setWaterMarks(int lowWaterMark, int highWaterMark) {
+        if (lowWaterMark < 0 || highWaterMark <= lowWaterMark) {
+            throw new IllegalArgumentException("背压水位设置错误，要求 0 <= 低水位 < 高水位");
+        }
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * 注册监听器
+     *
+     * @param listener 监听器
+     */
+    public void register(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * 注销监听器
+     *
+     * @param listener 监听器
+     */
+    public void unregister(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 一条消息进入处理流程
+     */
+    public void acquire() {
+        if (pending.incrementAndGet() >= highWaterMark && !paused) {
+            updateState();
+        }
+    }
+
+    /**
+     * 一条消息处理完成（无论成功与否）
+     */
+    public void release() {
+        if (pending.decrementAndGet() <= lowWaterMark && paused) {
+            updateState();
+        }
+    }
+
+    /**
+     * 当前是否处于暂停读取状态
+     *
+     * @return 是否暂停
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * 获取待处理消息数
+     *
+     * @return 待处理消息数
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 根据待处理消息数切换状态，状态变化后在锁外通知监听器
+     */
+    private void updateState() {
+        boolean changed = false;
+        synchronized (this) {
+            int current = pending.get();
+            if (!paused && current >= highWaterMark) {
+                paused = true;
+                pausedSinceNanos = System.nanoTime();
+                pauseCount++;
+                changed = true;
+                log.warn("待处理消息数 {} 达到高水位 {}，暂停读取设备数据", current, highWaterMark);
+            } else if (paused && current <= lowWaterMark) {
+                long pausedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pausedSinceNanos);
+                paused = false;
+                resumeCount++;
+                totalPausedMillis += pausedMillis;
+                maxPausedMillis = Math.max(maxPausedMillis, pausedMillis);
+                changed = true;
+                log.info("待处理消息数 {} 回落到低水位 {}，恢复读取设备数据，本次暂停 {}ms",
+                        current, lowWaterMark, pausedMillis);
+            }
+        }
+
+        if (changed) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onBackpressureChanged();
+                } catch (Exception e) {
+                    log.error("通知背压状态变化时发生错误: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取背压统计信息
+     *
+     * @return 统计信息Map
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        long currentPausedMillis = paused
+                ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pausedSinceNanos) : 0;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pendingMessages", pending.get());
+        stats.put("paused", paused);
+        stats.put("pauseCount", pauseCount);
+        stats.put("resumeCount", resumeCount);
+        stats.put("totalPausedMillis", totalPausedMillis + currentPausedMillis);
+        stats.put("maxPausedMillis", Math.max(maxPausedMillis, currentPausedMillis));
+        stats.put("highWaterMark", highWaterMark);
+        stats.put("lowWaterMark", lowWaterMark);
+        return stats;
+    }
+}
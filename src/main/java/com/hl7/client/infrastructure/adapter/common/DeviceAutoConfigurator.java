@@ -51,8 +51,9 @@ public class DeviceAutoConfigurator {
                 // 创建设备对象
                 Device device = createDevice(deviceModel, deviceConfig, "SERIAL");
 
-                // 创建和初始化串口适配器
-                SerialPortAdapter adapter = context.getBean(SerialPortAdapter.class);
+                // 创建和初始化串口适配器，每个串口一个适配器实例
+                SerialPortAdapter adapter = context.getAutowireCapableBeanFactory()
+                        .createBean(SerialPortAdapter.class);
                 adapter.initializeFromConfig(serialConfig, device);
 
                 adapters.add(adapter);
@@ -80,15 +81,18 @@ public class DeviceAutoConfigurator {
                 // 根据网络模式创建不同的适配器
                 if ("SERVER".equalsIgnoreCase(networkConfig.getMode())) {
                     // 创建和初始化网络服务器适配器
-                    NettyServerAdapter adapter = context.getBean(NettyServerAdapter.class);
+                    // 每个监听端口一个适配器实例，端口绑定在共享的ServerListenerRegistry上
+                    NettyServerAdapter adapter = context.getAutowireCapableBeanFactory()
+                            .createBean(NettyServerAdapter.class);
                     adapter.initializeFromConfig(networkConfig, device);
 
                     adapters.add(adapter);
                     log.info("成功创建网络服务器适配器: {} ({}:{})", device.getName(),
                             networkConfig.getHost(), networkConfig.getPort());
                 } else if ("CLIENT".equalsIgnoreCase(networkConfig.getMode())) {
-                    // 创建和初始化网络客户端适配器
-                    NettySocketAdapter adapter = context.getBean(NettySocketAdapter.class);
+                    // 创建和初始化网络客户端适配器，每个目标地址一个适配器实例，各自独立重连
+                    NettySocketAdapter adapter = context.getAutowireCapableBeanFactory()
+                            .createBean(NettySocketAdapter.class);
                     adapter.initializeFromConfig(networkConfig, device);
 
                     adapters.add(adapter);
@@ -0,0 +1,102 @@
+package com.hl7.client.infrastructure.adapter.common;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.model.MessageStatus;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 增量完整性检查的结果
+ * 包含本次新数据到达后切出的完整消息（可能没有，也可能有多条）以及需要回复设备的内容
+ */
+@Getter
+public final class FrameResult {
+
+    private static final FrameResult NONE = new FrameResult(Collections.emptyList(), null);
+
+    /** 已完整的消息，按到达顺序排列，已从连接缓冲区中取出 */
+    private final List<String> frames;
+
+    /** 需要回复设备的内容，null表示不回复 */
+    private final String reply;
+
+    private FrameResult(List<String> frames, String reply) {
+        this.frames = frames;
+        this.reply = reply;
+    }
+
+    /**
+     * 没有完整消息，也不需要回复
+     */
+    public static FrameResult none() {
+        return NONE;
+    }
+
+    /**
+     * 没有完整消息，只回复设备
+     *
+     * @param reply 回复内容
+     */
+    public static FrameResult reply(String reply) {
+        return reply == null ? NONE : new FrameResult(Collections.emptyList(), reply);
+    }
+
+    /**
+     * 切出一条完整消息，不回复
+     *
+     * @param frame 完整消息
+     */
+    public static FrameResult frame(String frame) {
+        return new FrameResult(Collections.singletonList(frame), null);
+    }
+
+    /**
+     * 切出若干条完整消息并回复
+     *
+     * @param frames 完整消息，可为null
+     * @param reply 回复内容，可为null
+     */
+    public static FrameResult of(List<String> frames, String reply) {
+        if (frames == null || frames.isEmpty()) {
+            return reply(reply);
+        }
+        return new FrameResult(frames, reply);
+    }
+
+    /**
+     * 是否切出了完整消息
+     */
+    public boolean hasFrames() {
+        return !frames.isEmpty();
+    }
+
+    /**
+     * 兼容旧的整缓冲区检查方法
+     * 把缓冲区全部内容交给检查方法：返回null表示整个缓冲区是一条完整消息，否则作为回复内容，数据继续缓冲
+     *
+     * @param state 连接的分帧状态，新数据已追加到缓冲区
+     * @param device 设备，可为null
+     * @param check 旧的完整性检查方法
+     * @return 检查结果
+     */
+    public static FrameResult fromLegacyCheck(FrameState state, Device device, Function<Message, String> check) {
+        String content = state.getBuffer().toString();
+        Message message = Message.builder()
+                .deviceId(device != null ? device.getId() : null)
+                .deviceModel(device != null ? device.getModel() : null)
+                .rawContent(content)
+                .status(MessageStatus.NEW.name())
+                .build();
+
+        String response = check.apply(message);
+        if (response != null) {
+            return reply(response);
+        }
+        state.reset();
+        return frame(content);
+    }
+}
@@ -0,0 +1,172 @@
+package com.hl7.client.infrastructure.adapter.common;
+
+import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategy;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.CharBuffer;
+
+/**
+ * 连接级分帧状态
+ * 每个连接（Netty通道、串口）持有独立的缓冲区和活动时间，
+ * 多台仪器共用同一个监听端口时各自的数据帧互不干扰
+ *
+ * 同一个FrameState只会被所属连接的读线程访问（Netty通道固定绑定一个EventLoop；串口专用读取线程方式下
+ * 处理线程只读取消息类型），因此无需加锁
+ *
+ * 一次读取中切出多条消息时，takeFrame只移动帧起点，不逐条删除缓冲区头部；
+ * 完整性策略扫描结束时调用compact()一次性删除已取出的部分，切出n条消息只移动一次剩余数据。
+ * 扫描位置和帧结束位置都是缓冲区中的绝对位置，compact()时一并调整
+ */
+public class FrameState {
+
+    /** 连接标识，用于日志 */
+    @Getter
+    private final String connectionId;
+
+    /** 未完成消息的缓冲区，帧起点之前是本次扫描中已经取出、尚未删除的消息 */
+    @Getter
+    private final StringBuilder buffer = new StringBuilder();
+
+    /** 当前未取出消息在缓冲区中的起点 */
+    @Getter
+    private int frameStart;
+
+    /** 连接识别出的消息类型，null表示按消息内容逐条判断 */
+    @Getter
+    @Setter
+    private String messageType;
+
+    /**
+     * 增量扫描位置
+     * 缓冲区中此位置之前的数据已经被完整性策略检查过，新数据到达时从这里继续扫描
+     */
+    @Getter
+    @Setter
+    private int scanOffset;
+
+    /** 增量扫描的附加状态，由完整性策略自行定义（如匹配自动机的当前状态），缓冲区头部变化时归零 */
+    @Getter
+    @Setter
+    private int scanState;
+
+    /** 连接使用的完整性检查策略，首次收到数据时解析一次，之后不再按型号查找 */
+    @Getter
+    @Setter
+    private MessageCompletionStrategy completionStrategy;
+
+    /** 最后一次收到数据的时间（毫秒） */
+    private volatile long lastActivityMillis = System.currentTimeMillis();
+
+    /**
+     * 构造函数
+     *
+     * @param connectionId 连接标识
+     */
+    public FrameState(String connectionId) {
+        this.connectionId = connectionId;
+    }
+
+    /**
+     * 记录一次数据到达
+     */
+    public void touch() {
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 获取最后一次收到数据的时间
+     *
+     * @return 毫秒时间戳
+     */
+    public long getLastActivityMillis() {
+        return lastActivityMillis;
+    }
+
+    /**
+     * 获取缓冲区中未取出数据的长度
+     *
+     * @return 未取出数据的长度
+     */
+    public int length() {
+        return buffer.length() - frameStart;
+    }
+
+    /**
+     * 追加新数据到缓冲区
+     * 复用的字符缓冲区按数组整段追加，避免StringBuilder逐字符读取CharSequence
+     *
+     * @param data 新数据
+     */
+    public void append(CharSequence data) {
+        if (data instanceof CharBuffer && ((CharBuffer) data).hasArray()) {
+            CharBuffer chars = (CharBuffer) data;
+            buffer.append(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+        } else {
+            buffer.append(data);
+        }
+    }
+
+    /**
+     * 从帧起点取出一条完整消息，帧起点和扫描位置移到消息结束处，附加状态归零
+     * 缓冲区不立即删除，扫描结束时由compact()统一处理
+     *
+     * @param end 消息在缓冲区中的结束位置（不含）
+     * @return 消息内容
+     */
+    public String takeFrame(int end) {
+        String frame = buffer.substring(frameStart, end);
+        frameStart = end;
+        scanOffset = end;
+        scanState = 0;
+        return frame;
+    }
+
+    /**
+     * 丢弃帧起点到指定位置之间的数据（如帧外的噪声），不移动扫描位置
+     *
+     * @param end 丢弃数据在缓冲区中的结束位置（不含）
+     */
+    public void discard(int end) {
+        frameStart = end;
+    }
+
+    /**
+     * 删除缓冲区中帧起点之前已经取出的数据，扫描位置随之前移
+     * 每次扫描结束时调用一次，帧起点为0时不做任何事
+     */
+    public void compact() {
+        if (frameStart == 0) {
+            return;
+        }
+        buffer.delete(0, frameStart);
+        scanOffset = Math.max(0, scanOffset - frameStart);
+        frameStart = 0;
+    }
+
+    /**
+     * 取出缓冲区中未取出的全部内容作为一条完整消息
+     *
+     * @return 消息内容
+     */
+    public String takeAll() {
+        String frame = buffer.substring(frameStart);
+        reset();
+        return frame;
+    }
+
+    /**
+     * 清空缓冲区
+     */
+    public void reset() {
+        buffer.setLength(0);
+        frameStart = 0;
+        scanOffset = 0;
+        scanState = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameState(" + connectionId + ", buffered=" + length() + ")";
+    }
+}
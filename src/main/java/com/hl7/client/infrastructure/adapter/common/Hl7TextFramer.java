@@ -0,0 +1,67 @@
+package com.hl7.client.infrastructure.adapter.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 不带MLLP封装的HL7文本分帧工具
+ * 仪器连续发送多条消息时，一次读取可能包含上一条消息的结尾和下一条消息的开头。
+ * 每个出现在段首的MSH|都是一条新消息的开始，它之前的内容就是上一条完整消息
+ */
+public final class Hl7TextFramer {
+
+    private static final String MESSAGE_HEADER = "MSH|";
+
+    private Hl7TextFramer() {
+    }
+
+    /**
+     * 从扫描位置开始查找段首的MSH|，把它之前的完整消息从缓冲区取出
+     * MSH|跨两次读取到达时停在段首，下次数据到达后从这里继续；缓冲区中剩下的是最后一条未确定结束的消息。
+     * 切出的消息只移动帧起点，扫描结束后压缩一次缓冲区
+     *
+     * @param state 连接的分帧状态，新数据已追加到缓冲区
+     * @return 按到达顺序切出的完整消息，没有时返回空列表
+     */
+    public static List<String> takeCompleteMessages(FrameState state) {
+        StringBuilder buffer = state.getBuffer();
+        List<String> frames = null;
+
+        // 帧起点是当前消息自己的MSH，从下一个位置开始找下一条
+        int i = Math.max(state.getFrameStart() + 1, state.getScanOffset());
+        while (i < buffer.length()) {
+            if (isSegmentStart(buffer, i) && buffer.charAt(i) == 'M') {
+                if (i + MESSAGE_HEADER.length() > buffer.length()) {
+                    break;
+                }
+                if (startsWith(buffer, i)) {
+                    if (frames == null) {
+                        frames = new ArrayList<>();
+                    }
+                    frames.add(state.takeFrame(i));
+                    i++;
+                    continue;
+                }
+            }
+            i++;
+        }
+        state.setScanOffset(i);
+        state.compact();
+        return frames != null ? frames : Collections.emptyList();
+    }
+
+    private static boolean isSegmentStart(StringBuilder buffer, int index) {
+        char previous = buffer.charAt(index - 1);
+        return previous == '\r' || previous == '\n';
+    }
+
+    private static boolean startsWith(StringBuilder buffer, int index) {
+        for (int k = 0; k < MESSAGE_HEADER.length(); k++) {
+            if (buffer.charAt(index + k) != MESSAGE_HEADER.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
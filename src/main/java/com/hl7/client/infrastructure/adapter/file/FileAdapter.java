@@ -2,22 +2,45 @@ package com.hl7.client.infrastructure.adapter.file;
 
 import com.hl7.client.domain.model.Device;
 import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * 文件适配器
  * 用于从文件中读取数据
+ *
+ * 监视线程发现文件后不再固定等待，而是定期检查文件大小和修改时间，两次检查之间没有变化、
+ * 且最后修改已超过稳定时间的文件才认为写入完成；写入完成的文件交给共用的读取线程池并行读取和拆分，
+ * 发布线程按提交顺序把消息放入接收队列，同一设备的消息顺序与文件顺序一致
+ *
+ * 写入完成的文件先原子移动到processing子目录再读取，全部消息处理并发送后（commit确认）移动到done子目录，
+ * 读取失败的移动到failed子目录；processing目录中的进度索引记录每个文件从第一条起连续确认的消息数，
+ * 重启后从中断的位置继续，不重新扫描或处理已完成的文件。已取走但没有确认的消息重启后重新发送（至少一次）。
+ * 接收队列和已提交读取的文件数都有上限，处理跟不上时发布线程和监视线程依次等待，不会因目录中大量文件占满内存
  */
 @Slf4j
 @Component
@@ -26,10 +49,63 @@ public class FileAdapter implements DeviceAdapter {
     private Device device;
     private Path watchDirectory;
     private String filePattern;
+    private PathMatcher fileMatcher;
     private WatchService watchService;
     private Thread watchThread;
+    private Thread publishThread;
     private volatile boolean running = false;
-    private final BlockingQueue<String> fileContents = new LinkedBlockingQueue<>();
+    private volatile BlockingQueue<FileDeliveries.Queued> fileContents = new LinkedBlockingQueue<>(1);
+
+    /** 已取走、等待处理流程确认的消息 */
+    private final FileDeliveries deliveries = new FileDeliveries();
+
+    /** 处理中、已完成、处理失败的文件所在的子目录 */
+    private Path processingDirectory;
+    private Path doneDirectory;
+    private Path failedDirectory;
+
+    /** processing目录中文件的处理进度 */
+    private FileCheckpoint checkpoint;
+
+    /** 文件最后修改后需要保持不变的时间（毫秒），超过后才读取 */
+    @Getter @Setter
+    @Value("${hl7.file.stable-millis:500}")
+    private long stableMillis = 500;
+
+    /** 检查等待中文件是否写入完成的间隔（毫秒） */
+    @Getter @Setter
+    @Value("${hl7.file.check-interval-ms:100}")
+    private long checkIntervalMillis = 100;
+
+    /** 接收队列容量（条），队列已满时发布线程等待消息被取走 */
+    @Getter @Setter
+    @Value("${hl7.file.queue-capacity:1000}")
+    private int queueCapacity = 1000;
+
+    /** 最多同时读取或等待发布的文件数，达到后监视线程等待，不再提交新文件 */
+    @Getter @Setter
+    @Value("${hl7.file.max-in-flight-files:16}")
+    private int maxInFlightFiles = 16;
+
+    /**
+     * 文件读取线程池，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private FileWorkerPool fileWorkerPool;
+
+    /** 等待写入完成的文件，只在监视线程上访问，按发现顺序排列 */
+    private final Map<Path, FileSnapshot> pendingFiles = new LinkedHashMap<>();
+
+    /** 已提交读取的文件，发布线程按提交顺序取结果 */
+    private volatile BlockingQueue<SubmittedFile> submitted = new LinkedBlockingQueue<>(1);
+
+    private final AtomicLong processedFiles = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+    private final AtomicLong processedMessages = new AtomicLong();
+
+    /** 进度索引文件名 */
+    private static final String CHECKPOINT_FILE = ".checkpoint";
 
     @Override
     public void initialize(Device device) {
@@ -39,11 +115,16 @@ public class FileAdapter implements DeviceAdapter {
             String[] params = device.getConnectionParams().split(":");
             String directoryPath = params[0];
             this.filePattern = params.length > 1 ? params[1] : "*";
+            // 文件模式只编译一次，监视线程上不再重复编译
+            this.fileMatcher = FileSystems.getDefault().getPathMatcher("glob:" + filePattern);
 
             this.watchDirectory = Paths.get(directoryPath);
             if (!Files.exists(watchDirectory)) {
                 Files.createDirectories(watchDirectory);
             }
+            this.processingDirectory = Files.createDirectories(watchDirectory.resolve("processing"));
+            this.doneDirectory = Files.createDirectories(watchDirectory.resolve("done"));
+            this.failedDirectory = Files.createDirectories(watchDirectory.resolve("failed"));
         } catch (Exception e) {
             log.error("初始化文件适配器失败: {}", e.getMessage());
             throw new IllegalArgumentException("连接参数格式错误，应为directory:filePattern");
@@ -54,16 +135,24 @@ public class FileAdapter implements DeviceAdapter {
     public boolean connect() {
         try {
             watchService = FileSystems.getDefault().newWatchService();
-            watchDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+            watchDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+
+            checkpoint = new FileCheckpoint(processingDirectory.resolve(CHECKPOINT_FILE));
+            checkpoint.retainExisting(processingDirectory);
+            fileContents = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+            submitted = new LinkedBlockingQueue<>(Math.max(1, maxInFlightFiles));
 
             running = true;
-            watchThread = new Thread(this::watchFiles);
+            publishThread = new Thread(this::publishMessages, "hl7-file-publish-" + device.getName());
+            publishThread.setDaemon(true);
+            publishThread.start();
+
+            // 现有文件在监视线程上扫描，不阻塞连接
+            watchThread = new Thread(this::watchFiles, "hl7-file-watch-" + device.getName());
             watchThread.setDaemon(true);
             watchThread.start();
 
-            // 扫描现有文件
-            scanExistingFiles();
-
             log.info("成功启动文件监视，目录: {}, 文件模式: {}", watchDirectory, filePattern);
             return true;
         } catch (IOException e) {
@@ -79,6 +168,21 @@ public class FileAdapter implements DeviceAdapter {
             watchThread.interrupt();
             watchThread = null;
         }
+        if (publishThread != null) {
+            publishThread.interrupt();
+            publishThread = null;
+        }
+
+        // 未取完的文件留在processing目录，下次连接时按进度索引继续
+        SubmittedFile pending;
+        while ((pending = submitted.poll()) != null) {
+            pending.messages.cancel(true);
+        }
+        fileContents.clear();
+        deliveries.clear();
+        if (checkpoint != null) {
+            checkpoint.close();
+        }
 
         if (watchService != null) {
             try {
@@ -89,7 +193,8 @@ public class FileAdapter implements DeviceAdapter {
             }
         }
 
-        log.info("已停止文件监视");
+        log.info("已停止文件监视，共处理 {} 个文件、{} 条消息，失败 {} 个文件", processedFiles.get(),
+                processedMessages.get(), failedFiles.get());
     }
 
     @Override
@@ -101,11 +206,12 @@ public class FileAdapter implements DeviceAdapter {
     @Override
     public String receive() {
         try {
-            String content = fileContents.poll(30, TimeUnit.SECONDS);
-            if (content != null) {
-                log.debug("从文件中读取到数据，长度: {}", content.length());
+            FileDeliveries.Queued queued = fileContents.poll(30, TimeUnit.SECONDS);
+            if (queued == null) {
+                return null;
             }
-            return content;
+            log.debug("从文件中读取到数据，长度: {}", queued.content.length());
+            return deliveries.taken(queued);
         } catch (InterruptedException e) {
             log.error("接收数据被中断: {}", e.getMessage());
             Thread.currentThread().interrupt();
@@ -113,6 +219,16 @@ public class FileAdapter implements DeviceAdapter {
         }
     }
 
+    /**
+     * 确认消息已处理并发送，文件的全部消息确认后移动到done目录
+     */
+    @Override
+    public void commit(String rawContent, boolean delivered) {
+        if (deliveries.commit(rawContent, delivered)) {
+            processedMessages.incrementAndGet();
+        }
+    }
+
     @Override
     public boolean isConnected() {
         return running && watchThread != null && watchThread.isAlive();
@@ -136,78 +252,296 @@ public class FileAdapter implements DeviceAdapter {
     }
 
     /**
-     * 扫描现有文件
+     * 获取文件读取线程池
+     *
+     * @return 文件读取线程池
+     */
+    private FileWorkerPool workerPool() {
+        if (fileWorkerPool == null) {
+            fileWorkerPool = FileWorkerPool.getDefault();
+        }
+        return fileWorkerPool;
+    }
+
+    /**
+     * 扫描现有文件，按修改时间和文件名排序后加入等待列表
      */
     private void scanExistingFiles() {
         try (Stream<Path> paths = Files.list(watchDirectory)) {
-            // 提前编译正则表达式以提高性能
-            Pattern pattern = Pattern.compile(filePattern.replace("*", ".*"));
-
-            paths.filter(path -> pattern.matcher(path.getFileName().toString()).matches())
-                    .forEach(this::processFile);
+            List<Path> files = paths.filter(this::matches).collect(Collectors.toList());
+            List<FileSnapshot> snapshots = new ArrayList<>(files.size());
+            for (Path file : files) {
+                FileSnapshot snapshot = FileSnapshot.of(file);
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+            snapshots.sort(Comparator.comparingLong((FileSnapshot s) -> s.lastModified)
+                    .thenComparing(s -> s.file.getFileName().toString()));
+            for (FileSnapshot snapshot : snapshots) {
+                pendingFiles.putIfAbsent(snapshot.file, snapshot);
+            }
+            log.info("扫描到 {} 个现有文件", snapshots.size());
         } catch (IOException e) {
             log.error("扫描现有文件失败: {}", e.getMessage(), e);
         }
     }
 
     /**
-     * 监视文件夹中的新文件
+     * 监视文件夹中的新文件，并定期检查等待中的文件是否写入完成
      */
     private void watchFiles() {
         try {
+            pendingFiles.clear();
+            resumeProcessingFiles();
+            scanExistingFiles();
             while (running) {
-                // 阻塞等待，直到有文件系统事件发生或线程被中断
-                // take() 会移除并返回下一个 WatchKey；如果队列为空，则等待。
-                WatchKey key = watchService.take();
-                // 处理与此 WatchKey 关联的所有待处理事件
-                for (WatchEvent<?> event : key.pollEvents()) {
-                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
-                        // 使用 resolve 将被监视目录的路径与相对路径组合，得到新创建文件的完整路径
+                // 有等待中的文件时按检查间隔醒来，否则一直等到有文件系统事件
+                WatchKey key = pendingFiles.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(checkIntervalMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // 事件丢失，重新扫描目录
+                            scanExistingFiles();
+                            continue;
+                        }
                         @SuppressWarnings("unchecked")
                         Path file = watchDirectory.resolve(((WatchEvent<Path>) event).context());
-                        if (file.getFileName().toString().matches(filePattern.replace("*", ".*"))) {
-                            processFile(file);
+                        if (matches(file) && !pendingFiles.containsKey(file)) {
+                            pendingFiles.put(file, FileSnapshot.UNKNOWN);
                         }
                     }
+                    // 重置 WatchKey 以接收后续事件
+                    if (!key.reset()) {
+                        break;
+                    }
                 }
-                // 重置 WatchKey 以接收后续事件
-                if (!key.reset()) {
-                    break;
-                }
+                submitStableFiles();
             }
         } catch (InterruptedException e) {
             log.debug("文件监视线程被中断");
             Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("文件监视服务已关闭");
         } catch (Exception e) {
             log.error("文件监视线程出错: {}", e.getMessage());
         }
     }
 
     /**
-     * 处理文件
+     * 上次停止时留在processing目录中的文件最先继续处理
+     */
+    private void resumeProcessingFiles() throws InterruptedException {
+        List<FileSnapshot> snapshots = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(processingDirectory)) {
+            for (Path file : (Iterable<Path>) paths::iterator) {
+                FileSnapshot snapshot = FileSnapshot.of(file);
+                if (snapshot != null && !file.getFileName().toString().startsWith(CHECKPOINT_FILE)) {
+                    snapshots.add(snapshot);
+                }
+            }
+        } catch (IOException e) {
+            log.error("扫描处理中文件失败: {}", e.getMessage(), e);
+            return;
+        }
+        snapshots.sort(Comparator.comparingLong((FileSnapshot s) -> s.lastModified)
+                .thenComparing(s -> s.file.getFileName().toString()));
+        if (!snapshots.isEmpty()) {
+            log.info("继续处理上次未完成的 {} 个文件", snapshots.size());
+        }
+        for (FileSnapshot snapshot : snapshots) {
+            submit(snapshot.file);
+        }
+    }
+
+    /**
+     * 检查等待中的文件，大小和修改时间与上次检查相同、且最后修改已超过稳定时间的文件移入processing目录并提交读取
+     * 已提交的文件数达到上限时在这里等待
+     */
+    private void submitStableFiles() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, FileSnapshot>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, FileSnapshot> entry = iterator.next();
+            FileSnapshot current = FileSnapshot.of(entry.getKey());
+            if (current == null) {
+                // 文件已被移走或删除
+                iterator.remove();
+                continue;
+            }
+            if (current.sameAs(entry.getValue()) && now - current.lastModified >= stableMillis) {
+                Path processing;
+                try {
+                    processing = moveTo(entry.getKey(), processingDirectory);
+                } catch (IOException e) {
+                    // 文件可能仍被写入程序占用，下次检查时重试
+                    log.debug("移动文件 {} 到处理目录失败: {}", entry.getKey(), e.getMessage());
+                    continue;
+                }
+                iterator.remove();
+                submit(processing);
+            } else {
+                entry.setValue(current);
+            }
+        }
+    }
+
+    /**
+     * 提交processing目录中的文件到读取线程池，已提交的文件数达到上限时等待
      *
      * @param file 文件路径
      */
-    private void processFile(Path file) {
+    private void submit(Path file) throws InterruptedException {
+        Future<List<String>> messages = workerPool().submit(() -> FileMessageReader.read(file, StandardCharsets.UTF_8));
+        submitted.put(new SubmittedFile(file, messages));
+    }
+
+    /**
+     * 按提交顺序取出读取结果，跳过上次已确认的消息，其余放入接收队列；队列已满时等待
+     */
+    private void publishMessages() {
         try {
-            // 等待文件写入完成
-            Thread.sleep(500);
+            while (running) {
+                SubmittedFile next = submitted.take();
+                String name = next.file.getFileName().toString();
+                try {
+                    List<String> messages = next.messages.get();
+                    FileProgress progress = new FileProgress(next.file, messages.size());
+                    int committed = progress.committed();
+                    if (committed > 0) {
+                        log.info("文件 {} 从第 {} 条消息继续处理，共 {} 条", name, committed + 1, messages.size());
+                    }
+                    if (committed == messages.size()) {
+                        progress.complete();
+                        continue;
+                    }
+                    for (int i = committed; i < messages.size(); i++) {
+                        fileContents.put(new FileDeliveries.Queued(messages.get(i), progress, i));
+                    }
+                } catch (CancellationException e) {
+                    log.debug("文件 {} 的读取任务已取消", name);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    log.error("处理文件 {} 失败，移动到失败目录: {}", name, cause.getMessage());
+                    moveToFailed(next.file);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("文件发布线程被中断");
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            // 读取文件内容
-            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
-            String content = String.join("\n", lines);
+    private void moveToFailed(Path file) {
+        try {
+            moveTo(file, failedDirectory);
+            checkpoint.completed(file.getFileName().toString());
+            failedFiles.incrementAndGet();
+        } catch (IOException e) {
+            log.error("移动文件 {} 到失败目录失败: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 原子移动文件到目标目录，目标目录中已有同名文件时在扩展名前加时间戳
+     *
+     * @param file 文件
+     * @param directory 目标目录
+     * @return 移动后的路径
+     * @throws IOException 移动失败
+     */
+    private static Path moveTo(Path file, Path directory) throws IOException {
+        String name = file.getFileName().toString();
+        Path target = directory.resolve(name);
+        if (Files.exists(target)) {
+            int dot = name.lastIndexOf('.');
+            String unique = dot > 0
+                    ? name.substring(0, dot) + "-" + System.currentTimeMillis() + name.substring(dot)
+                    : name + "-" + System.currentTimeMillis();
+            target = directory.resolve(unique);
+        }
+        return Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-            // 将内容放入队列
-            fileContents.put(content);
+    private boolean matches(Path file) {
+        return fileMatcher.matches(file.getFileName());
+    }
 
-            // 处理完成后删除文件
-            Files.delete(file);
-            log.info("成功处理文件: {}", file);
-        } catch (IOException e) {
-            log.error("处理文件 {} 失败: {}", file, e.getMessage());
-        } catch (InterruptedException e) {
-            log.error("处理文件被中断: {}", e.getMessage());
-            Thread.currentThread().interrupt();
+    /**
+     * 已提交读取的文件
+     */
+    private static final class SubmittedFile {
+        private final Path file;
+        private final Future<List<String>> messages;
+
+        SubmittedFile(Path file, Future<List<String>> messages) {
+            this.file = file;
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * processing目录中一个文件的消息确认进度，全部确认后文件移动到done目录
+     */
+    private final class FileProgress extends FileDeliveries.Progress {
+        private final Path file;
+
+        FileProgress(Path file, int total) {
+            super(checkpoint, file.getFileName().toString(), total);
+            this.file = file;
+        }
+
+        @Override
+        void complete() {
+            try {
+                moveTo(file, doneDirectory);
+                checkpoint.completed(key());
+                processedFiles.incrementAndGet();
+                log.info("成功处理文件: {}，消息 {} 条", key(), total());
+            } catch (IOException e) {
+                log.error("移动文件 {} 到完成目录失败: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 某次检查时文件的大小和修改时间
+     */
+    private static final class FileSnapshot {
+        /** 刚收到事件、还没有检查过的文件 */
+        private static final FileSnapshot UNKNOWN = new FileSnapshot(null, -1, -1);
+
+        private final Path file;
+        private final long size;
+        private final long lastModified;
+
+        private FileSnapshot(Path file, long size, long lastModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * 读取文件当前的大小和修改时间
+         *
+         * @return 文件不存在或不是普通文件时返回null
+         */
+        static FileSnapshot of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    return null;
+                }
+                return new FileSnapshot(file, attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        boolean sameAs(FileSnapshot previous) {
+            return previous != UNKNOWN && size == previous.size && lastModified == previous.lastModified;
         }
     }
 }
@@ -0,0 +1,167 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文件处理进度索引
+ * 记录processing目录中每个文件已被取走的消息数，重启后跳过这些消息，从中断的位置继续。
+ * 每次取走消息追加一行"文件名\t已取走条数"，不重写整个文件；追加的行数多于进行中文件数较多时整理一次
+ */
+@Slf4j
+final class FileCheckpoint implements Closeable {
+
+    /** 追加多少行后整理索引 */
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    private final Path file;
+    private final Map<String, Integer> active = new LinkedHashMap<>();
+    private BufferedWriter writer;
+    private int appendedLines;
+
+    /**
+     * 打开索引，读取上次的进度并整理
+     *
+     * @param file 索引文件
+     * @throws IOException 读写失败
+     */
+    FileCheckpoint(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.lastIndexOf('\t');
+                    if (tab <= 0) {
+                        // 写入中断的不完整行
+                        continue;
+                    }
+                    try {
+                        int delivered = Integer.parseInt(line.substring(tab + 1));
+                        String name = line.substring(0, tab);
+                        if (delivered < 0) {
+                            active.remove(name);
+                        } else {
+                            active.merge(name, delivered, Math::max);
+                        }
+                    } catch (NumberFormatException e) {
+                        log.debug("忽略进度索引中的无效行: {}", line);
+                    }
+                }
+            }
+        }
+        compact();
+    }
+
+    /**
+     * 获取上次中断时文件已被取走的消息数
+     *
+     * @param name 文件名
+     * @return 已取走的消息数，没有记录时为0
+     */
+    synchronized int delivered(String name) {
+        return active.getOrDefault(name, 0);
+    }
+
+    /**
+     * 记录文件已被取走的消息数
+     *
+     * @param name 文件名
+     * @param delivered 已取走的消息数
+     */
+    synchronized void record(String name, int delivered) {
+        active.put(name, delivered);
+        append(name, delivered);
+    }
+
+    /**
+     * 文件已处理完成并移出processing目录
+     *
+     * @param name 文件名
+     */
+    synchronized void completed(String name) {
+        if (active.remove(name) != null) {
+            append(name, -1);
+        }
+    }
+
+    /**
+     * 只保留processing目录中仍存在的文件的进度
+     *
+     * @param processingDirectory processing目录
+     */
+    synchronized void retainExisting(Path processingDirectory) {
+        boolean removed = active.keySet().removeIf(name -> !Files.exists(processingDirectory.resolve(name)));
+        if (removed) {
+            try {
+                compact();
+            } catch (IOException e) {
+                log.error("整理文件处理进度索引 {} 失败: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void append(String name, int delivered) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(name);
+            writer.write('\t');
+            writer.write(Integer.toString(delivered));
+            writer.write('\n');
+            // 交给操作系统，进程崩溃时不丢失
+            writer.flush();
+            if (++appendedLines > COMPACT_THRESHOLD + active.size()) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("写入文件处理进度索引 {} 失败，停止记录进度: {}", file, e.getMessage());
+            closeWriter();
+        }
+    }
+
+    /**
+     * 把当前进度写入临时文件后原子替换索引
+     */
+    private void compact() throws IOException {
+        closeWriter();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Integer> entry : new HashMap<>(active).entrySet()) {
+                out.write(entry.getKey() + '\t' + entry.getValue() + '\n');
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        appendedLines = 0;
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.debug("关闭文件处理进度索引失败: {}", e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeWriter();
+    }
+}
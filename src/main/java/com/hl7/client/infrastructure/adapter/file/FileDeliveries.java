@@ -0,0 +1,143 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 已被receive()取走、等待处理流程确认的文件消息
+ * 消息处理并发送到服务端后由commit确认，文件的进度只推进到从第一条起连续确认的位置，全部确认后文件才算处理完成；
+ * 发送失败或停止前没有确认的消息，重新连接后从进度处重新发送（至少一次，服务端按消息控制ID去重）。
+ * 消息按receive()返回的字符串实例登记，内容相同的两条消息互不影响
+ */
+@Slf4j
+final class FileDeliveries {
+
+    /**
+     * 一个文件的消息确认进度
+     */
+    abstract static class Progress {
+        private final FileCheckpoint checkpoint;
+        private final String key;
+        private final int total;
+        private final BitSet acknowledged;
+        private int committed;
+
+        /**
+         * 构造函数，从进度索引中读取上次已确认的消息数
+         *
+         * @param checkpoint 进度索引
+         * @param key 文件在进度索引中的键
+         * @param total 文件中的消息数
+         */
+        Progress(FileCheckpoint checkpoint, String key, int total) {
+            this.checkpoint = checkpoint;
+            this.key = key;
+            this.total = total;
+            this.acknowledged = new BitSet(total);
+            this.committed = Math.min(checkpoint.delivered(key), total);
+        }
+
+        /**
+         * 从第一条起连续确认的消息数，发布时从这里开始
+         *
+         * @return 已确认的消息数
+         */
+        synchronized int committed() {
+            return committed;
+        }
+
+        int total() {
+            return total;
+        }
+
+        String key() {
+            return key;
+        }
+
+        /**
+         * 确认一条消息，连续确认的位置推进时记入进度索引，全部确认后完成文件
+         *
+         * @param index 消息在文件中的序号，从0开始
+         */
+        synchronized void acknowledge(int index) {
+            acknowledged.set(index);
+            int before = committed;
+            while (committed < total && acknowledged.get(committed)) {
+                committed++;
+            }
+            if (committed >= total) {
+                complete();
+            } else if (committed > before) {
+                checkpoint.record(key, committed);
+            }
+        }
+
+        /**
+         * 文件的全部消息已确认
+         */
+        abstract void complete();
+    }
+
+    /**
+     * 接收队列中的消息及其所属文件
+     */
+    static final class Queued {
+        final String content;
+        final Progress progress;
+        final int index;
+
+        Queued(String content, Progress progress, int index) {
+            this.content = content;
+            this.progress = progress;
+            this.index = index;
+        }
+    }
+
+    private final Map<String, Queued> pending = new IdentityHashMap<>();
+
+    /**
+     * 登记被receive()取走的消息
+     *
+     * @param queued 消息
+     * @return 消息内容
+     */
+    synchronized String taken(Queued queued) {
+        pending.put(queued.content, queued);
+        return queued.content;
+    }
+
+    /**
+     * 确认消息的处理结果
+     * 发送失败的消息继续等待，之后重试成功时再确认
+     *
+     * @param content receive()返回的消息内容
+     * @param delivered 是否已处理并发送成功
+     * @return 确认了本适配器的一条消息时返回true
+     */
+    boolean commit(String content, boolean delivered) {
+        Queued queued;
+        synchronized (this) {
+            queued = delivered ? pending.remove(content) : pending.get(content);
+        }
+        if (queued == null) {
+            return false;
+        }
+        if (delivered) {
+            queued.progress.acknowledge(queued.index);
+        } else {
+            log.warn("文件 {} 的第 {} 条消息未发送成功，进度停在第 {} 条，重新连接后从这里重新发送",
+                    queued.progress.key(), queued.index + 1, queued.progress.committed() + 1);
+        }
+        return delivered;
+    }
+
+    /**
+     * 断开连接时丢弃等待确认的消息，之后到达的确认不再推进进度
+     */
+    synchronized void clear() {
+        pending.clear();
+    }
+}
@@ -0,0 +1,72 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 结果文件读取工具
+ * 按行流式读取，不把整个文件读成行列表再拼接；一个文件包含多条HL7消息时，在每个段首的MSH|处拆开。
+ * 换行统一为\n，与原先按行读取再用\n连接的结果一致
+ */
+final class FileMessageReader {
+
+    private static final String MESSAGE_HEADER = "MSH|";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileMessageReader() {
+    }
+
+    /**
+     * 读取文件中的消息
+     *
+     * @param file 文件
+     * @param charset 字符集
+     * @return 按文件中顺序排列的消息，空文件返回空列表
+     * @throws IOException 读取失败
+     */
+    static List<String> read(Path file, Charset charset) throws IOException {
+        return read(Files.newInputStream(file), charset);
+    }
+
+    /**
+     * 读取输入流中的消息，读完后关闭输入流
+     *
+     * @param input 输入流，如共享目录中文件的下载流
+     * @param charset 字符集
+     * @return 按文件中顺序排列的消息，空文件返回空列表
+     * @throws IOException 读取失败
+     */
+    static List<String> read(InputStream input, Charset charset) throws IOException {
+        List<String> messages = new ArrayList<>();
+        StringBuilder message = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(input, charset.newDecoder()), BUFFER_SIZE)) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(MESSAGE_HEADER) && message.length() > 0) {
+                    messages.add(message.toString());
+                    message.setLength(0);
+                    first = true;
+                }
+                if (!first) {
+                    message.append('\n');
+                }
+                message.append(line);
+                first = false;
+            }
+        }
+        if (message.length() > 0) {
+            messages.add(message.toString());
+        }
+        return messages;
+    }
+}
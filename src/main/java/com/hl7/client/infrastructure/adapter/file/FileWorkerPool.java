@@ -0,0 +1,85 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 文件读取线程池
+ * 所有文件设备共用，读取和拆分文件在这里并行进行，每台设备按提交顺序取结果，保证同一设备的消息顺序
+ */
+@Slf4j
+@Component
+public class FileWorkerPool {
+
+    /** 非Spring环境下使用的默认实例 */
+    private static volatile FileWorkerPool defaultInstance;
+
+    /** 读取线程数 */
+    @Value("${hl7.file.worker-threads:4}")
+    private int workerThreads = 4;
+
+    private ExecutorService workers;
+
+    /**
+     * 获取非Spring环境下的默认实例（如独立运行的测试程序）
+     *
+     * @return 默认线程池
+     */
+    public static FileWorkerPool getDefault() {
+        if (defaultInstance == null) {
+            synchronized (FileWorkerPool.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new FileWorkerPool();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * 创建指定线程数的实例
+     *
+     * @param workerThreads 读取线程数
+     */
+    public FileWorkerPool(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public FileWorkerPool() {
+    }
+
+    /**
+     * 提交读取任务，首次提交时启动线程池
+     *
+     * @param task 读取任务
+     * @param <T> 结果类型
+     * @return 任务结果
+     */
+    public synchronized <T> Future<T> submit(Callable<T> task) {
+        if (workers == null) {
+            int threads = Math.max(1, workerThreads);
+            workers = Executors.newFixedThreadPool(threads, new DefaultThreadFactory("hl7-file-worker", true));
+            log.info("文件读取线程池已启动 - 线程数: {}", threads);
+        }
+        return workers.submit(task);
+    }
+
+    /**
+     * 停止线程池，应用退出时调用
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+}
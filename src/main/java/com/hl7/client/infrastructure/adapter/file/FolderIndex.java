@@ -0,0 +1,201 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 共享目录的列表索引
+ * 记录已处理文件的名称、大小和修改时间，轮询时与目录列表比较，只有新文件或大小、修改时间变化的文件才需要下载。
+ * 每处理完一个文件追加一行"文件名\t大小\t修改时间"，文件从目录中删除时追加大小为-1的行；
+ * 追加的行数多于索引项数较多时整理一次，与FileCheckpoint相同
+ */
+@Slf4j
+final class FolderIndex implements Closeable {
+
+    /** 追加多少行后整理索引 */
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private BufferedWriter writer;
+    private int appendedLines;
+
+    /**
+     * 打开索引，读取上次的内容并整理
+     *
+     * @param file 索引文件
+     * @throws IOException 读写失败
+     */
+    FolderIndex(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int second = line.lastIndexOf('\t');
+                    int first = second > 0 ? line.lastIndexOf('\t', second - 1) : -1;
+                    if (first <= 0) {
+                        // 写入中断的不完整行
+                        continue;
+                    }
+                    try {
+                        String name = line.substring(0, first);
+                        long size = Long.parseLong(line.substring(first + 1, second));
+                        long lastModified = Long.parseLong(line.substring(second + 1));
+                        if (size < 0) {
+                            entries.remove(name);
+                        } else {
+                            entries.put(name, new Entry(size, lastModified));
+                        }
+                    } catch (NumberFormatException e) {
+                        log.debug("忽略列表索引中的无效行: {}", line);
+                    }
+                }
+            }
+        }
+        compact();
+    }
+
+    /**
+     * 判断文件是否已按当前的大小和修改时间处理过，并标记为本轮列表中出现过
+     *
+     * @param name 文件名
+     * @param size 大小
+     * @param lastModified 修改时间
+     * @param generation 本轮列表的编号
+     * @return 已处理过时返回true
+     */
+    synchronized boolean unchanged(String name, long size, long lastModified, long generation) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return false;
+        }
+        entry.seen = generation;
+        return entry.size == size && entry.lastModified == lastModified;
+    }
+
+    /**
+     * 记录文件已处理
+     *
+     * @param name 文件名
+     * @param size 处理时的大小
+     * @param lastModified 处理时的修改时间
+     */
+    synchronized void record(String name, long size, long lastModified) {
+        Entry entry = new Entry(size, lastModified);
+        // 处理完成时可能正在列目录，本轮列表已经过了这个文件，下一轮列表之前不删除
+        entry.seen = Long.MAX_VALUE;
+        entries.put(name, entry);
+        append(name, size, lastModified);
+    }
+
+    /**
+     * 删除本轮列表中没有出现的文件，它们已从共享目录中删除
+     *
+     * @param generation 本轮列表的编号
+     * @return 删除的索引项数
+     */
+    synchronized int retainSeen(long generation) {
+        int removed = 0;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getValue().seen < generation) {
+                iterator.remove();
+                append(entry.getKey(), -1, -1);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 索引中的文件数
+     *
+     * @return 文件数
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void append(String name, long size, long lastModified) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(name);
+            writer.write('\t');
+            writer.write(Long.toString(size));
+            writer.write('\t');
+            writer.write(Long.toString(lastModified));
+            writer.write('\n');
+            // 交给操作系统，进程崩溃时不丢失
+            writer.flush();
+            if (++appendedLines > COMPACT_THRESHOLD + entries.size()) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("写入列表索引 {} 失败，停止记录: {}", file, e.getMessage());
+            closeWriter();
+        }
+    }
+
+    /**
+     * 把当前索引写入临时文件后原子替换
+     */
+    private void compact() throws IOException {
+        closeWriter();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.write(entry.getKey() + '\t' + entry.getValue().size + '\t' + entry.getValue().lastModified + '\n');
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        appendedLines = 0;
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.debug("关闭列表索引失败: {}", e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    /**
+     * 已处理文件的大小和修改时间
+     */
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        /** 最近一次出现在目录列表中的编号 */
+        private long seen;
+
+        Entry(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 已挂载到本机的共享目录
+ * 网络文件系统上WatchService收不到其他主机写入文件的事件，这类目录只能轮询
+ */
+final class LocalSharedFolder implements SharedFolder {
+
+    private final Path directory;
+
+    LocalSharedFolder(String directory) throws IOException {
+        this.directory = Paths.get(directory);
+        if (!Files.isDirectory(this.directory)) {
+            throw new IOException("目录不存在: " + directory);
+        }
+    }
+
+    @Override
+    public void list(EntryVisitor visitor) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // 列目录和读属性之间文件被删除
+                    continue;
+                }
+                if (attributes.isRegularFile()) {
+                    visitor.visit(entry.getFileName().toString(), attributes.size(),
+                            attributes.lastModifiedTime().toMillis());
+                }
+            }
+        }
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        return Files.newInputStream(directory.resolve(name));
+    }
+
+    @Override
+    public String location() {
+        return directory.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 轮询读取的共享目录
+ * 列目录时逐项回调名称、大小和修改时间，不在内存中保留整个目录的列表
+ */
+interface SharedFolder extends Closeable {
+
+    /**
+     * 列出目录中的文件（不含子目录）
+     *
+     * @param visitor 每个文件回调一次
+     * @throws IOException 列目录失败
+     */
+    void list(EntryVisitor visitor) throws IOException;
+
+    /**
+     * 打开目录中的文件
+     *
+     * @param name 文件名
+     * @return 输入流
+     * @throws IOException 打开失败
+     */
+    InputStream open(String name) throws IOException;
+
+    /**
+     * 用于日志的位置描述，不包含密码
+     *
+     * @return 位置描述
+     */
+    String location();
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * 目录项回调
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        void visit(String name, long size, long lastModified);
+    }
+}
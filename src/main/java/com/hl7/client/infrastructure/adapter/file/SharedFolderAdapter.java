@@ -0,0 +1,533 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 共享目录轮询适配器
+ * 用于仪器把结果文件导出到Windows共享目录（SMB）或已挂载的网络目录的情况，这类目录上WatchService收不到事件，只能轮询。
+ *
+ * 共享目录中通常保留着大量历史文件，且客户端往往没有移动或删除文件的权限，因此文件不移动，
+ * 而是在本地的列表索引中记录已处理文件的名称、大小和修改时间。每轮轮询只列一次目录，逐项与索引比较，
+ * 没有变化的文件不下载也不查询属性，只有新文件或大小、修改时间变化的文件才进入等待列表；
+ * 连续两轮列表中大小和修改时间相同、且保持超过稳定时间的文件交给共用的读取线程池并行下载和拆分，
+ * 下一轮列目录与下载同时进行。发布线程按提交顺序把消息放入接收队列，文件的消息全部处理并发送后（commit确认）记入索引。
+ * 中途停止时，进度索引记录文件从第一条起连续确认的消息数，重启后重新下载该文件并跳过这些消息；
+ * 已取走但没有确认的消息重启后重新发送（至少一次）
+ */
+@Slf4j
+@Component
+public class SharedFolderAdapter implements DeviceAdapter {
+
+    /** SMB共享目录地址前缀 */
+    public static final String SMB_PREFIX = "smb://";
+
+    /** 已挂载的网络目录前缀，如poll:/mnt/lab:*.hl7 */
+    public static final String POLL_PREFIX = "poll:";
+
+    private Device device;
+    private String folderLocation;
+    private String filePattern;
+    private PathMatcher fileMatcher;
+    private SharedFolder folder;
+    private Thread pollThread;
+    private Thread publishThread;
+    private volatile boolean running = false;
+    private volatile BlockingQueue<FileDeliveries.Queued> fileContents = new LinkedBlockingQueue<>(1);
+
+    /** 已取走、等待处理流程确认的消息 */
+    private final FileDeliveries deliveries = new FileDeliveries();
+
+    /** 已处理文件的列表索引和未处理完文件的消息进度 */
+    private FolderIndex index;
+    private FileCheckpoint checkpoint;
+
+    /** 轮询间隔（毫秒） */
+    @Getter @Setter
+    @Value("${hl7.file.share.poll-interval-ms:2000}")
+    private long pollIntervalMillis = 2000;
+
+    /** 列表索引和进度索引的保存目录 */
+    @Getter @Setter
+    @Value("${hl7.file.share.state-directory:data/share-index}")
+    private String stateDirectory = "data/share-index";
+
+    /** 文件大小和修改时间需要保持不变的时间（毫秒），超过后才下载 */
+    @Getter @Setter
+    @Value("${hl7.file.stable-millis:500}")
+    private long stableMillis = 500;
+
+    /** 接收队列容量（条），队列已满时发布线程等待消息被取走 */
+    @Getter @Setter
+    @Value("${hl7.file.queue-capacity:1000}")
+    private int queueCapacity = 1000;
+
+    /** 最多同时下载或等待发布的文件数，达到后轮询线程等待，不再提交新文件 */
+    @Getter @Setter
+    @Value("${hl7.file.max-in-flight-files:16}")
+    private int maxInFlightFiles = 16;
+
+    /**
+     * 文件读取线程池，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private FileWorkerPool fileWorkerPool;
+
+    /** 新出现或有变化、等待稳定的文件，只在轮询线程上访问 */
+    private final Map<String, PendingFile> pendingFiles = new HashMap<>();
+
+    /** 已提交下载、消息还没有全部取走的文件，轮询时跳过 */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /** 已提交下载的文件，发布线程按提交顺序取结果 */
+    private volatile BlockingQueue<SubmittedFile> submitted = new LinkedBlockingQueue<>(1);
+
+    /** 列表编号，每轮轮询加一 */
+    private long generation;
+
+    private final AtomicLong processedFiles = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+    private final AtomicLong processedMessages = new AtomicLong();
+    private final AtomicLong downloadedFiles = new AtomicLong();
+    private final AtomicLong polls = new AtomicLong();
+
+    /** 最近一轮轮询列出的匹配文件数和耗时 */
+    private volatile int lastListedFiles;
+    private volatile long lastPollMillis;
+
+    /**
+     * 判断连接参数是否需要使用共享目录轮询
+     *
+     * @param connectionParams 连接参数
+     * @return smb://或poll:开头时返回true
+     */
+    public static boolean supports(String connectionParams) {
+        return connectionParams != null && (connectionParams.regionMatches(true, 0, SMB_PREFIX, 0, SMB_PREFIX.length())
+                || connectionParams.regionMatches(true, 0, POLL_PREFIX, 0, POLL_PREFIX.length()));
+    }
+
+    @Override
+    public void initialize(Device device) {
+        this.device = device;
+        try {
+            // 连接参数格式: smb://[域;用户名:密码@]主机/共享名/目录/:*.hl7 或 poll:/mnt/lab:*.hl7
+            // 地址和用户信息中可能有冒号，文件模式取最后一个路径分隔符之后的冒号
+            String params = device.getConnectionParams().trim();
+            int separator = Math.max(params.lastIndexOf('/'), params.lastIndexOf('\\'));
+            int colon = params.indexOf(':', separator + 1);
+            String location = colon > 0 ? params.substring(0, colon) : params;
+            this.filePattern = colon > 0 && colon < params.length() - 1 ? params.substring(colon + 1) : "*";
+            this.fileMatcher = FileSystems.getDefault().getPathMatcher("glob:" + filePattern);
+            if (location.regionMatches(true, 0, POLL_PREFIX, 0, POLL_PREFIX.length())) {
+                location = location.substring(POLL_PREFIX.length());
+            }
+            this.folderLocation = location;
+        } catch (Exception e) {
+            log.error("初始化共享目录适配器失败: {}", e.getMessage());
+            throw new IllegalArgumentException("连接参数格式错误，应为smb://主机/共享名/目录/:filePattern");
+        }
+    }
+
+    @Override
+    public boolean connect() {
+        try {
+            folder = folderLocation.regionMatches(true, 0, SMB_PREFIX, 0, SMB_PREFIX.length())
+                    ? new SmbSharedFolder(folderLocation)
+                    : new LocalSharedFolder(folderLocation);
+
+            Path state = Files.createDirectories(Paths.get(stateDirectory));
+            String key = device.getId() != null ? device.getId() : device.getName();
+            index = new FolderIndex(state.resolve(key + ".index"));
+            checkpoint = new FileCheckpoint(state.resolve(key + ".checkpoint"));
+            fileContents = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+            submitted = new LinkedBlockingQueue<>(Math.max(1, maxInFlightFiles));
+            pendingFiles.clear();
+            inFlight.clear();
+
+            running = true;
+            publishThread = new Thread(this::publishMessages, "hl7-share-publish-" + device.getName());
+            publishThread.setDaemon(true);
+            publishThread.start();
+
+            pollThread = new Thread(this::pollFolder, "hl7-share-poll-" + device.getName());
+            pollThread.setDaemon(true);
+            pollThread.start();
+
+            log.info("开始轮询共享目录: {}, 文件模式: {}, 索引中已处理 {} 个文件", folder.location(), filePattern,
+                    index.size());
+            return true;
+        } catch (IOException e) {
+            log.error("打开共享目录 {} 失败: {}", SmbSharedFolder.maskPassword(folderLocation), e.getMessage());
+            closeState();
+            return false;
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        running = false;
+        if (pollThread != null) {
+            pollThread.interrupt();
+            pollThread = null;
+        }
+        if (publishThread != null) {
+            publishThread.interrupt();
+            publishThread = null;
+        }
+
+        // 未确认完的文件不记入列表索引，下次连接时重新下载，按进度索引跳过已确认的消息
+        SubmittedFile pending;
+        while ((pending = submitted.poll()) != null) {
+            pending.messages.cancel(true);
+        }
+        fileContents.clear();
+        deliveries.clear();
+        closeState();
+
+        log.info("已停止轮询共享目录，共下载 {} 个文件、处理 {} 个文件、{} 条消息，失败 {} 个文件", downloadedFiles.get(),
+                processedFiles.get(), processedMessages.get(), failedFiles.get());
+    }
+
+    private void closeState() {
+        if (index != null) {
+            index.close();
+        }
+        if (checkpoint != null) {
+            checkpoint.close();
+        }
+        if (folder != null) {
+            try {
+                folder.close();
+            } catch (IOException e) {
+                log.debug("关闭共享目录失败: {}", e.getMessage());
+            }
+            folder = null;
+        }
+    }
+
+    @Override
+    public boolean send(String data) {
+        log.warn("共享目录适配器不支持发送数据");
+        return false;
+    }
+
+    @Override
+    public String receive() {
+        try {
+            FileDeliveries.Queued queued = fileContents.poll(30, TimeUnit.SECONDS);
+            if (queued == null) {
+                return null;
+            }
+            log.debug("从共享目录文件中读取到数据，长度: {}", queued.content.length());
+            return deliveries.taken(queued);
+        } catch (InterruptedException e) {
+            log.error("接收数据被中断: {}", e.getMessage());
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 确认消息已处理并发送，文件的全部消息确认后记入列表索引
+     */
+    @Override
+    public void commit(String rawContent, boolean delivered) {
+        if (deliveries.commit(rawContent, delivered)) {
+            processedMessages.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return running && pollThread != null && pollThread.isAlive();
+    }
+
+    @Override
+    public Device getDevice() {
+        return device;
+    }
+
+    /**
+     * 共享目录适配器不直接处理接收数据，而是通过轮询自动处理
+     * @param rawData 接收到的原始数据字符串
+     * @return 始终返回null
+     */
+    @Override
+    public String processReceivedData(String rawData) {
+        log.debug("共享目录适配器不直接处理接收数据: {}", rawData);
+        return null;
+    }
+
+    /**
+     * 已下载的文件数，包括重新下载的有变化的文件
+     *
+     * @return 文件数
+     */
+    public long getDownloadedFiles() {
+        return downloadedFiles.get();
+    }
+
+    /**
+     * 已完成的轮询轮数
+     *
+     * @return 轮数
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    /**
+     * 最近一轮轮询列出的匹配文件数
+     *
+     * @return 文件数
+     */
+    public int getLastListedFiles() {
+        return lastListedFiles;
+    }
+
+    /**
+     * 最近一轮轮询（列目录和比较索引）的耗时，不含等待提交的时间
+     *
+     * @return 毫秒
+     */
+    public long getLastPollMillis() {
+        return lastPollMillis;
+    }
+
+    /**
+     * 获取文件读取线程池
+     *
+     * @return 文件读取线程池
+     */
+    private FileWorkerPool workerPool() {
+        if (fileWorkerPool == null) {
+            fileWorkerPool = FileWorkerPool.getDefault();
+        }
+        return fileWorkerPool;
+    }
+
+    /**
+     * 定期列目录，提交新出现或有变化且已稳定的文件
+     */
+    private void pollFolder() {
+        SharedFolder source = folder;
+        try {
+            while (running) {
+                try {
+                    submit(source, poll(source));
+                } catch (IOException e) {
+                    // 共享目录暂时不可访问，下一轮重试
+                    log.warn("轮询共享目录 {} 失败: {}", source.location(), e.getMessage());
+                }
+                polls.incrementAndGet();
+                Thread.sleep(pollIntervalMillis);
+            }
+        } catch (InterruptedException e) {
+            log.debug("共享目录轮询线程被中断");
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("共享目录轮询线程出错: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 列一次目录，与列表索引和等待列表比较
+     *
+     * @param source 共享目录
+     * @return 本轮已稳定、需要下载的文件，按修改时间和文件名排序
+     * @throws IOException 列目录失败
+     */
+    private List<PendingFile> poll(SharedFolder source) throws IOException {
+        long start = System.nanoTime();
+        long current = ++generation;
+        long now = System.currentTimeMillis();
+        int[] listed = new int[1];
+        List<PendingFile> ready = new ArrayList<>();
+
+        source.list((name, size, lastModified) -> {
+            if (!fileMatcher.matches(Paths.get(name))) {
+                return;
+            }
+            listed[0]++;
+            if (index.unchanged(name, size, lastModified, current) || inFlight.contains(name)) {
+                return;
+            }
+            PendingFile previous = pendingFiles.get(name);
+            if (previous != null && previous.size == size && previous.lastModified == lastModified) {
+                previous.seen = current;
+                // 用本机时间计算保持不变的时长，不受共享主机时钟偏差影响
+                if (now - previous.unchangedSince >= stableMillis) {
+                    ready.add(previous);
+                }
+            } else {
+                PendingFile file = new PendingFile(name, size, lastModified, now);
+                file.seen = current;
+                pendingFiles.put(name, file);
+            }
+        });
+
+        // 等待列表中本轮没有出现的文件已被删除或已处理完
+        Iterator<PendingFile> iterator = pendingFiles.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().seen != current) {
+                iterator.remove();
+            }
+        }
+        int removed = index.retainSeen(current);
+        if (removed > 0) {
+            log.info("共享目录中已删除 {} 个已处理的文件，从列表索引中移除", removed);
+        }
+
+        lastListedFiles = listed[0];
+        lastPollMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ready.sort(Comparator.comparingLong((PendingFile f) -> f.lastModified).thenComparing(f -> f.name));
+        return ready;
+    }
+
+    /**
+     * 提交已稳定的文件下载，已提交的文件数达到上限时等待
+     *
+     * @param source 共享目录
+     * @param files 已稳定的文件
+     */
+    private void submit(SharedFolder source, List<PendingFile> files) throws InterruptedException {
+        for (PendingFile file : files) {
+            pendingFiles.remove(file.name);
+            inFlight.add(file.name);
+            Future<List<String>> messages = workerPool().submit(() -> {
+                downloadedFiles.incrementAndGet();
+                return FileMessageReader.read(source.open(file.name), StandardCharsets.UTF_8);
+            });
+            submitted.put(new SubmittedFile(file, messages));
+        }
+    }
+
+    /**
+     * 按提交顺序取出下载结果，跳过上次已确认的消息，其余放入接收队列；队列已满时等待
+     */
+    private void publishMessages() {
+        try {
+            while (running) {
+                SubmittedFile next = submitted.take();
+                PendingFile file = next.file;
+                try {
+                    List<String> messages = next.messages.get();
+                    FileProgress progress = new FileProgress(file, messages.size());
+                    int committed = progress.committed();
+                    if (committed > 0) {
+                        log.info("文件 {} 从第 {} 条消息继续处理，共 {} 条", file.name, committed + 1, messages.size());
+                    }
+                    if (committed == messages.size()) {
+                        progress.complete();
+                        continue;
+                    }
+                    for (int i = committed; i < messages.size(); i++) {
+                        fileContents.put(new FileDeliveries.Queued(messages.get(i), progress, i));
+                    }
+                } catch (CancellationException e) {
+                    log.debug("文件 {} 的下载任务已取消", file.name);
+                    inFlight.remove(file.name);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof CharacterCodingException) {
+                        // 内容无法解码，重新下载也一样；记入索引，文件变化后再处理
+                        log.error("文件 {} 的内容无法解码，跳过: {}", file.name, cause.getMessage());
+                        index.record(file.name, file.size, file.lastModified);
+                        failedFiles.incrementAndGet();
+                    } else {
+                        log.warn("下载文件 {} 失败，下一轮重试: {}", file.name, cause.getMessage());
+                    }
+                    inFlight.remove(file.name);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("共享目录发布线程被中断");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 已提交下载的文件
+     */
+    private static final class SubmittedFile {
+        private final PendingFile file;
+        private final Future<List<String>> messages;
+
+        SubmittedFile(PendingFile file, Future<List<String>> messages) {
+            this.file = file;
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * 一个文件的消息确认进度，进度按文件名、大小和修改时间记录，文件变化后从头处理；全部确认后记入列表索引
+     */
+    private final class FileProgress extends FileDeliveries.Progress {
+        private final PendingFile file;
+
+        FileProgress(PendingFile file, int total) {
+            super(checkpoint, file.name + '/' + file.size + '/' + file.lastModified, total);
+            this.file = file;
+        }
+
+        @Override
+        void complete() {
+            index.record(file.name, file.size, file.lastModified);
+            checkpoint.completed(key());
+            inFlight.remove(file.name);
+            processedFiles.incrementAndGet();
+            log.info("成功处理共享目录文件: {}，消息 {} 条", file.name, total());
+        }
+    }
+
+    /**
+     * 新出现或有变化的文件在列表中的大小和修改时间
+     */
+    private static final class PendingFile {
+        private final String name;
+        private final long size;
+        private final long lastModified;
+        /** 本机时间，从这时起大小和修改时间没有变化 */
+        private final long unchangedSince;
+        /** 最近一次出现在目录列表中的编号 */
+        private long seen;
+
+        PendingFile(String name, long size, long lastModified, long unchangedSince) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.unchangedSince = unchangedSince;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.hl7.client.infrastructure.adapter.file;
+
+import jcifs.CIFSException;
+import jcifs.CloseableIterator;
+import jcifs.SmbResource;
+import jcifs.context.SingletonContext;
+import jcifs.smb.SmbFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 通过jcifs访问的SMB共享目录
+ * 地址格式为smb://[域;用户名:密码@]主机/共享名/目录/。
+ * 列目录使用一次目录查询，每项的大小和修改时间随查询结果返回，不再逐个文件查询属性；
+ * 过滤器对所有项都返回false，只用来逐项回调，迭代器不会积累整个目录的对象
+ */
+final class SmbSharedFolder implements SharedFolder {
+
+    /** 下载缓冲区大小，减少SMB读请求的往返次数 */
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+
+    private final SmbFile directory;
+    private final String location;
+
+    SmbSharedFolder(String url) throws IOException {
+        String directoryUrl = url.endsWith("/") ? url : url + "/";
+        this.directory = new SmbFile(directoryUrl, SingletonContext.getInstance());
+        this.location = maskPassword(directoryUrl);
+    }
+
+    @Override
+    public void list(EntryVisitor visitor) throws IOException {
+        try (CloseableIterator<SmbResource> children = directory.children(resource -> {
+            if (!resource.isDirectory()) {
+                visitor.visit(resource.getName(), resource.length(), resource.lastModified());
+            }
+            return false;
+        })) {
+            while (children.hasNext()) {
+                children.next().close();
+            }
+        } catch (CIFSException e) {
+            throw new IOException("列出共享目录 " + location + " 失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        SmbFile file = new SmbFile(directory, name);
+        InputStream input = file.openInputStream();
+        return new BufferedInputStream(input, DOWNLOAD_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    file.close();
+                }
+            }
+        };
+    }
+
+    @Override
+    public String location() {
+        return location;
+    }
+
+    @Override
+    public void close() {
+        directory.close();
+    }
+
+    /**
+     * 隐藏地址中的密码
+     *
+     * @param url 地址
+     * @return 密码替换为***的地址
+     */
+    static String maskPassword(String url) {
+        int at = url.indexOf('@');
+        int scheme = url.indexOf("://");
+        if (at < 0 || scheme < 0) {
+            return url;
+        }
+        int colon = url.indexOf(':', scheme + 3);
+        return colon > 0 && colon < at ? url.substring(0, colon) + ":***" + url.substring(at) : url;
+    }
+}
@@ -1,12 +1,30 @@
 package com.hl7.client.infrastructure.adapter.network;
 
 import com.hl7.client.domain.model.Device;
+import com.hl7.client.infrastructure.adapter.capture.TrafficCaptureHandler;
+import com.hl7.client.infrastructure.adapter.capture.TrafficRecorder;
 import com.hl7.client.infrastructure.adapter.common.AbstractCommunicationAdapter;
+import com.hl7.client.infrastructure.adapter.network.codec.AstmFrameDecoder;
+import com.hl7.client.infrastructure.adapter.network.codec.MllpFrameDecoder;
+import com.hl7.client.infrastructure.adapter.network.codec.PartialFrameDecoder;
+import com.hl7.client.infrastructure.adapter.network.codec.ProtocolDetectionHandler;
+import com.hl7.client.infrastructure.adapter.network.codec.WireProtocol;
+import com.hl7.client.infrastructure.adapter.network.config.ConnectionTimeouts;
 import io.netty.channel.Channel;
-import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.codec.string.StringEncoder;
+import io.netty.handler.timeout.IdleStateHandler;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Netty适配器抽象基类
@@ -15,9 +33,42 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public abstract class AbstractNettyAdapter extends AbstractCommunicationAdapter {
 
+    /**
+     * 原始TCP流，按文本片段缓冲后由完整性策略判断消息边界
+     */
+    public static final String PROTOCOL_TCP = "TCP";
+
+    /**
+     * HL7 MLLP协议，由MllpFrameDecoder按帧头帧尾切分消息
+     */
+    public static final String PROTOCOL_MLLP = "MLLP";
+
+    /**
+     * ASTM E1381低层协议，由AstmFrameDecoder应答ENQ/数据帧并重组完整消息
+     */
+    public static final String PROTOCOL_ASTM = "ASTM";
+
+    /**
+     * 自动识别：按每个连接的前几个字节选择MLLP、ASTM或文本处理方式，同一端口可接入不同协议的仪器
+     */
+    public static final String PROTOCOL_AUTO = "AUTO";
+
     protected int port;
     protected String protocol;
 
+    /**
+     * 连接超时配置，全局默认值可被连接参数中的 key=value 选项覆盖
+     */
+    @Getter
+    protected ConnectionTimeouts timeouts;
+
+    /**
+     * 共享的Netty传输服务，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private NettyTransportService transportService;
+
     /**
      * 初始化适配器
      *
@@ -27,6 +78,8 @@ public abstract class AbstractNettyAdapter extends AbstractCommunicationAdapter
     public void initialize(Device device) {
         super.initialize(device);
         parseConnectionParams(device.getConnectionParams());
+        timeouts = ConnectionTimeouts.fromConnectionParams(device.getConnectionParams(), transport().defaultTimeouts());
+        log.info("设备 {} 连接超时配置: {}", device.getName(), timeouts);
     }
 
     /**
@@ -37,30 +90,136 @@ public abstract class AbstractNettyAdapter extends AbstractCommunicationAdapter
     protected abstract void parseConnectionParams(String params);
 
     /**
-     * 安全关闭EventLoopGroup
+     * 按协议类型添加超时处理器和编解码器
+     * MLLP和ASTM协议使用帧解码器直接输出完整消息，其他协议沿用文本解码后缓冲的方式；
+     * AUTO协议先放一个识别处理器，收到数据后再按识别结果安装
      *
-     * @param group 要关闭的EventLoopGroup
-     * @param groupName 组名称(用于日志)
+     * @param pipeline 通道处理器链
      */
-    protected void shutdownEventLoopGroup(EventLoopGroup group, String groupName) {
-        if (group != null && !group.isShutdown()) {
-            try {
-                group.shutdownGracefully(0, 5, TimeUnit.SECONDS).sync();
-                log.debug("{} 线程组已关闭", groupName);
-            } catch (Exception e) {
-                log.warn("关闭 {} 线程组时出错: {}", groupName, e.getMessage());
+    protected void initFramePipeline(ChannelPipeline pipeline) {
+        TrafficRecorder recorder = getTrafficRecorder();
+        if (recorder != null) {
+            // 放在最前面，录制解码前和编码后的原始字节
+            pipeline.addLast(new TrafficCaptureHandler(recorder));
+        }
+        ConnectionTimeouts connectionTimeouts = connectionTimeouts();
+        if (connectionTimeouts.getReadIdleSeconds() > 0) {
+            pipeline.addLast(new IdleStateHandler(connectionTimeouts.getReadIdleSeconds(), 0, 0));
+        }
+
+        if (PROTOCOL_AUTO.equalsIgnoreCase(protocol)) {
+            pipeline.addLast(new ProtocolDetectionHandler(this::installDetectedProtocol));
+        } else {
+            for (ChannelHandler handler : createFrameHandlers(configuredProtocol())) {
+                pipeline.addLast(handler);
             }
         }
+        pipeline.addLast(new StringEncoder());
+    }
+
+    /**
+     * 在识别处理器之后安装识别出的协议的处理器，并记录连接的消息类型
+     *
+     * @param ctx 识别处理器的上下文
+     * @param wireProtocol 识别出的协议
+     */
+    private void installDetectedProtocol(ChannelHandlerContext ctx, WireProtocol wireProtocol) {
+        String baseName = ctx.name();
+        for (ChannelHandler handler : createFrameHandlers(wireProtocol)) {
+            String name = baseName + "-" + handler.getClass().getSimpleName();
+            ctx.pipeline().addAfter(baseName, name, handler);
+            baseName = name;
+        }
+        NettyMessageHandler.frameState(ctx.channel()).setMessageType(wireProtocol.getMessageType());
+    }
+
+    /**
+     * 创建协议对应的半包超时处理器和解码器
+     *
+     * @param wireProtocol 协议
+     * @return 按顺序添加的处理器
+     */
+    private List<ChannelHandler> createFrameHandlers(WireProtocol wireProtocol) {
+        ByteToMessageDecoder frameDecoder = null;
+        if (wireProtocol == WireProtocol.MLLP) {
+            frameDecoder = new MllpFrameDecoder(getMaxBufferSize());
+        } else if (wireProtocol == WireProtocol.ASTM) {
+            frameDecoder = new AstmFrameDecoder(getMaxBufferSize());
+        }
+
+        List<ChannelHandler> handlers = new ArrayList<>(2);
+        handlers.add(new FrameTimeoutHandler(transport().frameTimer(), connectionTimeouts(),
+                (PartialFrameDecoder) frameDecoder, this));
+        handlers.add(frameDecoder != null ? frameDecoder : new StringDecoder());
+        return handlers;
+    }
+
+    /**
+     * 连接参数中配置的协议
+     *
+     * @return 协议，TCP等未使用帧解码器的协议返回TEXT
+     */
+    private WireProtocol configuredProtocol() {
+        if (PROTOCOL_MLLP.equalsIgnoreCase(protocol)) {
+            return WireProtocol.MLLP;
+        }
+        if (PROTOCOL_ASTM.equalsIgnoreCase(protocol)) {
+            return WireProtocol.ASTM;
+        }
+        return WireProtocol.TEXT;
+    }
+
+    /**
+     * 按配置的协议确定消息类型，AUTO协议的连接在识别后单独记录
+     *
+     * @return 消息类型，无法确定时返回null
+     */
+    @Override
+    protected String defaultMessageType() {
+        return configuredProtocol().getMessageType();
+    }
+
+    private ConnectionTimeouts connectionTimeouts() {
+        return timeouts != null ? timeouts : transport().defaultTimeouts();
+    }
+
+    /**
+     * 获取共享的Netty传输服务
+     *
+     * @return 传输服务
+     */
+    protected NettyTransportService transport() {
+        if (transportService == null) {
+            transportService = NettyTransportService.getDefault();
+        }
+        return transportService;
+    }
+
+    /**
+     * 按当前背压状态设置新通道的autoRead
+     * 与setReadingEnabled持有同一把锁，避免新通道错过暂停或恢复通知
+     *
+     * @param channel 新建立的通道
+     */
+    protected void applyReadState(Channel channel) {
+        synchronized (readStateLock) {
+            channel.config().setAutoRead(!isReadingPaused());
+        }
     }
 
     /**
      * 安全关闭Channel
+     * 在通道自己的EventLoop中调用时（如处理器中断开连接）只发起关闭，不等待完成
      *
      * @param channel 要关闭的Channel
      * @param channelName 通道名称(用于日志)
      */
     protected void closeChannel(Channel channel, String channelName) {
-        if (channel != null && channel.isActive()) {
+        if (channel != null && channel.isOpen()) {
+            if (channel.eventLoop().inEventLoop()) {
+                channel.close();
+                return;
+            }
             try {
                 channel.close().sync();
                 log.debug("{} 已关闭", channelName);
@@ -79,14 +238,4 @@ public abstract class AbstractNettyAdapter extends AbstractCommunicationAdapter
     protected boolean isChannelValid(Channel channel) {
         return channel != null && channel.isActive() && channel.isWritable();
     }
-
-    /**
-     * 检查EventLoopGroup是否有效
-     *
-     * @param group 要检查的EventLoopGroup
-     * @return 是否有效
-     */
-    protected boolean isEventLoopGroupValid(EventLoopGroup group) {
-        return group != null && !group.isShutdown() && !group.isTerminated();
-    }
 }
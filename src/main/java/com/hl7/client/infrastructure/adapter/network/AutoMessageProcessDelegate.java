@@ -6,7 +6,11 @@ import com.hl7.client.domain.model.Message;
 import com.hl7.client.domain.model.MessageStatus;
 import com.hl7.client.domain.service.MessageParserFactory;
 import com.hl7.client.domain.service.MessageProcessService;
+import com.hl7.client.infrastructure.adapter.common.BackpressureController;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
 import com.hl7.client.infrastructure.adapter.network.exception.MessageHandlingException;
+import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategy;
 import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategyManager;
 import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
 import lombok.RequiredArgsConstructor;
@@ -31,6 +35,7 @@ public class AutoMessageProcessDelegate implements MessageHandlerDelegate {
     private final MessageProcessService messageProcessService;
     private final MessageParserFactory messageParserFactory;
     private final MessageCompletionStrategyManager strategyManager;
+    private final BackpressureController backpressureController;
 
     @Autowired
     @Lazy
@@ -84,6 +89,14 @@ public class AutoMessageProcessDelegate implements MessageHandlerDelegate {
 
     @Override
     public boolean processMessage(Device device, String rawMessage) {
+        return processMessage(device, rawMessage, null);
+    }
+
+    /**
+     * 处理消息，连接已识别出消息类型时不再逐条按内容判断
+     */
+    @Override
+    public boolean processMessage(Device device, String rawMessage, String messageType) {
         if (device == null) {
             log.error("设备为null，无法处理消息");
             return false;
@@ -98,11 +111,14 @@ public class AutoMessageProcessDelegate implements MessageHandlerDelegate {
                     .deviceId(device.getId())
                     .deviceModel(device.getModel())
                     .rawContent(rawMessage)
-                    .messageType(detectMessageType(rawMessage))
+                    .messageType(messageType != null ? messageType : detectMessageType(rawMessage))
                     .receivedTime(LocalDateTime.now())
                     .status(MessageStatus.NEW.name())
                     .build();
 
+            // 处理完成前计入待处理消息数，积压超过高水位时适配器暂停读取
+            backpressureController.acquire();
+
             // 通过MessageProcessor处理消息，确保它被正确添加到队列和处理后的消息集合中
             CompletableFuture.runAsync(() -> {
                 try {
@@ -112,6 +128,8 @@ public class AutoMessageProcessDelegate implements MessageHandlerDelegate {
                     log.info("消息 {} 已通过MessageProcessor自动处理", message.getId());
                 } catch (Exception e) {
                     log.error("通过MessageProcessor自动处理消息过程中发生异常: {}", e.getMessage(), e);
+                } finally {
+                    backpressureController.release();
                 }
             });
 
@@ -142,4 +160,23 @@ public class AutoMessageProcessDelegate implements MessageHandlerDelegate {
             throw new MessageHandlingException("检查消息完整性失败", e);
         }
     }
+
+    /**
+     * 增量检查新到达的数据，由设备型号对应的策略只扫描新数据
+     * 策略在连接首次收到数据时解析并记在分帧状态上，之后每次读取不再按型号查找
+     */
+    @Override
+    public FrameResult onData(Device device, CharSequence chunk, FrameState state) {
+        try {
+            MessageCompletionStrategy strategy = state.getCompletionStrategy();
+            if (strategy == null) {
+                strategy = strategyManager.getStrategy(device.getModel());
+                state.setCompletionStrategy(strategy);
+            }
+            return strategy.onData(chunk, state, device);
+        } catch (Exception e) {
+            log.error("检查消息完整性时发生异常: {}", e.getMessage(), e);
+            throw new MessageHandlingException("检查消息完整性失败", e);
+        }
+    }
 }
@@ -2,31 +2,38 @@ package com.hl7.client.infrastructure.adapter.network;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collections;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 客户端连接管理器
- * 负责管理已连接的客户端通道
+ * 负责管理已连接的客户端通道，并以非阻塞方式向所有客户端群发
  */
 @Slf4j
 public class ClientConnectionManager {
 
-    private final Set<Channel> connectedClients;
-    public static final AttributeKey<Set<Channel>> CONNECTED_CLIENTS =
-            AttributeKey.newInstance("CONNECTED_CLIENTS");
+    /**
+     * 只向可写的通道群发：写缓冲区超过高水位的慢客户端跳过本次发送，不拖慢其他客户端
+     */
+    private static final ChannelMatcher WRITABLE = Channel::isWritable;
+
+    private final ChannelGroup connectedClients;
+    /** 与NettyMessageHandler共用同一个键，避免先加载客户端处理器时重复创建同名常量 */
+    public static final AttributeKey<Set<Channel>> CONNECTED_CLIENTS = NettyMessageHandler.CONNECTED_CLIENTS;
 
     /**
      * 构造函数
      */
     public ClientConnectionManager() {
-        // 使用线程安全的集合存储客户端连接
-        this.connectedClients = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        // ChannelGroup线程安全，通道关闭时自动移除
+        this.connectedClients = new DefaultChannelGroup("hl7-clients", GlobalEventExecutor.INSTANCE);
     }
 
     /**
@@ -82,11 +89,32 @@ public class ClientConnectionManager {
         }
     }
 
+    /**
+     * 向所有可写的客户端异步群发消息
+     * 所有通道并行写出，立即返回聚合的Future，可从中逐个查看每个通道的发送结果；
+     * 调用方和事件循环都不会被阻塞
+     *
+     * @param message 要发送的消息
+     * @return 聚合的发送结果
+     */
+    public ChannelGroupFuture broadcastAsync(Object message) {
+        for (Channel channel : connectedClients) {
+            if (!channel.isWritable()) {
+                log.warn("客户端 {} 写缓冲区超过高水位，跳过本次发送", channel.remoteAddress());
+            }
+        }
+
+        ChannelGroupFuture future = connectedClients.writeAndFlush(message, WRITABLE);
+        future.addListener(f -> logBroadcastResult((ChannelGroupFuture) f));
+        return future;
+    }
+
     /**
      * 向所有连接的客户端广播消息
+     * 非阻塞：消息交给可写的通道后立即返回，发送结果在后台记录
      *
      * @param message 要广播的消息
-     * @return 是否至少有一个客户端成功接收
+     * @return 是否至少有一个客户端可以接收
      */
     public boolean broadcastToAllClients(String message) {
         if (connectedClients.isEmpty()) {
@@ -94,29 +122,48 @@ public class ClientConnectionManager {
             return false;
         }
 
-        boolean sentToAny = false;
+        if (getWritableClientCount() == 0) {
+            log.warn("无法发送数据：{} 个客户端的写缓冲区均已满", connectedClients.size());
+            return false;
+        }
 
-        // 向所有连接的客户端发送消息
-        for (Channel channel : connectedClients) {
-            if (channel != null && channel.isActive() && channel.isWritable()) {
-                try {
-                    ChannelFuture future = channel.writeAndFlush(message);
-                    future.await(3, TimeUnit.SECONDS); // 等待3秒确保消息发送
-                    if (future.isSuccess()) {
-                        sentToAny = true;
-                        log.debug("成功发送数据到客户端: {}", channel.remoteAddress());
-                    } else {
-                        log.warn("向客户端 {} 发送数据失败: {}",
-                                channel.remoteAddress(),
-                                future.cause() != null ? future.cause().getMessage() : "未知原因");
-                    }
-                } catch (Exception e) {
-                    log.error("向客户端发送数据时发生异常: {}", e.getMessage());
-                }
+        broadcastAsync(message);
+        return true;
+    }
+
+    /**
+     * 记录群发结果
+     *
+     * @param future 聚合的发送结果
+     */
+    private void logBroadcastResult(ChannelGroupFuture future) {
+        int success = 0;
+        int failed = 0;
+        for (ChannelFuture channelFuture : future) {
+            if (channelFuture.isSuccess()) {
+                success++;
+            } else {
+                failed++;
+                log.warn("向客户端 {} 发送数据失败: {}", channelFuture.channel().remoteAddress(),
+                        channelFuture.cause() != null ? channelFuture.cause().getMessage() : "未知原因");
             }
         }
+        log.debug("群发完成，成功: {}，失败: {}", success, failed);
+    }
 
-        return sentToAny;
+    /**
+     * 获取当前可写的客户端数量
+     *
+     * @return 可写客户端数量
+     */
+    public int getWritableClientCount() {
+        int count = 0;
+        for (Channel channel : connectedClients) {
+            if (channel.isWritable()) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -132,16 +179,8 @@ public class ClientConnectionManager {
      * 关闭所有客户端连接
      */
     public void closeAllConnections() {
-        // 创建副本避免并发修改异常
-        for (Channel channel : connectedClients.toArray(new Channel[0])) {
-            try {
-                if (channel.isOpen()) {
-                    channel.close();
-                }
-            } catch (Exception e) {
-                log.warn("关闭客户端连接时出错: {}", e.getMessage());
-            }
-        }
+        // 异步关闭，不等待关闭完成
+        connectedClients.close();
         connectedClients.clear();
         log.info("已关闭所有客户端连接");
     }
@@ -151,7 +190,7 @@ public class ClientConnectionManager {
      *
      * @return 客户端集合
      */
-    public Set<Channel> getConnectedClients() {
+    public ChannelGroup getConnectedClients() {
         return connectedClients;
     }
 }
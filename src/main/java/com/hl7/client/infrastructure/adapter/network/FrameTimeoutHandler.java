@@ -0,0 +1,167 @@
+package com.hl7.client.infrastructure.adapter.network;
+
+import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.network.codec.PartialFrameDecoder;
+import com.hl7.client.infrastructure.adapter.network.config.ConnectionTimeouts;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接超时处理器
+ * 放在帧解码器之前，负责两类超时：
+ * <ul>
+ *     <li>读空闲：前面的IdleStateHandler触发READER_IDLE事件后关闭连接，释放已经失效的连接</li>
+ *     <li>半包：一次读取结束后仍有未完成的帧时，在共享时间轮上登记一个超时；超时前有新数据到达只更新时间戳，
+ *     到期时按剩余时间重新登记，真正超时后丢弃半包或把已收到的数据当作完整消息处理</li>
+ * </ul>
+ * 每个连接最多只有一个登记中的超时，读取路径上只记录一次System.nanoTime()
+ */
+@Slf4j
+public class FrameTimeoutHandler extends ChannelInboundHandlerAdapter implements TimerTask {
+
+    private final Timer timer;
+    private final ConnectionTimeouts timeouts;
+    private final PartialFrameDecoder decoder;
+    private final DeviceAdapter deviceAdapter;
+
+    private ChannelHandlerContext ctx;
+
+    /** 最后一次读取数据的时间（纳秒），只在EventLoop中访问 */
+    private long lastReadNanos;
+
+    /** 登记中的半包超时，只在EventLoop中访问 */
+    private Timeout pendingTimeout;
+
+    /**
+     * 构造函数
+     *
+     * @param timer 共享时间轮
+     * @param timeouts 超时配置
+     * @param decoder 帧解码器，按文本缓冲的TCP协议传null，此时检查通道的FrameState
+     * @param deviceAdapter 设备适配器，FLUSH方式下用于处理半包数据
+     */
+    public FrameTimeoutHandler(Timer timer, ConnectionTimeouts timeouts,
+                               PartialFrameDecoder decoder, DeviceAdapter deviceAdapter) {
+        this.timer = timer;
+        this.timeouts = timeouts;
+        this.decoder = decoder;
+        this.deviceAdapter = deviceAdapter;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        this.lastReadNanos = System.nanoTime();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        lastReadNanos = System.nanoTime();
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        // 后续的解码器和消息处理器已在channelRead中同步处理完本次数据
+        if (pendingTimeout == null && timeouts.getFrameTimeoutSeconds() > 0 && hasPartialFrame()) {
+            pendingTimeout = timer.newTimeout(this, timeouts.getFrameTimeoutNanos(), TimeUnit.NANOSECONDS);
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.READER_IDLE) {
+            log.warn("通道 {} 超过 {} 秒未收到数据，关闭连接", ctx.channel().remoteAddress(),
+                    timeouts.getReadIdleSeconds());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelTimeout();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cancelTimeout();
+    }
+
+    /**
+     * 时间轮线程回调，转回通道的EventLoop检查半包状态
+     */
+    @Override
+    public void run(Timeout timeout) {
+        if (!timeout.isCancelled()) {
+            ctx.executor().execute(this::checkPartialFrame);
+        }
+    }
+
+    /**
+     * 检查半包是否超时，在EventLoop中执行
+     */
+    private void checkPartialFrame() {
+        pendingTimeout = null;
+        if (!ctx.channel().isActive() || !hasPartialFrame()) {
+            return;
+        }
+
+        long idleNanos = System.nanoTime() - lastReadNanos;
+        long remaining = timeouts.getFrameTimeoutNanos() - idleNanos;
+        if (remaining > 0) {
+            // 期间有新数据到达，按剩余时间重新登记
+            pendingTimeout = timer.newTimeout(this, remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        String clientInfo = String.valueOf(ctx.channel().remoteAddress());
+        if (decoder != null) {
+            int discarded = decoder.discardPartialFrame();
+            log.warn("通道 {} 半包超过 {} 秒未完成，丢弃 {} 字节", clientInfo,
+                    timeouts.getFrameTimeoutSeconds(), discarded);
+            return;
+        }
+
+        FrameState frameState = ctx.channel().attr(NettyMessageHandler.FRAME_STATE).get();
+        if (timeouts.getFrameTimeoutAction() == ConnectionTimeouts.FrameTimeoutAction.FLUSH) {
+            log.warn("通道 {} 半包超过 {} 秒未完成，按完整消息处理 {} 字节", clientInfo,
+                    timeouts.getFrameTimeoutSeconds(), frameState.length());
+            String response = deviceAdapter.processFrame(frameState.getBuffer().toString(), frameState);
+            if (response != null) {
+                ctx.writeAndFlush(response + "\r");
+            }
+        } else {
+            log.warn("通道 {} 半包超过 {} 秒未完成，丢弃 {} 字节", clientInfo,
+                    timeouts.getFrameTimeoutSeconds(), frameState.length());
+        }
+        frameState.reset();
+    }
+
+    private boolean hasPartialFrame() {
+        if (decoder != null) {
+            return decoder.hasPartialFrame();
+        }
+        FrameState frameState = ctx.channel().attr(NettyMessageHandler.FRAME_STATE).get();
+        return frameState != null && frameState.length() > 0;
+    }
+
+    private void cancelTimeout() {
+        if (pendingTimeout != null) {
+            pendingTimeout.cancel();
+            pendingTimeout = null;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.hl7.client.infrastructure.adapter.network;
 
 import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
 
 /**
  * 消息处理委托接口
@@ -18,6 +20,18 @@ public interface MessageHandlerDelegate {
      */
     boolean processMessage(Device device, String rawMessage);
 
+    /**
+     * 处理接收到的原始消息，消息类型已由连接的协议确定
+     *
+     * @param device 接收消息的设备
+     * @param rawMessage 原始消息内容
+     * @param messageType 消息类型，null表示需要按消息内容判断
+     * @return 处理是否成功
+     */
+    default boolean processMessage(Device device, String rawMessage, String messageType) {
+        return processMessage(device, rawMessage);
+    }
+
     /**
      * 检查消息是否完整
      *
@@ -26,4 +40,19 @@ public interface MessageHandlerDelegate {
      * @return 消息是否完整
      */
     String isMessageComplete(Message message);
+
+    /**
+     * 增量检查连接上新到达的数据
+     * 新数据已追加到连接缓冲区，实现只需从扫描位置开始检查新数据，
+     * 切出的完整消息从缓冲区中取出，未完成的部分留在缓冲区等待后续数据。
+     * 默认实现兼容旧接口，每次把整个缓冲区交给isMessageComplete检查
+     *
+     * @param device 接收数据的设备
+     * @param chunk 本次新到达的数据
+     * @param state 连接的分帧状态
+     * @return 切出的完整消息和回复内容
+     */
+    default FrameResult onData(Device device, CharSequence chunk, FrameState state) {
+        return FrameResult.fromLegacyCheck(state, device, this::isMessageComplete);
+    }
 }
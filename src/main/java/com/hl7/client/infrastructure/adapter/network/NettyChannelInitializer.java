@@ -47,9 +47,13 @@ public class NettyChannelInitializer extends ChannelInitializer<SocketChannel> {
     protected void initChannel(SocketChannel ch) {
         ChannelPipeline pipeline = ch.pipeline();
 
-        // 添加基础的编解码器
-        pipeline.addLast(new StringDecoder());
-        pipeline.addLast(new StringEncoder());
+        // 添加编解码器，Netty适配器按自身协议选择帧解码方式
+        if (deviceAdapter instanceof AbstractNettyAdapter) {
+            ((AbstractNettyAdapter) deviceAdapter).initFramePipeline(pipeline);
+        } else {
+            pipeline.addLast(new StringDecoder());
+            pipeline.addLast(new StringEncoder());
+        }
 
         // 添加自定义消息处理器
         pipeline.addLast(new NettyMessageHandler(
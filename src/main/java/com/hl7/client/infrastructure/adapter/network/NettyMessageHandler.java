@@ -2,12 +2,16 @@ package com.hl7.client.infrastructure.adapter.network;
 
 import com.hl7.client.domain.model.Device;
 import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.Charset;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.function.Consumer;
@@ -15,9 +19,12 @@ import java.util.function.Consumer;
 /**
  * Netty消息处理器
  * 用于管理Netty通道的消息处理
+ *
+ * 接收两类消息：StringDecoder输出的原始文本片段，按连接缓冲后判断完整性；
+ * 帧解码器（如MllpFrameDecoder）输出的完整帧ByteBuf，只解码一次后直接处理
  */
 @Slf4j
-public class NettyMessageHandler extends SimpleChannelInboundHandler<String> {
+public class NettyMessageHandler extends SimpleChannelInboundHandler<Object> {
 
     /**
      * 连接客户端的通道映射
@@ -25,6 +32,18 @@ public class NettyMessageHandler extends SimpleChannelInboundHandler<String> {
     public static final AttributeKey<Set<Channel>> CONNECTED_CLIENTS =
             AttributeKey.valueOf("CONNECTED_CLIENTS");
 
+    /**
+     * 通道的分帧状态
+     * 每个连接独立缓冲，同一端口上的多台仪器互不干扰
+     */
+    public static final AttributeKey<FrameState> FRAME_STATE =
+            AttributeKey.valueOf("FRAME_STATE");
+
+    /**
+     * 帧解码字符集，与StringDecoder默认字符集保持一致
+     */
+    private static final Charset FRAME_CHARSET = Charset.defaultCharset();
+
     private final BlockingQueue<String> messageQueue;
     private final Consumer<Channel> channelActiveHandler;
     private final Consumer<Channel> channelInactiveHandler;
@@ -59,13 +78,17 @@ public class NettyMessageHandler extends SimpleChannelInboundHandler<String> {
     }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String msg) {
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
         try {
+            // 完整帧只在这里解码一次；ByteBuf由SimpleChannelInboundHandler负责释放
+            boolean completeFrame = msg instanceof ByteBuf;
+            String data = completeFrame ? ((ByteBuf) msg).toString(FRAME_CHARSET) : String.valueOf(msg);
+
             // 记录接收到的消息
             String clientInfo = ctx.channel().remoteAddress() != null ?
                     ctx.channel().remoteAddress().toString() : "未知";
             if (log.isDebugEnabled()) {
-                log.debug("从 {} 接收到消息: {}", clientInfo, msg);
+                log.debug("从 {} 接收到{}: {}", clientInfo, completeFrame ? "完整帧" : "消息", data);
             }
 
             Device device = deviceAdapter.getDevice();
@@ -74,8 +97,11 @@ public class NettyMessageHandler extends SimpleChannelInboundHandler<String> {
                 return;
             }
 
-            // 使用消息处理委托处理消息
-            String response = deviceAdapter.processReceivedData(msg);
+            // 使用通道自己的分帧状态处理消息
+            FrameState frameState = frameState(ctx.channel());
+            String response = completeFrame
+                    ? deviceAdapter.processFrame(data, frameState)
+                    : deviceAdapter.processReceivedData(data, frameState);
 
             // 如果需要响应，则发送响应
             if (response != null) {
@@ -91,6 +117,7 @@ public class NettyMessageHandler extends SimpleChannelInboundHandler<String> {
         String clientInfo = ctx.channel().remoteAddress() != null ?
                 ctx.channel().remoteAddress().toString() : "未知";
         log.info("通道激活: {}", clientInfo);
+        frameState(ctx.channel());
 
         if (channelActiveHandler != null) {
             channelActiveHandler.accept(ctx.channel());
@@ -102,16 +129,40 @@ public class NettyMessageHandler extends SimpleChannelInboundHandler<String> {
         String clientInfo = ctx.channel().remoteAddress() != null ?
                 ctx.channel().remoteAddress().toString() : "未知";
         log.info("通道断开: {}", clientInfo);
+        FrameState frameState = ctx.channel().attr(FRAME_STATE).getAndSet(null);
+        if (frameState != null && frameState.length() > 0) {
+            log.warn("通道 {} 断开时缓冲区仍有 {} 字节未完成数据，已丢弃", clientInfo, frameState.length());
+        }
 
         if (channelInactiveHandler != null) {
             channelInactiveHandler.accept(ctx.channel());
         }
     }
 
+    /**
+     * 获取通道的分帧状态，不存在时创建，只在通道的EventLoop中调用
+     *
+     * @param channel 通道
+     * @return 分帧状态
+     */
+    static FrameState frameState(Channel channel) {
+        FrameState frameState = channel.attr(FRAME_STATE).get();
+        if (frameState == null) {
+            frameState = new FrameState(String.valueOf(channel.remoteAddress()));
+            channel.attr(FRAME_STATE).set(frameState);
+        }
+        return frameState;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         String clientInfo = ctx.channel().remoteAddress() != null ?
                 ctx.channel().remoteAddress().toString() : "未知";
+        if (cause instanceof TooLongFrameException) {
+            // 超长帧已被解码器丢弃，连接本身仍然可用
+            log.warn("通道 {} 收到超长帧: {}", clientInfo, cause.getMessage());
+            return;
+        }
         log.error("通道 {} 连接异常: {}", clientInfo, cause.getMessage());
         ctx.close();
     }
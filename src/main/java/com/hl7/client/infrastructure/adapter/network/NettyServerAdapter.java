@@ -4,22 +4,17 @@ import com.hl7.client.application.MessageProcessor;
 import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.service.HL7MessageParser;
 import com.hl7.client.infrastructure.config.CommunicationConfig;
-import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.group.ChannelGroupFuture;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,12 +23,10 @@ import java.util.concurrent.TimeUnit;
  */
 @Slf4j
 @Component
-public class NettyServerAdapter extends AbstractNettyAdapter {
+public class NettyServerAdapter extends AbstractNettyAdapter implements ServerListenerRegistry.Listener {
 
     private Channel serverChannel;
-    private EventLoopGroup bossGroup;
-    private EventLoopGroup workerGroup;
-    private final Set<Channel> connectedClients = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final ClientConnectionManager clientConnections = new ClientConnectionManager();
 
     @Autowired
     @Lazy
@@ -45,6 +38,13 @@ public class NettyServerAdapter extends AbstractNettyAdapter {
     @Value("${hl7.netty.auto-process:true}")
     private boolean autoProcessEnabled;
 
+    /**
+     * 共享的端口监听注册表，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private ServerListenerRegistry listenerRegistry;
+
     @Autowired
     public NettyServerAdapter() {
         super();
@@ -58,7 +58,7 @@ public class NettyServerAdapter extends AbstractNettyAdapter {
     public void initializeFromConfig(CommunicationConfig.NetworkConfig config, Device device) {
         super.initialize(device);
         this.port = config.getPort();
-        this.protocol = "TCP"; // 默认使用TCP
+        this.protocol = PROTOCOL_TCP; // 默认使用TCP
     }
 
     /**
@@ -80,7 +80,7 @@ public class NettyServerAdapter extends AbstractNettyAdapter {
             if (paramParts.length >= 2) {
                 this.protocol = paramParts[1];
             } else {
-                this.protocol = "TCP"; // 默认使用TCP
+                this.protocol = PROTOCOL_TCP; // 默认使用TCP
             }
 
             log.info("初始化网络服务器适配器 - 设备: {}, 端口: {}, 协议: {}",
@@ -102,68 +102,24 @@ public class NettyServerAdapter extends AbstractNettyAdapter {
         // 确保之前的服务已关闭
         disconnect();
 
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
         try {
-            ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .option(ChannelOption.SO_BACKLOG, 100)
-                    .childOption(ChannelOption.TCP_NODELAY, true)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast(new StringDecoder());
-                            pipeline.addLast(new StringEncoder());
-                            pipeline.addLast(new NettyMessageHandler(
-                                    receivedMessages,
-                                    // 客户端连接时的回调
-                                    channel -> {
-                                        connectedClients.add(channel);
-                                        log.info("客户端已连接，当前连接数: {}", connectedClients.size());
-                                    },
-                                    // 客户端断开时的回调
-                                    channel -> {
-                                        connectedClients.remove(channel);
-                                        log.info("客户端已断开，当前连接数: {}", connectedClients.size());
-                                    },
-                                    NettyServerAdapter.this, // 设备适配器自身
-                                    messageHandlerDelegate // 消息处理委托
-                            ));
-                        }
-                    });
-
-            // 绑定端口并启动服务器
-            ChannelFuture future = bootstrap.bind(port).sync();
-            if (future.isSuccess()) {
-                serverChannel = future.channel();
-
-                // 修复：初始化连接客户端集合，添加null检查防止NPE
-                try {
-                    Channel parent = serverChannel.parent();
-                    if (parent != null) {
-                        parent.attr(NettyMessageHandler.CONNECTED_CLIENTS).set(connectedClients);
-                        log.debug("成功设置连接客户端集合到父通道");
-                    } else {
-                        log.warn("服务器通道的父通道为null，无法设置连接客户端集合属性");
-                        // 在serverChannel上设置属性，作为备选方案
-                        serverChannel.attr(NettyMessageHandler.CONNECTED_CLIENTS).set(connectedClients);
-                        log.debug("已在服务器通道上设置连接客户端集合属性作为替代");
-                    }
-                } catch (Exception e) {
-                    log.warn("设置连接客户端集合时出错: {}", e.getMessage());
-                    // 备用处理：在服务器通道上设置属性
-                    serverChannel.attr(NettyMessageHandler.CONNECTED_CLIENTS).set(connectedClients);
-                }
-
-                log.info("服务器已启动，监听端口: {}", port);
-                return true;
-            } else {
-                log.error("启动服务器失败: {}", future.cause() != null ? future.cause().getMessage() : "未知原因");
+            // 录制器在绑定前创建，新接受的连接都会被录制
+            startCapture();
+            // 端口绑定在全应用共享的ServerBootstrap上，重连只绑定一个服务器通道
+            if (!listenerRegistry().bind(port, this)) {
                 return false;
             }
+            serverChannel = listenerRegistry().getServerChannel(port);
+            clientConnections.initializeServerChannel(serverChannel);
+
+            startFlowControl();
+            log.info("服务器已启动，监听端口: {}", port);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("启动服务器被中断");
+            disconnect();
+            return false;
         } catch (Exception e) {
             log.error("启动服务器失败: {}", e.getMessage());
             disconnect();
@@ -171,61 +127,108 @@ public class NettyServerAdapter extends AbstractNettyAdapter {
         }
     }
 
+    /**
+     * 初始化本端口上新接受连接的处理器链
+     *
+     * @param ch 客户端通道
+     */
+    @Override
+    public void initChildChannel(SocketChannel ch) {
+        ChannelPipeline pipeline = ch.pipeline();
+        initFramePipeline(pipeline);
+        pipeline.addLast(new NettyMessageHandler(
+                receivedMessages,
+                // 客户端连接时的回调
+                this::onClientConnected,
+                // 客户端断开时的回调
+                clientConnections::removeClient,
+                this, // 设备适配器自身
+                messageHandlerDelegate // 消息处理委托
+        ));
+    }
+
     @Override
     public void disconnect() {
-        // 清空连接的客户端集合
-        connectedClients.clear();
+        stopFlowControl();
 
-        // 关闭服务器通道
-        closeChannel(serverChannel, "服务器通道");
+        // 关闭服务器通道，不再接受新连接
+        listenerRegistry().unbind(port, this);
         serverChannel = null;
 
-        // 关闭事件循环组
-        shutdownEventLoopGroup(bossGroup, "Boss线程组");
-        bossGroup = null;
-
-        shutdownEventLoopGroup(workerGroup, "Worker线程组");
-        workerGroup = null;
+        // 线程组是共享的，已连接的客户端通道需要单独关闭
+        clientConnections.closeAllConnections();
+        stopCapture();
 
         log.info("服务器已停止，端口释放: {}", port);
     }
 
+    /**
+     * 客户端连接时加入连接管理，并按当前背压状态设置是否读取
+     *
+     * @param channel 客户端通道
+     */
+    private void onClientConnected(Channel channel) {
+        clientConnections.addClient(channel);
+        applyReadState(channel);
+    }
+
+    /**
+     * 暂停或恢复所有客户端通道的读取
+     * 关闭autoRead后不再从套接字读取数据，接收窗口填满后由TCP流控让仪器等待
+     *
+     * @param enabled 是否读取
+     */
     @Override
-    public boolean send(String data) {
-        // 广播消息到所有连接的客户端
-        if (connectedClients.isEmpty()) {
-            log.warn("未连接任何客户端，无法发送数据");
-            return false;
+    protected void setReadingEnabled(boolean enabled) {
+        for (Channel channel : clientConnections.getConnectedClients()) {
+            channel.config().setAutoRead(enabled);
         }
+    }
 
-        int successCount = 0;
-        for (Channel channel : connectedClients) {
-            if (isChannelValid(channel)) {
-                try {
-                    ChannelFuture future = channel.writeAndFlush(data);
-                    future.sync();
-                    if (future.isSuccess()) {
-                        successCount++;
-                    }
-                } catch (Exception e) {
-                    log.error("向客户端 {} 发送数据失败: {}", channel.remoteAddress(), e.getMessage());
-                }
-            }
-        }
+    /**
+     * 向所有连接的客户端发送数据
+     * 非阻塞：数据交给可写的客户端通道后立即返回，不等待写出完成，慢客户端不会拖慢其他客户端
+     *
+     * @param data 要发送的数据
+     * @return 是否至少有一个客户端可以接收
+     */
+    @Override
+    public boolean send(String data) {
+        return clientConnections.broadcastToAllClients(data);
+    }
 
-        if (successCount > 0) {
-            log.info("成功向 {}/{} 个客户端发送数据: {}", successCount, connectedClients.size(), data);
-            return true;
-        } else {
-            log.warn("没有成功发送数据到任何客户端");
-            return false;
-        }
+    /**
+     * 向所有连接的客户端异步发送数据
+     *
+     * @param data 要发送的数据
+     * @return 聚合的发送结果，可逐个查看每个客户端的发送情况
+     */
+    public ChannelGroupFuture sendAsync(String data) {
+        return clientConnections.broadcastAsync(data);
+    }
+
+    /**
+     * 获取已连接的客户端数量
+     *
+     * @return 客户端数量
+     */
+    public int getClientCount() {
+        return clientConnections.getClientCount();
+    }
+
+    /**
+     * 获取当前可写的客户端数量，写缓冲区超过高水位的客户端不计入
+     *
+     * @return 可写客户端数量
+     */
+    public int getWritableClientCount() {
+        return clientConnections.getWritableClientCount();
     }
 
     @Override
     public String receive() {
         try {
-            String message = receivedMessages.poll(10, TimeUnit.SECONDS);
+            String message = pollReceivedMessage(10, TimeUnit.SECONDS);
             if (message != null) {
                 log.debug("从客户端接收到数据: {}", message);
             }
@@ -237,10 +240,21 @@ public class NettyServerAdapter extends AbstractNettyAdapter {
         }
     }
 
+    /**
+     * 获取端口监听注册表
+     *
+     * @return 注册表
+     */
+    private ServerListenerRegistry listenerRegistry() {
+        if (listenerRegistry == null) {
+            listenerRegistry = ServerListenerRegistry.getDefault();
+        }
+        return listenerRegistry;
+    }
+
     @Override
     public boolean isConnected() {
-        return serverChannel != null && serverChannel.isActive() &&
-               isEventLoopGroupValid(bossGroup) && isEventLoopGroupValid(workerGroup);
+        return serverChannel != null && serverChannel.isActive() && transport().isRunning();
     }
 
     @Override
@@ -4,16 +4,17 @@ import com.hl7.client.domain.model.Device;
 import com.hl7.client.infrastructure.config.CommunicationConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,12 +26,42 @@ import java.util.concurrent.TimeUnit;
 public class NettySocketAdapter extends AbstractNettyAdapter {
 
     private String host;
-    private Channel channel;
-    private EventLoopGroup group;
+    private volatile Channel channel;
 
     @Value("${hl7.netty.auto-process:true}")
     private boolean autoProcessEnabled;
 
+    /** 单次连接超时（毫秒） */
+    @Value("${hl7.netty.connect-timeout-ms:5000}")
+    private int connectTimeoutMillis = 5000;
+
+    /** 首轮连接尝试次数，达到后connect()返回false，后台继续重连 */
+    @Value("${hl7.netty.connect-attempts:3}")
+    private int connectAttempts = 3;
+
+    /** 首次重连延迟（毫秒），之后每次失败翻倍 */
+    @Value("${hl7.netty.reconnect-initial-delay-ms:500}")
+    private long reconnectInitialDelayMillis = 500;
+
+    /** 最大重连延迟（毫秒） */
+    @Value("${hl7.netty.reconnect-max-delay-ms:30000}")
+    private long reconnectMaxDelayMillis = 30000;
+
+    /** 是否需要保持连接（connectAsync()后为true，disconnect()后为false） */
+    private boolean reconnectEnabled;
+
+    /** 自上次成功连接以来的连续失败次数，决定退避时间 */
+    private int backoffAttempts;
+
+    /** 当前connectResult对应的失败次数 */
+    private int cycleAttempts;
+
+    /** 当前一轮连接的结果 */
+    private CompletableFuture<Boolean> connectResult;
+
+    /** 已安排的重连任务 */
+    private ScheduledFuture<?> reconnectTask;
+
     @Autowired
     public NettySocketAdapter() {
         super();
@@ -45,7 +76,7 @@ public class NettySocketAdapter extends AbstractNettyAdapter {
         super.initialize(device);
         this.host = config.getHost();
         this.port = config.getPort();
-        this.protocol = "TCP"; // 默认使用TCP
+        this.protocol = PROTOCOL_TCP; // 默认使用TCP
     }
 
     /**
@@ -73,7 +104,7 @@ public class NettySocketAdapter extends AbstractNettyAdapter {
                 this.protocol = paramParts[2]; // 设置协议类型到父类的变量中
                 log.info("协议类型: {}", protocol);
             } else {
-                this.protocol = "TCP"; // 默认使用TCP
+                this.protocol = PROTOCOL_TCP; // 默认使用TCP
             }
 
             if (paramParts.length >= 4) {
@@ -92,136 +123,341 @@ public class NettySocketAdapter extends AbstractNettyAdapter {
         }
     }
 
+    /**
+     * 同步连接设备
+     * 等待首轮连接尝试结束，之后的重连在后台继续；连接结果由EventLoop回调，
+     * 在EventLoop线程中等待会阻塞共享的Worker线程组，此时应改用connectAsync()
+     *
+     * @return 连接是否成功
+     */
     @Override
     public boolean connect() {
+        if (inEventLoop()) {
+            throw new IllegalStateException("不能在EventLoop线程中同步连接设备 " + device.getName() + "，请使用connectAsync()");
+        }
+
         // 确保之前的连接已关闭
         disconnect();
 
-        group = new NioEventLoopGroup();
+        return connectAsync().join();
+    }
+
+    /**
+     * 当前线程是否为共享Worker线程组中的EventLoop
+     *
+     * @return 是否在EventLoop线程中
+     */
+    private boolean inEventLoop() {
+        for (EventExecutor executor : transport().workerGroup()) {
+            if (executor.inEventLoop()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 异步连接设备
+     * 连接在共享的EventLoop上进行，调用线程不阻塞；失败后按带随机抖动的指数退避自动重试，
+     * 连续失败 connectAttempts 次时返回的future以false完成，但后台重连会继续直到调用disconnect()
+     *
+     * @return 连接结果，true表示连接成功
+     */
+    @Override
+    public synchronized CompletableFuture<Boolean> connectAsync() {
+        if (isConnected()) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        if (reconnectEnabled) {
+            // 连接或重连已在进行中，不打乱退避节奏，等待下一次成功
+            if (connectResult.isDone()) {
+                connectResult = new CompletableFuture<>();
+                cycleAttempts = 0;
+            }
+            return connectResult;
+        }
+
+        reconnectEnabled = true;
+        backoffAttempts = 0;
+        cycleAttempts = 0;
+        connectResult = new CompletableFuture<>();
+        startFlowControl();
+        startCapture();
+        doConnect();
+        return connectResult;
+    }
+
+    /**
+     * 发起一次连接尝试，结果在EventLoop中回调
+     */
+    private void doConnect() {
+        synchronized (this) {
+            reconnectTask = null;
+            if (!reconnectEnabled) {
+                return;
+            }
+        }
+
+        log.info("尝试连接到 {}:{} (第 {} 次)", host, port, backoffAttempts + 1);
+        ChannelFuture future;
         try {
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.group(group)
-                    .channel(NioSocketChannel.class)
-                    .option(ChannelOption.TCP_NODELAY, true)
-                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000) // 5秒连接超时
-                    .option(ChannelOption.SO_KEEPALIVE, true) // 启用TCP keepalive
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ChannelPipeline pipeline = ch.pipeline();
-                            pipeline.addLast(new StringDecoder());
-                            pipeline.addLast(new StringEncoder());
-                            pipeline.addLast(new NettyMessageHandler(
-                                    receivedMessages,
-                                    null, // 不需要连接回调
-                                    null, // 不需要断开回调
-                                    NettySocketAdapter.this, // 设备适配器自身
-                                    messageHandlerDelegate // 消息处理委托
-                            ));
-                        }
-                    });
-
-            // 添加重试逻辑
-            int maxRetries = 3;
-            int retryCount = 0;
-            boolean connected = false;
-            Exception lastException = null;
-
-            while (!connected && retryCount < maxRetries) {
-                try {
-                    log.info("尝试连接到 {}:{} (尝试 {}/{})", host, port, retryCount + 1, maxRetries);
-                    ChannelFuture future = bootstrap.connect(host, port);
-                    // 等待连接超时或完成
-                    future.await(5000, TimeUnit.MILLISECONDS);
-
-                    if (future.isSuccess()) {
-                        channel = future.channel();
-                        log.info("成功连接到设备 {} 的 {}:{}", device.getName(), host, port);
-                        connected = true;
-                    } else {
-                        Throwable cause = future.cause();
-                        log.warn("连接尝试 {}/{} 失败: {}", retryCount + 1, maxRetries,
-                                cause != null ? cause.getMessage() : "未知原因");
-                        retryCount++;
-
-                        // 重试前等待
-                        if (retryCount < maxRetries) {
-                            Thread.sleep(1000); // 等待1秒后重试
-                        }
-                    }
-                } catch (Exception e) {
-                    lastException = e;
-                    log.warn("连接尝试 {}/{} 抛出异常: {}", retryCount + 1, maxRetries, e.getMessage());
-                    retryCount++;
-
-                    // 重试前等待
-                    if (retryCount < maxRetries) {
-                        try {
-                            Thread.sleep(1000); // 等待1秒后重试
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            break;
-                        }
+            future = createBootstrap().connect(host, port);
+        } catch (Exception e) {
+            onConnectFailed(e);
+            return;
+        }
+        future.addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                onConnected(f.channel());
+            } else {
+                onConnectFailed(f.cause());
+            }
+        });
+    }
+
+    /**
+     * 创建客户端启动器
+     *
+     * @return 启动器
+     */
+    private Bootstrap createBootstrap() {
+        // 使用全应用共享的Worker线程组，重连不再重建线程
+        NettyTransportService transport = transport();
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(transport.workerGroup())
+                .channel(transport.socketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .option(ChannelOption.SO_KEEPALIVE, true) // 启用TCP keepalive
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, transport.writeBufferWaterMark())
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        initFramePipeline(pipeline);
+                        pipeline.addLast(new NettyMessageHandler(
+                                receivedMessages,
+                                null, // 不需要连接回调
+                                NettySocketAdapter.this::onChannelInactive, // 断开后安排重连
+                                NettySocketAdapter.this, // 设备适配器自身
+                                messageHandlerDelegate // 消息处理委托
+                        ));
                     }
-                }
+                });
+        return bootstrap;
+    }
+
+    /**
+     * 连接成功
+     *
+     * @param connected 新建立的通道
+     */
+    private void onConnected(Channel connected) {
+        CompletableFuture<Boolean> result;
+        Channel replaced;
+        synchronized (this) {
+            if (!reconnectEnabled) {
+                // 连接过程中已调用disconnect()
+                connected.close();
+                return;
             }
+            replaced = channel;
+            channel = connected;
+            backoffAttempts = 0;
+            cycleAttempts = 0;
+            result = connectResult;
+        }
+        if (replaced != null && replaced != connected) {
+            // 不应同时有两个连接，关闭被替换的通道，它的断开回调因不是当前通道而被忽略
+            log.warn("设备 {} 已有连接，关闭旧通道 {}", device.getName(), replaced);
+            replaced.close();
+        }
+        applyReadState(connected);
+        log.info("成功连接到设备 {} 的 {}:{}", device.getName(), host, port);
+        result.complete(true);
+    }
 
-            if (!connected) {
-                log.error("在 {} 次尝试后无法连接到设备 {}: {}", maxRetries, device.getName(),
-                        lastException != null ? lastException.getMessage() : "未知原因");
-                disconnect();
-                return false;
+    /**
+     * 连接失败，按退避时间安排下一次尝试
+     *
+     * @param cause 失败原因
+     */
+    private void onConnectFailed(Throwable cause) {
+        CompletableFuture<Boolean> exhausted = null;
+        synchronized (this) {
+            if (!reconnectEnabled) {
+                return;
+            }
+            backoffAttempts++;
+            cycleAttempts++;
+            if (cycleAttempts >= connectAttempts && !connectResult.isDone()) {
+                exhausted = connectResult;
             }
+            scheduleReconnect();
+        }
+        log.warn("连接设备 {} 的 {}:{} 失败 (第 {} 次): {}", device.getName(), host, port, backoffAttempts,
+                cause != null ? cause.getMessage() : "未知原因");
+        if (exhausted != null) {
+            log.error("在 {} 次尝试后无法连接到设备 {}，后台继续重连", connectAttempts, device.getName());
+            exhausted.complete(false);
+        }
+    }
 
-            return true;
-        } catch (Exception e) {
-            log.error("连接设备失败: {}", e.getMessage());
-            disconnect();
-            return false;
+    /**
+     * 当前通道断开，未主动断开时安排重连
+     * 已被替换或已关闭的旧通道的断开回调可能在新的连接尝试进行中才到达，直接忽略，不再安排第二次连接
+     *
+     * @param inactive 断开的通道
+     */
+    private void onChannelInactive(Channel inactive) {
+        synchronized (this) {
+            if (inactive != channel) {
+                return;
+            }
+            channel = null;
+            if (!reconnectEnabled || reconnectTask != null) {
+                return;
+            }
+            if (connectResult.isDone()) {
+                connectResult = new CompletableFuture<>();
+                cycleAttempts = 0;
+            }
+            log.warn("设备 {} 的连接已断开，安排重连", device.getName());
+            scheduleReconnect();
         }
     }
 
+    /**
+     * 安排下一次连接尝试，持有对象锁时调用
+     * 延迟为 min(最大延迟, 初始延迟 * 2^失败次数)，实际取其一半加上随机的另一半，避免大量设备同时重连
+     */
+    private void scheduleReconnect() {
+        long delay = Math.min(reconnectMaxDelayMillis,
+                reconnectInitialDelayMillis << Math.min(Math.max(backoffAttempts - 1, 0), 20));
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        log.debug("设备 {} 将在 {}ms 后重连", device.getName(), jittered);
+        reconnectTask = transport().workerGroup().schedule(this::doConnect, jittered, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 设置重连参数
+     *
+     * @param connectAttempts 首轮连接尝试次数，达到后connectAsync()的结果以false完成
+     * @param initialDelayMillis 首次重连延迟（毫秒）
+     * @param maxDelayMillis 最大重连延迟（毫秒）
+     */
+    public void setReconnectBackoff(int connectAttempts, long initialDelayMillis, long maxDelayMillis) {
+        if (connectAttempts <= 0 || initialDelayMillis <= 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("重连参数设置错误");
+        }
+        this.connectAttempts = connectAttempts;
+        this.reconnectInitialDelayMillis = initialDelayMillis;
+        this.reconnectMaxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * 是否处于自动重连中（需要保持连接但当前未连接）
+     *
+     * @return 是否正在重连
+     */
+    public synchronized boolean isReconnecting() {
+        return reconnectEnabled && !isConnected();
+    }
+
     @Override
     public void disconnect() {
-        // 关闭通道
-        closeChannel(channel, "客户端通道");
-        channel = null;
+        Channel current;
+        CompletableFuture<Boolean> pending;
+        synchronized (this) {
+            reconnectEnabled = false;
+            if (reconnectTask != null) {
+                reconnectTask.cancel(false);
+                reconnectTask = null;
+            }
+            current = channel;
+            channel = null;
+            pending = connectResult;
+        }
+        stopFlowControl();
+        if (pending != null) {
+            pending.complete(false);
+        }
 
-        // 关闭事件循环组
-        shutdownEventLoopGroup(group, "客户端线程组");
-        group = null;
+        // 关闭通道，线程组是共享的不需要关闭
+        closeChannel(current, "客户端通道");
+        stopCapture();
 
         log.info("已断开设备 {} 的连接", device.getName());
     }
 
+    /**
+     * 暂停或恢复客户端通道的读取
+     *
+     * @param enabled 是否读取
+     */
+    @Override
+    protected void setReadingEnabled(boolean enabled) {
+        Channel current = channel;
+        if (current != null) {
+            current.config().setAutoRead(enabled);
+        }
+    }
+
+    /**
+     * 发送数据
+     * 写入后立即返回，不等待发送完成，可在EventLoop线程中调用；发送结果在回调中记录，
+     * 需要结果时使用sendAsync()
+     *
+     * @param data 要发送的数据
+     * @return 数据是否已交给通道发送，未连接或写缓冲区已满时返回false
+     */
     @Override
     public boolean send(String data) {
-        if (!isConnected()) {
+        Channel current = channel;
+        if (current == null || !current.isActive()) {
             log.error("发送失败：设备未连接");
             return false;
         }
+        if (!current.isWritable()) {
+            log.warn("发送失败：设备 {} 的写缓冲区已满", device.getName());
+            return false;
+        }
 
-        try {
-            ChannelFuture future = channel.writeAndFlush(data);
-            future.sync();
+        sendAsync(current, data);
+        return true;
+    }
+
+    /**
+     * 异步发送数据
+     *
+     * @param data 要发送的数据
+     * @return 发送结果，未连接时以失败完成
+     */
+    public Future<Void> sendAsync(String data) {
+        Channel current = channel;
+        if (current == null || !current.isActive()) {
+            return transport().workerGroup().next()
+                    .newFailedFuture(new IllegalStateException("设备 " + device.getName() + " 未连接"));
+        }
+        return sendAsync(current, data);
+    }
 
+    private ChannelFuture sendAsync(Channel current, String data) {
+        return current.writeAndFlush(data).addListener((ChannelFutureListener) future -> {
             if (future.isSuccess()) {
                 log.debug("成功发送数据到设备 {} 的 {}:{}", device.getName(), host, port);
-                return true;
             } else {
-                log.error("发送数据失败: {}", future.cause() != null ? future.cause().getMessage() : "未知原因");
-                return false;
+                log.error("发送数据到设备 {} 失败: {}", device.getName(),
+                        future.cause() != null ? future.cause().getMessage() : "未知原因");
             }
-        } catch (Exception e) {
-            log.error("发送数据时发生异常: {}", e.getMessage());
-            return false;
-        }
+        });
     }
 
     @Override
     public String receive() {
         try {
-            String message = receivedMessages.poll(10, TimeUnit.SECONDS);
+            String message = pollReceivedMessage(10, TimeUnit.SECONDS);
             if (message != null) {
                 log.debug("从设备 {} 接收到数据: {}", device.getName(), message);
             }
@@ -235,7 +471,7 @@ public class NettySocketAdapter extends AbstractNettyAdapter {
 
     @Override
     public boolean isConnected() {
-        return channel != null && channel.isActive() && isEventLoopGroupValid(group);
+        return channel != null && channel.isActive();
     }
 
     @Override
@@ -0,0 +1,236 @@
+package com.hl7.client.infrastructure.adapter.network;
+
+import com.hl7.client.infrastructure.adapter.network.config.ConnectionTimeouts;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty传输服务
+ * 全应用共享一组Boss/Worker事件循环，所有服务器模式和客户端模式的设备都注册到这组线程上；
+ * 设备断开、重连只关闭和新建通道，不再重建线程组
+ *
+ * Linux上可用时使用epoll原生传输，否则使用NIO
+ */
+@Slf4j
+@Component
+public class NettyTransportService {
+
+    /** 非Spring环境下使用的默认实例 */
+    private static volatile NettyTransportService defaultInstance;
+
+    /** Boss线程数，负责接受服务器端口上的新连接 */
+    @Value("${hl7.netty.boss-threads:1}")
+    private int bossThreads = 1;
+
+    /** Worker线程数，0表示使用处理器核数 */
+    @Value("${hl7.netty.worker-threads:0}")
+    private int workerThreads = 0;
+
+    /** 是否在可用时使用epoll原生传输 */
+    @Value("${hl7.netty.epoll-enabled:true}")
+    private boolean epollEnabled = true;
+
+    /** 写缓冲区低水位（字节），回落到此值以下通道重新可写 */
+    @Value("${hl7.netty.write-buffer-low-water-mark:32768}")
+    private int writeBufferLowWaterMark = 32 * 1024;
+
+    /** 写缓冲区高水位（字节），超过此值通道变为不可写，群发时跳过 */
+    @Value("${hl7.netty.write-buffer-high-water-mark:65536}")
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /** 默认读空闲超时（秒），超时未收到数据的连接被关闭，0表示不检测 */
+    @Value("${hl7.netty.read-idle-timeout-seconds:0}")
+    private int readIdleTimeoutSeconds = 0;
+
+    /** 默认半包超时（秒），未完成的帧超过此时间没有新数据则按处理方式处理，0表示不检测 */
+    @Value("${hl7.netty.frame-timeout-seconds:60}")
+    private int frameTimeoutSeconds = 60;
+
+    /** 默认半包超时处理方式：DISCARD丢弃，FLUSH当作完整消息处理 */
+    @Value("${hl7.netty.frame-timeout-action:DISCARD}")
+    private ConnectionTimeouts.FrameTimeoutAction frameTimeoutAction = ConnectionTimeouts.FrameTimeoutAction.DISCARD;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private HashedWheelTimer frameTimer;
+
+    @Getter
+    private boolean epoll;
+
+    /**
+     * 获取非Spring环境下的默认实例（如独立运行的测试程序）
+     *
+     * @return 默认传输服务
+     */
+    public static NettyTransportService getDefault() {
+        if (defaultInstance == null) {
+            synchronized (NettyTransportService.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new NettyTransportService();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * 获取Boss线程组，首次使用时创建
+     *
+     * @return Boss线程组
+     */
+    public synchronized EventLoopGroup bossGroup() {
+        if (bossGroup == null) {
+            init();
+        }
+        return bossGroup;
+    }
+
+    /**
+     * 获取Worker线程组，首次使用时创建
+     *
+     * @return Worker线程组
+     */
+    public synchronized EventLoopGroup workerGroup() {
+        if (workerGroup == null) {
+            init();
+        }
+        return workerGroup;
+    }
+
+    /**
+     * 服务器通道类型
+     *
+     * @return 与线程组匹配的服务器通道类型
+     */
+    public synchronized Class<? extends ServerChannel> serverChannelClass() {
+        workerGroup();
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * 客户端通道类型
+     *
+     * @return 与线程组匹配的客户端通道类型
+     */
+    public synchronized Class<? extends SocketChannel> socketChannelClass() {
+        workerGroup();
+        return epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * 通道写缓冲区水位
+     *
+     * @return 写缓冲区水位
+     */
+    public WriteBufferWaterMark writeBufferWaterMark() {
+        return new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark);
+    }
+
+    /**
+     * 默认连接超时配置，设备可在连接参数中覆盖
+     *
+     * @return 超时配置
+     */
+    public ConnectionTimeouts defaultTimeouts() {
+        return ConnectionTimeouts.builder()
+                .readIdleSeconds(readIdleTimeoutSeconds)
+                .frameTimeoutSeconds(frameTimeoutSeconds)
+                .frameTimeoutAction(frameTimeoutAction)
+                .build();
+    }
+
+    /**
+     * 半包超时使用的时间轮，首次使用时创建
+     * 所有连接共用一个时间轮线程，添加和取消超时都是O(1)，精度为100毫秒
+     *
+     * @return 时间轮
+     */
+    public synchronized Timer frameTimer() {
+        if (frameTimer == null) {
+            frameTimer = new HashedWheelTimer(new DefaultThreadFactory("hl7-frame-timer", true),
+                    100, TimeUnit.MILLISECONDS, 512);
+        }
+        return frameTimer;
+    }
+
+    /**
+     * 检查线程组是否可用
+     *
+     * @return 是否可用
+     */
+    public synchronized boolean isRunning() {
+        return workerGroup != null && !workerGroup.isShuttingDown()
+                && bossGroup != null && !bossGroup.isShuttingDown();
+    }
+
+    /**
+     * 创建线程组
+     */
+    private void init() {
+        int workers = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        int bosses = Math.max(1, bossThreads);
+        epoll = epollEnabled && Epoll.isAvailable();
+
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(bosses, new DefaultThreadFactory("hl7-netty-boss"));
+            workerGroup = new EpollEventLoopGroup(workers, new DefaultThreadFactory("hl7-netty-worker"));
+        } else {
+            bossGroup = new NioEventLoopGroup(bosses, new DefaultThreadFactory("hl7-netty-boss"));
+            workerGroup = new NioEventLoopGroup(workers, new DefaultThreadFactory("hl7-netty-worker"));
+        }
+        log.info("Netty传输线程组已创建 - 传输: {}, Boss线程: {}, Worker线程: {}",
+                epoll ? "epoll" : "NIO", bosses, workers);
+    }
+
+    /**
+     * 关闭线程组，应用退出时调用
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        shutdownGroup(bossGroup, "Boss");
+        shutdownGroup(workerGroup, "Worker");
+        bossGroup = null;
+        workerGroup = null;
+        if (frameTimer != null) {
+            frameTimer.stop();
+            frameTimer = null;
+        }
+    }
+
+    /**
+     * 安全关闭EventLoopGroup
+     *
+     * @param group 要关闭的EventLoopGroup
+     * @param groupName 组名称(用于日志)
+     */
+    private void shutdownGroup(EventLoopGroup group, String groupName) {
+        if (group != null && !group.isShutdown()) {
+            try {
+                group.shutdownGracefully(0, 5, TimeUnit.SECONDS).sync();
+                log.debug("{} 线程组已关闭", groupName);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("关闭 {} 线程组时被中断", groupName);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.hl7.client.infrastructure.adapter.network;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务器端口监听注册表
+ * 所有服务器模式设备的监听端口都绑定在同一个ServerBootstrap和共享的Boss/Worker线程组上，
+ * 新连接按本地端口找到对应设备的监听器，由监听器初始化该连接的处理器链。
+ * 设备注册、移除时只需绑定或关闭一个服务器通道，不创建线程，线程数量与监听端口数量无关
+ */
+@Slf4j
+@Component
+public class ServerListenerRegistry {
+
+    /** 非Spring环境下使用的默认实例 */
+    private static volatile ServerListenerRegistry defaultInstance;
+
+    /**
+     * 端口监听器，由服务器模式适配器实现
+     */
+    public interface Listener {
+
+        /**
+         * 初始化该端口上新接受连接的处理器链，在连接的EventLoop中调用
+         *
+         * @param channel 新接受的客户端通道
+         */
+        void initChildChannel(SocketChannel channel);
+    }
+
+    /**
+     * 端口绑定，监听器在绑定前登记，保证绑定后第一个连接就能找到设备
+     */
+    private static final class Binding {
+        private final Listener listener;
+        private volatile Channel serverChannel;
+
+        private Binding(Listener listener) {
+            this.listener = listener;
+        }
+    }
+
+    /** 本地端口到绑定的映射 */
+    private final Map<Integer, Binding> bindings = new ConcurrentHashMap<>();
+
+    /**
+     * 共享的Netty传输服务，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private NettyTransportService transportService;
+
+    private ServerBootstrap bootstrap;
+
+    /**
+     * 获取非Spring环境下的默认实例（如独立运行的测试程序）
+     *
+     * @return 默认注册表
+     */
+    public static ServerListenerRegistry getDefault() {
+        if (defaultInstance == null) {
+            synchronized (ServerListenerRegistry.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new ServerListenerRegistry();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * 绑定监听端口
+     *
+     * @param port 端口号
+     * @param listener 该端口的监听器
+     * @return 是否绑定成功
+     * @throws InterruptedException 等待绑定时被中断
+     */
+    public boolean bind(int port, Listener listener) throws InterruptedException {
+        Binding binding = new Binding(listener);
+        Binding existing = bindings.putIfAbsent(port, binding);
+        if (existing != null) {
+            log.error("端口 {} 已被其他设备监听，无法重复绑定", port);
+            return false;
+        }
+
+        ChannelFuture future = bootstrap().bind(port).await();
+        if (!future.isSuccess()) {
+            bindings.remove(port, binding);
+            log.error("绑定端口 {} 失败: {}", port,
+                    future.cause() != null ? future.cause().getMessage() : "未知原因");
+            return false;
+        }
+
+        binding.serverChannel = future.channel();
+        log.debug("端口 {} 已绑定，当前监听端口数: {}", port, bindings.size());
+        return true;
+    }
+
+    /**
+     * 关闭监听端口，只有绑定该端口的监听器才能关闭
+     * 已接受的连接不受影响，由适配器自行关闭
+     *
+     * @param port 端口号
+     * @param listener 绑定时的监听器
+     */
+    public void unbind(int port, Listener listener) {
+        Binding binding = bindings.get(port);
+        if (binding == null || binding.listener != listener) {
+            return;
+        }
+
+        Channel serverChannel = binding.serverChannel;
+        if (serverChannel != null) {
+            try {
+                serverChannel.close().sync();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("关闭端口 {} 时被中断", port);
+            }
+        }
+        bindings.remove(port, binding);
+        log.debug("端口 {} 已解绑，当前监听端口数: {}", port, bindings.size());
+    }
+
+    /**
+     * 获取端口的服务器通道
+     *
+     * @param port 端口号
+     * @return 服务器通道，未绑定时返回null
+     */
+    public Channel getServerChannel(int port) {
+        Binding binding = bindings.get(port);
+        return binding != null ? binding.serverChannel : null;
+    }
+
+    /**
+     * 获取当前监听的端口
+     *
+     * @return 已绑定端口的有序集合
+     */
+    public Set<Integer> getBoundPorts() {
+        Set<Integer> ports = new TreeSet<>();
+        bindings.forEach((port, binding) -> {
+            if (binding.serverChannel != null && binding.serverChannel.isActive()) {
+                ports.add(port);
+            }
+        });
+        return ports;
+    }
+
+    /**
+     * 获取共享的ServerBootstrap，传输线程组重建后随之重建
+     *
+     * @return 服务器启动器
+     */
+    private synchronized ServerBootstrap bootstrap() {
+        NettyTransportService transport = transport();
+        EventLoopGroup bossGroup = transport.bossGroup();
+        if (bootstrap == null || bootstrap.config().group() != bossGroup) {
+            bootstrap = new ServerBootstrap();
+            bootstrap.group(bossGroup, transport.workerGroup())
+                    .channel(transport.serverChannelClass())
+                    .option(ChannelOption.SO_BACKLOG, 100)
+                    .option(ChannelOption.SO_REUSEADDR, true)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, transport.writeBufferWaterMark())
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            int localPort = ch.localAddress().getPort();
+                            Binding binding = bindings.get(localPort);
+                            if (binding == null) {
+                                log.warn("端口 {} 没有对应的设备监听器，关闭连接 {}", localPort, ch.remoteAddress());
+                                ch.close();
+                                return;
+                            }
+                            binding.listener.initChildChannel(ch);
+                        }
+                    });
+        }
+        return bootstrap;
+    }
+
+    private NettyTransportService transport() {
+        if (transportService == null) {
+            transportService = NettyTransportService.getDefault();
+        }
+        return transportService;
+    }
+}
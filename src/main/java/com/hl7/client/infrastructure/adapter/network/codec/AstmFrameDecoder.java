@@ -0,0 +1,83 @@
+package com.hl7.client.infrastructure.adapter.network.codec;
+
+import com.hl7.client.infrastructure.adapter.common.AstmLinkLayer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * ASTM帧解码器
+ * 将每个通道的数据逐字节交给 {@link AstmLinkLayer}，直接回复ENQ和数据帧的ACK/NAK，
+ * 会话结束（EOT）后向后续处理器输出一条完整消息
+ */
+@Slf4j
+public class AstmFrameDecoder extends ByteToMessageDecoder implements PartialFrameDecoder {
+
+    private static final ByteBuf ACK_BUF = Unpooled.unreleasableBuffer(
+            Unpooled.wrappedBuffer(new byte[]{AstmLinkLayer.ACK}));
+
+    private static final ByteBuf NAK_BUF = Unpooled.unreleasableBuffer(
+            Unpooled.wrappedBuffer(new byte[]{AstmLinkLayer.NAK}));
+
+    private final AstmLinkLayer linkLayer;
+
+    /**
+     * 构造函数
+     *
+     * @param maxMessageLength 单个会话消息的最大长度（字节）
+     */
+    public AstmFrameDecoder(int maxMessageLength) {
+        this.linkLayer = new AstmLinkLayer(maxMessageLength);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        boolean replied = false;
+        int end = in.writerIndex();
+        for (int i = in.readerIndex(); i < end; i++) {
+            byte reply = linkLayer.accept(in.getByte(i));
+            if (reply != AstmLinkLayer.NO_REPLY) {
+                ctx.write((reply == AstmLinkLayer.ACK ? ACK_BUF : NAK_BUF).duplicate());
+                replied = true;
+            }
+            byte[] message = linkLayer.pollMessage();
+            if (message != null) {
+                out.add(Unpooled.wrappedBuffer(message));
+            }
+        }
+        in.readerIndex(end);
+
+        if (replied) {
+            ctx.flush();
+        }
+    }
+
+    /**
+     * 会话已开始（收到ENQ或数据帧）但尚未收到EOT
+     */
+    @Override
+    public boolean hasPartialFrame() {
+        return linkLayer.isInSession();
+    }
+
+    @Override
+    public int discardPartialFrame() {
+        int discarded = linkLayer.getBufferedLength();
+        linkLayer.reset();
+        return discarded;
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) {
+        if (linkLayer.isInSession()) {
+            log.warn("通道 {} 关闭时ASTM会话未结束，丢弃未完成数据", ctx.channel().remoteAddress());
+        }
+        log.debug("通道 {} ASTM帧统计 - 接受: {}, 拒绝: {}", ctx.channel().remoteAddress(),
+                linkLayer.getAcceptedFrames(), linkLayer.getRejectedFrames());
+        linkLayer.reset();
+    }
+}
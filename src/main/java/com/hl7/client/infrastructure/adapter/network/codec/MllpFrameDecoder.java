@@ -0,0 +1,165 @@
+package com.hl7.client.infrastructure.adapter.network.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * MLLP帧解码器
+ * 直接在ByteBuf上查找 &lt;SB&gt;(0x0B) ... &lt;EB&gt;&lt;CR&gt;(0x1C 0x0D) 边界，
+ * 每个完整帧输出一个去掉帧头帧尾的retainedSlice，不复制数据，由后续处理器一次性解码为文本
+ *
+ * 未完成的帧会记住已扫描的位置，后续数据到达时只扫描新增部分，整体开销与消息长度成线性关系。
+ * 超过最大帧长度的数据直接跳过直到下一个结束符，并向后续处理器传递TooLongFrameException
+ */
+@Slf4j
+public class MllpFrameDecoder extends ByteToMessageDecoder implements PartialFrameDecoder {
+
+    /** 帧起始符 &lt;SB&gt; */
+    public static final byte START_BLOCK = 0x0B;
+
+    /** 帧结束符 &lt;EB&gt; */
+    public static final byte END_BLOCK = 0x1C;
+
+    /** 帧结束后的回车符 */
+    public static final byte CARRIAGE_RETURN = 0x0D;
+
+    private final int maxFrameLength;
+
+    /** 当前帧已扫描过的字节数（相对帧起始符），下次从这里继续查找结束符 */
+    private int scanOffset;
+
+    /** 是否正在丢弃超长帧 */
+    private boolean discarding;
+
+    /**
+     * 构造函数
+     *
+     * @param maxFrameLength 最大帧长度（字节，不含帧头帧尾）
+     */
+    public MllpFrameDecoder(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("最大帧长度必须大于0: " + maxFrameLength);
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (discarding && !discardTooLongFrame(in)) {
+            return;
+        }
+
+        while (in.isReadable()) {
+            int start = in.readerIndex();
+            if (in.getByte(start) != START_BLOCK) {
+                // 跳过帧之间的无效数据
+                int next = in.indexOf(start, in.writerIndex(), START_BLOCK);
+                int skipped = (next < 0 ? in.writerIndex() : next) - start;
+                log.debug("跳过 {} 字节帧外数据", skipped);
+                in.skipBytes(skipped);
+                scanOffset = 0;
+                continue;
+            }
+
+            int end = findEndBlock(in, start + Math.max(1, scanOffset));
+            if (end < 0) {
+                int buffered = in.writerIndex() - start - 1;
+                if (buffered > maxFrameLength) {
+                    // 与discardTooLongFrame相同，保留可能跨读取边界的结束符
+                    int keep = in.getByte(in.writerIndex() - 1) == END_BLOCK ? 1 : 0;
+                    in.skipBytes(in.readableBytes() - keep);
+                    scanOffset = 0;
+                    discarding = true;
+                    fail(ctx, buffered);
+                    return;
+                }
+                // 最后一个字节可能是尚未跟上回车符的结束符，下次需要重新检查
+                scanOffset = Math.max(1, in.writerIndex() - start - 1);
+                return;
+            }
+
+            int frameLength = end - start - 1;
+            scanOffset = 0;
+            if (frameLength > maxFrameLength) {
+                in.readerIndex(end + 2);
+                fail(ctx, frameLength);
+                continue;
+            }
+
+            out.add(in.retainedSlice(start + 1, frameLength));
+            in.readerIndex(end + 2);
+        }
+    }
+
+    @Override
+    public boolean hasPartialFrame() {
+        return discarding || actualReadableBytes() > 0;
+    }
+
+    @Override
+    public int discardPartialFrame() {
+        int discarded = actualReadableBytes();
+        internalBuffer().skipBytes(discarded);
+        scanOffset = 0;
+        discarding = false;
+        return discarded;
+    }
+
+    /**
+     * 通知后续处理器帧超长
+     *
+     * @param ctx 通道上下文
+     * @param length 已读取的帧长度
+     */
+    private void fail(ChannelHandlerContext ctx, int length) {
+        ctx.fireExceptionCaught(new TooLongFrameException(
+                "MLLP帧长度 " + length + " 超过限制 " + maxFrameLength + " 字节，已丢弃"));
+    }
+
+    /**
+     * 丢弃超长帧的剩余数据，直到遇到结束符
+     *
+     * @param in 输入缓冲区
+     * @return 是否已找到结束符并退出丢弃状态
+     */
+    private boolean discardTooLongFrame(ByteBuf in) {
+        int end = findEndBlock(in, in.readerIndex());
+        if (end < 0) {
+            // 保留可能跨读取边界的结束符
+            int keep = in.isReadable() && in.getByte(in.writerIndex() - 1) == END_BLOCK ? 1 : 0;
+            in.skipBytes(in.readableBytes() - keep);
+            return false;
+        }
+        in.readerIndex(end + 2);
+        discarding = false;
+        return true;
+    }
+
+    /**
+     * 从指定位置开始查找 &lt;EB&gt;&lt;CR&gt; 结束符
+     *
+     * @param in 输入缓冲区
+     * @param fromIndex 起始位置
+     * @return 结束符 &lt;EB&gt; 的位置，未找到返回-1
+     */
+    private static int findEndBlock(ByteBuf in, int fromIndex) {
+        int writerIndex = in.writerIndex();
+        int index = fromIndex;
+        while (index < writerIndex) {
+            int eb = in.indexOf(index, writerIndex, END_BLOCK);
+            if (eb < 0 || eb + 1 >= writerIndex) {
+                return -1;
+            }
+            if (in.getByte(eb + 1) == CARRIAGE_RETURN) {
+                return eb;
+            }
+            index = eb + 1;
+        }
+        return -1;
+    }
+}
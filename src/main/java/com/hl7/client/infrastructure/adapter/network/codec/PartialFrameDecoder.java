@@ -0,0 +1,23 @@
+package com.hl7.client.infrastructure.adapter.network.codec;
+
+/**
+ * 可查询未完成帧的帧解码器
+ * 半包超时由 {@link com.hl7.client.infrastructure.adapter.network.FrameTimeoutHandler} 统一处理，
+ * 解码器只需要报告自己是否缓存了不完整的数据并在超时后丢弃；两个方法都只在通道的EventLoop中调用
+ */
+public interface PartialFrameDecoder {
+
+    /**
+     * 是否缓存了未完成的帧
+     *
+     * @return 是否有半包数据
+     */
+    boolean hasPartialFrame();
+
+    /**
+     * 丢弃未完成的帧
+     *
+     * @return 丢弃的字节数
+     */
+    int discardPartialFrame();
+}
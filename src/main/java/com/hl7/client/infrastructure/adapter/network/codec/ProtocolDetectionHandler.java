@@ -0,0 +1,119 @@
+package com.hl7.client.infrastructure.adapter.network.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * 协议识别处理器
+ * 放在处理器链最前面，根据连接收到的前几个字节识别协议：
+ * <ul>
+ *     <li>0x0B：MLLP</li>
+ *     <li>ENQ(0x05)或STX(0x02)：ASTM</li>
+ *     <li>MSH|：不带封装的HL7</li>
+ *     <li>{、[：JSON；&lt;：XML（忽略前导空白）</li>
+ *     <li>其他：普通文本</li>
+ * </ul>
+ * 识别后由安装器在本处理器之后装上对应的解码器，然后移除自身，已缓存的字节原样交给新解码器。
+ * 每个连接只识别一次，同一端口可以接入不同协议的仪器。
+ * 识别前连接上还没有半包超时处理器，读空闲事件由本处理器关闭连接，不发数据的客户端不会一直占着连接
+ */
+@Slf4j
+public class ProtocolDetectionHandler extends ByteToMessageDecoder {
+
+    private static final byte ENQ = 0x05;
+    private static final byte STX = 0x02;
+    private static final byte[] MSH = {'M', 'S', 'H', '|'};
+
+    /** 识别前最多缓存的字节数，全是空白时超过此长度按普通文本处理 */
+    private static final int MAX_PROBE_BYTES = 64;
+
+    private final BiConsumer<ChannelHandlerContext, WireProtocol> installer;
+
+    /**
+     * 构造函数
+     *
+     * @param installer 协议安装器，参数为本处理器的上下文和识别出的协议，需在该上下文之后添加处理器
+     */
+    public ProtocolDetectionHandler(BiConsumer<ChannelHandlerContext, WireProtocol> installer) {
+        this.installer = installer;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        WireProtocol protocol = detect(in);
+        if (protocol == null) {
+            return;
+        }
+
+        log.debug("通道 {} 识别为 {} 协议", ctx.channel().remoteAddress(), protocol);
+        installer.accept(ctx, protocol);
+        // 移除后ByteToMessageDecoder会把未读字节交给后面新装的解码器
+        ctx.pipeline().remove(this);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.READER_IDLE) {
+            log.warn("通道 {} 识别协议前读空闲超时，关闭连接", ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    /**
+     * 根据已收到的字节识别协议
+     *
+     * @param in 已收到的数据，不移动读索引
+     * @return 识别出的协议，数据不足以判断时返回null
+     */
+    static WireProtocol detect(ByteBuf in) {
+        int start = in.readerIndex();
+        int end = in.writerIndex();
+        if (start == end) {
+            return null;
+        }
+
+        byte first = in.getByte(start);
+        if (first == MllpFrameDecoder.START_BLOCK) {
+            return WireProtocol.MLLP;
+        }
+        if (first == ENQ || first == STX) {
+            return WireProtocol.ASTM;
+        }
+
+        if (first == MSH[0]) {
+            int available = Math.min(end - start, MSH.length);
+            for (int i = 1; i < available; i++) {
+                if (in.getByte(start + i) != MSH[i]) {
+                    return WireProtocol.TEXT;
+                }
+            }
+            return available == MSH.length ? WireProtocol.HL7 : null;
+        }
+
+        // JSON和XML允许前导空白
+        int scanEnd = Math.min(end, start + MAX_PROBE_BYTES);
+        for (int i = start; i < scanEnd; i++) {
+            byte b = in.getByte(i);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                return WireProtocol.JSON;
+            }
+            if (b == '<') {
+                return WireProtocol.XML;
+            }
+            return WireProtocol.TEXT;
+        }
+        return scanEnd - start >= MAX_PROBE_BYTES ? WireProtocol.TEXT : null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.hl7.client.infrastructure.adapter.network.codec;
+
+import lombok.Getter;
+
+/**
+ * 连接上的数据协议
+ * 由ProtocolDetectionHandler根据连接的前几个字节识别，决定安装哪个帧解码器以及消息类型
+ */
+public enum WireProtocol {
+
+    /** HL7 MLLP封装，以0x0B开头 */
+    MLLP("HL7", true),
+
+    /** ASTM E1381低层协议，以ENQ或STX开头 */
+    ASTM("ASTM", true),
+
+    /** 不带MLLP封装的HL7文本，以MSH|开头 */
+    HL7("HL7", false),
+
+    /** JSON文本，以{或[开头 */
+    JSON("JSON", false),
+
+    /** XML文本，以&lt;开头 */
+    XML("XML", false),
+
+    /** 无法识别的文本，消息类型仍按内容逐条判断 */
+    TEXT(null, false);
+
+    /** 消息类型，null表示需要按消息内容判断 */
+    @Getter
+    private final String messageType;
+
+    /** 是否使用帧解码器，否则按文本缓冲后由完整性策略判断消息边界 */
+    @Getter
+    private final boolean framed;
+
+    WireProtocol(String messageType, boolean framed) {
+        this.messageType = messageType;
+        this.framed = framed;
+    }
+}
@@ -0,0 +1,121 @@
+package com.hl7.client.infrastructure.adapter.network.config;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接超时配置
+ * 全局默认值来自配置文件，单台设备可在连接参数末尾用 key=value 段覆盖，例如：
+ * <pre>
+ * 5000:MLLP:SERVER:readIdle=600:frameTimeout=30
+ * 192.168.1.10:6000:TCP:CLIENT:true:frameTimeout=10:onFrameTimeout=FLUSH
+ * </pre>
+ * key=value 段放在原有位置参数之后，按位置解析的代码不受影响
+ */
+@Getter
+@Builder(toBuilder = true)
+@Slf4j
+public class ConnectionTimeouts {
+
+    /** 读空闲超时（秒）参数名 */
+    public static final String READ_IDLE = "readIdle";
+
+    /** 半包超时（秒）参数名 */
+    public static final String FRAME_TIMEOUT = "frameTimeout";
+
+    /** 半包超时处理方式参数名 */
+    public static final String FRAME_TIMEOUT_ACTION = "onFrameTimeout";
+
+    /**
+     * 半包超时处理方式
+     */
+    public enum FrameTimeoutAction {
+        /** 丢弃未完成的数据 */
+        DISCARD,
+        /** 把已收到的数据当作完整消息处理（仅适用于按文本缓冲的TCP协议） */
+        FLUSH
+    }
+
+    /** 读空闲超时（秒），超过此时间未收到任何数据则关闭连接，0表示不检测 */
+    private final int readIdleSeconds;
+
+    /** 半包超时（秒），未完成的帧超过此时间没有新数据则按处理方式处理，0表示不检测 */
+    private final int frameTimeoutSeconds;
+
+    /** 半包超时处理方式 */
+    @Builder.Default
+    private final FrameTimeoutAction frameTimeoutAction = FrameTimeoutAction.DISCARD;
+
+    /**
+     * 判断连接参数段是否为 key=value 选项
+     *
+     * @param part 连接参数中的一段
+     * @return 是否为选项
+     */
+    public static boolean isOption(String part) {
+        return part != null && part.indexOf('=') > 0;
+    }
+
+    /**
+     * 从连接参数解析设备级超时配置，未指定的项使用默认值
+     *
+     * @param params 连接参数字符串
+     * @param defaults 默认配置
+     * @return 超时配置
+     */
+    public static ConnectionTimeouts fromConnectionParams(String params, ConnectionTimeouts defaults) {
+        if (params == null || params.isEmpty()) {
+            return defaults;
+        }
+
+        ConnectionTimeoutsBuilder builder = defaults.toBuilder();
+        for (String part : params.split(":")) {
+            if (!isOption(part)) {
+                continue;
+            }
+            int eq = part.indexOf('=');
+            String key = part.substring(0, eq).trim();
+            String value = part.substring(eq + 1).trim();
+            try {
+                if (READ_IDLE.equalsIgnoreCase(key)) {
+                    builder.readIdleSeconds(parseSeconds(value));
+                } else if (FRAME_TIMEOUT.equalsIgnoreCase(key)) {
+                    builder.frameTimeoutSeconds(parseSeconds(value));
+                } else if (FRAME_TIMEOUT_ACTION.equalsIgnoreCase(key)) {
+                    builder.frameTimeoutAction(FrameTimeoutAction.valueOf(value.toUpperCase()));
+                } else {
+                    log.warn("忽略未知的连接参数选项: {}", part);
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("连接参数选项 {} 格式错误，使用默认值", part);
+            }
+        }
+        return builder.build();
+    }
+
+    private static int parseSeconds(String value) {
+        int seconds = Integer.parseInt(value);
+        if (seconds < 0) {
+            throw new IllegalArgumentException("超时时间不能为负数: " + value);
+        }
+        return seconds;
+    }
+
+    /**
+     * 半包超时（纳秒）
+     *
+     * @return 纳秒数，0表示不检测
+     */
+    public long getFrameTimeoutNanos() {
+        return TimeUnit.SECONDS.toNanos(frameTimeoutSeconds);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionTimeouts(readIdle=%ds, frameTimeout=%ds, onFrameTimeout=%s)",
+                readIdleSeconds, frameTimeoutSeconds, frameTimeoutAction);
+    }
+}
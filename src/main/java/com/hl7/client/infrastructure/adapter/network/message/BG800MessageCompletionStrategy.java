@@ -1,14 +1,18 @@
 package com.hl7.client.infrastructure.adapter.network.message;
 
+import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * BG800设备的消息完整性检查策略
- * 专门用于处理BG800设备的消息完整性检查
+ * 专门用于处理BG800设备的消息完整性检查，按新到达的数据增量扫描，不重复检查已缓冲的内容
  */
 @Component
 @Slf4j
@@ -16,21 +20,19 @@ public class BG800MessageCompletionStrategy implements MessageCompletionStrategy
 
     private static final String DEVICE_MODEL = "BG800";
 
-    // BG800特有的消息结束标记
-    private static final String BG800_MESSAGE_END = "\u001c\r";
+    // ASTM会话控制字符
+    private static final char ENQ = '\u0005';
+    private static final char STX = '\u0002';
+    private static final char ETX = '\u0003';
+    private static final char ETB = '\u0017';
+    private static final char EOT = '\u0004';
 
-    // ASTM消息格式的帧头
-    private static final String ASTM_FRAME_START = "\u0002";
-
-    // ASTM消息格式的帧尾
-    private static final String ASTM_FRAME_END = "\u0003";
+    // 帧尾ETX/ETB之后的校验和与CR长度
+    private static final int FRAME_TRAILER_LENGTH = 3;
 
     // 消息响应
     private static final String ACK_RESPONSE = "\u0006";
 
-    // 检测BG800特定消息格式的正则表达式
-    private static final Pattern BG800_PATTERN = Pattern.compile(".*\u0003[0-9A-F]{2}\r", Pattern.DOTALL);
-
     @Override
     public String isMessageComplete(Message message) {
         if (message == null || message.getRawContent() == null || message.getRawContent().isEmpty()) {
@@ -38,40 +40,96 @@ public class BG800MessageCompletionStrategy implements MessageCompletionStrategy
             return null;
         }
 
-        String content = message.getRawContent();
-
-        // 检查是否是BG800特有的消息格式
-        if (content.contains(ASTM_FRAME_START) && content.contains(ASTM_FRAME_END)) {
-            // 检查是否是完整的ASTM帧
-            if (BG800_PATTERN.matcher(content).matches()) {
-                log.debug("BG800消息完整，发送ACK响应");
-                return ACK_RESPONSE;
-            } else {
-                log.debug("BG800消息不完整，等待更多数据");
-                return null;
+        // 旧接口：把整段内容当作新数据检查一次
+        return MessageCompletionStrategy.checkWhole(this, message);
+    }
+
+    /**
+     * 增量扫描新到达的数据
+     * <ul>
+     *     <li>每个ENQ和每个以ETX/ETB+两位校验和+CR结尾的数据帧回复一个ACK</li>
+     *     <li>收到EOT时，EOT之前的整个会话作为一条消息</li>
+     *     <li>不是以ENQ/STX开头的普通文本，以CR或LF结尾时作为一条消息</li>
+     * </ul>
+     * 帧尾的校验和还没收全时停在ETX处，下次数据到达后从这里继续
+     */
+    @Override
+    public FrameResult onData(CharSequence chunk, FrameState state, Device device) {
+        StringBuilder buffer = state.getBuffer();
+        List<String> frames = null;
+        int acks = 0;
+
+        int i = state.getScanOffset();
+        while (i < buffer.length()) {
+            char c = buffer.charAt(i);
+            if (c == ENQ) {
+                acks++;
+            } else if (c == ETX || c == ETB) {
+                if (i + FRAME_TRAILER_LENGTH >= buffer.length()) {
+                    break;
+                }
+                if (isFrameTrailer(buffer, i)) {
+                    acks++;
+                }
+            } else if (c == EOT) {
+                if (frames == null) {
+                    frames = new ArrayList<>(1);
+                }
+                frames.add(state.takeFrame(i + 1));
+                i++;
+                continue;
             }
+            i++;
         }
-
-        // 检查是否是ENQ请求
-        if (content.equals("\u0005")) {
-            log.debug("接收到ENQ请求，发送ACK响应");
-            return ACK_RESPONSE;
+        state.setScanOffset(i);
+        state.compact();
+
+        // 普通文本没有会话控制字符，以结束符结尾即完整
+        int length = buffer.length();
+        if (length > 0 && !isAstmSession(buffer)) {
+            char last = buffer.charAt(length - 1);
+            if (last == '\r' || last == '\n') {
+                log.debug("消息以标准结束符结尾，完整");
+                if (frames == null) {
+                    frames = new ArrayList<>(1);
+                }
+                frames.add(state.takeAll());
+            }
         }
 
-        // 检查是否是EOT结束
-        if (content.endsWith("\u0004")) {
-            log.debug("接收到EOT结束，消息传输完成");
-            return null;
+        String reply = null;
+        if (acks > 0) {
+            log.debug("BG800回复 {} 个ACK", acks);
+            reply = acks == 1 ? ACK_RESPONSE : repeat(ACK_RESPONSE, acks);
         }
+        return FrameResult.of(frames, reply);
+    }
 
-        // 如果不是BG800特有的格式，使用通用的检查逻辑
-        if (content.endsWith("\r") || content.endsWith("\r\n") || content.endsWith(BG800_MESSAGE_END)) {
-            log.debug("消息以标准结束符结尾，完整");
-            return null;
-        }
+    /**
+     * 判断ETX/ETB之后是否为两位十六进制校验和加CR
+     */
+    private static boolean isFrameTrailer(StringBuilder buffer, int etx) {
+        return isHex(buffer.charAt(etx + 1)) && isHex(buffer.charAt(etx + 2)) && buffer.charAt(etx + 3) == '\r';
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F');
+    }
+
+    /**
+     * 缓冲区是否处于ASTM会话中（以ENQ或STX开头）
+     */
+    private static boolean isAstmSession(StringBuilder buffer) {
+        char first = buffer.charAt(0);
+        return first == ENQ || first == STX;
+    }
 
-        log.debug("消息不完整，等待更多数据");
-        return null;
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
     }
 
     @Override
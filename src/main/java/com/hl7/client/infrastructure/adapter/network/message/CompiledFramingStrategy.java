@@ -0,0 +1,449 @@
+package com.hl7.client.infrastructure.adapter.network.message;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.config.CommunicationConfig;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * 由配置的分帧规则编译出的完整性检查策略
+ * 帧开始、帧结束和请求序列在启动时编译成一个多模式匹配自动机（Aho-Corasick），
+ * 读取路径上每个新字符只做一次查表，自动机状态保存在连接的分帧状态中，跨读取继续匹配
+ */
+@Slf4j
+public class CompiledFramingStrategy implements MessageCompletionStrategy {
+
+    /**
+     * 校验和类型
+     */
+    public enum Checksum {
+        /** 无校验 */
+        NONE(0),
+        /** 模256累加和，两位十六进制 */
+        SUM8(2),
+        /** 异或和，两位十六进制 */
+        XOR8(2);
+
+        @Getter
+        private final int length;
+
+        Checksum(int length) {
+            this.length = length;
+        }
+    }
+
+    /** 字节序列中可以使用的控制字符名 */
+    private static final Map<String, Character> CONTROL_NAMES = new HashMap<>();
+
+    static {
+        String[] names = {"NUL", "SOH", "STX", "ETX", "EOT", "ENQ", "ACK", "BEL", "BS", "HT", "LF", "VT", "FF", "CR",
+                "SO", "SI", "DLE", "DC1", "DC2", "DC3", "DC4", "NAK", "SYN", "ETB", "CAN", "EM", "SUB", "ESC",
+                "FS", "GS", "RS", "US"};
+        for (int i = 0; i < names.length; i++) {
+            CONTROL_NAMES.put(names[i], (char) i);
+        }
+    }
+
+    /** 自动机字母表，规则只允许ASCII字节 */
+    private static final int ALPHABET = 128;
+
+    /** 扫描附加状态：结束序列或长度已确定，等待校验和与尾部到齐，此时扫描位置记录帧体结束位置 */
+    private static final int PENDING_END = -1;
+
+    @Getter
+    private final String deviceModel;
+
+    private final String start;
+    private final List<String> ends;
+    private final int lengthPrefix;
+    private final Checksum checksum;
+    private final String trailer;
+    private final String ack;
+    private final String nak;
+    private final String enqReply;
+    private final boolean includeDelimiters;
+
+    /** 自动机转移表 [状态][字符] */
+    private final int[][] next;
+    /** 状态对应的已匹配长度，帧外丢弃数据时保留可能是帧开始的部分 */
+    private final int[] depth;
+    /** 到达该状态时匹配到帧开始序列 */
+    private final boolean[] startMatched;
+    /** 到达该状态时匹配到的最长结束序列长度，0表示没有 */
+    private final int[] endMatched;
+    /** 到达该状态时匹配到的请求序列长度，0表示没有 */
+    private final int[] enqMatched;
+
+    private CompiledFramingStrategy(String deviceModel, CommunicationConfig.FramingConfig config) {
+        this.deviceModel = deviceModel;
+        this.start = emptyToNull(parseSequence(config.getStart()));
+        this.ends = new ArrayList<>();
+        for (String end : config.getEnd()) {
+            String sequence = emptyToNull(parseSequence(end));
+            if (sequence != null) {
+                ends.add(sequence);
+            }
+        }
+        this.lengthPrefix = config.getLengthPrefix();
+        this.checksum = Checksum.valueOf(config.getChecksum() == null
+                ? Checksum.NONE.name() : config.getChecksum().trim().toUpperCase(Locale.ROOT));
+        this.trailer = parseSequence(config.getTrailer());
+        this.ack = emptyToNull(parseSequence(config.getAck()));
+        this.nak = emptyToNull(parseSequence(config.getNak()));
+        String enq = emptyToNull(parseSequence(config.getEnq()));
+        this.enqReply = emptyToNull(parseSequence(config.getEnqReply()));
+        this.includeDelimiters = config.isIncludeDelimiters();
+
+        if (lengthPrefix < 0 || lengthPrefix > 9) {
+            throw new IllegalArgumentException("长度前缀位数应在0到9之间: " + lengthPrefix);
+        }
+        if (lengthPrefix == 0 && ends.isEmpty()) {
+            throw new IllegalArgumentException("未配置结束序列或长度前缀，无法确定帧边界");
+        }
+
+        // 构建Trie
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        trie.add(newNode());
+        depths.add(0);
+        Map<Integer, Integer> starts = new HashMap<>();
+        Map<Integer, Integer> endLengths = new HashMap<>();
+        Map<Integer, Integer> enqLengths = new HashMap<>();
+        if (start != null) {
+            starts.put(insert(trie, depths, start), start.length());
+        }
+        if (lengthPrefix == 0) {
+            for (String end : ends) {
+                endLengths.merge(insert(trie, depths, end), end.length(), Math::max);
+            }
+        }
+        if (enq != null) {
+            enqLengths.put(insert(trie, depths, enq), enq.length());
+        }
+
+        int states = trie.size();
+        this.next = trie.toArray(new int[states][]);
+        this.depth = new int[states];
+        this.startMatched = new boolean[states];
+        this.endMatched = new int[states];
+        this.enqMatched = new int[states];
+        for (int state = 0; state < states; state++) {
+            depth[state] = depths.get(state);
+            startMatched[state] = starts.containsKey(state);
+            endMatched[state] = endLengths.getOrDefault(state, 0);
+            enqMatched[state] = enqLengths.getOrDefault(state, 0);
+        }
+
+        // 按广度优先计算失败转移，补全为确定自动机，并沿失败链合并匹配结果
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = next[0][c];
+            if (child < 0) {
+                next[0][c] = 0;
+            } else {
+                fail[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fallback = fail[state];
+            startMatched[state] |= startMatched[fallback];
+            endMatched[state] = Math.max(endMatched[state], endMatched[fallback]);
+            enqMatched[state] = Math.max(enqMatched[state], enqMatched[fallback]);
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = next[state][c];
+                if (child < 0) {
+                    next[state][c] = next[fallback][c];
+                } else {
+                    fail[child] = next[fallback][c];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * 编译分帧规则
+     *
+     * @param deviceModel 设备型号
+     * @param config 分帧规则配置
+     * @return 编译后的策略
+     * @throws IllegalArgumentException 规则配置错误时抛出
+     */
+    public static CompiledFramingStrategy compile(String deviceModel, CommunicationConfig.FramingConfig config) {
+        return new CompiledFramingStrategy(deviceModel, config);
+    }
+
+    /**
+     * 解析配置中的字节序列
+     *
+     * @param text 空格分隔的控制字符名、0x十六进制或ASCII文本
+     * @return 对应的字符序列，为空时返回空串
+     * @throws IllegalArgumentException 出现非ASCII字节时抛出
+     */
+    public static String parseSequence(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        StringBuilder sequence = new StringBuilder();
+        for (String token : text.trim().split("\\s+")) {
+            Character control = CONTROL_NAMES.get(token.toUpperCase(Locale.ROOT));
+            if (control != null) {
+                sequence.append(control.charValue());
+            } else if (token.length() > 2 && (token.startsWith("0x") || token.startsWith("0X"))) {
+                sequence.append((char) Integer.parseInt(token.substring(2), 16));
+            } else {
+                sequence.append(token);
+            }
+        }
+        for (int i = 0; i < sequence.length(); i++) {
+            if (sequence.charAt(i) >= ALPHABET) {
+                throw new IllegalArgumentException("分帧序列只能包含ASCII字节: " + text);
+            }
+        }
+        return sequence.toString();
+    }
+
+    /**
+     * 增量分帧
+     * 位置都是缓冲区中的绝对位置，当前帧从state的帧起点开始；切出的帧和帧外数据只移动帧起点，
+     * 扫描结束后压缩一次缓冲区
+     */
+    @Override
+    public FrameResult onData(CharSequence chunk, FrameState state, Device device) {
+        StringBuilder buffer = state.getBuffer();
+        List<String> frames = null;
+        StringBuilder reply = null;
+
+        int i = state.getScanOffset();
+        int s = state.getScanState();
+        int bodyEnd = -1;
+        if (s == PENDING_END) {
+            bodyEnd = i;
+            s = 0;
+        }
+
+        while (true) {
+            int base = state.getFrameStart();
+
+            // 帧体已确定，等待校验和与尾部
+            if (bodyEnd >= 0) {
+                int frameEnd = bodyEnd + checksum.getLength() + trailer.length();
+                if (buffer.length() < frameEnd) {
+                    break;
+                }
+                boolean valid = checksumMatches(buffer, base, bodyEnd);
+                int contentEnd = bodyEnd - (lengthPrefix > 0 ? 0 : endLengthAt(buffer, base, bodyEnd));
+                String raw = state.takeFrame(frameEnd);
+                if (valid) {
+                    String content = includeDelimiters ? raw : raw.substring(contentStart(), contentEnd - base);
+                    if (!content.isEmpty()) {
+                        if (frames == null) {
+                            frames = new ArrayList<>();
+                        }
+                        frames.add(content);
+                    }
+                    reply = appendReply(reply, ack);
+                } else {
+                    log.warn("设备型号 {} 的帧校验和错误，丢弃 {} 字节", deviceModel, raw.length());
+                    reply = appendReply(reply, nak);
+                }
+                bodyEnd = -1;
+                i = frameEnd;
+                s = 0;
+                continue;
+            }
+
+            boolean inFrame = inFrame(buffer, base);
+
+            // 长度前缀：读到长度后直接确定帧体结束位置，不扫描帧体
+            if (lengthPrefix > 0 && inFrame) {
+                int header = base + contentStart();
+                if (buffer.length() < header) {
+                    break;
+                }
+                int bodyLength = parseLength(buffer, header - lengthPrefix, header);
+                if (bodyLength < 0) {
+                    log.warn("设备型号 {} 的长度前缀无效，丢弃 {} 字节", deviceModel, buffer.length() - base);
+                    state.reset();
+                    i = 0;
+                    s = 0;
+                    break;
+                }
+                bodyEnd = header + bodyLength;
+                continue;
+            }
+
+            if (i >= buffer.length()) {
+                break;
+            }
+            char c = buffer.charAt(i++);
+            s = c < ALPHABET ? next[s][c] : 0;
+
+            if (startMatched[s]) {
+                int frameStart = i - start.length();
+                if (frameStart > base) {
+                    if (inFrame) {
+                        log.warn("设备型号 {} 的帧未结束即出现新的帧开始，丢弃 {} 字节", deviceModel, frameStart - base);
+                    }
+                    state.discard(frameStart);
+                }
+                s = 0;
+            } else if (endMatched[s] > 0 && inFrame) {
+                bodyEnd = i;
+                s = 0;
+            } else if (enqMatched[s] > 0 && (!inFrame || (start == null && i - base == enqMatched[s]))) {
+                buffer.delete(i - enqMatched[s], i);
+                i -= enqMatched[s];
+                reply = appendReply(reply, enqReply);
+                s = 0;
+            }
+        }
+
+        // 帧外的数据只保留可能是帧开始的部分
+        if (bodyEnd < 0 && start != null && !inFrame(buffer, state.getFrameStart())
+                && i - state.getFrameStart() > depth[s]) {
+            state.discard(i - depth[s]);
+        }
+
+        if (bodyEnd >= 0) {
+            state.setScanOffset(bodyEnd);
+            state.setScanState(PENDING_END);
+        } else {
+            state.setScanOffset(i);
+            state.setScanState(s);
+        }
+        state.compact();
+        return FrameResult.of(frames, reply != null ? reply.toString() : null);
+    }
+
+    @Override
+    public String isMessageComplete(Message message) {
+        return MessageCompletionStrategy.checkWhole(this, message);
+    }
+
+    @Override
+    public boolean supports(String deviceModel) {
+        return this.deviceModel.equalsIgnoreCase(deviceModel);
+    }
+
+    /**
+     * 配置的规则优先于内置策略
+     */
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    @Override
+    public String getDescription() {
+        return "配置分帧规则(" + deviceModel + ", " + (next.length) + "个状态)";
+    }
+
+    private boolean inFrame(StringBuilder buffer, int base) {
+        if (start == null) {
+            return true;
+        }
+        if (buffer.length() - base < start.length()) {
+            return false;
+        }
+        for (int k = 0; k < start.length(); k++) {
+            if (buffer.charAt(base + k) != start.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 帧体相对帧起点的开始位置：帧开始序列和长度前缀之后
+     */
+    private int contentStart() {
+        return (start != null ? start.length() : 0) + lengthPrefix;
+    }
+
+    /**
+     * 帧体结束处匹配的最长结束序列长度
+     */
+    private int endLengthAt(StringBuilder buffer, int base, int bodyEnd) {
+        int longest = 0;
+        for (String end : ends) {
+            int from = bodyEnd - end.length();
+            if (end.length() > longest && from >= base && end.contentEquals(buffer.subSequence(from, bodyEnd))) {
+                longest = end.length();
+            }
+        }
+        return longest;
+    }
+
+    private boolean checksumMatches(StringBuilder buffer, int base, int bodyEnd) {
+        if (checksum == Checksum.NONE) {
+            return true;
+        }
+        int value = 0;
+        for (int k = base + (start != null ? start.length() : 0); k < bodyEnd; k++) {
+            value = checksum == Checksum.SUM8 ? value + buffer.charAt(k) : value ^ buffer.charAt(k);
+        }
+        value &= 0xFF;
+        int high = Character.digit(buffer.charAt(bodyEnd), 16);
+        int low = Character.digit(buffer.charAt(bodyEnd + 1), 16);
+        return high >= 0 && low >= 0 && (high << 4 | low) == value;
+    }
+
+    private static int parseLength(StringBuilder buffer, int from, int to) {
+        int length = 0;
+        for (int k = from; k < to; k++) {
+            char c = buffer.charAt(k);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            length = length * 10 + (c - '0');
+        }
+        return length;
+    }
+
+    private static StringBuilder appendReply(StringBuilder reply, String sequence) {
+        if (sequence == null) {
+            return reply;
+        }
+        return (reply != null ? reply : new StringBuilder()).append(sequence);
+    }
+
+    private static int insert(List<int[]> trie, List<Integer> depths, String pattern) {
+        int state = 0;
+        for (int k = 0; k < pattern.length(); k++) {
+            char c = pattern.charAt(k);
+            if (trie.get(state)[c] < 0) {
+                trie.add(newNode());
+                depths.add(k + 1);
+                trie.get(state)[c] = trie.size() - 1;
+            }
+            state = trie.get(state)[c];
+        }
+        return state;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    private static String emptyToNull(String sequence) {
+        return sequence.isEmpty() ? null : sequence;
+    }
+}
@@ -1,7 +1,10 @@
 package com.hl7.client.infrastructure.adapter.network.message;
 
+import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.model.Message;
 import com.hl7.client.domain.service.MessageParserFactory;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -21,6 +24,12 @@ public class DefaultMessageCompletionStrategy implements MessageCompletionStrate
         return messageParserFactory.checkMessageCompleteness(message);
     }
 
+    @Override
+    public FrameResult onData(CharSequence chunk, FrameState state, Device device) {
+        // 由设备对应的解析器增量检查，解析器未实现增量接口时按旧方法检查整个缓冲区
+        return messageParserFactory.onData(device, chunk, state);
+    }
+
     @Override
     public boolean supports(String deviceModel) {
         // 默认策略作为兜底策略，支持所有没有特定策略的设备型号
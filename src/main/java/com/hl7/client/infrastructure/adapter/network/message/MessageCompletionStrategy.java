@@ -1,10 +1,16 @@
 package com.hl7.client.infrastructure.adapter.network.message;
 
+import com.hl7.client.domain.model.Device;
 import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
 
 /**
  * 消息完整性检查策略接口
  * 用于支持不同设备型号的消息完整性检查逻辑
+ *
+ * 读取路径调用增量接口onData，只扫描新到达的数据；仅实现了isMessageComplete的旧策略
+ * 由onData的默认实现兼容，每次检查整个缓冲区
  */
 public interface MessageCompletionStrategy {
 
@@ -16,6 +22,38 @@ public interface MessageCompletionStrategy {
      */
     String isMessageComplete(Message message);
 
+    /**
+     * 增量检查新到达的数据
+     * 新数据已追加到state的缓冲区，从state的扫描位置开始检查，检查过的位置记回扫描位置；
+     * 完整消息用state.takeFrame()/takeAll()从缓冲区取出
+     *
+     * @param chunk 本次新到达的数据
+     * @param state 连接的分帧状态
+     * @param device 接收数据的设备，可为null
+     * @return 切出的完整消息和回复内容
+     */
+    default FrameResult onData(CharSequence chunk, FrameState state, Device device) {
+        return FrameResult.fromLegacyCheck(state, device, this::isMessageComplete);
+    }
+
+    /**
+     * 用增量接口检查一段完整内容，供实现了onData的策略实现旧的isMessageComplete
+     *
+     * @param strategy 策略
+     * @param message 要检查的消息
+     * @return 需要回复的内容；切出了完整消息时返回null；既没有完整消息也不需要回复时返回空串
+     */
+    static String checkWhole(MessageCompletionStrategy strategy, Message message) {
+        String content = message.getRawContent();
+        FrameState state = new FrameState(strategy.getDescription());
+        state.getBuffer().append(content);
+        FrameResult result = strategy.onData(content, state, null);
+        if (result.getReply() != null) {
+            return result.getReply();
+        }
+        return result.hasFrames() ? null : "";
+    }
+
     /**
      * 检查策略是否支持指定的设备型号
      *
@@ -1,5 +1,7 @@
 package com.hl7.client.infrastructure.adapter.network.message;
 
+import com.hl7.client.infrastructure.config.CommunicationConfig;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -13,6 +15,7 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * 消息完整性检查策略管理器
  * 负责根据设备型号选择合适的策略
+ * 启动时把communication.devices中配置了分帧规则的型号编译为策略，优先于内置策略使用
  */
 @Slf4j
 @Component
@@ -24,6 +27,13 @@ public class MessageCompletionStrategyManager {
     // 缓存设备型号到策略的映射，提高查找效率
     private final Map<String, MessageCompletionStrategy> strategyCache = new ConcurrentHashMap<>();
 
+    /**
+     * 通信配置，提供按型号配置的分帧规则
+     */
+    @Autowired(required = false)
+    @Setter
+    private CommunicationConfig communicationConfig;
+
     @Autowired
     public MessageCompletionStrategyManager(
             List<MessageCompletionStrategy> strategies,
@@ -38,6 +48,8 @@ public class MessageCompletionStrategyManager {
      */
     @PostConstruct
     public void initialize() {
+        compileConfiguredFraming();
+
         // 对策略列表进行排序，按优先级升序排列
         strategies.sort(Comparator.comparingInt(MessageCompletionStrategy::getPriority));
 
@@ -48,6 +60,28 @@ public class MessageCompletionStrategyManager {
         }
     }
 
+    /**
+     * 编译配置的分帧规则并加入策略列表
+     * 规则错误时记录日志并跳过该型号，不影响其他型号
+     */
+    private void compileConfiguredFraming() {
+        if (communicationConfig == null) {
+            return;
+        }
+        communicationConfig.getDevices().forEach((key, deviceConfig) -> {
+            if (deviceConfig.getFraming() == null) {
+                return;
+            }
+            String model = deviceConfig.getModel() != null && !deviceConfig.getModel().isEmpty()
+                    ? deviceConfig.getModel() : key;
+            try {
+                strategies.add(CompiledFramingStrategy.compile(model, deviceConfig.getFraming()));
+            } catch (IllegalArgumentException e) {
+                log.error("设备型号 {} 的分帧规则配置错误，已忽略: {}", model, e.getMessage());
+            }
+        });
+    }
+
     /**
      * 根据设备型号获取适用的消息完整性检查策略
      *
@@ -0,0 +1,404 @@
+package com.hl7.client.infrastructure.adapter.serial;
+
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 串口多路复用读取服务
+ * 多口串口卡上的所有串口共用固定数量的读取线程和处理线程，线程数不随串口数量增加：
+ * 每个串口固定分配给一个读取线程，读取线程轮询所负责串口的可读字节数，只读取已到达的数据，不会阻塞在某个串口上；
+ * 分帧和链路应答在读取线程上完成，完整消息交给处理线程池，同一串口的消息按到达顺序处理
+ *
+ * 所有串口都没有数据时轮询间隔从poll-interval-micros开始逐次加倍，最长到max-poll-interval-micros，读到数据后恢复；
+ * 空闲的串口卡不会每毫秒查询一遍所有串口的可读字节数。
+ *
+ * 每个串口单独统计读取的字节数、消息数和吞吐，吞吐由读取线程按固定的统计窗口计算，查询统计信息不影响结果。
+ * 读取出错的串口停止读取，isFailed返回true，适配器据此报告连接已断开
+ */
+@Slf4j
+@Component
+public class SerialMultiplexer {
+
+    /** 非Spring环境下使用的默认实例 */
+    private static volatile SerialMultiplexer defaultInstance;
+
+    /** 读取线程数 */
+    @Value("${hl7.serial.mux.reader-threads:2}")
+    private int readerThreads = 2;
+
+    /** 处理线程数 */
+    @Value("${hl7.serial.mux.worker-threads:4}")
+    private int workerThreads = 4;
+
+    /** 所有串口都没有数据时的轮询间隔（微秒） */
+    @Value("${hl7.serial.mux.poll-interval-micros:1000}")
+    private long pollIntervalMicros = 1000;
+
+    /** 持续没有数据时轮询间隔加倍的上限（微秒） */
+    @Value("${hl7.serial.mux.max-poll-interval-micros:20000}")
+    private long maxPollIntervalMicros = 20000;
+
+    /** 吞吐统计窗口 */
+    private static final long STATS_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Poller> pollers = new ArrayList<>();
+    private ExecutorService workers;
+
+    /**
+     * 获取非Spring环境下的默认实例（如独立运行的测试程序）
+     *
+     * @return 默认多路复用服务
+     */
+    public static SerialMultiplexer getDefault() {
+        if (defaultInstance == null) {
+            synchronized (SerialMultiplexer.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new SerialMultiplexer();
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * 创建指定线程数的实例
+     *
+     * @param readerThreads 读取线程数
+     * @param workerThreads 处理线程数
+     */
+    public SerialMultiplexer(int readerThreads, int workerThreads) {
+        this.readerThreads = readerThreads;
+        this.workerThreads = workerThreads;
+    }
+
+    public SerialMultiplexer() {
+    }
+
+    /**
+     * 注册一个串口，由负责串口最少的读取线程轮询
+     *
+     * @param name 串口名称
+     * @param inputStream 串口输入流
+     * @param options 读取配置
+     * @param handler 数据处理接口
+     * @return 串口通道，断开时调用 {@link Channel#close()}
+     */
+    public synchronized Channel register(String name, InputStream inputStream, SerialReadOptions options,
+                                         SerialReader.Handler handler) {
+        start();
+        Poller poller = pollers.get(0);
+        for (Poller candidate : pollers) {
+            if (candidate.channels.size() < poller.channels.size()) {
+                poller = candidate;
+            }
+        }
+        Channel channel = new Channel(name, inputStream, options, handler, poller);
+        poller.channels.add(channel);
+        LockSupport.unpark(poller.thread);
+        log.info("串口 {} 已注册到多路复用读取线程 {}，该线程共负责 {} 个串口", name, poller.index,
+                poller.channels.size());
+        return channel;
+    }
+
+    /**
+     * 启动读取线程和处理线程池，首次注册串口时调用
+     */
+    private void start() {
+        if (!pollers.isEmpty()) {
+            return;
+        }
+        int readers = Math.max(1, readerThreads);
+        int processors = Math.max(1, workerThreads);
+        workers = Executors.newFixedThreadPool(processors, new DefaultThreadFactory("hl7-serial-mux-worker", true));
+        for (int i = 0; i < readers; i++) {
+            Poller poller = new Poller(i);
+            pollers.add(poller);
+            poller.thread.start();
+        }
+        log.info("串口多路复用服务已启动 - 读取线程: {}, 处理线程: {}", readers, processors);
+    }
+
+    /**
+     * 停止读取线程和处理线程池，应用退出时调用
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        for (Poller poller : pollers) {
+            poller.running = false;
+            LockSupport.unpark(poller.thread);
+        }
+        for (Poller poller : pollers) {
+            try {
+                poller.thread.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pollers.clear();
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+    }
+
+    /**
+     * 获取所有串口的读取统计
+     *
+     * @return 统计信息Map
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Object> ports = new LinkedHashMap<>();
+        for (Poller poller : pollers) {
+            for (Channel channel : poller.channels) {
+                ports.put(channel.name, channel.getStatistics());
+            }
+        }
+        stats.put("readerThreads", pollers.size());
+        stats.put("workerThreads", workerThreads);
+        stats.put("ports", ports);
+        return stats;
+    }
+
+    /**
+     * 读取线程，轮询所负责的串口
+     */
+    private final class Poller implements Runnable {
+        private final int index;
+        private final List<Channel> channels = new CopyOnWriteArrayList<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Poller(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "hl7-serial-mux-reader-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long minIdleNanos = TimeUnit.MICROSECONDS.toNanos(pollIntervalMicros);
+            long maxIdleNanos = Math.max(minIdleNanos, TimeUnit.MICROSECONDS.toNanos(maxPollIntervalMicros));
+            long idleNanos = minIdleNanos;
+            long nextSampleNanos = System.nanoTime() + STATS_WINDOW_NANOS;
+            while (running) {
+                boolean readAny = false;
+                for (Channel channel : channels) {
+                    readAny |= channel.poll();
+                }
+                long now = System.nanoTime();
+                if (now - nextSampleNanos >= 0) {
+                    for (Channel channel : channels) {
+                        channel.sample(now);
+                    }
+                    nextSampleNanos = now + STATS_WINDOW_NANOS;
+                }
+                if (readAny) {
+                    idleNanos = minIdleNanos;
+                } else {
+                    LockSupport.parkNanos(this, idleNanos);
+                    idleNanos = Math.min(idleNanos * 2, maxIdleNanos);
+                }
+            }
+        }
+    }
+
+    /**
+     * 已注册的串口
+     */
+    public final class Channel {
+        @Getter
+        private final String name;
+        private final InputStream inputStream;
+        private final SerialReader.Handler handler;
+        private final SerialReadBuffer buffer;
+        private final Poller poller;
+
+        /** 读取线程交给处理线程的完整消息 */
+        private final Queue<String> frames = new ConcurrentLinkedQueue<>();
+
+        /** 是否已提交处理任务，保证同一串口同时只有一个处理线程 */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong framesRead = new AtomicLong();
+        private final long registeredNanos = System.nanoTime();
+
+        /** 当前统计窗口开始时的字节数、消息数和时间，仅读取线程访问 */
+        private long windowStartBytes;
+        private long windowStartFrames;
+        private long windowStartNanos = registeredNanos;
+
+        /** 上一个完整统计窗口的吞吐 */
+        private volatile long bytesPerSecond;
+        private volatile long framesPerSecond;
+
+        private volatile boolean paused;
+        private volatile boolean closed;
+        private volatile boolean failed;
+
+        private Channel(String name, InputStream inputStream, SerialReadOptions options,
+                        SerialReader.Handler handler, Poller poller) {
+            this.name = name;
+            this.inputStream = inputStream;
+            this.handler = handler;
+            this.buffer = new SerialReadBuffer(options);
+            this.poller = poller;
+        }
+
+        /**
+         * 读取已到达的数据并分帧，在所属读取线程上调用
+         *
+         * @return 是否读到数据
+         */
+        private boolean poll() {
+            if (paused || closed || failed) {
+                return false;
+            }
+            try {
+                int available = inputStream.available();
+                if (available <= 0) {
+                    return false;
+                }
+                int n = buffer.read(inputStream, available);
+                if (n <= 0) {
+                    return false;
+                }
+                bytesRead.addAndGet(n);
+                FrameResult result = buffer.frame(handler);
+                if (result.hasFrames()) {
+                    frames.addAll(result.getFrames());
+                    framesRead.addAndGet(result.getFrames().size());
+                    schedule();
+                }
+                return true;
+            } catch (IOException e) {
+                if (!closed) {
+                    failed = true;
+                    log.error("读取串口 {} 数据时出错，停止读取该串口: {}", name, e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log.error("处理串口 {} 数据时出错: {}", name, e.getMessage(), e);
+            }
+            return false;
+        }
+
+        private void schedule() {
+            ExecutorService executor = workers;
+            if (executor != null && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * 在处理线程上按到达顺序处理完整消息
+         */
+        private void drain() {
+            while (true) {
+                String frame;
+                while ((frame = frames.poll()) != null) {
+                    try {
+                        handler.process(frame);
+                    } catch (RuntimeException e) {
+                        log.error("处理串口 {} 消息时出错: {}", name, e.getMessage(), e);
+                    }
+                }
+                scheduled.set(false);
+                // 释放标记后再检查一次，读取线程可能在释放前放入了消息
+                if (frames.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 暂停或恢复读取，暂停期间数据留在驱动缓冲区
+         *
+         * @param enabled 是否读取
+         */
+        public void setReadingEnabled(boolean enabled) {
+            paused = !enabled;
+            if (enabled) {
+                // 读取线程可能处于加长的空闲间隔中，立即唤醒读取驱动缓冲区中积压的数据
+                LockSupport.unpark(poller.thread);
+            }
+        }
+
+        /**
+         * 读取是否已因出错停止
+         *
+         * @return 是否出错
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+        /**
+         * 结束当前统计窗口，计算窗口内的吞吐，在所属读取线程上调用
+         *
+         * @param now 当前时间
+         */
+        private void sample(long now) {
+            long bytes = bytesRead.get();
+            long count = framesRead.get();
+            double seconds = Math.max(1, now - windowStartNanos) / 1e9;
+            bytesPerSecond = (long) ((bytes - windowStartBytes) / seconds);
+            framesPerSecond = (long) ((count - windowStartFrames) / seconds);
+            windowStartBytes = bytes;
+            windowStartFrames = count;
+            windowStartNanos = now;
+        }
+
+        /**
+         * 注销串口，已切出的消息继续处理完
+         */
+        public void close() {
+            closed = true;
+            poller.channels.remove(this);
+            log.info("串口 {} 已从多路复用服务注销，共读取 {} 字节、{} 条消息", name, bytesRead.get(),
+                    framesRead.get());
+        }
+
+        /**
+         * 串口读取统计，吞吐为上一个完整统计窗口的吞吐，多个调用方查询时结果一致
+         *
+         * @return 统计信息Map
+         */
+        public Map<String, Object> getStatistics() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("readerThread", poller.index);
+            stats.put("bytesRead", bytesRead.get());
+            stats.put("framesRead", framesRead.get());
+            stats.put("pendingFrames", frames.size());
+            stats.put("bytesPerSecond", bytesPerSecond);
+            stats.put("framesPerSecond", framesPerSecond);
+            stats.put("statsWindowSeconds", TimeUnit.NANOSECONDS.toSeconds(STATS_WINDOW_NANOS));
+            stats.put("uptimeSeconds", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - registeredNanos));
+            stats.put("paused", paused);
+            stats.put("failed", failed);
+            return stats;
+        }
+    }
+}
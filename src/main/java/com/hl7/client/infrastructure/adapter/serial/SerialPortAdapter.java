@@ -1,17 +1,30 @@
 package com.hl7.client.infrastructure.adapter.serial;
 
 import com.hl7.client.domain.model.Device;
+import com.hl7.client.infrastructure.adapter.capture.CapturingInputStream;
+import com.hl7.client.infrastructure.adapter.capture.CapturingOutputStream;
+import com.hl7.client.infrastructure.adapter.capture.TrafficRecorder;
 import com.hl7.client.infrastructure.adapter.common.AbstractCommunicationAdapter;
+import com.hl7.client.infrastructure.adapter.common.AstmLinkLayer;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
 import com.hl7.client.infrastructure.config.CommunicationConfig;
 import gnu.io.*;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.TooManyListenersException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -22,16 +35,90 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class SerialPortAdapter extends AbstractCommunicationAdapter {
 
+    /**
+     * ASTM E1381低层协议
+     */
+    public static final String PROTOCOL_ASTM = "ASTM";
+
+    @Getter
     private String portName;
     private int baudRate;
     private int dataBits;
     private int stopBits;
     private int parity;
+    @Getter
+    private String protocol;
 
     private SerialPort serialPort;
     private InputStream inputStream;
     private OutputStream outputStream;
 
+    /**
+     * ASTM链路状态机，仅ASTM协议时使用，每次连接重新创建
+     */
+    private AstmLinkLayer astmLinkLayer;
+
+    /**
+     * 读取锁，串口事件线程和恢复读取时的补读不能同时读取输入流
+     */
+    private final Object readLock = new Object();
+
+    /** 专用读取线程接收超时（毫秒），超时后检查是否已断开 */
+    private static final int READER_RECEIVE_TIMEOUT_MS = 100;
+
+    /** 默认读取方式：EVENT在RXTX事件线程上读取，THREAD使用专用读取线程 */
+    @Value("${hl7.serial.read-mode:EVENT}")
+    private SerialReadOptions.ReadMode defaultReadMode = SerialReadOptions.ReadMode.EVENT;
+
+    /** 默认单次读取字节数 */
+    @Value("${hl7.serial.read-size:1024}")
+    private int defaultReadSize = 1024;
+
+    /** 默认字符集，为空时使用系统默认字符集 */
+    @Value("${hl7.serial.charset:}")
+    private String defaultCharset = "";
+
+    /**
+     * 串口读取配置，连接参数中的 key=value 选项覆盖默认值
+     */
+    @Getter
+    private SerialReadOptions readOptions;
+
+    /**
+     * 专用读取线程，仅THREAD读取方式时使用，每次连接重新创建
+     */
+    private SerialReader serialReader;
+
+    /**
+     * 共享的串口多路复用服务，非Spring环境下使用默认实例
+     */
+    @Autowired(required = false)
+    @Setter
+    private SerialMultiplexer serialMultiplexer;
+
+    /**
+     * 在多路复用服务中注册的串口通道，仅MUX读取方式时使用
+     */
+    private SerialMultiplexer.Channel muxChannel;
+
+    /**
+     * 是否已通过配置文件初始化串口参数，此时不再从连接参数解析
+     */
+    private boolean configuredFromFile;
+
+    /** 发送队列容量（条），大块数据超过容量时调用方等待 */
+    @Value("${hl7.serial.write-queue-capacity:256}")
+    private int writeQueueCapacity = 256;
+
+    /** 发送队列已满时调用方最长等待时间（毫秒） */
+    @Value("${hl7.serial.write-offer-timeout-ms:5000}")
+    private long writeOfferTimeoutMillis = 5000;
+
+    /**
+     * 异步发送线程，每次连接重新创建
+     */
+    private SerialWriter serialWriter;
+
     @Autowired
     public SerialPortAdapter() {
         super();
@@ -48,35 +135,70 @@ public class SerialPortAdapter extends AbstractCommunicationAdapter {
         this.dataBits = config.getDataBits();
         this.stopBits = config.getStopBits();
         this.parity = config.getParity();
+        this.protocol = config.getProtocol();
+        this.configuredFromFile = true;
 
         initialize(device);
+
+        SerialReadOptions.SerialReadOptionsBuilder builder = readOptions.toBuilder();
+        if (config.getReadMode() != null && !config.getReadMode().isEmpty()) {
+            builder.readMode(SerialReadOptions.ReadMode.valueOf(config.getReadMode().toUpperCase()));
+        }
+        if (config.getReadSize() > 0) {
+            builder.readSize(SerialReadOptions.parseReadSize(String.valueOf(config.getReadSize())));
+        }
+        if (config.getCharset() != null && !config.getCharset().isEmpty()) {
+            builder.charset(Charset.forName(config.getCharset()));
+        }
+        readOptions = builder.build();
     }
 
     @Override
     public void initialize(Device device) {
         super.initialize(device);
+        readOptions = SerialReadOptions.fromConnectionParams(device.getConnectionParams(), defaultReadOptions());
 
         // 如果已经通过配置初始化，则跳过
-        if (portName != null) {
+        if (configuredFromFile) {
             return;
         }
 
         try {
-            // 从连接参数中解析串口配置 (格式: COM1:9600:8:1:0)
+            // 从连接参数中解析串口配置 (格式: COM1:9600:8:1:0[:ASTM][:key=value...])
             String[] params = device.getConnectionParams().split(":");
             this.portName = params[0];
             this.baudRate = Integer.parseInt(params[1]);
             this.dataBits = Integer.parseInt(params[2]);
             this.stopBits = Integer.parseInt(params[3]);
             this.parity = Integer.parseInt(params[4]);
+            this.protocol = params.length >= 6 && !SerialReadOptions.isOption(params[5]) ? params[5] : null;
         } catch (Exception e) {
             log.error("初始化串口适配器失败: {}", e.getMessage());
-            throw new IllegalArgumentException("连接参数格式错误，应为portName:baudRate:dataBits:stopBits:parity");
+            throw new IllegalArgumentException(
+                "连接参数格式错误，应为portName:baudRate:dataBits:stopBits:parity[:protocol][:key=value...]");
         }
     }
 
+    /**
+     * 配置文件中的默认读取配置
+     *
+     * @return 默认读取配置
+     */
+    private SerialReadOptions defaultReadOptions() {
+        return SerialReadOptions.builder()
+            .readMode(defaultReadMode)
+            .readSize(defaultReadSize)
+            .charset(defaultCharset == null || defaultCharset.isEmpty()
+                ? Charset.defaultCharset() : Charset.forName(defaultCharset))
+            .build();
+    }
+
     @Override
     public boolean connect() {
+        if (serialPort != null) {
+            // 读取或发送出错停止后由监控重连，先释放上次打开的串口和线程
+            disconnect();
+        }
         try {
             // 获取端口标识符
             CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(portName);
@@ -98,12 +220,34 @@ public class SerialPortAdapter extends AbstractCommunicationAdapter {
             // 获取输入输出流
             inputStream = serialPort.getInputStream();
             outputStream = serialPort.getOutputStream();
+            TrafficRecorder recorder = startCapture();
+            if (recorder != null) {
+                // 录制串口收发的原始字节
+                inputStream = new CapturingInputStream(inputStream, recorder, portName);
+                outputStream = new CapturingOutputStream(outputStream, recorder, portName);
+            }
+            serialWriter = new SerialWriter(portName, outputStream, readOptions.getCharset(),
+                writeQueueCapacity, writeOfferTimeoutMillis);
+            serialWriter.start();
 
-            // 添加监听器
-            serialPort.addEventListener(new SerialPortListener());
-            serialPort.notifyOnDataAvailable(true);
+            astmLinkLayer = PROTOCOL_ASTM.equalsIgnoreCase(protocol) ? new AstmLinkLayer(getMaxBufferSize()) : null;
+
+            if (readOptions.getReadMode() == SerialReadOptions.ReadMode.THREAD) {
+                // 专用读取线程阻塞读取，接收超时后检查是否已断开
+                serialPort.enableReceiveTimeout(READER_RECEIVE_TIMEOUT_MS);
+                serialReader = new SerialReader(portName, inputStream, readOptions, new ReaderHandler());
+                serialReader.start();
+            } else if (readOptions.getReadMode() == SerialReadOptions.ReadMode.MUX) {
+                // 共用多路复用服务的读取线程，只读取已到达的数据
+                muxChannel = serialMultiplexer().register(portName, inputStream, readOptions, new ReaderHandler());
+            } else {
+                // 添加监听器
+                serialPort.addEventListener(new SerialPortListener());
+                serialPort.notifyOnDataAvailable(true);
+            }
+            startFlowControl();
 
-            log.info("成功连接到设备 {} 的串口 {}", device.getName(), portName);
+            log.info("成功连接到设备 {} 的串口 {}，{}", device.getName(), portName, readOptions);
             return true;
         } catch (NoSuchPortException e) {
             log.error("串口 {} 不存在", portName);
@@ -116,11 +260,26 @@ public class SerialPortAdapter extends AbstractCommunicationAdapter {
         } catch (TooManyListenersException e) {
             log.error("添加串口监听器失败");
         }
+        stopCapture();
         return false;
     }
 
     @Override
     public void disconnect() {
+        stopFlowControl();
+        if (serialReader != null) {
+            serialReader.stop();
+            serialReader = null;
+        }
+        if (muxChannel != null) {
+            muxChannel.close();
+            muxChannel = null;
+        }
+        if (serialWriter != null) {
+            // 先发完已入队的数据再关闭串口
+            serialWriter.stop();
+            serialWriter = null;
+        }
         if (serialPort != null) {
             serialPort.removeEventListener();
             serialPort.close();
@@ -139,6 +298,7 @@ public class SerialPortAdapter extends AbstractCommunicationAdapter {
         } catch (IOException e) {
             log.error("关闭串口流时出错: {}", e.getMessage());
         }
+        stopCapture();
 
         log.info("已断开设备 {} 的串口连接", device.getName());
     }
@@ -150,21 +310,50 @@ public class SerialPortAdapter extends AbstractCommunicationAdapter {
             return false;
         }
 
-        try {
-            outputStream.write(data.getBytes());
-            outputStream.flush();
-            log.debug("成功发送数据到设备 {} 的串口: {}", device.getName(), data);
-            return true;
-        } catch (IOException e) {
-            log.error("发送数据到设备 {} 的串口失败: {}", device.getName(), e.getMessage());
+        // 入队后由发送线程写出，不在调用方线程上等待串口
+        if (!serialWriter.send(data)) {
+            log.error("发送数据到设备 {} 的串口失败: 发送队列已满或已停止", device.getName());
             return false;
         }
+        log.debug("已提交发送数据到设备 {} 的串口: {}", device.getName(), data);
+        return true;
+    }
+
+    /**
+     * 发送链路应答，优先于排队中的大块数据写出
+     *
+     * @param reply 应答内容
+     */
+    private void sendReply(String reply) {
+        SerialWriter writer = serialWriter;
+        if (writer == null || !writer.reply(reply)) {
+            log.error("发送应答到设备 {} 的串口失败: 设备未连接", device.getName());
+        }
+    }
+
+    /**
+     * 获取统计信息，包括发送队列深度和发送时延
+     *
+     * @return 统计信息Map
+     */
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = super.getStatistics();
+        SerialWriter writer = serialWriter;
+        if (writer != null) {
+            stats.put("writer", writer.getStatistics());
+        }
+        SerialMultiplexer.Channel channel = muxChannel;
+        if (channel != null) {
+            stats.put("mux", channel.getStatistics());
+        }
+        return stats;
     }
 
     @Override
     public String receive() {
         try {
-            String message = receivedMessages.poll(10, TimeUnit.SECONDS);
+            String message = pollReceivedMessage(10, TimeUnit.SECONDS);
             if (message != null) {
                 log.debug("从设备 {} 的串口接收到数据: {}", device.getName(), message);
             }
@@ -176,38 +365,179 @@ public class SerialPortAdapter extends AbstractCommunicationAdapter {
         }
     }
 
+    /**
+     * 串口已打开且读取线程、发送线程仍在运行
+     * 专用读取线程读取出错、发送线程写入出错、多路复用通道读取出错后都会停止，此时返回false，由连接监控断开后重新连接
+     */
     @Override
     public boolean isConnected() {
-        return serialPort != null && inputStream != null && outputStream != null;
+        SerialReader reader = serialReader;
+        SerialWriter writer = serialWriter;
+        SerialMultiplexer.Channel channel = muxChannel;
+        return serialPort != null && inputStream != null && outputStream != null && writer != null
+                && writer.isRunning() && (reader == null || reader.isRunning())
+                && (channel == null || !channel.isFailed());
     }
 
     /**
-     * 串口监听器
-     * 负责接收串口数据并进行处理
+     * 暂停或恢复串口读取
+     * 暂停期间数据留在驱动缓冲区，启用硬件流控时由驱动拉低RTS让仪器等待；
+     * 恢复时若缓冲区已有数据，RXTX不会再次触发DATA_AVAILABLE事件，需要主动读取一次
+     *
+     * @param enabled 是否读取
      */
-    private class SerialPortListener implements SerialPortEventListener {
+    @Override
+    protected void setReadingEnabled(boolean enabled) {
+        SerialReader reader = serialReader;
+        if (reader != null) {
+            reader.setReadingEnabled(enabled);
+            return;
+        }
+        SerialMultiplexer.Channel channel = muxChannel;
+        if (channel != null) {
+            channel.setReadingEnabled(enabled);
+            return;
+        }
+        SerialPort port = serialPort;
+        if (port == null) {
+            return;
+        }
+        port.notifyOnDataAvailable(enabled);
+        if (enabled) {
+            // 不能在持有读取状态锁时读取，交给其他线程补读
+            CompletableFuture.runAsync(this::readAvailableData);
+        }
+    }
 
-        @Override
-        public void serialEvent(SerialPortEvent event) {
-            if (event.getEventType() == SerialPortEvent.DATA_AVAILABLE) {
-                try {
-                    byte[] readBuffer = new byte[1024];
+    /**
+     * 获取串口多路复用服务
+     *
+     * @return 多路复用服务
+     */
+    private SerialMultiplexer serialMultiplexer() {
+        if (serialMultiplexer == null) {
+            serialMultiplexer = SerialMultiplexer.getDefault();
+        }
+        return serialMultiplexer;
+    }
+
+    /**
+     * 读取串口输入流中当前可用的数据并处理
+     */
+    private void readAvailableData() {
+        synchronized (readLock) {
+            try {
+                byte[] readBuffer = new byte[readOptions.getReadSize()];
+                while (inputStream != null && !isReadingPaused() && inputStream.available() > 0) {
                     int numBytes = inputStream.read(readBuffer);
+                    if (numBytes <= 0) {
+                        break;
+                    }
+
+                    if (astmLinkLayer != null) {
+                        processAstmData(readBuffer, numBytes);
+                    } else {
+                        String data = new String(readBuffer, 0, numBytes, readOptions.getCharset());
 
-                    if (numBytes > 0) {
-                        String data = new String(readBuffer, 0, numBytes);
+                        // 新数据到达前先清理超时的半包，避免拼接到下一条消息上
+                        checkAndCleanBuffer();
 
                         // 使用统一的处理方法处理接收到的数据
                         String response = processReceivedData(data);
 
                         // 如果需要回应，则发送回应
                         if (response != null) {
-                            send(response);
+                            sendReply(response);
                         }
                     }
-                } catch (IOException e) {
-                    log.error("读取串口数据时出错: {}", e.getMessage());
                 }
+            } catch (IOException e) {
+                log.error("读取串口数据时出错: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按ASTM低层协议处理读取到的字节
+     * 立即回复ENQ和数据帧的ACK/NAK，会话结束后处理完整消息
+     *
+     * @param data 读取到的数据
+     * @param length 数据长度
+     */
+    private void processAstmData(byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            byte reply = astmLinkLayer.accept(data[i]);
+            if (reply != AstmLinkLayer.NO_REPLY) {
+                serialWriter.reply(reply);
+            }
+            byte[] message = astmLinkLayer.pollMessage();
+            if (message != null) {
+                processFrame(new String(message, readOptions.getCharset()), defaultFrameState);
+            }
+        }
+    }
+
+    /**
+     * 专用读取线程和多路复用服务的数据处理
+     * 分帧和链路应答在读取线程上完成，完整消息在处理线程上处理
+     */
+    private class ReaderHandler implements SerialReader.Handler {
+
+        @Override
+        public FrameResult onText(CharSequence text) {
+            // 新数据到达前先清理超时的半包，避免拼接到下一条消息上
+            checkAndCleanBuffer();
+            return frameReceivedData(text, defaultFrameState);
+        }
+
+        @Override
+        public FrameResult onBytes(byte[] data, int offset, int length) {
+            if (astmLinkLayer == null) {
+                return null;
+            }
+            List<String> messages = null;
+            for (int i = offset; i < offset + length; i++) {
+                byte reply = astmLinkLayer.accept(data[i]);
+                if (reply != AstmLinkLayer.NO_REPLY) {
+                    serialWriter.reply(reply);
+                }
+                byte[] message = astmLinkLayer.pollMessage();
+                if (message != null) {
+                    if (messages == null) {
+                        messages = new ArrayList<>();
+                    }
+                    messages.add(new String(message, readOptions.getCharset()));
+                }
+            }
+            return messages == null ? FrameResult.none() : FrameResult.of(messages, null);
+        }
+
+        @Override
+        public void reply(String reply) {
+            sendReply(reply);
+        }
+
+        @Override
+        public void process(String frame) {
+            if (astmLinkLayer != null) {
+                processFrame(frame, defaultFrameState);
+            } else {
+                processFramedMessage(frame, defaultFrameState);
+            }
+        }
+    }
+
+    /**
+     * 串口监听器
+     * 负责接收串口数据并进行处理
+     */
+    private class SerialPortListener implements SerialPortEventListener {
+
+        @Override
+        public void serialEvent(SerialPortEvent event) {
+            // 暂停读取前已排队的事件直接忽略，数据留在缓冲区等待恢复后读取
+            if (event.getEventType() == SerialPortEvent.DATA_AVAILABLE && !isReadingPaused()) {
+                readAvailableData();
             }
         }
     }
@@ -0,0 +1,90 @@
+package com.hl7.client.infrastructure.adapter.serial;
+
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 串口读取缓冲区
+ * 数据读入复用的字节缓冲区，用复用的解码器解码到复用的字符缓冲区后交给处理接口分帧；
+ * 多字节字符跨两次读取到达时，未解码的尾部字节保留在字节缓冲区中，与下次读取的数据一起解码
+ *
+ * 同一时刻只能由一个线程使用
+ */
+final class SerialReadBuffer {
+
+    private final int readSize;
+    private final byte[] bytes;
+    private final ByteBuffer byteBuffer;
+    private final CharBuffer charBuffer;
+    private final CharsetDecoder decoder;
+
+    /** 最近一次读入的数据在bytes中的位置和长度 */
+    private int lastOffset;
+    private int lastLength;
+
+    SerialReadBuffer(SerialReadOptions options) {
+        this.readSize = options.getReadSize();
+        // 容量留出一次读取的余量，保留未解码的尾部字节后仍能读入一整块
+        this.bytes = new byte[readSize * 2];
+        this.byteBuffer = ByteBuffer.wrap(bytes);
+        this.charBuffer = CharBuffer.allocate((int) Math.ceil(bytes.length * (double) options.getCharset()
+                .newDecoder().maxCharsPerByte()));
+        this.decoder = options.getCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * 从输入流读取一次，最多读取单次读取字节数和limit中的较小值
+     *
+     * @param inputStream 输入流
+     * @param limit 本次最多读取的字节数
+     * @return 读取的字节数，-1表示输入流已结束
+     */
+    int read(InputStream inputStream, int limit) throws IOException {
+        int offset = byteBuffer.position();
+        int n = inputStream.read(bytes, offset, Math.min(Math.min(readSize, limit), bytes.length - offset));
+        lastOffset = offset;
+        lastLength = Math.max(n, 0);
+        return n;
+    }
+
+    /**
+     * 分帧处理最近一次读入的数据，需要回复的内容由处理接口立即发送
+     *
+     * @param handler 处理接口
+     * @return 切出的完整消息
+     */
+    FrameResult frame(SerialReader.Handler handler) {
+        FrameResult result = handler.onBytes(bytes, lastOffset, lastLength);
+        if (result == null) {
+            byteBuffer.position(lastOffset + lastLength);
+            result = decodeAndFrame(handler);
+        }
+        if (result.getReply() != null) {
+            handler.reply(result.getReply());
+        }
+        return result;
+    }
+
+    /**
+     * 解码缓冲区中的字节并分帧，未解码的尾部字节留到下次
+     */
+    private FrameResult decodeAndFrame(SerialReader.Handler handler) {
+        byteBuffer.flip();
+        charBuffer.clear();
+        decoder.decode(byteBuffer, charBuffer, false);
+        byteBuffer.compact();
+        charBuffer.flip();
+        if (!charBuffer.hasRemaining()) {
+            return FrameResult.none();
+        }
+        return handler.onText(charBuffer);
+    }
+}
@@ -0,0 +1,121 @@
+package com.hl7.client.infrastructure.adapter.serial;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.Charset;
+
+/**
+ * 串口读取配置
+ * 全局默认值来自配置文件，单台设备可在连接参数末尾用 key=value 段覆盖，例如：
+ * <pre>
+ * COM1:115200:8:1:0:readMode=THREAD:readSize=4096:charset=GBK
+ * COM2:9600:8:1:0:ASTM:readMode=THREAD
+ * COM3:9600:8:1:0:readMode=MUX
+ * </pre>
+ */
+@Getter
+@Builder(toBuilder = true)
+@Slf4j
+public class SerialReadOptions {
+
+    /** 读取方式参数名 */
+    public static final String READ_MODE = "readMode";
+
+    /** 单次读取字节数参数名 */
+    public static final String READ_SIZE = "readSize";
+
+    /** 字符集参数名 */
+    public static final String CHARSET = "charset";
+
+    /**
+     * 读取方式
+     */
+    public enum ReadMode {
+        /** 在RXTX事件线程上读取并处理（原有方式） */
+        EVENT,
+        /** 每个串口一个专用读取线程，完整消息交给处理线程 */
+        THREAD,
+        /** 所有串口共用多路复用服务的固定读取线程和处理线程，适合大量串口 */
+        MUX
+    }
+
+    /** 读取方式 */
+    @Builder.Default
+    private final ReadMode readMode = ReadMode.EVENT;
+
+    /** 单次读取的最大字节数 */
+    @Builder.Default
+    private final int readSize = 1024;
+
+    /** 解码字符集 */
+    @Builder.Default
+    private final Charset charset = Charset.defaultCharset();
+
+    /**
+     * 判断连接参数段是否为 key=value 选项
+     *
+     * @param part 连接参数中的一段
+     * @return 是否为选项
+     */
+    public static boolean isOption(String part) {
+        return part != null && part.indexOf('=') > 0;
+    }
+
+    /**
+     * 从连接参数解析设备级读取配置，未指定的项使用默认值
+     *
+     * @param params 连接参数字符串
+     * @param defaults 默认配置
+     * @return 读取配置
+     */
+    public static SerialReadOptions fromConnectionParams(String params, SerialReadOptions defaults) {
+        if (params == null || params.isEmpty()) {
+            return defaults;
+        }
+
+        SerialReadOptionsBuilder builder = defaults.toBuilder();
+        for (String part : params.split(":")) {
+            if (!isOption(part)) {
+                continue;
+            }
+            int eq = part.indexOf('=');
+            String key = part.substring(0, eq).trim();
+            String value = part.substring(eq + 1).trim();
+            try {
+                if (READ_MODE.equalsIgnoreCase(key)) {
+                    builder.readMode(ReadMode.valueOf(value.toUpperCase()));
+                } else if (READ_SIZE.equalsIgnoreCase(key)) {
+                    builder.readSize(parseReadSize(value));
+                } else if (CHARSET.equalsIgnoreCase(key)) {
+                    builder.charset(Charset.forName(value));
+                } else {
+                    log.warn("忽略未知的串口参数选项: {}", part);
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("串口参数选项 {} 格式错误，使用默认值", part);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 解析单次读取字节数
+     *
+     * @param value 配置值
+     * @return 字节数
+     */
+    static int parseReadSize(String value) {
+        int size = Integer.parseInt(value);
+        if (size < 16 || size > 1024 * 1024) {
+            throw new IllegalArgumentException("单次读取字节数应在16到1048576之间: " + value);
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SerialReadOptions(readMode=%s, readSize=%d, charset=%s)", readMode, readSize, charset);
+    }
+}
@@ -0,0 +1,280 @@
+package com.hl7.client.infrastructure.adapter.serial;
+
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 串口专用读取线程
+ * 每个串口一个读取线程阻塞读取输入流，数据读入复用的缓冲区（见 {@link SerialReadBuffer}），
+ * 在读取线程上完成分帧并立即回复链路应答；切出的完整消息通过无锁队列交给处理线程，
+ * 读取线程不执行消息处理，也不会因为下游处理慢而错过串口数据。
+ */
+@Slf4j
+public class SerialReader {
+
+    /**
+     * 读取到的数据处理接口，由串口适配器实现
+     */
+    public interface Handler {
+
+        /**
+         * 在读取线程上对解码后的文本分帧
+         * text只在本次调用期间有效，需要保留的内容应复制
+         *
+         * @param text 本次解码出的文本
+         * @return 切出的完整消息和需要回复的内容
+         */
+        FrameResult onText(CharSequence text);
+
+        /**
+         * 在读取线程上直接处理原始字节（如ASTM链路层），返回null表示未处理，按文本解码后交给onText
+         *
+         * @param data 数据
+         * @param offset 起始位置
+         * @param length 长度
+         * @return 切出的完整消息，未处理时返回null
+         */
+        default FrameResult onBytes(byte[] data, int offset, int length) {
+            return null;
+        }
+
+        /**
+         * 在读取线程上发送链路应答
+         *
+         * @param reply 应答内容
+         */
+        void reply(String reply);
+
+        /**
+         * 在处理线程上处理一条完整消息
+         *
+         * @param frame 完整消息
+         */
+        void process(String frame);
+    }
+
+    /** 暂停读取时的检查间隔 */
+    private static final long PAUSE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final String name;
+    private final InputStream inputStream;
+    private final Handler handler;
+    private final int readSize;
+    private final SerialReadBuffer buffer;
+
+    /** 读取线程交给处理线程的完整消息 */
+    private final Queue<String> frames = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong framesRead = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile Thread readerThread;
+    private volatile Thread workerThread;
+
+    /**
+     * 构造函数
+     *
+     * @param name 串口名称，用于线程名
+     * @param inputStream 串口输入流
+     * @param options 读取配置
+     * @param handler 数据处理接口
+     */
+    public SerialReader(String name, InputStream inputStream, SerialReadOptions options, Handler handler) {
+        this.name = name;
+        this.inputStream = inputStream;
+        this.handler = handler;
+        this.readSize = options.getReadSize();
+        this.buffer = new SerialReadBuffer(options);
+    }
+
+    /**
+     * 启动读取线程和处理线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerThread = new Thread(this::processLoop, "hl7-serial-worker-" + name);
+        workerThread.setDaemon(true);
+        workerThread.start();
+        readerThread = new Thread(this::readLoop, "hl7-serial-reader-" + name);
+        readerThread.setDaemon(true);
+        readerThread.start();
+        log.info("串口 {} 读取线程已启动，单次读取 {} 字节", name, readSize);
+    }
+
+    /**
+     * 停止读取，等待已读出的消息处理完
+     */
+    public void stop() {
+        running = false;
+        Thread reader = readerThread;
+        Thread worker = workerThread;
+        if (reader != null) {
+            reader.interrupt();
+            join(reader);
+        }
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            join(worker);
+        }
+        log.info("串口 {} 读取线程已停止，共读取 {} 字节、{} 条消息", name, bytesRead.get(), framesRead.get());
+    }
+
+    /**
+     * 暂停或恢复读取，暂停期间数据留在驱动缓冲区
+     *
+     * @param enabled 是否读取
+     */
+    public void setReadingEnabled(boolean enabled) {
+        paused = !enabled;
+        Thread reader = readerThread;
+        if (enabled && reader != null) {
+            LockSupport.unpark(reader);
+        }
+    }
+
+    /**
+     * 等待读取线程读到输入流结束并处理完所有消息
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return 是否在超时前结束
+     */
+    public boolean awaitCompletion(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread thread : new Thread[]{readerThread, workerThread}) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (thread == null || remaining <= 0) {
+                continue;
+            }
+            try {
+                thread.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return (readerThread == null || !readerThread.isAlive()) && (workerThread == null || !workerThread.isAlive());
+    }
+
+    /**
+     * 读取线程是否在运行，读取出错或输入流结束后返回false
+     *
+     * @return 是否在运行
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getFramesRead() {
+        return framesRead.get();
+    }
+
+    public Thread getReaderThread() {
+        return readerThread;
+    }
+
+    public Thread getWorkerThread() {
+        return workerThread;
+    }
+
+    private void readLoop() {
+        try {
+            while (running) {
+                if (paused) {
+                    LockSupport.parkNanos(this, PAUSE_CHECK_NANOS);
+                    continue;
+                }
+
+                int n = buffer.read(inputStream, readSize);
+                if (n < 0) {
+                    log.info("串口 {} 输入流已结束", name);
+                    break;
+                }
+                if (n == 0) {
+                    // 接收超时，没有数据
+                    continue;
+                }
+                bytesRead.addAndGet(n);
+
+                FrameResult result = buffer.frame(handler);
+                if (result.hasFrames()) {
+                    frames.addAll(result.getFrames());
+                    framesRead.addAndGet(result.getFrames().size());
+                    LockSupport.unpark(workerThread);
+                }
+            }
+        } catch (InterruptedIOException e) {
+            log.debug("串口 {} 读取线程被中断", name);
+        } catch (IOException e) {
+            if (running) {
+                log.error("读取串口 {} 数据时出错: {}", name, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            log.error("串口 {} 读取线程异常退出: {}", name, e.getMessage(), e);
+        } finally {
+            running = false;
+            Thread worker = workerThread;
+            if (worker != null) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    /**
+     * 在处理线程上按到达顺序处理完整消息
+     */
+    private void processLoop() {
+        while (true) {
+            String frame = frames.poll();
+            if (frame != null) {
+                try {
+                    handler.process(frame);
+                } catch (RuntimeException e) {
+                    log.error("处理串口 {} 消息时出错: {}", name, e.getMessage(), e);
+                }
+                continue;
+            }
+            if (!running && !readerAlive()) {
+                // 读取线程退出后再检查一次，处理完最后放入的消息
+                if (frames.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            LockSupport.parkNanos(this, PAUSE_CHECK_NANOS);
+        }
+    }
+
+    private boolean readerAlive() {
+        Thread reader = readerThread;
+        return reader != null && reader.isAlive() && reader != Thread.currentThread();
+    }
+
+    private static void join(Thread thread) {
+        if (thread == Thread.currentThread()) {
+            return;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.hl7.client.infrastructure.adapter.serial;
+
+import com.hl7.client.infrastructure.adapter.common.AstmLinkLayer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 串口异步发送线程
+ * 每个串口一个发送线程，调用方只负责入队。链路应答（ACK/NAK等）走优先队列，大块数据（如工作单下发）走有界队列；
+ * 大块数据按行分片写出，片与片之间先写出待发的应答，应答不用等整条大消息发完。
+ * 应答只插在回车/换行之后，不会打断一条记录或一个ASTM帧。
+ *
+ * RXTX的flush会等待驱动把数据发送到线路上，因此大块数据累计到一定字节数或队列发空时才flush一次，应答写出后立即flush。
+ * 写入出错时发送线程退出，队列中未发出的数据计入rejected，isRunning返回false
+ */
+@Slf4j
+public class SerialWriter {
+
+    /** 预编码的ACK */
+    public static final byte[] ACK = {AstmLinkLayer.ACK};
+
+    /** 预编码的NAK */
+    public static final byte[] NAK = {AstmLinkLayer.NAK};
+
+    /** 大块数据每片的目标字节数，应答最多等待一片写完 */
+    static final int SLICE_BYTES = 256;
+
+    /** 大块数据累计写出多少字节后flush一次 */
+    static final int FLUSH_BYTES = 4096;
+
+    /** 空闲时的检查间隔，入队时会立即唤醒发送线程 */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /** 停止时等待队列发完的最长时间 */
+    private static final long STOP_DRAIN_MILLIS = 2000;
+
+    /**
+     * 待发送的数据和入队时间
+     */
+    private static final class Item {
+        private final byte[] data;
+        private final long enqueuedNanos;
+
+        Item(byte[] data) {
+            this.data = data;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private final String name;
+    private final OutputStream outputStream;
+    private final Charset charset;
+    private final int queueCapacity;
+    private final long offerTimeoutMillis;
+
+    /** 链路应答，数量受接收速度限制，不设上限 */
+    private final Queue<Item> control = new ConcurrentLinkedQueue<>();
+
+    /** 大块数据 */
+    private final BlockingQueue<Item> bulk;
+
+    private volatile boolean running;
+    private volatile Thread writerThread;
+
+    /** 已写出但未flush的大块数据字节数和对应消息，仅发送线程访问 */
+    private int unflushedBytes;
+    private int unflushedItems;
+    private long unflushedEnqueuedNanosSum;
+    private long unflushedOldestEnqueuedNanos;
+
+    /** 一次写出的应答的入队时间，仅发送线程访问 */
+    private long[] controlEnqueuedNanos = new long[16];
+
+    private final AtomicLong controlWrites = new AtomicLong();
+    private final AtomicLong controlLatencyNanos = new AtomicLong();
+    private final AtomicLong maxControlLatencyNanos = new AtomicLong();
+    private final AtomicLong bulkWrites = new AtomicLong();
+    private final AtomicLong bulkLatencyNanos = new AtomicLong();
+    private final AtomicLong maxBulkLatencyNanos = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * 构造函数
+     *
+     * @param name 串口名称，用于线程名
+     * @param outputStream 串口输出流
+     * @param charset 编码字符集
+     * @param queueCapacity 大块数据队列容量（条）
+     * @param offerTimeoutMillis 队列已满时调用方最长等待时间
+     */
+    public SerialWriter(String name, OutputStream outputStream, Charset charset, int queueCapacity,
+                        long offerTimeoutMillis) {
+        this.name = name;
+        this.outputStream = outputStream;
+        this.charset = charset;
+        this.queueCapacity = queueCapacity;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.bulk = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * 启动发送线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeLoop, "hl7-serial-writer-" + name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("串口 {} 发送线程已启动，队列容量 {} 条", name, queueCapacity);
+    }
+
+    /**
+     * 停止发送线程，等待已入队的数据发完
+     */
+    public void stop() {
+        running = false;
+        Thread writer = writerThread;
+        if (writer == null || writer == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(STOP_DRAIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            writer.interrupt();
+            log.warn("串口 {} 发送线程未在 {}ms 内发完，丢弃 {} 条待发数据", name, STOP_DRAIN_MILLIS,
+                    bulk.size() + control.size());
+        }
+    }
+
+    /**
+     * 大块数据入队，队列已满时最多等待offerTimeoutMillis
+     *
+     * @param data 数据
+     * @return 是否已入队
+     */
+    public boolean send(String data) {
+        return send(data.getBytes(charset));
+    }
+
+    /**
+     * 大块数据入队，队列已满时最多等待offerTimeoutMillis
+     *
+     * @param data 已编码的数据
+     * @return 是否已入队
+     */
+    public boolean send(byte[] data) {
+        if (!running) {
+            return false;
+        }
+        Item item = new Item(data);
+        try {
+            if (!bulk.offer(item, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                log.warn("串口 {} 发送队列已满（{} 条），丢弃 {} 字节", name, queueCapacity, data.length);
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (!running && bulk.remove(item)) {
+            // 入队期间发送线程已出错退出，不会再发出
+            rejected.incrementAndGet();
+            return false;
+        }
+        updateMaxQueueDepth();
+        LockSupport.unpark(writerThread);
+        return true;
+    }
+
+    /**
+     * 链路应答入队，优先于大块数据发送
+     * 单字符ACK/NAK使用预编码的常量
+     *
+     * @param reply 应答内容
+     * @return 是否已入队
+     */
+    public boolean reply(String reply) {
+        if (reply.length() == 1 && reply.charAt(0) < 0x80) {
+            return sendControl(controlBytes((byte) reply.charAt(0)));
+        }
+        return sendControl(reply.getBytes(charset));
+    }
+
+    /**
+     * 单字节链路应答入队
+     *
+     * @param reply 控制字符
+     * @return 是否已入队
+     */
+    public boolean reply(byte reply) {
+        return sendControl(controlBytes(reply));
+    }
+
+    private boolean sendControl(byte[] data) {
+        if (!running) {
+            return false;
+        }
+        control.add(new Item(data));
+        LockSupport.unpark(writerThread);
+        return true;
+    }
+
+    private static byte[] controlBytes(byte reply) {
+        if (reply == AstmLinkLayer.ACK) {
+            return ACK;
+        }
+        if (reply == AstmLinkLayer.NAK) {
+            return NAK;
+        }
+        return new byte[]{reply};
+    }
+
+    /**
+     * 发送线程是否在运行，停止或写入出错退出后返回false
+     *
+     * @return 是否在运行
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 当前大块数据队列深度
+     *
+     * @return 待发送条数
+     */
+    public int getQueueDepth() {
+        return bulk.size();
+    }
+
+    /**
+     * 获取发送统计信息，时延单位为微秒
+     *
+     * @return 统计信息Map
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long controls = controlWrites.get();
+        long bulks = bulkWrites.get();
+        stats.put("queueDepth", bulk.size());
+        stats.put("maxQueueDepth", maxQueueDepth.get());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("controlWrites", controls);
+        stats.put("avgControlLatencyMicros", controls > 0 ? controlLatencyNanos.get() / controls / 1000 : 0);
+        stats.put("maxControlLatencyMicros", maxControlLatencyNanos.get() / 1000);
+        stats.put("bulkWrites", bulks);
+        stats.put("avgBulkLatencyMicros", bulks > 0 ? bulkLatencyNanos.get() / bulks / 1000 : 0);
+        stats.put("maxBulkLatencyMicros", maxBulkLatencyNanos.get() / 1000);
+        stats.put("bytesWritten", bytesWritten.get());
+        stats.put("flushes", flushes.get());
+        stats.put("rejected", rejected.get());
+        stats.put("writeErrors", writeErrors.get());
+        return stats;
+    }
+
+    private void writeLoop() {
+        try {
+            while (running || !control.isEmpty() || !bulk.isEmpty()) {
+                if (writeControl()) {
+                    continue;
+                }
+                Item item = bulk.poll();
+                if (item == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                writeBulk(item);
+                if (bulk.isEmpty() || unflushedBytes >= FLUSH_BYTES) {
+                    flushBulk();
+                }
+            }
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+            log.error("写入串口 {} 失败，发送线程退出: {}", name, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("串口 {} 发送线程异常退出: {}", name, e.getMessage(), e);
+        } finally {
+            running = false;
+            dropPending();
+        }
+    }
+
+    /**
+     * 发送线程退出后丢弃未发出的数据，计入rejected
+     */
+    private void dropPending() {
+        int dropped = 0;
+        while (control.poll() != null) {
+            dropped++;
+        }
+        while (bulk.poll() != null) {
+            dropped++;
+        }
+        if (dropped > 0) {
+            rejected.addAndGet(dropped);
+            log.warn("串口 {} 发送线程已退出，丢弃 {} 条待发数据", name, dropped);
+        }
+    }
+
+    /**
+     * 写出全部待发应答并flush，之前写出的大块数据一并计入本次flush
+     *
+     * @return 是否写出了应答
+     */
+    private boolean writeControl() throws IOException {
+        Item item = control.poll();
+        if (item == null) {
+            return false;
+        }
+        int count = 0;
+        while (item != null) {
+            outputStream.write(item.data);
+            bytesWritten.addAndGet(item.data.length);
+            if (count == controlEnqueuedNanos.length) {
+                controlEnqueuedNanos = Arrays.copyOf(controlEnqueuedNanos, count * 2);
+            }
+            controlEnqueuedNanos[count++] = item.enqueuedNanos;
+            item = control.poll();
+        }
+        flushBulk();
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            recordControl(now - controlEnqueuedNanos[i]);
+        }
+        return true;
+    }
+
+    /**
+     * 分片写出一条大块数据，片与片之间写出待发的应答
+     */
+    private void writeBulk(Item item) throws IOException {
+        byte[] data = item.data;
+        int offset = 0;
+        while (offset < data.length) {
+            int end = sliceEnd(data, offset);
+            outputStream.write(data, offset, end - offset);
+            bytesWritten.addAndGet(end - offset);
+            unflushedBytes += end - offset;
+            offset = end;
+            if (offset < data.length) {
+                writeControl();
+            }
+        }
+        if (unflushedItems == 0) {
+            unflushedOldestEnqueuedNanos = item.enqueuedNanos;
+        }
+        unflushedItems++;
+        unflushedEnqueuedNanosSum += item.enqueuedNanos;
+    }
+
+    /**
+     * 计算一片的结束位置：优先在SLICE_BYTES之内最后一个行结束符之后，没有则在其后第一个行结束符之后。
+     * 回车紧跟换行时视为一个行结束符，不在两者之间切开
+     */
+    static int sliceEnd(byte[] data, int offset) {
+        int limit = offset + SLICE_BYTES;
+        if (limit >= data.length) {
+            return data.length;
+        }
+        for (int i = limit - 1; i >= offset; i--) {
+            if (isLineEnd(data, i)) {
+                return i + 1;
+            }
+        }
+        for (int i = limit; i < data.length; i++) {
+            if (isLineEnd(data, i)) {
+                return i + 1;
+            }
+        }
+        return data.length;
+    }
+
+    private static boolean isLineEnd(byte[] data, int i) {
+        return data[i] == AstmLinkLayer.LF
+                || (data[i] == AstmLinkLayer.CR && (i + 1 >= data.length || data[i + 1] != AstmLinkLayer.LF));
+    }
+
+    /**
+     * flush已写出的数据，并记录其中大块数据的发送时延
+     */
+    private void flushBulk() throws IOException {
+        outputStream.flush();
+        flushes.incrementAndGet();
+        if (unflushedItems > 0) {
+            long now = System.nanoTime();
+            bulkWrites.addAndGet(unflushedItems);
+            bulkLatencyNanos.addAndGet(now * unflushedItems - unflushedEnqueuedNanosSum);
+            updateMax(maxBulkLatencyNanos, now - unflushedOldestEnqueuedNanos);
+        }
+        unflushedBytes = 0;
+        unflushedItems = 0;
+        unflushedEnqueuedNanosSum = 0;
+    }
+
+    private void recordControl(long nanos) {
+        controlWrites.incrementAndGet();
+        controlLatencyNanos.addAndGet(nanos);
+        updateMax(maxControlLatencyNanos, nanos);
+    }
+
+    private void updateMaxQueueDepth() {
+        int depth = bulk.size();
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            // 重试
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+}
@@ -78,6 +78,26 @@ public class CommunicationConfig {
          */
         private String deviceModel;
 
+        /**
+         * 链路协议，ASTM表示使用E1381低层协议应答和分帧，为空时按原始文本处理
+         */
+        private String protocol;
+
+        /**
+         * 读取方式：EVENT 在RXTX事件线程上读取；THREAD 使用专用读取线程。为空时使用hl7.serial.read-mode
+         */
+        private String readMode;
+
+        /**
+         * 单次读取字节数，0表示使用hl7.serial.read-size
+         */
+        private int readSize;
+
+        /**
+         * 解码字符集，为空时使用hl7.serial.charset
+         */
+        private String charset;
+
         /**
          * 是否启用
          */
@@ -144,5 +164,69 @@ public class CommunicationConfig {
          * 自定义参数
          */
         private Map<String, String> parameters = new ConcurrentHashMap<>();
+
+        /**
+         * 分帧规则，配置后启动时编译为该型号的完整性检查策略，不需要再编写Java策略类
+         */
+        private FramingConfig framing;
+    }
+
+    /**
+     * 分帧规则
+     * 字节序列用空格分隔，每一项可以是控制字符名（STX、ETX、EOT、ENQ、ACK、NAK、ETB、VT、FS、CR、LF等）、
+     * 十六进制（0x1C）或普通ASCII文本，例如 "FS CR"、"0x0B"、"MSH|"
+     */
+    @Data
+    public static class FramingConfig {
+        /**
+         * 帧开始序列，帧开始之前的数据丢弃；为空表示缓冲区开头即帧开始
+         */
+        private String start;
+
+        /**
+         * 帧结束序列，可配置多个，任意一个出现即结束当前帧
+         */
+        private List<String> end = new ArrayList<>();
+
+        /**
+         * 长度前缀位数（ASCII十进制，紧跟帧开始序列），大于0时按长度切分，不使用结束序列
+         */
+        private int lengthPrefix;
+
+        /**
+         * 校验和类型：NONE 无；SUM8 模256累加和；XOR8 异或和。
+         * 校验范围为帧开始序列之后到结束序列（含），校验值为紧跟其后的两位十六进制字符
+         */
+        private String checksum = "NONE";
+
+        /**
+         * 校验和之后的固定尾部序列，例如 "CR LF"
+         */
+        private String trailer;
+
+        /**
+         * 每收到一个校验通过的帧回复的序列，例如 "ACK"；为空不回复
+         */
+        private String ack;
+
+        /**
+         * 校验失败时回复的序列，例如 "NAK"；为空不回复，校验失败的帧丢弃
+         */
+        private String nak;
+
+        /**
+         * 帧之外的请求序列，例如 "ENQ"
+         */
+        private String enq;
+
+        /**
+         * 收到请求序列时的回复，例如 "ACK"
+         */
+        private String enqReply;
+
+        /**
+         * 交给解析器的消息是否保留帧开始、结束序列和尾部
+         */
+        private boolean includeDelimiters;
     }
 }
@@ -53,10 +53,8 @@ public class DeviceAdapterCache implements ApplicationListener<DeviceStatusChang
             DeviceAdapter removed = adapterCache.remove(deviceId);
             if (removed != null) {
                 try {
-                    // 确保断开连接
-                    if (removed.isConnected()) {
-                        removed.disconnect();
-                    }
+                    // 确保断开连接，释放每台设备单独创建的适配器实例
+                    adapterFactory.disposeAdapter(removed);
                     log.info("已移除设备 {} 的适配器缓存", deviceId);
                 } catch (Exception e) {
                     log.error("移除设备 {} 适配器缓存时断开连接失败: {}", deviceId, e.getMessage());
@@ -71,10 +69,7 @@ public class DeviceAdapterCache implements ApplicationListener<DeviceStatusChang
     public void clearAllAdapters() {
         for (Map.Entry<String, DeviceAdapter> entry : adapterCache.entrySet()) {
             try {
-                DeviceAdapter adapter = entry.getValue();
-                if (adapter.isConnected()) {
-                    adapter.disconnect();
-                }
+                adapterFactory.disposeAdapter(entry.getValue());
             } catch (Exception e) {
                 log.error("断开设备 {} 连接时出错: {}", entry.getKey(), e.getMessage());
             }
@@ -142,9 +137,8 @@ public class DeviceAdapterCache implements ApplicationListener<DeviceStatusChang
 
             // 处理连接状态变更
             if (event.isConnected()) {
-                // 设备连接成功时，将其加入缓存
-                DeviceAdapter adapter = adapterFactory.createAdapter(device);
-                adapterCache.put(device.getId(), adapter);
+                // 设备连接成功时，确保其在缓存中；已缓存的适配器正持有连接，不能替换
+                getAdapter(device);
                 log.info("[onApplicationEvent] - 设备 {} 已加入设备缓存", device.getName());
             } else if (event.isDisconnected()) {
                 // 对于服务器模式设备，需要特殊处理断开连接事件
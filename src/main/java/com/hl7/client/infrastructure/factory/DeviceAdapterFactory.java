@@ -3,12 +3,14 @@ package com.hl7.client.infrastructure.factory;
 import com.hl7.client.domain.model.Device;
 import com.hl7.client.infrastructure.adapter.DeviceAdapter;
 import com.hl7.client.infrastructure.adapter.file.FileAdapter;
+import com.hl7.client.infrastructure.adapter.file.SharedFolderAdapter;
 import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
 import com.hl7.client.infrastructure.adapter.network.NettySocketAdapter;
 import com.hl7.client.infrastructure.adapter.network.NetworkMode;
 import com.hl7.client.infrastructure.adapter.serial.SerialPortAdapter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.stereotype.Component;
 
 /**
@@ -20,10 +22,7 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class DeviceAdapterFactory {
 
-    private final NettySocketAdapter nettySocketAdapter;
-    private final NettyServerAdapter nettyServerAdapter;
-    private final SerialPortAdapter serialPortAdapter;
-    private final FileAdapter fileAdapter;
+    private final AutowireCapableBeanFactory beanFactory;
 
     /**
      * 创建设备适配器
@@ -41,10 +40,15 @@ public class DeviceAdapterFactory {
                 adapter = determineNetworkAdapter(device);
                 break;
             case "SERIAL":
-                adapter = serialPortAdapter;
+                // 每个串口一个适配器实例，串口参数、缓冲区和收发线程互不共享
+                adapter = beanFactory.createBean(SerialPortAdapter.class);
                 break;
             case "FILE":
-                adapter = fileAdapter;
+                // 每个监视目录一个适配器实例，各自的接收队列和监视线程互不共享；
+                // SMB共享目录和挂载的网络目录收不到文件系统事件，改为轮询
+                adapter = SharedFolderAdapter.supports(device.getConnectionParams())
+                        ? beanFactory.createBean(SharedFolderAdapter.class)
+                        : beanFactory.createBean(FileAdapter.class);
                 break;
             default:
                 log.error("不支持的连接类型: {}", connectionType);
@@ -58,6 +62,22 @@ public class DeviceAdapterFactory {
         return adapter;
     }
 
+    /**
+     * 释放适配器
+     * 断开连接并销毁每台设备单独创建的适配器实例
+     *
+     * @param adapter 适配器
+     */
+    public void disposeAdapter(DeviceAdapter adapter) {
+        if (adapter.isConnected()) {
+            adapter.disconnect();
+        }
+        if (adapter instanceof SerialPortAdapter || adapter instanceof NettyServerAdapter
+                || adapter instanceof NettySocketAdapter || adapter instanceof FileAdapter || adapter instanceof SharedFolderAdapter) {
+            beanFactory.destroyBean(adapter);
+        }
+    }
+
     /**
      * 根据连接参数确定网络适配器类型
      *
@@ -70,7 +90,10 @@ public class DeviceAdapterFactory {
 
         // 解析模式
         String[] parts = params.split(":");
-        if (parts.length >= 4) {
+        if (parts.length >= 3 && NetworkMode.SERVER.name().equalsIgnoreCase(parts[2])) {
+            // 格式：port:protocol:SERVER[:key=value...]
+            mode = NetworkMode.SERVER;
+        } else if (parts.length >= 4) {
             // 可能的格式：host:port:protocol:mode
             try {
                 mode = NetworkMode.fromString(parts[3]);
@@ -88,7 +111,10 @@ public class DeviceAdapterFactory {
 
         log.info("设备 {} 使用网络模式: {}", device.getName(), mode);
 
-        // 根据模式返回不同的适配器
-        return mode == NetworkMode.SERVER ? nettyServerAdapter : nettySocketAdapter;
+        // 每台设备一个适配器实例：服务器模式的端口都绑定在共享的ServerListenerRegistry上，
+        // 客户端模式各自保存目标地址、当前通道和重连退避状态
+        return mode == NetworkMode.SERVER
+                ? beanFactory.createBean(NettyServerAdapter.class)
+                : beanFactory.createBean(NettySocketAdapter.class);
     }
 }
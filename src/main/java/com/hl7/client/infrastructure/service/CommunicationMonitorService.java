@@ -68,24 +68,39 @@ public class CommunicationMonitorService {
 
     /**
      * 连接所有设备
+     * 所有设备并行连接，不可达的设备不会拖慢其他设备
      */
     public void connectAllDevices() {
         log.info("开始连接所有配置的设备...");
         for (DeviceAdapter adapter : deviceAdapters) {
-            try {
-                if (!adapter.isConnected()) {
-                    boolean success = adapter.connect();
-                    if (success) {
-                        log.info("成功连接设备: {}", adapter.getDevice().getName());
-                    } else {
-                        log.error("连接设备失败: {}", adapter.getDevice().getName());
-                    }
+            if (adapter.isConnected()) {
+                log.info("设备 {} 已连接，跳过", adapter.getDevice().getName());
+                continue;
+            }
+            connectInBackground(adapter, "连接");
+        }
+    }
+
+    /**
+     * 异步连接设备，结果在回调中记录
+     *
+     * @param adapter 设备适配器
+     * @param action 操作名称（用于日志）
+     */
+    private void connectInBackground(DeviceAdapter adapter, String action) {
+        String deviceName = adapter.getDevice().getName();
+        try {
+            adapter.connectAsync().whenComplete((success, error) -> {
+                if (error != null) {
+                    log.error("{}设备 {} 时发生异常: {}", action, deviceName, error.getMessage(), error);
+                } else if (Boolean.TRUE.equals(success)) {
+                    log.info("成功{}设备: {}", action, deviceName);
                 } else {
-                    log.info("设备 {} 已连接，跳过", adapter.getDevice().getName());
+                    log.error("{}设备失败: {}", action, deviceName);
                 }
-            } catch (Exception e) {
-                log.error("连接设备 {} 时发生异常: {}", adapter.getDevice().getName(), e.getMessage(), e);
-            }
+            });
+        } catch (Exception e) {
+            log.error("{}设备 {} 时发生异常: {}", action, deviceName, e.getMessage(), e);
         }
     }
 
@@ -144,12 +159,8 @@ public class CommunicationMonitorService {
             try {
                 if (!adapter.isConnected()) {
                     log.info("设备 {} 连接已断开，尝试重新连接", adapter.getDevice().getName());
-                    boolean success = adapter.connect();
-                    if (success) {
-                        log.info("成功重新连接设备: {}", adapter.getDevice().getName());
-                    } else {
-                        log.error("重新连接设备失败: {}", adapter.getDevice().getName());
-                    }
+                    // 异步重连，已在自动重连中的客户端模式设备不会被打乱退避节奏
+                    connectInBackground(adapter, "重新连接");
                 }
             } catch (Exception e) {
                 log.error("检查设备 {} 连接时发生异常: {}", adapter.getDevice().getName(), e.getMessage());
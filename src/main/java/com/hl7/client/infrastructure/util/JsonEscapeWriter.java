@@ -0,0 +1,124 @@
+package com.hl7.client.infrastructure.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * JSON字符串转义输出
+ * 写入的字符按JSON字符串的规则转义后追加到目标，不加引号；转义规则与hutool的JSONUtil.quote相同，
+ * 生成的文本与JSONUtil.toJsonStr逐字节一致。
+ * 目标本身也可以是JsonEscapeWriter：一段JSON文本作为另一个JSON里的字符串值时，可以边生成边写入外层，不用先生成再转义
+ */
+public final class JsonEscapeWriter extends Writer {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Appendable target;
+
+    /**
+     * 创建转义输出
+     *
+     * @param target 转义后的字符追加到这里
+     */
+    public JsonEscapeWriter(Appendable target) {
+        this.target = target;
+    }
+
+    /**
+     * 把字符串加上引号并转义后追加到目标
+     *
+     * @param value 字符串，null按空字符串处理
+     * @param out 目标
+     * @throws IOException 目标写入失败
+     */
+    public static void quote(CharSequence value, Appendable out) throws IOException {
+        out.append('"');
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                escape(value.charAt(i), out);
+            }
+        }
+        out.append('"');
+    }
+
+    private static void escape(char c, Appendable out) throws IOException {
+        switch (c) {
+            case '"':
+            case '\\':
+                out.append('\\').append(c);
+                return;
+            case '\b':
+                out.append("\\b");
+                return;
+            case '\t':
+                out.append("\\t");
+                return;
+            case '\n':
+                out.append("\\n");
+                return;
+            case '\f':
+                out.append("\\f");
+                return;
+            case '\r':
+                out.append("\\r");
+                return;
+            default:
+                break;
+        }
+        // 控制字符，以及JavaScript中可能被当作空白或换行的字符
+        if (c < 0x20 || (c >= 0x80 && c <= 0xA0) || (c >= 0x2000 && c <= 0x2010)
+                || (c >= 0x2028 && c <= 0x202F) || (c >= 0x2066 && c <= 0x206F)) {
+            out.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                    .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+        } else {
+            out.append(c);
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        escape((char) c, target);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            escape(buffer[i], target);
+        }
+    }
+
+    @Override
+    public void write(String value, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            escape(value.charAt(i), target);
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence value) throws IOException {
+        if (value == null) {
+            write("null");
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                escape(value.charAt(i), target);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Writer append(char c) throws IOException {
+        escape(c, target);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // 直接写入目标，没有缓冲
+    }
+
+    @Override
+    public void close() {
+        // 不关闭目标
+    }
+}
@@ -318,7 +318,7 @@ public class DeviceConfigPanel extends JPanel {
      * 网络连接参数面板
      */
     public static class NetworkParamPanel extends JPanel implements ConnectionParamPanel {
-        private static final String[] PROTOCOLS = {"TCP", "UDP"};
+        private static final String[] PROTOCOLS = {"TCP", "MLLP", "ASTM", "AUTO", "UDP"};
         // 使用本地化的模式标签
         private static final String[] MODE_VALUES = {"CLIENT", "SERVER"};
         private static final String[] MODE_LABELS = {"客户端模式", "服务器模式"};
@@ -328,6 +328,9 @@ public class DeviceConfigPanel extends JPanel {
         private final JComboBox<String> protocolCombo = new JComboBox<>(PROTOCOLS);
         private final JComboBox<String> modeCombo = new JComboBox<>(MODE_LABELS);
         private final JCheckBox longConnectionBox = new JCheckBox("保持长连接");
+
+        /** 连接参数末尾的 key=value 选项（如超时设置），界面不编辑，保存时原样保留 */
+        private String extraOptions = "";
         private final JPanel clientPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         private final JPanel serverPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         private final CardLayout modeCardLayout = new CardLayout();
@@ -515,6 +518,7 @@ public class DeviceConfigPanel extends JPanel {
             protocolCombo.setSelectedItem("TCP");
             modeCombo.setSelectedItem("CLIENT");
             longConnectionBox.setSelected(false);
+            extraOptions = "";
         }
 
         @Override
@@ -529,14 +533,14 @@ public class DeviceConfigPanel extends JPanel {
                 String port = portField.getText().trim();
                 boolean longConnection = longConnectionBox.isSelected();
 
-                // 格式: host:port:protocol:CLIENT[:longConnection]
-                return String.format("%s:%s:%s:%s:%s", host, port, protocol, mode, longConnection);
+                // 格式: host:port:protocol:CLIENT[:longConnection][:key=value...]
+                return String.format("%s:%s:%s:%s:%s", host, port, protocol, mode, longConnection) + extraOptions;
             } else {
                 // 服务器模式
                 String port = serverPortField.getText().trim();
 
-                // 格式: port:protocol:SERVER
-                return String.format("%s:%s:%s", port, protocol, mode);
+                // 格式: port:protocol:SERVER[:key=value...]
+                return String.format("%s:%s:%s", port, protocol, mode) + extraOptions;
             }
         }
 
@@ -550,6 +554,14 @@ public class DeviceConfigPanel extends JPanel {
             try {
                 String[] parts = params.split(":");
 
+                StringBuilder options = new StringBuilder();
+                for (String part : parts) {
+                    if (part.indexOf('=') > 0) {
+                        options.append(':').append(part);
+                    }
+                }
+                extraOptions = options.toString();
+
                 if (parts.length >= 3) {
                     // 至少有3部分，可能是服务器模式
                     if (parts.length >= 4 && "CLIENT".equals(parts[3])) {
@@ -700,6 +712,9 @@ public class DeviceConfigPanel extends JPanel {
         private final JComboBox<String> stopBitsCombo = new JComboBox<>(STOP_BITS);
         private final JComboBox<String> parityCombo = new JComboBox<>(PARITY_OPTIONS);
 
+        /** 校验位之后的参数段（协议和 key=value 读取选项），界面不编辑，保存时原样保留 */
+        private String extraSegments = "";
+
         public SerialPortParamPanel() {
             setBorder(BorderFactory.createTitledBorder("串口连接参数"));
             initComponents();
@@ -776,6 +791,7 @@ public class DeviceConfigPanel extends JPanel {
         }
 
         private void setDefaultValues() {
+            extraSegments = "";
             portNameField.setText("COM1");
             baudRateCombo.setSelectedItem("9600");
             dataBitsCombo.setSelectedItem("8");
@@ -790,7 +806,7 @@ public class DeviceConfigPanel extends JPanel {
                     baudRateCombo.getSelectedItem(),
                     dataBitsCombo.getSelectedItem(),
                     stopBitsCombo.getSelectedItem(),
-                    getParityValue());
+                    getParityValue()) + extraSegments;
         }
 
         private String getParityValue() {
@@ -814,6 +830,13 @@ public class DeviceConfigPanel extends JPanel {
 
             try {
                 String[] parts = params.split(":");
+
+                StringBuilder extra = new StringBuilder();
+                for (int i = 5; i < parts.length; i++) {
+                    extra.append(':').append(parts[i]);
+                }
+                extraSegments = extra.toString();
+
                 if (parts.length >= 1) portNameField.setText(parts[0]);
                 if (parts.length >= 2) baudRateCombo.setSelectedItem(parts[1]);
                 if (parts.length >= 3) dataBitsCombo.setSelectedItem(parts[2]);
@@ -68,11 +68,23 @@ class MessageProcessServiceTest {
         parsedData.put("patientName", "Test Patient");
     }
 
+    /**
+     * 解析器返回parsedData，按Map接入传入的解析结果
+     */
+    private void stubParse() {
+        when(messageParserFactory.parseMessage(eq(testMessage), any(ParseResult.class)))
+                .thenAnswer(invocation -> invocation.<ParseResult>getArgument(1).adopt(parsedData));
+    }
+
+    private void verifyParsed() {
+        verify(messageParserFactory, times(1)).parseMessage(eq(testMessage), any(ParseResult.class));
+    }
+
     @Test
     @DisplayName("成功处理消息")
     void processMessage_Success() {
         // 准备测试数据
-        when(messageParserFactory.parseMessage(testMessage)).thenReturn(parsedData);
+        stubParse();
 
         // 执行测试
         Message result = messageProcessService.processMessage(testMessage);
@@ -80,7 +92,7 @@ class MessageProcessServiceTest {
         // 验证结果
         assertEquals(MessageStatus.PROCESSED.name(), result.getStatus());
         assertTrue(result.getProcessResult().contains("解析成功"));
-        verify(messageParserFactory, times(1)).parseMessage(testMessage);
+        verifyParsed();
     }
 
     @Test
@@ -88,14 +100,14 @@ class MessageProcessServiceTest {
     void processMessage_Incomplete() {
         // 准备测试数据
         parsedData.put("INCOMPLETE", false);
-        when(messageParserFactory.parseMessage(testMessage)).thenReturn(parsedData);
+        stubParse();
 
         // 执行测试
         Message result = messageProcessService.processMessage(testMessage);
 
         // 验证结果
         assertEquals(MessageStatus.INCOMPLETE.name(), result.getStatus());
-        verify(messageParserFactory, times(1)).parseMessage(testMessage);
+        verifyParsed();
     }
 
     @Test
@@ -104,7 +116,7 @@ class MessageProcessServiceTest {
         // 准备测试数据
         parsedData.put("error", true);
         parsedData.put("errorMessage", "解析失败");
-        when(messageParserFactory.parseMessage(testMessage)).thenReturn(parsedData);
+        stubParse();
 
         // 执行测试
         Message result = messageProcessService.processMessage(testMessage);
@@ -112,14 +124,68 @@ class MessageProcessServiceTest {
         // 验证结果
         assertEquals(MessageStatus.ERROR.name(), result.getStatus());
         assertTrue(result.getProcessResult().contains("解析失败"));
-        verify(messageParserFactory, times(1)).parseMessage(testMessage);
+        verifyParsed();
+    }
+
+    @Test
+    @DisplayName("错误信息放在error中的Map结果按解析失败处理")
+    void processMessage_ErrorAsString() {
+        // 准备测试数据
+        parsedData.put("error", "段数不足");
+        stubParse();
+
+        // 执行测试
+        Message result = messageProcessService.processMessage(testMessage);
+
+        // 验证结果
+        assertEquals(MessageStatus.ERROR.name(), result.getStatus());
+        assertEquals("段数不足", result.getErrorMessage());
+        verifyParsed();
+    }
+
+    @Test
+    @DisplayName("解析器直接填充的解析结果")
+    void processMessage_TypedResult() {
+        // 准备测试数据
+        when(messageParserFactory.parseMessage(eq(testMessage), any(ParseResult.class)))
+                .thenAnswer(invocation -> {
+                    ParseResult parsed = invocation.<ParseResult>getArgument(1);
+                    parsed.setMessageType("ORU_R01");
+                    parsed.setMessageControlId("1234567");
+                    parsed.addObservation("1", "WBC", "White Blood Cells", "6.5", "10*9/L", "4.0-10.0", "F");
+                    return parsed;
+                });
+
+        // 执行测试
+        Message result = messageProcessService.processMessage(testMessage);
+
+        // 验证结果
+        assertEquals(MessageStatus.PROCESSED.name(), result.getStatus());
+        assertTrue(result.getProcessResult().contains("\"testId\":\"WBC\""));
+        assertTrue(result.getProcessResult().contains("\"messageControlId\":\"1234567\""));
+        verifyParsed();
+    }
+
+    @Test
+    @DisplayName("解析器标记不完整")
+    void processMessage_TypedIncomplete() {
+        // 准备测试数据
+        when(messageParserFactory.parseMessage(eq(testMessage), any(ParseResult.class)))
+                .thenAnswer(invocation -> invocation.<ParseResult>getArgument(1).incomplete());
+
+        // 执行测试
+        Message result = messageProcessService.processMessage(testMessage);
+
+        // 验证结果
+        assertEquals(MessageStatus.INCOMPLETE.name(), result.getStatus());
+        verifyParsed();
     }
 
     @Test
     @DisplayName("异步处理消息")
     void processMessageAsync_Success() throws ExecutionException, InterruptedException, TimeoutException {
         // 准备测试数据
-        when(messageParserFactory.parseMessage(testMessage)).thenReturn(parsedData);
+        stubParse();
 
         // 执行测试
         CompletableFuture<Message> futureResult = messageProcessService.processMessageAsync(testMessage);
@@ -128,7 +194,7 @@ class MessageProcessServiceTest {
         // 验证结果
         assertEquals(MessageStatus.PROCESSED.name(), result.getStatus());
         assertTrue(result.getProcessResult().contains("解析成功"));
-        verify(messageParserFactory, times(1)).parseMessage(testMessage);
+        verifyParsed();
     }
 
     @Test
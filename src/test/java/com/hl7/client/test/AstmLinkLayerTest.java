@@ -0,0 +1,148 @@
+package com.hl7.client.test;
+
+import com.hl7.client.infrastructure.adapter.common.AstmLinkLayer;
+import com.hl7.client.infrastructure.adapter.network.codec.AstmFrameDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ASTM低层协议测试
+ * 使用EmbeddedChannel模拟仪器的ENQ/帧/EOT会话，验证应答、校验和、中间帧拼接和重传处理
+ */
+@Slf4j
+public class AstmLinkLayerTest {
+
+    private static final String HEADER = "H|\\^&|||BG800^1.0|||||||P|1|20240101120000\r";
+    private static final String ORDER = "O|1|^0012||^^^PT|R\r";
+    private static final String RESULT = "R|1|^^^PT|12.5|s|||N||F||||20240101120000\r";
+    private static final String TERMINATOR = "L|1|N\r";
+
+    /**
+     * 测试完整会话：中间帧拼接、校验和错误重传、重复帧
+     */
+    public static boolean testSession() {
+        EmbeddedChannel channel = new EmbeddedChannel(new AstmFrameDecoder(1024 * 1024));
+        List<Byte> replies = new ArrayList<>();
+
+        send(channel, new byte[]{AstmLinkLayer.ENQ});
+        collectReplies(channel, replies);
+
+        send(channel, frame(1, HEADER, true));
+        // 结果记录拆成两个帧，第一帧以ETB结尾
+        int split = RESULT.length() / 2;
+        send(channel, frame(2, ORDER, true));
+        byte[] corrupted = frame(3, RESULT.substring(0, split), false);
+        corrupted[5] ^= 0x01;
+        send(channel, corrupted);
+        send(channel, frame(3, RESULT.substring(0, split), false));
+        // 模拟我们的ACK丢失，仪器重发同一帧
+        send(channel, frame(3, RESULT.substring(0, split), false));
+        send(channel, frame(4, RESULT.substring(split), true));
+        send(channel, frame(5, TERMINATOR, true));
+        collectReplies(channel, replies);
+        send(channel, new byte[]{AstmLinkLayer.EOT});
+
+        List<String> messages = readMessages(channel);
+        channel.finishAndReleaseAll();
+
+        String expected = (HEADER + ORDER + RESULT + TERMINATOR).replace("\r", "\r\n");
+        List<Byte> expectedReplies = new ArrayList<>();
+        for (byte b : new byte[]{AstmLinkLayer.ACK, AstmLinkLayer.ACK, AstmLinkLayer.ACK, AstmLinkLayer.NAK,
+                AstmLinkLayer.ACK, AstmLinkLayer.ACK, AstmLinkLayer.ACK, AstmLinkLayer.ACK}) {
+            expectedReplies.add(b);
+        }
+
+        boolean passed = messages.size() == 1 && expected.equals(messages.get(0)) && expectedReplies.equals(replies);
+        log.info("ASTM会话测试{}，应答: {}，消息数: {}", passed ? "通过" : "失败", replies, messages.size());
+        return passed;
+    }
+
+    /**
+     * 测试帧号错误被拒绝，整段数据逐字节到达时结果不变
+     */
+    public static boolean testFrameNumberAndFragmentation() {
+        EmbeddedChannel channel = new EmbeddedChannel(new AstmFrameDecoder(1024 * 1024));
+        List<Byte> replies = new ArrayList<>();
+
+        StringBuilder session = new StringBuilder();
+        session.append((char) AstmLinkLayer.ENQ);
+        session.append(new String(frame(1, HEADER, true), StandardCharsets.ISO_8859_1));
+        // 跳过帧号2，应回复NAK
+        session.append(new String(frame(3, RESULT, true), StandardCharsets.ISO_8859_1));
+        session.append(new String(frame(2, RESULT, true), StandardCharsets.ISO_8859_1));
+        session.append((char) AstmLinkLayer.EOT);
+
+        for (byte b : session.toString().getBytes(StandardCharsets.ISO_8859_1)) {
+            send(channel, new byte[]{b});
+        }
+        collectReplies(channel, replies);
+        List<String> messages = readMessages(channel);
+        channel.finishAndReleaseAll();
+
+        String expected = (HEADER + RESULT).replace("\r", "\r\n");
+        boolean passed = messages.size() == 1 && expected.equals(messages.get(0))
+                && replies.size() == 4 && replies.get(2) == AstmLinkLayer.NAK;
+        log.info("ASTM帧号与分片测试{}，应答: {}", passed ? "通过" : "失败", replies);
+        return passed;
+    }
+
+    /**
+     * 构造ASTM数据帧
+     *
+     * @param frameNumber 帧号
+     * @param text 帧文本
+     * @param last 是否为记录的最后一帧（ETX），否则为中间帧（ETB）
+     * @return 帧字节
+     */
+    private static byte[] frame(int frameNumber, String text, boolean last) {
+        StringBuilder body = new StringBuilder();
+        body.append((char) ('0' + frameNumber % 8)).append(text).append((char) (last ? AstmLinkLayer.ETX : AstmLinkLayer.ETB));
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum += body.charAt(i);
+        }
+        String frame = (char) AstmLinkLayer.STX + body.toString() + String.format("%02X", checksum & 0xFF) + "\r\n";
+        return frame.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void send(EmbeddedChannel channel, byte[] data) {
+        channel.writeInbound(Unpooled.wrappedBuffer(data));
+    }
+
+    private static void collectReplies(EmbeddedChannel channel, List<Byte> replies) {
+        ByteBuf reply;
+        while ((reply = channel.readOutbound()) != null) {
+            while (reply.isReadable()) {
+                replies.add(reply.readByte());
+            }
+            reply.release();
+        }
+    }
+
+    private static List<String> readMessages(EmbeddedChannel channel) {
+        List<String> messages = new ArrayList<>();
+        ByteBuf message;
+        while ((message = channel.readInbound()) != null) {
+            messages.add(message.toString(StandardCharsets.ISO_8859_1));
+            message.release();
+        }
+        return messages;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        log.info("=== 开始ASTM低层协议测试 ===");
+        boolean passed = testSession();
+        passed &= testFrameNumberAndFragmentation();
+        log.info("=== ASTM低层协议测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
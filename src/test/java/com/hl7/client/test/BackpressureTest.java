@@ -0,0 +1,328 @@
+package com.hl7.client.test;
+
+import com.hl7.client.application.DeviceManager;
+import com.hl7.client.application.MessageProcessor;
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.model.MessageStatus;
+import com.hl7.client.domain.service.DeviceService;
+import com.hl7.client.domain.service.MessageProcessService;
+import com.hl7.client.infrastructure.adapter.common.BackpressureController;
+import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 背压测试
+ * 仪器持续高速发送，下游处理很慢，验证积压超过高水位时暂停读取、回落后恢复，且消息一条不丢
+ */
+@Slf4j
+public class BackpressureTest {
+
+    private static final String START_BLOCK = "\u000b";
+    private static final String END_BLOCK = "\u001c\r";
+
+    /**
+     * 自动处理模式：消息交给处理委托，处理完成前计入背压
+     *
+     * @param port 服务器端口
+     * @param messageCount 发送消息数
+     * @return 是否通过
+     */
+    public static boolean testSlowProcessing(int port, int messageCount) throws Exception {
+        BackpressureController controller = BackpressureController.getDefault();
+        controller.setWaterMarks(10, 50);
+
+        Set<String> received = ConcurrentHashMap.newKeySet();
+        AtomicInteger maxPending = new AtomicInteger();
+        ExecutorService slowWorker = Executors.newSingleThreadExecutor();
+
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.setMessageHandlerDelegate(new MessageHandlerDelegate() {
+            @Override
+            public boolean processMessage(Device device, String rawMessage) {
+                controller.acquire();
+                maxPending.accumulateAndGet(controller.getPendingCount(), Math::max);
+                slowWorker.submit(() -> {
+                    try {
+                        // 模拟下游处理（解析、转发）跟不上接收速度
+                        Thread.sleep(2);
+                        received.add(rawMessage);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        controller.release();
+                    }
+                });
+                return true;
+            }
+
+            @Override
+            public String isMessageComplete(Message message) {
+                return null;
+            }
+        });
+        server.initialize(createServerDevice(port));
+        if (!server.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+
+        List<String> bodies = createMessages(messageCount);
+        try (Socket socket = new Socket("localhost", port)) {
+            long start = System.nanoTime();
+            sendMessages(socket, bodies);
+            long sendMillis = (System.nanoTime() - start) / 1_000_000;
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (received.size() < messageCount && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            Map<String, Object> stats = controller.getStatistics();
+            Map<String, Object> adapterStats = server.getStatistics();
+            long pauseCount = (Long) stats.get("pauseCount");
+            long resumeCount = (Long) stats.get("resumeCount");
+            boolean passed = received.size() == messageCount && pauseCount > 0 && resumeCount > 0
+                    && !controller.isPaused() && (Long) adapterStats.get("readPauseCount") > 0;
+
+            log.info("发送 {} 条耗时 {}ms，处理 {} 条，最大待处理数: {}", messageCount, sendMillis,
+                    received.size(), maxPending.get());
+            log.info("背压统计: {}，适配器暂停次数: {}，暂停时长: {}ms", stats,
+                    adapterStats.get("readPauseCount"), adapterStats.get("readPausedMillis"));
+            log.info("自动处理模式背压测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            server.disconnect();
+            slowWorker.shutdownNow();
+        }
+    }
+
+    /**
+     * 拉取模式：没有处理委托，消息只能由receive()取走，拉取队列积压时暂停读取
+     *
+     * @param port 服务器端口
+     * @param messageCount 发送消息数，应大于拉取队列容量
+     * @return 是否通过
+     */
+    public static boolean testPullQueue(int port, int messageCount) throws Exception {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.initialize(createServerDevice(port));
+        if (!server.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+
+        List<String> bodies = createMessages(messageCount);
+        try (Socket socket = new Socket("localhost", port)) {
+            Thread sender = new Thread(() -> {
+                try {
+                    sendMessages(socket, bodies);
+                } catch (Exception e) {
+                    log.error("发送失败: {}", e.getMessage());
+                }
+            }, "pull-sender");
+            sender.start();
+
+            // 等待拉取队列积压并暂停读取，再开始慢速取消息
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!(Boolean) server.getStatistics().get("readPaused") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            int queuedWhenPaused = server.getReceivedMessagesQueueSize();
+
+            List<String> messages = new ArrayList<>();
+            String message;
+            while (messages.size() < messageCount && (message = server.receive()) != null) {
+                messages.add(message);
+            }
+            sender.join(5000);
+
+            boolean inOrder = messages.equals(bodies);
+            Map<String, Object> adapterStats = server.getStatistics();
+            boolean passed = inOrder
+                    && (Long) adapterStats.get("readPauseCount") > 0 && !(Boolean) adapterStats.get("readPaused");
+
+            log.info("暂停时拉取队列大小: {}，取出 {} 条，顺序正确: {}，暂停次数: {}", queuedWhenPaused,
+                    messages.size(), inOrder, adapterStats.get("readPauseCount"));
+            log.info("拉取模式背压测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            server.disconnect();
+        }
+    }
+
+    /**
+     * 拉取模式：暂停读取前解码器已读出的消息超过拉取队列容量时，暂存到溢出列表，不丢失、不乱序，
+     * 全部取走后才恢复读取
+     *
+     * @param messageCount 一次读出的消息数，应大于拉取队列容量
+     * @return 是否通过
+     */
+    public static boolean testPullQueueOverflow(int messageCount) throws Exception {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.initialize(createServerDevice(0));
+        List<String> bodies = createMessages(messageCount);
+        // 模拟解码器在一次读取中切出大量帧
+        for (String body : bodies) {
+            server.processFrame(body, server.getDefaultFrameState());
+        }
+        Map<String, Object> burstStats = server.getStatistics();
+        int overflow = (Integer) burstStats.get("overflowSize");
+        boolean pausedAfterBurst = (Boolean) burstStats.get("readPaused");
+
+        List<String> messages = new ArrayList<>();
+        boolean resumedEarly = false;
+        String message;
+        while (messages.size() < messageCount && (message = server.receive()) != null) {
+            messages.add(message);
+            if (!(Boolean) server.getStatistics().get("readPaused") && messages.size() < messageCount - 500) {
+                resumedEarly = true;
+            }
+        }
+
+        boolean inOrder = messages.equals(bodies);
+        Map<String, Object> adapterStats = server.getStatistics();
+        boolean passed = inOrder && overflow > 0 && pausedAfterBurst && !resumedEarly
+                && !(Boolean) adapterStats.get("readPaused") && (Integer) adapterStats.get("overflowSize") == 0;
+        log.info("一次读出 {} 条，溢出暂存 {} 条，取出 {} 条，顺序正确: {}，溢出取完前恢复读取: {}", messageCount, overflow,
+                messages.size(), inOrder, resumedEarly);
+        log.info("拉取队列溢出测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 服务端发送慢：消息在发送到服务端完成前仍计入背压，发送完成后才释放
+     *
+     * @param messageCount 消息数，不超过一批处理的数量（默认50）
+     * @return 是否通过
+     */
+    public static boolean testSlowServerSend(int messageCount) throws Exception {
+        List<CompletableFuture<Boolean>> sends = new CopyOnWriteArrayList<>();
+        MessageProcessService service = new MessageProcessService(null, null) {
+            @Override
+            public boolean shouldProcessInGroups(Message message) {
+                return false;
+            }
+
+            @Override
+            public Message processMessage(Message message) {
+                message.setStatus(MessageStatus.PROCESSED.name());
+                return message;
+            }
+
+            @Override
+            public CompletableFuture<Boolean> sendToServerAsync(Message message) {
+                CompletableFuture<Boolean> send = new CompletableFuture<>();
+                sends.add(send);
+                return send;
+            }
+        };
+        Device device = createServerDevice(0);
+        DeviceService deviceService = new DeviceService(null) {
+            @Override
+            public Message receiveMessage(Device d) {
+                return Message.builder()
+                        .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                        .deviceId(d.getId())
+                        .rawContent(HL7DeviceSimulator.generateORU_R01("SLOW", "慢服务端", "GLU", "5.6"))
+                        .status(MessageStatus.NEW.name())
+                        .build();
+            }
+
+            @Override
+            public void commitMessage(Device d, Message message, boolean delivered) {
+            }
+        };
+        DeviceManager deviceManager = new DeviceManager(null, null, null) {
+            @Override
+            public Device getDevice(String deviceId) {
+                return device;
+            }
+        };
+        BackpressureController controller = new BackpressureController();
+        controller.setWaterMarks(messageCount / 4, messageCount / 2);
+        MessageProcessor processor = new MessageProcessor(deviceService, service, deviceManager, controller);
+
+        for (int i = 0; i < messageCount; i++) {
+            processor.receiveMessage(device.getId());
+        }
+        int queued = controller.getPendingCount();
+        // 处理完成、发送尚未完成
+        processor.processMessageQueue();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (sends.size() < messageCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        int pendingWhileSending = controller.getPendingCount();
+        boolean pausedWhileSending = controller.isPaused();
+
+        sends.forEach(send -> send.complete(true));
+        int pendingAfterSend = controller.getPendingCount();
+
+        boolean passed = queued == messageCount && sends.size() == messageCount
+                && pendingWhileSending == messageCount && pausedWhileSending
+                && pendingAfterSend == 0 && !controller.isPaused();
+        log.info("入队 {} 条，发送中待处理数: {}（暂停读取: {}），发送完成后待处理数: {}", queued, pendingWhileSending,
+                pausedWhileSending, pendingAfterSend);
+        log.info("慢服务端背压测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    private static List<String> createMessages(int messageCount) {
+        List<String> bodies = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++) {
+            bodies.add(HL7DeviceSimulator.generateORU_R01("BP-" + i, "背压测试", "GLU", String.valueOf(i)));
+        }
+        return bodies;
+    }
+
+    private static void sendMessages(Socket socket, List<String> bodies) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        for (String body : bodies) {
+            out.write((START_BLOCK + body + END_BLOCK).getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+
+    private static Device createServerDevice(int port) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("背压测试服务器")
+                .model("BACKPRESSURE_TEST")
+                .connectionType("NETWORK")
+                .connectionParams(port + ":MLLP:SERVER")
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18096;
+        log.info("=== 开始背压测试 ===");
+        boolean passed = testSlowProcessing(port, 2000);
+        passed &= testPullQueue(port + 1, 1500);
+        passed &= testPullQueueOverflow(800);
+        passed &= testSlowServerSend(40);
+        log.info("=== 背压测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
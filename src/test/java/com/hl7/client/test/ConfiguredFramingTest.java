@@ -0,0 +1,231 @@
+package com.hl7.client.test;
+
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.network.message.BG800MessageCompletionStrategy;
+import com.hl7.client.infrastructure.adapter.network.message.CompiledFramingStrategy;
+import com.hl7.client.infrastructure.adapter.network.message.DefaultMessageCompletionStrategy;
+import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategy;
+import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategyManager;
+import com.hl7.client.infrastructure.config.CommunicationConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 配置分帧规则测试
+ * 验证配置的帧开始/结束序列、长度前缀、校验和、ACK/NAK和ENQ应答编译后的切分结果，
+ * 数据任意切块到达时结果一致，以及策略管理器按型号优先使用配置的规则
+ */
+@Slf4j
+public class ConfiguredFramingTest {
+
+    private static final char STX = 0x02;
+    private static final char ETX = 0x03;
+    private static final char ENQ = 0x05;
+    private static final char ACK = 0x06;
+    private static final char NAK = 0x15;
+
+    /**
+     * 检查过程中收集的结果
+     */
+    private static final class Collected {
+        private final List<String> frames = new ArrayList<>();
+        private final StringBuilder replies = new StringBuilder();
+    }
+
+    /**
+     * MLLP式的帧开始和多个结束序列，帧前的杂散数据丢弃，任意切块结果一致
+     */
+    public static boolean testDelimiters() {
+        CommunicationConfig.FramingConfig config = new CommunicationConfig.FramingConfig();
+        config.setStart("VT");
+        config.setEnd(Arrays.asList("FS CR", "FS LF"));
+        CompiledFramingStrategy strategy = CompiledFramingStrategy.compile("MLLP_LIKE", config);
+
+        String wire = "noise\u000bMSH|1\rPID|1\r\u001c\r\r\n\u000bMSH|2\r\u001c\n\u000bMSH|3\u001c";
+        List<String> expected = Arrays.asList("MSH|1\rPID|1\r", "MSH|2\r");
+
+        boolean passed = true;
+        for (int chunkSize : new int[]{1, 2, 3, 7, wire.length()}) {
+            Collected collected = feed(strategy, wire, chunkSize);
+            boolean matched = collected.frames.equals(expected);
+            if (!matched) {
+                log.warn("按 {} 字节分块切出: {}", chunkSize, collected.frames);
+            }
+            passed &= matched;
+        }
+        log.info("帧开始/结束序列测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * ASTM式的逐帧校验：ENQ回复ACK，校验通过回复ACK，校验和错误回复NAK并丢弃该帧
+     */
+    public static boolean testChecksumAndReplies() {
+        CommunicationConfig.FramingConfig config = new CommunicationConfig.FramingConfig();
+        config.setStart("STX");
+        config.setEnd(Arrays.asList("ETX", "ETB"));
+        config.setChecksum("SUM8");
+        config.setTrailer("CR LF");
+        config.setAck("ACK");
+        config.setNak("NAK");
+        config.setEnq("ENQ");
+        config.setEnqReply("ACK");
+        CompiledFramingStrategy strategy = CompiledFramingStrategy.compile("ASTM_LIKE", config);
+
+        String good1 = astmFrame("1H|\\^&\r");
+        String bad = astmFrame("2R|1|^^^GLU|5.6\r").replace("5.6", "5.7");
+        String good2 = astmFrame("2R|1|^^^GLU|5.6\r");
+        String wire = ENQ + good1 + bad + good2 + (char) 0x04;
+
+        boolean passed = true;
+        for (int chunkSize : new int[]{1, 5, wire.length()}) {
+            Collected collected = feed(strategy, wire, chunkSize);
+            boolean matched = collected.frames.equals(Arrays.asList("1H|\\^&\r", "2R|1|^^^GLU|5.6\r"))
+                    && collected.replies.toString().equals("" + ACK + ACK + NAK + ACK);
+            if (!matched) {
+                log.warn("按 {} 字节分块: 消息 {}，应答 {}", chunkSize, collected.frames, collected.replies.length());
+            }
+            passed &= matched;
+        }
+        log.info("校验和与应答测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 长度前缀：帧体中出现帧开始字节也按长度切分
+     */
+    public static boolean testLengthPrefix() {
+        CommunicationConfig.FramingConfig config = new CommunicationConfig.FramingConfig();
+        config.setStart("STX");
+        config.setLengthPrefix(4);
+        CompiledFramingStrategy strategy = CompiledFramingStrategy.compile("LENGTH_LIKE", config);
+
+        String body1 = "AB" + STX + "CD";
+        String body2 = "HELLO";
+        String wire = "xx" + STX + "0005" + body1 + STX + "0005" + body2 + STX + "00";
+
+        boolean passed = true;
+        for (int chunkSize : new int[]{1, 4, wire.length()}) {
+            Collected collected = feed(strategy, wire, chunkSize);
+            passed &= collected.frames.equals(Arrays.asList(body1, body2));
+        }
+        log.info("长度前缀测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 策略管理器启动时编译配置的规则，配置的规则优先于内置策略，错误的规则被忽略
+     */
+    public static boolean testManagerResolution() {
+        CommunicationConfig communicationConfig = new CommunicationConfig();
+        CommunicationConfig.DeviceConfig configured = new CommunicationConfig.DeviceConfig();
+        CommunicationConfig.FramingConfig framing = new CommunicationConfig.FramingConfig();
+        framing.setEnd(Collections.singletonList("CR LF"));
+        configured.setFraming(framing);
+        communicationConfig.getDevices().put("BG800", configured);
+
+        CommunicationConfig.DeviceConfig broken = new CommunicationConfig.DeviceConfig();
+        CommunicationConfig.FramingConfig brokenFraming = new CommunicationConfig.FramingConfig();
+        brokenFraming.setChecksum("CRC99");
+        brokenFraming.setEnd(Collections.singletonList("CR"));
+        broken.setFraming(brokenFraming);
+        communicationConfig.getDevices().put("BROKEN", broken);
+
+        DefaultMessageCompletionStrategy defaultStrategy = new DefaultMessageCompletionStrategy(null);
+        List<MessageCompletionStrategy> strategies = new ArrayList<>(
+                Arrays.asList(new BG800MessageCompletionStrategy(), defaultStrategy));
+        MessageCompletionStrategyManager manager = new MessageCompletionStrategyManager(strategies, defaultStrategy);
+        manager.setCommunicationConfig(communicationConfig);
+        manager.initialize();
+
+        boolean passed = manager.getStrategy("BG800") instanceof CompiledFramingStrategy
+                && manager.getStrategy("bg800") instanceof CompiledFramingStrategy
+                && manager.getStrategy("BROKEN") == defaultStrategy;
+        log.info("BG800使用 {}，BROKEN使用 {}", manager.getStrategy("BG800").getDescription(),
+                manager.getStrategy("BROKEN").getDescription());
+        log.info("策略管理器解析测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 编译后的规则单次扫描的吞吐
+     */
+    public static boolean testThroughput(int megabytes) {
+        CommunicationConfig.FramingConfig config = new CommunicationConfig.FramingConfig();
+        config.setStart("VT");
+        config.setEnd(Arrays.asList("FS CR", "FS LF"));
+        config.setEnq("ENQ");
+        config.setEnqReply("ACK");
+        CompiledFramingStrategy strategy = CompiledFramingStrategy.compile("THROUGHPUT", config);
+
+        StringBuilder message = new StringBuilder("\u000bMSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|1|P|2.5\r");
+        for (int i = 0; i < 40; i++) {
+            message.append("OBX|").append(i).append("|NM|GLU^Glucose||5.6|mmol/L|3.9-6.1|N|||F\r");
+        }
+        message.append("\u001c\r");
+        StringBuilder wire = new StringBuilder();
+        while (wire.length() < megabytes * 1024 * 1024) {
+            wire.append(message);
+        }
+        int expected = wire.length() / message.length();
+
+        // 预热
+        feed(strategy, wire.toString(), 4096);
+        long start = System.nanoTime();
+        Collected collected = feed(strategy, wire.toString(), 4096);
+        long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+
+        boolean passed = collected.frames.size() == expected;
+        log.info("{}MB按4KB分块扫描 {}us，{} MB/s，切出 {} 条消息（期望 {}）", megabytes, micros,
+                (long) megabytes * 1_000_000L / micros, collected.frames.size(), expected);
+        log.info("吞吐测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 按适配器读取路径的方式逐块追加到缓冲区并检查
+     */
+    private static Collected feed(MessageCompletionStrategy strategy, String data, int chunkSize) {
+        Collected collected = new Collected();
+        FrameState state = new FrameState("test");
+        for (int i = 0; i < data.length(); i += chunkSize) {
+            String chunk = data.substring(i, Math.min(data.length(), i + chunkSize));
+            state.getBuffer().append(chunk);
+            FrameResult result = strategy.onData(chunk, state, null);
+            collected.frames.addAll(result.getFrames());
+            if (result.getReply() != null) {
+                collected.replies.append(result.getReply());
+            }
+        }
+        return collected;
+    }
+
+    private static String astmFrame(String text) {
+        String body = text + ETX;
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum += body.charAt(i);
+        }
+        return STX + body + String.format("%02X", checksum & 0xFF) + "\r\n";
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        log.info("=== 开始配置分帧规则测试 ===");
+        boolean passed = testDelimiters();
+        passed &= testChecksumAndReplies();
+        passed &= testLengthPrefix();
+        passed &= testManagerResolution();
+        passed &= testThroughput(megabytes);
+        log.info("=== 配置分帧规则测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,195 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 连接超时测试
+ * 验证半包超时后丢弃或按完整消息处理、读空闲连接被关闭（包括AUTO端口上还没识别协议的连接），
+ * 以及大量连接同时半包超时的处理
+ */
+@Slf4j
+public class ConnectionTimeoutTest {
+
+    private static final String START_BLOCK = "\u000b";
+    private static final String END_BLOCK = "\u001c\r";
+
+    /**
+     * TCP协议半包超时：DISCARD丢弃半包，后续消息不受影响；FLUSH把半包当作完整消息处理
+     */
+    public static boolean testTcpPartialFrame(int port) throws Exception {
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port + ":TCP:SERVER:frameTimeout=1", received);
+        boolean discardPassed;
+        try (Socket socket = new Socket("localhost", port)) {
+            write(socket, "PARTIAL-");
+            Thread.sleep(2500);
+            write(socket, "COMPLETE\n");
+            waitFor(received, 1, 2000);
+            discardPassed = received.size() == 1 && "COMPLETE\n".equals(received.peek());
+            log.info("TCP半包丢弃: 收到 {}", received);
+        } finally {
+            server.disconnect();
+        }
+
+        received.clear();
+        server = startServer((port + 1) + ":TCP:SERVER:frameTimeout=1:onFrameTimeout=FLUSH", received);
+        boolean flushPassed;
+        try (Socket socket = new Socket("localhost", port + 1)) {
+            write(socket, "NO-TERMINATOR");
+            waitFor(received, 1, 3000);
+            flushPassed = received.size() == 1 && "NO-TERMINATOR".equals(received.peek());
+            log.info("TCP半包按完整消息处理: 收到 {}", received);
+        } finally {
+            server.disconnect();
+        }
+
+        boolean passed = discardPassed && flushPassed;
+        log.info("TCP半包超时测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 读空闲超时：连接上长时间没有数据时服务器主动关闭
+     * AUTO端口上连接后一直不发数据的客户端还没有识别出协议，同样要关闭
+     */
+    public static boolean testReadIdle(int port, String protocol) throws Exception {
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port + ":" + protocol + ":SERVER:readIdle=1", received);
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(3000);
+            long start = System.currentTimeMillis();
+            boolean closed;
+            try {
+                closed = socket.getInputStream().read() < 0;
+            } catch (SocketTimeoutException e) {
+                closed = false;
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            // 通道组在通道关闭回调中异步移除客户端，稍等片刻再检查连接数
+            long deadline = System.currentTimeMillis() + 1000;
+            while (server.getClientCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            boolean passed = closed && elapsed >= 900 && server.getClientCount() == 0;
+            log.info("{}端口读空闲 {}ms 后连接{}关闭", protocol, elapsed, closed ? "已" : "未");
+            log.info("{}读空闲超时测试{}", protocol, passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            server.disconnect();
+        }
+    }
+
+    /**
+     * 大量MLLP连接同时留下半包，超时后全部丢弃，之后每个连接发送的完整消息都不会拼上旧数据
+     */
+    public static boolean testManyPartialFrames(int port, int connections) throws Exception {
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port + ":MLLP:SERVER:frameTimeout=1", received);
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Socket socket = new Socket("localhost", port);
+                sockets.add(socket);
+                write(socket, START_BLOCK + "MSH|STALE-" + i);
+            }
+            while (server.getClientCount() < connections) {
+                Thread.sleep(10);
+            }
+
+            // 等待所有半包超时
+            Thread.sleep(2500);
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                write(sockets.get(i), START_BLOCK + "MSH|FRESH-" + i + END_BLOCK);
+            }
+            waitFor(received, connections, 10000);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            boolean clean = received.stream().allMatch(m -> m.startsWith("MSH|FRESH-") && !m.contains("STALE"));
+            boolean passed = received.size() == connections && clean;
+            log.info("{} 个连接半包超时后收到 {} 条完整消息（{}ms），无旧数据残留: {}", connections,
+                    received.size(), elapsedMillis, clean);
+            log.info("批量半包超时测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.disconnect();
+        }
+    }
+
+    private static NettyServerAdapter startServer(String connectionParams, Queue<String> received) {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.setMessageHandlerDelegate(new MessageHandlerDelegate() {
+            @Override
+            public boolean processMessage(Device device, String rawMessage) {
+                received.add(rawMessage);
+                return true;
+            }
+
+            @Override
+            public String isMessageComplete(Message message) {
+                // 返回null表示消息完整，返回空串表示不完整
+                return message.getRawContent().endsWith("\n") ? null : "";
+            }
+        });
+        server.initialize(Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("超时测试服务器")
+                .model("TIMEOUT_TEST")
+                .connectionType("NETWORK")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build());
+        if (!server.connect()) {
+            throw new IllegalStateException("服务器启动失败: " + connectionParams);
+        }
+        return server;
+    }
+
+    private static void write(Socket socket, String data) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void waitFor(Queue<String> received, int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        // 多等一会儿，确认没有多余的消息
+        Thread.sleep(200);
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18140;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        log.info("=== 开始连接超时测试 ===");
+        boolean passed = testTcpPartialFrame(port);
+        passed &= testReadIdle(port + 2, "TCP");
+        passed &= testManyPartialFrames(port + 3, connections);
+        passed &= testReadIdle(port + 4, "AUTO");
+        log.info("=== 连接超时测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
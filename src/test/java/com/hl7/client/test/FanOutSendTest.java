@@ -0,0 +1,146 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务器模式群发测试
+ * 多个正常读取的客户端加一个从不读取的慢客户端，验证群发不阻塞调用方，
+ * 慢客户端写缓冲区超过高水位后被跳过，其他客户端照常收到全部数据
+ */
+@Slf4j
+public class FanOutSendTest {
+
+    /**
+     * 执行群发测试
+     *
+     * @param port 服务器端口
+     * @param fastClients 正常客户端数量
+     * @param messageCount 群发消息数
+     * @param messageSize 每条消息字节数
+     * @return 是否通过
+     */
+    public static boolean testFanOut(int port, int fastClients, int messageCount, int messageSize) throws Exception {
+        log.info("=== 开始群发测试 ===");
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.initialize(createServerDevice(port));
+        if (!server.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+
+        List<Socket> sockets = new ArrayList<>();
+        List<AtomicLong> received = new ArrayList<>();
+        try {
+            for (int i = 0; i < fastClients; i++) {
+                Socket socket = new Socket("localhost", port);
+                AtomicLong counter = new AtomicLong();
+                sockets.add(socket);
+                received.add(counter);
+                Thread reader = new Thread(() -> drain(socket, counter), "fast-client-" + i);
+                reader.setDaemon(true);
+                reader.start();
+            }
+
+            // 慢客户端：接收缓冲区很小且从不读取
+            Socket slow = new Socket();
+            slow.setReceiveBufferSize(4096);
+            slow.connect(new InetSocketAddress("localhost", port));
+            sockets.add(slow);
+
+            while (server.getClientCount() < fastClients + 1) {
+                Thread.sleep(10);
+            }
+
+            char[] chars = new char[messageSize - 1];
+            Arrays.fill(chars, 'X');
+            String message = new String(chars) + "\r";
+
+            long maxSendMicros = 0;
+            int minWritable = Integer.MAX_VALUE;
+            long start = System.nanoTime();
+            for (int i = 0; i < messageCount; i++) {
+                long sendStart = System.nanoTime();
+                server.send(message);
+                maxSendMicros = Math.max(maxSendMicros, (System.nanoTime() - sendStart) / 1000);
+                minWritable = Math.min(minWritable, server.getWritableClientCount());
+                Thread.sleep(1);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // 等待正常客户端读完
+            long expected = (long) messageCount * messageSize;
+            long deadline = System.currentTimeMillis() + 10000;
+            while (System.currentTimeMillis() < deadline && !allReceived(received, expected)) {
+                Thread.sleep(20);
+            }
+
+            boolean fastComplete = allReceived(received, expected);
+            boolean slowSkipped = minWritable <= fastClients;
+            boolean passed = fastComplete && slowSkipped && maxSendMicros < 100_000;
+            log.info("消息数: {}，每条: {} 字节，总耗时: {}ms，单次send最大耗时: {}us", messageCount, messageSize,
+                    elapsedMillis, maxSendMicros);
+            log.info("正常客户端全部收齐: {}，慢客户端被跳过: {}（最少可写客户端数: {}）",
+                    fastComplete, slowSkipped, minWritable);
+            log.info("=== 群发测试{} ===", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.disconnect();
+        }
+    }
+
+    private static boolean allReceived(List<AtomicLong> received, long expected) {
+        for (AtomicLong counter : received) {
+            if (counter.get() < expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void drain(Socket socket, AtomicLong counter) {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = socket.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                counter.addAndGet(n);
+            }
+        } catch (Exception e) {
+            // 测试结束关闭连接
+        }
+    }
+
+    private static Device createServerDevice(int port) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("群发测试服务器")
+                .model("FANOUT_TEST")
+                .connectionType("NETWORK")
+                .connectionParams(port + ":TCP:SERVER")
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18095;
+        boolean passed = testFanOut(port, 10, 1000, 16 * 1024);
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,225 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import com.hl7.client.infrastructure.adapter.file.FileAdapter;
+import com.hl7.client.infrastructure.factory.DeviceAdapterFactory;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件接收测试
+ * 验证积压的大量结果文件并行读取、按文件顺序输出消息，一个文件中的多条消息被拆开，
+ * 正在写入的文件等写完后才读取，每个监视目录使用独立的适配器
+ */
+@Slf4j
+public class FileIngestionTest {
+
+    private static String message(String device, int file, int index) {
+        return "MSH|^~\\&|" + device + "|HOSP|LIS|HOSP|20240101120000||ORU^R01|" + file + "-" + index + "|P|2.5\n"
+                + "PID|1||P" + file + "-" + index + "||张三\n"
+                + "OBX|1|NM|GLU^Glucose||" + (index % 100) + "|mmol/L|3.9-6.1|N|||F";
+    }
+
+    /**
+     * 写入一个结果文件，段之间用回车分隔
+     */
+    private static List<String> writeFile(Path file, String device, int fileIndex, int messages) throws Exception {
+        List<String> expected = new ArrayList<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < messages; i++) {
+                String message = message(device, fileIndex, i);
+                expected.add(message);
+                writer.write(message.replace('\n', '\r'));
+                writer.write('\r');
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * 接收指定数量的消息
+     */
+    private static List<String> receive(DeviceAdapter adapter, int count, long timeoutMillis) {
+        List<String> received = new ArrayList<>(count);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            String message = adapter.receive();
+            if (message != null) {
+                adapter.commit(message, true);
+                received.add(message);
+            }
+        }
+        return received;
+    }
+
+    /**
+     * 停机后积压的大量文件：并行读取，消息顺序与文件顺序一致，处理后移动到done目录
+     */
+    public static boolean testBacklog(File root, int fileCount, int messagesPerFile) throws Exception {
+        Path dir = new File(root, "backlog").toPath();
+        Files.createDirectories(dir);
+        List<String> expected = new ArrayList<>();
+        long oldest = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < fileCount; i++) {
+            Path file = dir.resolve(String.format("result-%05d.hl7", i));
+            expected.addAll(writeFile(file, "LAB", i, messagesPerFile));
+            // 模拟停机期间依次写入的文件
+            Files.setLastModifiedTime(file, FileTime.fromMillis(oldest + i * 10L));
+        }
+
+        FileAdapter adapter = new FileAdapter();
+        adapter.initialize(createDevice("积压文件", dir + ":*.hl7"));
+        long start = System.nanoTime();
+        adapter.connect();
+        List<String> received = receive(adapter, expected.size(), 60000);
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        // 文件的消息全部确认后移动到done目录
+        String[] remaining = dir.toFile().list((d, name) -> name.endsWith(".hl7"));
+        String[] done = dir.resolve("done").toFile().list();
+        adapter.disconnect();
+
+        boolean passed = received.equals(expected) && remaining != null && remaining.length == 0
+                && done != null && done.length == fileCount;
+        if (!received.equals(expected)) {
+            log.warn("期望 {} 条消息，收到 {} 条", expected.size(), received.size());
+        }
+        log.info("{} 个文件共 {} 条消息，{}ms 处理完，{} 个文件/秒（每个文件固定等待500ms时至少需要 {}s）",
+                fileCount, received.size(), millis, fileCount * 1000L / millis, fileCount / 2);
+        log.info("积压文件测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 正在写入的文件等写完后才读取
+     */
+    public static boolean testSlowWriter(File root) throws Exception {
+        Path dir = new File(root, "slow").toPath();
+        Files.createDirectories(dir);
+        FileAdapter adapter = new FileAdapter();
+        adapter.setStableMillis(300);
+        adapter.initialize(createDevice("慢速写入", dir + ":*.hl7"));
+        adapter.connect();
+
+        List<String> expected = new ArrayList<>();
+        Path file = dir.resolve("slow.hl7");
+        long writeDone;
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW)) {
+            for (int i = 0; i < 4; i++) {
+                String message = message("SLOW", 0, i);
+                expected.add(message);
+                out.write((message.replace('\n', '\r') + "\r").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(150);
+            }
+            writeDone = System.currentTimeMillis();
+        }
+
+        List<String> received = receive(adapter, expected.size(), 5000);
+        long receivedAt = System.currentTimeMillis();
+        adapter.disconnect();
+
+        boolean passed = received.equals(expected) && receivedAt >= writeDone;
+        log.info("写入耗时约600ms，写完 {}ms 后收到 {} 条消息", receivedAt - writeDone, received.size());
+        log.info("慢速写入测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 大文件流式读取，拆分出全部消息
+     */
+    public static boolean testLargeFile(File root, int messages) throws Exception {
+        Path dir = new File(root, "large").toPath();
+        Files.createDirectories(dir);
+        Path file = dir.resolve("large.hl7");
+        List<String> expected = writeFile(file, "BIG", 0, messages);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        long size = file.toFile().length();
+
+        FileAdapter adapter = new FileAdapter();
+        adapter.initialize(createDevice("大文件", dir + ":*.hl7"));
+        long start = System.nanoTime();
+        adapter.connect();
+        List<String> received = receive(adapter, expected.size(), 30000);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        adapter.disconnect();
+
+        boolean passed = received.equals(expected);
+        log.info("大文件 {} 字节，拆分出 {} 条消息，耗时 {}ms", size, received.size(), millis);
+        log.info("大文件测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 每个文件设备独立的适配器，消息互不混淆
+     */
+    public static boolean testAdapterPerDevice(File root) throws Exception {
+        DeviceAdapterFactory factory = new DeviceAdapterFactory(new DefaultListableBeanFactory());
+        Path dirA = new File(root, "deviceA").toPath();
+        Path dirB = new File(root, "deviceB").toPath();
+        DeviceAdapter first = factory.createAdapter(createDevice("设备A", dirA + ":*.hl7"));
+        DeviceAdapter second = factory.createAdapter(createDevice("设备B", dirB + ":*.txt"));
+
+        List<String> expectedA = new ArrayList<>();
+        List<String> expectedB = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expectedA.addAll(writeFile(dirA.resolve(String.format("a-%02d.hl7", i)), "A", i, 2));
+            expectedB.addAll(writeFile(dirB.resolve(String.format("b-%02d.txt", i)), "B", i, 2));
+        }
+        // 不匹配文件模式的文件不读取
+        writeFile(dirA.resolve("ignored.txt"), "X", 0, 1);
+        first.connect();
+        second.connect();
+
+        List<String> receivedA = receive(first, expectedA.size(), 10000);
+        List<String> receivedB = receive(second, expectedB.size(), 10000);
+        boolean passed = first != second && receivedA.equals(expectedA) && receivedB.equals(expectedB)
+                && Files.exists(dirA.resolve("ignored.txt"));
+        factory.disposeAdapter(first);
+        factory.disposeAdapter(second);
+        log.info("每台设备独立适配器测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    private static Device createDevice(String name, String connectionParams) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name(name)
+                .model("Test01")
+                .connectionType("FILE")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int messagesPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        File root = Files.createTempDirectory("hl7-file").toFile();
+        log.info("=== 开始文件接收测试 ===");
+        boolean passed = testBacklog(root, fileCount, messagesPerFile);
+        passed &= testSlowWriter(root);
+        passed &= testLargeFile(root, 50000);
+        passed &= testAdapterPerDevice(root);
+        log.info("=== 文件接收测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,227 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.infrastructure.adapter.file.FileAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件处理流水线恢复测试
+ * 验证接收队列有界、处理跟不上时不再移入新文件；文件依次经过processing、done、failed目录；
+ * 中途停止后重新连接，按进度索引从中断的消息继续，不重复、不遗漏；取走后没有发送成功的消息重新连接后重新发送
+ */
+@Slf4j
+public class FilePipelineRecoveryTest {
+
+    private static String message(int file, int index) {
+        return "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|" + file + "-" + index + "|P|2.5\n"
+                + "OBX|1|NM|GLU^Glucose||" + index + "|mmol/L|3.9-6.1|N|||F";
+    }
+
+    /**
+     * 写入结果文件，修改时间设为过去，扫描后立即认为写入完成
+     */
+    private static List<String> writeFiles(Path dir, int fileCount, int messagesPerFile) throws Exception {
+        List<String> expected = new ArrayList<>();
+        long oldest = System.currentTimeMillis() - 60000;
+        for (int f = 0; f < fileCount; f++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < messagesPerFile; i++) {
+                String message = message(f, i);
+                expected.add(message);
+                content.append(message.replace('\n', '\r')).append('\r');
+            }
+            Path file = dir.resolve(String.format("result-%04d.hl7", f));
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(oldest + f * 10L));
+        }
+        return expected;
+    }
+
+    private static List<String> receive(FileAdapter adapter, int count) {
+        List<String> received = new ArrayList<>(count);
+        long deadline = System.currentTimeMillis() + 20000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            String message = adapter.receive();
+            if (message != null) {
+                adapter.commit(message, true);
+                received.add(message);
+            }
+        }
+        return received;
+    }
+
+    private static int count(Path dir, String suffix) {
+        String[] names = dir.toFile().list((d, name) -> name.endsWith(suffix));
+        return names == null ? 0 : names.length;
+    }
+
+    private static FileAdapter createAdapter(Path dir, int queueCapacity, int maxInFlightFiles) {
+        FileAdapter adapter = new FileAdapter();
+        adapter.setQueueCapacity(queueCapacity);
+        adapter.setMaxInFlightFiles(maxInFlightFiles);
+        adapter.initialize(Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("文件流水线")
+                .model("Test01")
+                .connectionType("FILE")
+                .connectionParams(dir + ":*.hl7")
+                .status(DeviceStatus.DISCONNECTED)
+                .build());
+        return adapter;
+    }
+
+    /**
+     * 没有消费时，移入processing目录的文件数受接收队列和同时处理文件数限制
+     */
+    public static boolean testBounded(File root) throws Exception {
+        Path dir = new File(root, "bounded").toPath();
+        Files.createDirectories(dir);
+        int fileCount = 200;
+        int messagesPerFile = 10;
+        List<String> expected = writeFiles(dir, fileCount, messagesPerFile);
+
+        FileAdapter adapter = createAdapter(dir, 50, 4);
+        adapter.connect();
+        Thread.sleep(1000);
+        int processing = count(dir.resolve("processing"), ".hl7");
+        int waiting = count(dir, ".hl7");
+
+        List<String> received = receive(adapter, expected.size());
+        int done = count(dir.resolve("done"), ".hl7");
+        adapter.disconnect();
+
+        // 接收队列50条（5个文件）、发布线程手上1个文件、已提交4个文件，再加监视线程正在提交的1个
+        boolean passed = processing <= 5 + 1 + 4 + 1 && waiting >= fileCount - 11
+                && received.equals(expected) && done == fileCount;
+        log.info("无消费时处理中 {} 个文件、等待 {} 个文件；消费后收到 {} 条消息，完成 {} 个文件", processing, waiting,
+                received.size(), done);
+        log.info("有界队列测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 中途停止后重新连接，从中断的消息继续
+     */
+    public static boolean testResume(File root) throws Exception {
+        Path dir = new File(root, "resume").toPath();
+        Files.createDirectories(dir);
+        List<String> expected = writeFiles(dir, 3, 10);
+
+        FileAdapter first = createAdapter(dir, 100, 4);
+        first.connect();
+        List<String> received = new ArrayList<>(receive(first, 25));
+        first.disconnect();
+        int doneAfterStop = count(dir.resolve("done"), ".hl7");
+        int processingAfterStop = count(dir.resolve("processing"), ".hl7");
+
+        // 模拟写入进度时崩溃留下的不完整行
+        Files.write(dir.resolve("processing").resolve(".checkpoint"), "result-0002.h".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        FileAdapter second = createAdapter(dir, 100, 4);
+        second.connect();
+        // 已取走的消息重复出现时，与期望的顺序不一致
+        received.addAll(receive(second, expected.size() - 25));
+        second.disconnect();
+
+        boolean passed = doneAfterStop == 2 && processingAfterStop == 1 && received.equals(expected)
+                && count(dir.resolve("done"), ".hl7") == 3 && count(dir.resolve("processing"), ".hl7") == 0;
+        log.info("停止时完成 {} 个文件、处理中 {} 个；重新连接后共收到 {} 条消息", doneAfterStop,
+                processingAfterStop, received.size());
+        log.info("中断恢复测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 取走后没有发送成功的消息不推进进度，文件留在processing目录，重新连接后从这条消息重新发送
+     */
+    public static boolean testUncommitted(File root) throws Exception {
+        Path dir = new File(root, "uncommitted").toPath();
+        Files.createDirectories(dir);
+        List<String> expected = writeFiles(dir, 1, 10);
+
+        FileAdapter first = createAdapter(dir, 100, 4);
+        first.connect();
+        List<String> taken = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 20000;
+        while (taken.size() < 8 && System.currentTimeMillis() < deadline) {
+            String message = first.receive();
+            if (message != null) {
+                taken.add(message);
+            }
+        }
+        // 第6条发送失败，之后的两条发送成功
+        for (int i = 0; i < taken.size(); i++) {
+            first.commit(taken.get(i), i != 5);
+        }
+        first.disconnect();
+        int doneAfterStop = count(dir.resolve("done"), ".hl7");
+        int processingAfterStop = count(dir.resolve("processing"), ".hl7");
+
+        FileAdapter second = createAdapter(dir, 100, 4);
+        second.connect();
+        List<String> resent = receive(second, 5);
+        Thread.sleep(100);
+        second.disconnect();
+
+        boolean passed = taken.equals(expected.subList(0, 8)) && doneAfterStop == 0 && processingAfterStop == 1
+                && resent.equals(expected.subList(5, 10)) && count(dir.resolve("done"), ".hl7") == 1;
+        log.info("停止时完成 {} 个文件、处理中 {} 个；重新连接后重新收到 {} 条消息", doneAfterStop,
+                processingAfterStop, resent.size());
+        log.info("未确认消息重发测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 无法读取的文件移动到failed目录，不影响其他文件
+     */
+    public static boolean testFailed(File root) throws Exception {
+        Path dir = new File(root, "failed").toPath();
+        Files.createDirectories(dir);
+        List<String> expected = writeFiles(dir, 3, 2);
+        Path broken = dir.resolve("result-0001.hl7");
+        // 不是合法UTF-8的内容
+        Files.write(broken, new byte[]{'M', 'S', 'H', '|', (byte) 0xC3, (byte) 0x28, '\r'});
+        Files.setLastModifiedTime(broken, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        expected.remove(3);
+        expected.remove(2);
+
+        FileAdapter adapter = createAdapter(dir, 100, 4);
+        adapter.connect();
+        List<String> received = receive(adapter, expected.size());
+        Thread.sleep(100);
+        adapter.disconnect();
+
+        boolean passed = received.equals(expected) && count(dir.resolve("failed"), ".hl7") == 1
+                && count(dir.resolve("done"), ".hl7") == 2;
+        log.info("失败目录 {} 个文件，完成目录 {} 个文件", count(dir.resolve("failed"), ".hl7"),
+                count(dir.resolve("done"), ".hl7"));
+        log.info("失败文件测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        File root = Files.createTempDirectory("hl7-file-pipeline").toFile();
+        log.info("=== 开始文件处理流水线恢复测试 ===");
+        boolean passed = testBounded(root);
+        passed &= testResume(root);
+        passed &= testUncommitted(root);
+        passed &= testFailed(root);
+        log.info("=== 文件处理流水线恢复测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
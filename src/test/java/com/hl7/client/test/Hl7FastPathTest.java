@@ -0,0 +1,150 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.service.impl.Hl7MessageIndex;
+import com.hl7.client.domain.service.impl.Hl7MessageParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * HL7快速解析测试
+ * 对同一条消息分别用位置索引和HAPI解析，结果必须完全相同；覆盖自定义编码字符、转义序列、重复和子组件、
+ * 多个医嘱组、换行分隔的段、末尾空组件，以及由HAPI处理的其他消息类型和版本
+ */
+@Slf4j
+public class Hl7FastPathTest {
+
+    private static final String ORU = String.join("\r",
+            "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG001|P|2.5",
+            "PID|1|P001|P001^^^HOSP^MR||张^三||19800101|M",
+            "OBR|1|ORD001|FIL001|CBC^Complete Blood Count|||20240101113000",
+            "NTE|1||备注",
+            "OBX|1|NM|WBC^White Blood Cells||6.5|10*9/L|4.0-10.0|N|||F",
+            "OBX|2|ST|COMMENT^Comment||Normal\\S\\Range \\T\\ \\E\\ok||||||F",
+            "OBX|3|CE|ABO^Blood Group||A^Type A^LOCAL||||||F");
+
+    private static final Map<String, String> MESSAGES = new LinkedHashMap<>();
+
+    static {
+        MESSAGES.put("标准ORU", ORU);
+        MESSAGES.put("回车换行分隔", ORU.replace("\r", "\r\n"));
+        MESSAGES.put("自定义编码字符", String.join("\r",
+                "MSH#*@!%#LAB#HOSP#LIS#HOSP#20240101120000##ORU*R01#MSG002#P#2.5",
+                "PID#1#P002#P002***HOSP*MR##Smith%Van*John@Doe*J",
+                "OBR#1#ORD002##GLU*Glucose###20240101113000",
+                "OBX#1#ST#NOTE*Note##a!F!b!S!c*ignored######F",
+                "OBX#2#NM#GLU*Glucose##5.6**#mmol/L#3.9-6.1####F"));
+        MESSAGES.put("重复和子组件", String.join("\r",
+                "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG003|P|2.5",
+                "PID|1|P003~P004|P003||Van&Der^Berg~Smith^J",
+                "OBR|1|ORD003^LAB||HGB^Hemoglobin",
+                "OBX|1|NM|HGB^Hemoglobin||135~140|g/L|130-175|N|||F",
+                "OBX|2|TX|TEXT^Text||line1~line2||||||F"));
+        MESSAGES.put("多个医嘱组", String.join("\r",
+                "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG004|P|2.5",
+                "PID|1|P005",
+                "ORC|RE|ORD004",
+                "OBR|1|ORD004||A^First",
+                "OBX|1|NM|A1^A1||1|||||F",
+                "OBX|2|NM|A2^A2||2|||||F",
+                "ORC|RE|ORD005",
+                "OBR|2|ORD005||B^Second",
+                "OBX|1|NM|B1^B1||3|||||F"));
+        MESSAGES.put("空字段和缺少段", String.join("\r",
+                "MSH|^~\\&|||||||ORU^R01|MSG005|P|2.5",
+                "OBR|1",
+                "OBX|1|NM|||||||||"));
+        MESSAGES.put("HAPI处理的ADT", String.join("\r",
+                "MSH|^~\\&|HIS|HOSP|LIS|HOSP|20240101120000||ADT^A01|MSG006|P|2.5",
+                "EVN|A01|20240101120000",
+                "PID|1|P006|P006||李^四"));
+        MESSAGES.put("HAPI处理的v2.3", String.join("\r",
+                "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG007|P|2.3",
+                "PID|1|P007||||王^五",
+                "OBR|1|ORD007||GLU^Glucose",
+                "OBX|1|NM|GLU^Glucose||5.6|mmol/L|3.9-6.1|N|||F"));
+    }
+
+    private static Message message(String raw) {
+        return Message.builder().messageType("HL7").rawContent(raw).build();
+    }
+
+    /**
+     * 位置索引与HAPI解析结果一致
+     */
+    public static boolean testSameAsHapi() {
+        Hl7MessageParser fast = new Hl7MessageParser();
+        Hl7MessageParser hapi = new Hl7MessageParser();
+        hapi.setFastPathEnabled(false);
+        boolean passed = true;
+        for (Map.Entry<String, String> entry : MESSAGES.entrySet()) {
+            Map<String, Object> expected = hapi.parse(message(entry.getValue()));
+            Map<String, Object> actual = fast.parse(message(entry.getValue()));
+            passed &= same(entry.getKey(), expected, actual);
+        }
+        // HAPI不接受只用换行分隔的段，快速解析的结果应与回车分隔时相同
+        passed &= same("换行分隔", hapi.parse(message(ORU)), fast.parse(message(ORU.replace('\r', '\n') + "\n")));
+        log.info("与HAPI结果一致测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    private static boolean same(String name, Map<String, Object> expected, Map<String, Object> actual) {
+        boolean same = Objects.equals(expected, actual) && !expected.containsKey("error");
+        if (!same) {
+            log.warn("{}: HAPI结果 {}", name, expected);
+            log.warn("{}: 快速解析结果 {}", name, actual);
+        }
+        log.info("{}: {}", name, same ? "一致" : "不一致");
+        return same;
+    }
+
+    /**
+     * 编码字符、MSH字段编号和各级取值
+     */
+    public static boolean testAccessors() {
+        Hl7MessageIndex index = Hl7MessageIndex.parse(MESSAGES.get("自定义编码字符"));
+        int pid = index.findSegment("PID", 0);
+        int obx = index.findSegment("OBX", 0);
+        boolean passed = index.getFieldSeparator() == '#' && index.getComponentSeparator() == '*'
+                && index.getRepetitionSeparator() == '@' && index.getEscapeCharacter() == '!'
+                && index.getSubcomponentSeparator() == '%'
+                && "#".equals(index.getValue(0, 1)) && "*@!%".equals(index.getValue(0, 2))
+                && "MSG002".equals(index.getValue(0, 10)) && "R01".equals(index.getValue(0, 9, 2))
+                && index.segmentCount() == 5 && "PID".equals(index.segmentName(pid))
+                && "Smith".equals(index.getValue(pid, 5, 0, 1, 1)) && "Van".equals(index.getValue(pid, 5, 0, 1, 2))
+                && "Doe".equals(index.getValue(pid, 5, 1, 1, 1)) && index.repetitionCount(pid, 5) == 2
+                && "a#b*c".equals(index.getValue(obx, 5))
+                && index.getInt(obx, 1, -1) == 1 && index.getInt(obx, 3, -1) == -1
+                && index.isEmpty(obx, 4) && index.getValue(obx, 40) == null && index.getValue(-1, 1) == null;
+
+        Hl7MessageIndex standard = Hl7MessageIndex.parse(ORU);
+        int comment = standard.findSegment("OBX", 0) + 1;
+        passed &= "Normal^Range & \\ok".equals(standard.getValue(comment, 5))
+                && "Normal\\S\\Range \\T\\ \\E\\ok".equals(standard.getEncoded(comment, 5, 0));
+
+        boolean rejected;
+        try {
+            Hl7MessageIndex.parse("PID|1|P001");
+            rejected = false;
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        passed &= rejected;
+        log.info("取值测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        log.info("=== 开始HL7快速解析测试 ===");
+        boolean passed = testSameAsHapi();
+        passed &= testAccessors();
+        log.info("=== HL7快速解析测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,188 @@
+package com.hl7.client.test;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.parser.PipeParser;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.service.impl.HapiParserEngine;
+import com.hl7.client.domain.service.impl.Hl7MessageParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HL7解析基准测试
+ * 对包含10、100、1000个OBX段的ORU^R01消息，对比HAPI解析与位置索引快速解析的单条耗时和内存分配，
+ * 同时检查两者结果一致；再对比HAPI后备解析在调优前（共用一个默认HapiContext的解析器，启用默认校验、按版本查找模型类）
+ * 与调优后（HapiParserEngine）的单条耗时、内存分配和多线程并行吞吐
+ */
+@Slf4j
+public class Hl7ParseBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** 并行解析的线程数 */
+    private static final int PARALLEL_THREADS = 4;
+
+    /** 防止解析结果被优化掉 */
+    private static volatile int sink;
+
+    /**
+     * 一次解析调用
+     */
+    @FunctionalInterface
+    private interface ParseCall {
+        Object parse() throws Exception;
+    }
+
+    /**
+     * 生成包含指定数量OBX段的ORU^R01消息
+     */
+    static String oru(int observations) {
+        StringBuilder message = new StringBuilder(128 * observations + 256);
+        message.append("MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG").append(observations)
+                .append("|P|2.5\r");
+        message.append("PID|1|P001|P001^^^HOSP^MR||张^三||19800101|M\r");
+        message.append("OBR|1|ORD001|FIL001|CBC^Complete Blood Count|||20240101113000\r");
+        for (int i = 1; i <= observations; i++) {
+            message.append("OBX|").append(i).append("|NM|T").append(i).append("^Test ").append(i)
+                    .append("||").append(i % 100).append('.').append(i % 10)
+                    .append("|mmol/L|3.9-6.1|N|||F\r");
+        }
+        return message.toString();
+    }
+
+    /**
+     * 位置索引处理不了、需要HAPI完整解析的ADT消息
+     */
+    static String adt() {
+        return "MSH|^~\\&|HIS|HOSP|LIS|HOSP|20240101120000||ADT^A01|ADT001|P|2.5\r"
+                + "EVN|A01|20240101120000\r"
+                + "PID|1|P001|P001^^^HOSP^MR||张^三||19800101|M|||北京市^^北京^^100000||010-12345678\r"
+                + "PV1|1|I|WARD^101^1||||D001^李^医生\r"
+                + "AL1|1|DA|PCN^Penicillin\r";
+    }
+
+    /**
+     * 测量一种解析方式，返回[每条纳秒, 每条分配字节]
+     */
+    private static long[] measure(ParseCall call, int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            sink += System.identityHashCode(call.parse());
+        }
+        long allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += System.identityHashCode(call.parse());
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+        return new long[]{nanos / iterations, allocated / iterations};
+    }
+
+    /**
+     * 多个线程同时解析，返回每秒解析条数
+     */
+    private static long measureParallel(ParseCall call, int iterationsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_THREADS);
+        try {
+            // 预热
+            runParallel(executor, call, iterationsPerThread);
+            long start = System.nanoTime();
+            runParallel(executor, call, iterationsPerThread);
+            long nanos = System.nanoTime() - start;
+            return PARALLEL_THREADS * (long) iterationsPerThread * TimeUnit.SECONDS.toNanos(1) / nanos;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runParallel(ExecutorService executor, ParseCall call, int iterations) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < PARALLEL_THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    sink += System.identityHashCode(call.parse());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * 位置索引与HAPI解析对比
+     */
+    private static boolean benchmarkFastPath(int scale) throws Exception {
+        Hl7MessageParser fast = new Hl7MessageParser();
+        Hl7MessageParser hapi = new Hl7MessageParser();
+        hapi.setFastPathEnabled(false);
+        boolean passed = true;
+        for (int observations : new int[]{10, 100, 1000}) {
+            Message message = Message.builder().messageType("HL7").rawContent(oru(observations)).build();
+            Map<String, Object> expected = hapi.parse(message);
+            boolean same = Objects.equals(expected, fast.parse(message)) && !expected.containsKey("error");
+            passed &= same;
+
+            int iterations = Math.max(10, scale / observations);
+            long[] slow = measure(() -> hapi.parse(message), iterations);
+            long[] quick = measure(() -> fast.parse(message), iterations * 10);
+            log.info("{} 个OBX: HAPI {}us/条、{}KB/条；位置索引 {}us/条、{}KB/条；耗时降至 {}%，结果{}",
+                    observations, slow[0] / 1000, slow[1] / 1024, quick[0] / 1000, quick[1] / 1024,
+                    quick[0] * 100 / Math.max(1, slow[0]), same ? "一致" : "不一致");
+        }
+        return passed;
+    }
+
+    /**
+     * HAPI后备解析调优前后对比
+     */
+    private static boolean benchmarkHapiEngine(int scale) throws Exception {
+        // 调优前：一个默认上下文，所有线程共用它的解析器
+        PipeParser shared = new DefaultHapiContext().getPipeParser();
+        HapiParserEngine engine = new HapiParserEngine();
+        engine.warmUp();
+
+        boolean passed = true;
+        String[][] messages = {{"ADT^A01", adt()}, {"ORU^R01(100 OBX)", oru(100)}};
+        for (String[] entry : messages) {
+            String text = entry[1];
+            boolean same = shared.parse(text).encode().equals(engine.parse(text).encode());
+            passed &= same;
+
+            int iterations = Math.max(10, scale / (text.length() / 64));
+            long[] before = measure(() -> shared.parse(text), iterations);
+            long[] after = measure(() -> engine.parse(text), iterations);
+            long parallelBefore = measureParallel(() -> shared.parse(text), iterations);
+            long parallelAfter = measureParallel(() -> engine.parse(text), iterations);
+            log.info("{}: 调优前 {}us/条、{}KB/条、{}线程 {}条/秒；调优后 {}us/条、{}KB/条、{}线程 {}条/秒，编码结果{}",
+                    entry[0], before[0] / 1000, before[1] / 1024, PARALLEL_THREADS, parallelBefore,
+                    after[0] / 1000, after[1] / 1024, PARALLEL_THREADS, parallelAfter, same ? "一致" : "不一致");
+        }
+        engine.close();
+        return passed;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int scale = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        log.info("=== 开始HL7解析基准测试 ===");
+        boolean passed = benchmarkFastPath(scale);
+        passed &= benchmarkHapiEngine(scale);
+        log.debug("解析结果校验和: {}", sink);
+        log.info("=== HL7解析基准测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,336 @@
+package com.hl7.client.test;
+
+import cn.hutool.json.JSONUtil;
+import com.hl7.client.domain.constants.ApplicationConstants;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.model.MessageStatus;
+import com.hl7.client.domain.service.MessageParserFactory;
+import com.hl7.client.domain.service.MessageProcessService;
+import com.hl7.client.domain.service.impl.Hl7MessageParser;
+import com.hl7.client.domain.service.impl.Hl7OruStreamReader;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HL7流式解析测试
+ * 验证按医嘱组流式解析的结果与整条解析一致、每组的原始消息可以单独解析出同样的结果、
+ * OBX很多的医嘱组按上限拆分；逐段生成的超大批次在有限内存中解析完；大消息按医嘱组边解析边发送，失败的组单独重试
+ */
+@Slf4j
+public class Hl7StreamingParseTest {
+
+    /** 流式结果中整条解析没有的字段 */
+    private static final String[] GROUP_KEYS = {"patientIndex", "orderIndex", "part", "lastPart"};
+
+    /**
+     * 生成多个患者、多个医嘱组的ORU^R01批次
+     */
+    static String batch(int patients, int orders, int observations) {
+        StringBuilder message = new StringBuilder();
+        message.append("MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|BATCH001|P|2.5\r");
+        for (int p = 0; p < patients; p++) {
+            message.append("PID|1|P").append(p).append("|P").append(p).append("^^^HOSP^MR||病人^").append(p).append("\r");
+            message.append("PV1|1|O\r");
+            for (int o = 0; o < orders; o++) {
+                message.append("ORC|RE|ORD").append(p).append('-').append(o).append("\r");
+                message.append("OBR|").append(o + 1).append("|ORD").append(p).append('-').append(o)
+                        .append("||CBC^Complete Blood Count|||20240101113000\r");
+                message.append("NTE|1||批次备注\r");
+                for (int i = 1; i <= observations; i++) {
+                    message.append("OBX|").append(i).append("|NM|T").append(i).append("^Test ").append(i)
+                            .append("||").append(i % 100).append('.').append(i % 10).append("|mmol/L|3.9-6.1|N|||F\r");
+                }
+                message.append("SPM|1|SP").append(p).append('-').append(o).append("\r");
+                message.append("OBX|1|ST|SPEC^Specimen||标本观察||||||F\r");
+            }
+        }
+        return message.toString();
+    }
+
+    private static Message message(String id, String raw) {
+        return Message.builder().id(id).messageType("HL7").rawContent(raw).build();
+    }
+
+    private static Map<String, Object> withoutGroupKeys(Map<String, Object> result) {
+        Map<String, Object> copy = new HashMap<>(result);
+        for (String key : GROUP_KEYS) {
+            copy.remove(key);
+        }
+        return copy;
+    }
+
+    private static List<Hl7OruStreamReader.Group> read(String raw, int maxObservations) throws Exception {
+        Hl7OruStreamReader reader = new Hl7OruStreamReader(new StringReader(raw));
+        reader.setMaxObservationsPerGroup(maxObservations);
+        List<Hl7OruStreamReader.Group> groups = new ArrayList<>();
+        reader.read(groups::add);
+        return groups;
+    }
+
+    /**
+     * 第一组与整条解析的结果相同，每组的原始消息单独解析的结果与该组相同
+     */
+    public static boolean testSameAsWholeMessage() throws Exception {
+        Hl7MessageParser parser = new Hl7MessageParser();
+        boolean passed = true;
+        String[] samples = {
+                batch(1, 1, 5),
+                batch(3, 2, 4),
+                batch(2, 2, 3).replace("\r", "\r\n"),
+                String.join("\r",
+                        "MSH#*@!%#LAB#HOSP#LIS#HOSP#20240101120000##ORU*R01#MSG002#P#2.5",
+                        "PID#1#P002#P002***HOSP*MR##Smith%Van*John@Doe*J",
+                        "OBR#1#ORD002##GLU*Glucose###20240101113000",
+                        "OBX#1#ST#NOTE*Note##a!F!b!S!c*ignored######F",
+                        "OBX#2#NM#GLU*Glucose##5.6**#mmol/L#3.9-6.1####F"),
+                String.join("\r",
+                        "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG005|P|2.5",
+                        "OBR|1",
+                        "OBX|1|NM|||||||||",
+                        "PID|1|P009||||赵^六",
+                        "OBR|2|ORD009")
+        };
+        for (int s = 0; s < samples.length; s++) {
+            Map<String, Object> whole = parser.parse(message("S" + s, samples[s]));
+            List<Hl7OruStreamReader.Group> groups = read(samples[s], 0);
+            boolean same = !groups.isEmpty() && Objects.equals(whole, withoutGroupKeys(groups.get(0).getResult()));
+            for (Hl7OruStreamReader.Group group : groups) {
+                same &= Objects.equals(withoutGroupKeys(group.getResult()),
+                        parser.parse(message("G", group.getRawContent())));
+            }
+            log.info("样本 {}: {} 组，结果{}", s, groups.size(), same ? "一致" : "不一致");
+            passed &= same;
+        }
+
+        // 多患者多医嘱：组数、患者序号、医嘱序号，标本OBX不算观察结果
+        List<Hl7OruStreamReader.Group> groups = read(batch(3, 2, 4), 0);
+        boolean grouped = groups.size() == 6;
+        for (int g = 0; grouped && g < groups.size(); g++) {
+            Map<String, Object> result = groups.get(g).getResult();
+            grouped = Integer.valueOf(g / 2).equals(result.get("patientIndex"))
+                    && Integer.valueOf(g).equals(result.get("orderIndex"))
+                    && ("P" + g / 2).equals(result.get("patientId"))
+                    && ("ORD" + g / 2 + "-" + g % 2).equals(result.get("orderNumber"))
+                    && ((List<?>) result.get("observations")).size() == 4 && groups.get(g).isLastPart();
+        }
+        passed &= grouped;
+
+        boolean rejected;
+        try {
+            read("PID|1|P001\rOBR|1\r", 0);
+            rejected = false;
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        passed &= rejected;
+        log.info("与整条解析一致测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * OBX超过单组上限的医嘱组拆分成多个部分，按顺序拼起来与不拆分时相同
+     */
+    public static boolean testSplitLargeOrder() throws Exception {
+        String raw = batch(1, 2, 1234);
+        List<Hl7OruStreamReader.Group> whole = read(raw, 0);
+        List<Hl7OruStreamReader.Group> parts = read(raw, 500);
+
+        boolean passed = whole.size() == 2 && parts.size() == 6;
+        for (int order = 0; passed && order < 2; order++) {
+            List<Object> joined = new ArrayList<>();
+            for (int p = 0; p < 3; p++) {
+                Hl7OruStreamReader.Group part = parts.get(order * 3 + p);
+                List<?> observations = (List<?>) part.getResult().get("observations");
+                passed &= observations.size() == (p < 2 ? 500 : 234)
+                        && Integer.valueOf(p + 1).equals(part.getResult().get("part"))
+                        && part.isLastPart() == (p == 2)
+                        && Integer.valueOf(order).equals(part.getResult().get("orderIndex"));
+                joined.addAll(observations);
+            }
+            passed &= joined.equals(whole.get(order).getResult().get("observations"));
+        }
+        // 正好等于上限时不产生空的部分
+        passed &= read(batch(1, 1, 500), 500).size() == 1;
+        log.info("大医嘱组拆分测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 逐段生成的批次，不在内存中拼出整条消息
+     */
+    private static final class GeneratedBatch extends Reader {
+        private final int patients;
+        private final int observations;
+        private final StringBuilder pending = new StringBuilder();
+        private int patient = -1;
+        private int observation;
+        private int offset;
+
+        GeneratedBatch(int patients, int observations) {
+            this.patients = patients;
+            this.observations = observations;
+            pending.append("MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|HUGE|P|2.5\r");
+        }
+
+        private boolean fill() {
+            pending.setLength(0);
+            offset = 0;
+            if (patient >= 0 && observation < observations) {
+                observation++;
+                pending.append("OBX|").append(observation).append("|NM|T").append(observation)
+                        .append("^Test||").append(observation % 100).append("|mmol/L|3.9-6.1|N|||F\r");
+            } else if (patient + 1 < patients) {
+                patient++;
+                observation = 0;
+                pending.append("PID|1|P").append(patient).append("\rOBR|1|ORD").append(patient).append("||CBC^CBC\r");
+            }
+            return pending.length() > 0;
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            if (offset == pending.length() && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, pending.length() - offset);
+            pending.getChars(offset, offset + n, buffer, off);
+            offset += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 数百万个OBX的批次在有限内存中解析完，处理方收到的每组不超过上限
+     */
+    public static boolean testBoundedMemory(int patients, int observations) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+        long[] peak = {0};
+        long[] totalObservations = {0};
+        int[] largest = {0};
+
+        Hl7OruStreamReader reader = new Hl7OruStreamReader(new GeneratedBatch(patients, observations));
+        reader.setMaxObservationsPerGroup(500);
+        long start = System.nanoTime();
+        int groups = reader.read(group -> {
+            int size = ((List<?>) group.getResult().get("observations")).size();
+            totalObservations[0] += size;
+            largest[0] = Math.max(largest[0], size);
+            if (group.getResult().get("part").equals(1)) {
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory() - baseline);
+            }
+        });
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long expected = (long) patients * observations;
+        boolean passed = totalObservations[0] == expected && largest[0] <= 500
+                && groups == patients * ((observations + 499) / 500);
+        log.info("{} 个患者共 {} 个OBX: {} 组，{}ms，{}个OBX/秒；解析期间堆内存最多增长 {}MB（最大堆 {}MB）",
+                patients, expected, groups, millis, expected * 1000 / Math.max(1, millis),
+                peak[0] / 1024 / 1024, runtime.maxMemory() / 1024 / 1024);
+        log.info("有限内存测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 大消息按医嘱组边解析边发送，失败的组单独进入失败列表；
+     * 使用默认的流式阈值，消息小于默认的消息缓冲区上限，网络和串口设备也能完整收到并按组处理
+     */
+    public static boolean testSendInGroups() throws Exception {
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/parse-insert", exchange -> {
+            String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            bodies.add(body);
+            // 第3组返回错误
+            int status = bodies.size() == 3 ? 500 : 200;
+            byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+        try {
+            Hl7MessageParser parser = new Hl7MessageParser();
+            MessageParserFactory factory = new MessageParserFactory(Collections.singletonList(parser));
+            MessageProcessService service = new MessageProcessService(factory, null);
+            setField(service, "serverAddress", "http://127.0.0.1:" + server.getAddress().getPort() + "/parse-insert");
+
+            // 小消息仍然整条处理
+            Message small = message("SMALL", batch(2, 2, 10));
+            boolean smallWhole = !service.shouldProcessInGroups(small);
+
+            String raw = batch(10, 3, 200);
+            boolean deliverable = raw.length() < ApplicationConstants.MessageProcessing.MAX_BUFFER_SIZE_BYTES;
+            Message large = message("LARGE", raw);
+            boolean streamed = service.shouldProcessInGroups(large);
+            boolean allSent = service.processAndSendInGroups(large);
+            int groups = JSONUtil.parseObj(large.getProcessResult()).getInt("groups");
+
+            boolean ordered = bodies.size() == groups && groups == 30;
+            for (int g = 0; ordered && g < bodies.size(); g++) {
+                ordered = ("LARGE-" + (g + 1)).equals(JSONUtil.parseObj(bodies.get(g)).getStr("messageId"));
+            }
+            Map<String, Message> failed = service.getFailedMessages();
+            boolean passed = smallWhole && deliverable && streamed && !allSent && ordered
+                    && MessageStatus.ERROR.name().equals(large.getStatus())
+                    && failed.size() == 1 && failed.containsKey("LARGE-3")
+                    && failed.get("LARGE-3").getRawContent().length() < raw.length() / 20;
+            log.info("{}字符的消息分 {} 组发送，收到 {} 个请求，失败的组: {}", raw.length(), groups, bodies.size(),
+                    failed.keySet());
+            log.info("按医嘱组发送测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static byte[] readAll(java.io.InputStream in) throws java.io.IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        log.info("=== 开始HL7流式解析测试 ===");
+        boolean passed = testSameAsWholeMessage();
+        passed &= testSplitLargeOrder();
+        passed &= testBoundedMemory(patients, 1500);
+        passed &= testSendInGroups();
+        log.info("=== HL7流式解析测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,256 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.service.MessageParser;
+import com.hl7.client.domain.service.impl.Test01Parser;
+import com.hl7.client.infrastructure.adapter.common.AstmLinkLayer;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.network.message.BG800MessageCompletionStrategy;
+import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 增量完整性检查测试
+ * 验证策略只扫描新到达的数据：大消息分成小块到达时结果与旧的整缓冲区检查一致，耗时不再随缓冲区长度平方增长；
+ * ASTM会话逐字节到达时ACK数量和切出的消息正确；一次读取中连续到达大量消息时，耗时随消息数线性增长
+ */
+@Slf4j
+public class IncrementalCompletionTest {
+
+    private static final Device DEVICE = Device.builder().id("1").name("增量检查测试").model("Test01").build();
+
+    /**
+     * 检查过程中收集的结果
+     */
+    private static final class Collected {
+        private final List<String> frames = new ArrayList<>();
+        private final StringBuilder replies = new StringBuilder();
+        private int checks;
+    }
+
+    /**
+     * 新数据检查接口，对应适配器读取路径上的一次调用
+     */
+    private interface Checker {
+        FrameResult onData(CharSequence chunk, FrameState state);
+    }
+
+    /**
+     * 大消息分块到达：增量检查与旧接口切出相同的消息，且耗时更少
+     */
+    public static boolean testLargeMessage(int messageSize, int chunkSize) {
+        String message = buildHl7(messageSize);
+        Test01Parser parser = new Test01Parser();
+        // 只实现旧接口的解析器，由默认的onData兼容
+        MessageParser legacy = new LegacyParser(parser);
+
+        // 预热
+        feed(message, chunkSize, (chunk, state) -> parser.onData(chunk, state, DEVICE));
+        feed(message, chunkSize, (chunk, state) -> legacy.onData(chunk, state, DEVICE));
+
+        long start = System.nanoTime();
+        Collected incremental = feed(message, chunkSize, (chunk, state) -> parser.onData(chunk, state, DEVICE));
+        long incrementalMicros = (System.nanoTime() - start) / 1000;
+
+        start = System.nanoTime();
+        Collected bridged = feed(message, chunkSize, (chunk, state) -> legacy.onData(chunk, state, DEVICE));
+        long legacyMicros = (System.nanoTime() - start) / 1000;
+
+        // 块恰好在段尾回车处结束时Test01按完整消息切出，两种方式切法相同，拼起来等于原消息
+        boolean sameFrames = incremental.frames.equals(bridged.frames)
+                && message.equals(String.join("", incremental.frames));
+        boolean sameReplies = incremental.replies.toString().equals(bridged.replies.toString());
+        log.info("{} 字节消息按 {} 字节分 {} 次到达：增量检查 {}us，旧接口 {}us，切出 {} 条消息且一致: {}，回复一致: {}",
+                message.length(), chunkSize, incremental.checks, incrementalMicros, legacyMicros,
+                incremental.frames.size(), sameFrames, sameReplies);
+
+        boolean passed = sameFrames && sameReplies && incrementalMicros < legacyMicros;
+        log.info("大消息增量检查测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * ASTM会话逐字节到达：每个ENQ和数据帧回复一个ACK，EOT时切出整个会话，校验和跨块到达也能识别
+     */
+    public static boolean testAstmSession() {
+        BG800MessageCompletionStrategy strategy = new BG800MessageCompletionStrategy();
+        String session = (char) AstmLinkLayer.ENQ
+                + astmFrame(1, "H|\\^&|||BG800^1.0\r")
+                + astmFrame(2, "R|1|^^^GLU|5.6|mmol/L\r")
+                + astmFrame(3, "L|1|N\r")
+                + (char) AstmLinkLayer.EOT;
+        String ack = String.valueOf((char) AstmLinkLayer.ACK);
+
+        Collected byteByByte = feed(session, 1, checker(strategy));
+        Collected twoSessions = feed(session + session, 7, checker(strategy));
+
+        boolean passed = byteByByte.frames.size() == 1 && session.equals(byteByByte.frames.get(0))
+                && byteByByte.replies.toString().equals(repeat(ack, 4))
+                && twoSessions.frames.size() == 2 && session.equals(twoSessions.frames.get(1))
+                && twoSessions.replies.toString().equals(repeat(ack, 8));
+        log.info("ASTM会话逐字节到达: 切出 {} 条消息，ACK {} 个；两个会话按7字节分块: 切出 {} 条消息，ACK {} 个",
+                byteByByte.frames.size(), byteByByte.replies.length(),
+                twoSessions.frames.size(), twoSessions.replies.length());
+
+        // 普通文本等到结束符才切出
+        Collected text = feed("GLU 5.6\r", 3, checker(strategy));
+        passed &= text.frames.size() == 1 && text.checks == 3;
+        log.info("普通文本按3字节分块: 切出 {} 条消息", text.frames.size());
+        log.info("ASTM会话增量检查测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 一次读取中连续到达大量消息：全部切出且缓冲区清空，耗时与每条消息单独到达时相当
+     * 逐条删除缓冲区头部时一次到达的耗时随消息数平方增长，远超过逐条到达
+     */
+    public static boolean testManyFrames(int count) {
+        String message = buildHl7(200);
+        Test01Parser parser = new Test01Parser();
+        Checker hl7 = (chunk, state) -> parser.onData(chunk, state, DEVICE);
+        String session = (char) AstmLinkLayer.ENQ + astmFrame(1, "R|1|^^^GLU|5.6|mmol/L\r")
+                + (char) AstmLinkLayer.EOT;
+        Checker astm = checker(new BG800MessageCompletionStrategy());
+        String messages = repeat(message, count);
+        String sessions = repeat(session, count);
+
+        boolean passed = true;
+        for (int round = 0; round < 2; round++) {
+            // 第一轮预热
+            long hl7Whole = bestOf(messages, messages.length(), hl7);
+            long hl7Each = bestOf(messages, message.length(), hl7);
+            long astmWhole = bestOf(sessions, sessions.length(), astm);
+            long astmEach = bestOf(sessions, session.length(), astm);
+            if (round == 1) {
+                log.info("{} 条HL7文本一次到达: {} 微秒，逐条到达: {} 微秒；{} 个ASTM会话一次到达: {} 微秒，逐个到达: {} 微秒",
+                        count, hl7Whole, hl7Each, count, astmWhole, astmEach);
+                passed = hl7Whole < hl7Each * 5 && astmWhole < astmEach * 5;
+            }
+        }
+
+        Collected hl7Frames = feed(messages, messages.length(), hl7);
+        Collected astmFrames = feed(sessions, sessions.length(), astm);
+        // HL7文本的最后一条消息等下一条MSH或超时才切出
+        passed &= hl7Frames.frames.size() >= count - 1 && message.equals(hl7Frames.frames.get(count - 2))
+                && astmFrames.frames.size() == count && session.equals(astmFrames.frames.get(count - 1));
+        log.info("一次读取 {} 条消息: HL7文本切出 {} 条，ASTM会话切出 {} 个",
+                count, hl7Frames.frames.size(), astmFrames.frames.size());
+        log.info("大量消息一次到达测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 按指定分块检查整段数据的最短耗时（微秒）
+     */
+    private static long bestOf(String data, int chunkSize, Checker checker) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            feed(data, chunkSize, checker);
+            best = Math.min(best, (System.nanoTime() - start) / 1000);
+        }
+        return Math.max(best, 1);
+    }
+
+    private static Checker checker(MessageCompletionStrategy strategy) {
+        return (chunk, state) -> strategy.onData(chunk, state, DEVICE);
+    }
+
+    /**
+     * 按适配器读取路径的方式逐块追加到缓冲区并检查
+     */
+    private static Collected feed(String data, int chunkSize, Checker checker) {
+        Collected collected = new Collected();
+        FrameState state = new FrameState("test");
+        for (int i = 0; i < data.length(); i += chunkSize) {
+            String chunk = data.substring(i, Math.min(data.length(), i + chunkSize));
+            state.getBuffer().append(chunk);
+            FrameResult result = checker.onData(chunk, state);
+            collected.frames.addAll(result.getFrames());
+            if (result.getReply() != null) {
+                collected.replies.append(result.getReply());
+            }
+            collected.checks++;
+        }
+        return collected;
+    }
+
+    private static String buildHl7(int size) {
+        StringBuilder builder = new StringBuilder(size + 128);
+        builder.append("MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|1|P|2.5\r");
+        int index = 1;
+        while (builder.length() < size) {
+            builder.append("OBX|").append(index++).append("|NM|GLU^Glucose||5.6|mmol/L|3.9-6.1|N|||F\r");
+        }
+        return builder.toString();
+    }
+
+    private static String astmFrame(int frameNumber, String text) {
+        StringBuilder body = new StringBuilder();
+        body.append((char) ('0' + frameNumber % 8)).append(text).append((char) AstmLinkLayer.ETX);
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum += body.charAt(i);
+        }
+        return (char) AstmLinkLayer.STX + body.toString() + String.format("%02X", checksum & 0xFF) + "\r\n";
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 只实现旧接口的解析器
+     */
+    private static final class LegacyParser implements MessageParser {
+        private final MessageParser delegate;
+
+        private LegacyParser(MessageParser delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Map<String, Object> parse(Message message) {
+            return delegate.parse(message);
+        }
+
+        @Override
+        public String getType() {
+            return delegate.getType();
+        }
+
+        @Override
+        public boolean supports(Message message) {
+            return delegate.supports(message);
+        }
+
+        @Override
+        public String checkMessageCompleteness(Message message) {
+            return delegate.checkMessageCompleteness(message);
+        }
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        int messageSize = args.length > 0 ? Integer.parseInt(args[0]) : 1024 * 1024;
+        int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        log.info("=== 开始增量完整性检查测试 ===");
+        boolean passed = testLargeMessage(messageSize, chunkSize);
+        passed &= testAstmSession();
+        passed &= testManyFrames(args.length > 2 ? Integer.parseInt(args[2]) : 5000);
+        log.info("=== 增量完整性检查测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
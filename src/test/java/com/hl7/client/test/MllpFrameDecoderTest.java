@@ -0,0 +1,181 @@
+package com.hl7.client.test;
+
+import com.hl7.client.infrastructure.adapter.network.codec.MllpFrameDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MLLP帧解码器测试
+ * 使用EmbeddedChannel模拟分片、粘包、帧外数据和超长帧，并测量大批量ORU消息的解码耗时
+ */
+@Slf4j
+public class MllpFrameDecoderTest {
+
+    private static final String START_BLOCK = "\u000b";
+    private static final String END_BLOCK = "\u001c\r";
+
+    /**
+     * 测试一条消息被拆成多次读取
+     */
+    public static boolean testFragmentedFrame() {
+        String hl7 = HL7DeviceSimulator.generateORU_R01("P001", "患者", "GLU", "5.6");
+        byte[] bytes = (START_BLOCK + hl7 + END_BLOCK).getBytes(StandardCharsets.UTF_8);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MllpFrameDecoder(1024 * 1024));
+        // 逐字节写入，结束符和回车符也被拆开
+        for (byte b : bytes) {
+            channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{b}));
+        }
+        List<String> frames = readFrames(channel);
+        channel.finishAndReleaseAll();
+
+        boolean passed = frames.size() == 1 && hl7.equals(frames.get(0));
+        log.info("分片帧测试{}，输出帧数: {}", passed ? "通过" : "失败", frames.size());
+        return passed;
+    }
+
+    /**
+     * 测试一次读取包含多条消息以及帧间无效数据
+     */
+    public static boolean testPipelinedFrames() {
+        List<String> expected = new ArrayList<>();
+        StringBuilder stream = new StringBuilder("noise\r\n");
+        for (int i = 0; i < 5; i++) {
+            String hl7 = HL7DeviceSimulator.generateORU_R01("P" + i, "患者" + i, "GLU", String.valueOf(i));
+            expected.add(hl7);
+            stream.append(START_BLOCK).append(hl7).append(END_BLOCK).append(i % 2 == 0 ? "\n" : "");
+        }
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MllpFrameDecoder(1024 * 1024));
+        channel.writeInbound(Unpooled.copiedBuffer(stream, StandardCharsets.UTF_8));
+        List<String> frames = readFrames(channel);
+        channel.finishAndReleaseAll();
+
+        boolean passed = expected.equals(frames);
+        log.info("粘包帧测试{}，输出帧数: {}", passed ? "通过" : "失败", frames.size());
+        return passed;
+    }
+
+    /**
+     * 测试超长帧被丢弃后，后续正常帧仍能解码
+     */
+    public static boolean testTooLongFrame() {
+        List<Throwable> errors = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(new MllpFrameDecoder(64), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                errors.add(cause);
+            }
+        });
+
+        StringBuilder tooLong = new StringBuilder(START_BLOCK);
+        for (int i = 0; i < 10; i++) {
+            tooLong.append("OBX|").append(i).append("|NM|GLU||5.6|mmol/L\r");
+        }
+        channel.writeInbound(Unpooled.copiedBuffer(tooLong, StandardCharsets.UTF_8));
+        channel.writeInbound(Unpooled.copiedBuffer("OBX|99|NM\r" + END_BLOCK, StandardCharsets.UTF_8));
+        channel.writeInbound(Unpooled.copiedBuffer(START_BLOCK + "MSH|OK" + END_BLOCK, StandardCharsets.UTF_8));
+        List<String> frames = readFrames(channel);
+        channel.finishAndReleaseAll();
+
+        boolean passed = errors.size() == 1 && errors.get(0) instanceof TooLongFrameException
+                && frames.size() == 1 && "MSH|OK".equals(frames.get(0));
+        log.info("超长帧测试{}，异常数: {}，输出帧: {}", passed ? "通过" : "失败", errors.size(), frames);
+        return passed;
+    }
+
+    /**
+     * 测试超长帧的结束符与回车符被拆在两次读取中：进入丢弃状态时保留结束符，后续正常帧不丢失
+     */
+    public static boolean testTooLongFrameSplitAtEnd() {
+        List<Throwable> errors = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(new MllpFrameDecoder(64), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                errors.add(cause);
+            }
+        });
+
+        StringBuilder tooLong = new StringBuilder(START_BLOCK);
+        for (int i = 0; i < 10; i++) {
+            tooLong.append("OBX|").append(i).append("|NM|GLU||5.6|mmol/L\r");
+        }
+        // 第一次读取以结束符0x1C结尾，回车符在下一次读取中
+        tooLong.append('\u001c');
+        channel.writeInbound(Unpooled.copiedBuffer(tooLong, StandardCharsets.UTF_8));
+        channel.writeInbound(Unpooled.copiedBuffer("\r" + START_BLOCK + "MSH|OK" + END_BLOCK, StandardCharsets.UTF_8));
+        List<String> frames = readFrames(channel);
+        channel.finishAndReleaseAll();
+
+        boolean passed = errors.size() == 1 && errors.get(0) instanceof TooLongFrameException
+                && frames.size() == 1 && "MSH|OK".equals(frames.get(0));
+        log.info("超长帧结束符跨读取测试{}，异常数: {}，输出帧: {}", passed ? "通过" : "失败", errors.size(), frames);
+        return passed;
+    }
+
+    /**
+     * 测量大消息分片到达时的解码耗时
+     *
+     * @param obxCount 每条消息的OBX段数量
+     * @param chunkSize 每次读取的字节数
+     */
+    public static boolean testLargeFrameThroughput(int obxCount, int chunkSize) {
+        StringBuilder hl7 = new StringBuilder("MSH|^~\\&|LIS|HOSPITAL|EHR|HOSPITAL|20240101||ORU^R01|1|P|2.5\r");
+        for (int i = 1; i <= obxCount; i++) {
+            hl7.append("OBX|").append(i).append("|NM|ITEM").append(i).append("||").append(i).append("|mmol/L|||||F\r");
+        }
+        byte[] bytes = (START_BLOCK + hl7 + END_BLOCK).getBytes(StandardCharsets.UTF_8);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new MllpFrameDecoder(64 * 1024 * 1024));
+        long start = System.nanoTime();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - offset);
+            channel.writeInbound(Unpooled.wrappedBuffer(bytes, offset, length));
+        }
+        List<String> frames = readFrames(channel);
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+        channel.finishAndReleaseAll();
+
+        boolean passed = frames.size() == 1 && frames.get(0).length() == hl7.length();
+        log.info("大帧测试{}，OBX数: {}，字节数: {}，分片: {}，耗时: {}us", passed ? "通过" : "失败",
+                obxCount, bytes.length, chunkSize, elapsedMicros);
+        return passed;
+    }
+
+    /**
+     * 读取通道中所有解码出的帧并释放
+     */
+    private static List<String> readFrames(EmbeddedChannel channel) {
+        List<String> frames = new ArrayList<>();
+        ByteBuf frame;
+        while ((frame = channel.readInbound()) != null) {
+            frames.add(frame.toString(StandardCharsets.UTF_8));
+            frame.release();
+        }
+        return frames;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        log.info("=== 开始MLLP帧解码器测试 ===");
+        boolean passed = testFragmentedFrame();
+        passed &= testPipelinedFrames();
+        passed &= testTooLongFrame();
+        passed &= testTooLongFrameSplitAtEnd();
+        passed &= testLargeFrameThroughput(1000, 1460);
+        passed &= testLargeFrameThroughput(20000, 1460);
+        log.info("=== MLLP帧解码器测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
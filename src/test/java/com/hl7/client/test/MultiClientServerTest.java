@@ -0,0 +1,222 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多客户端并发测试
+ * 多台模拟仪器同时连接同一个服务器端口发送消息，验证每个连接的数据帧完整且互不串扰
+ */
+@Slf4j
+public class MultiClientServerTest {
+
+    // MLLP帧起始符和结束符
+    private static final String START_BLOCK = "\u000b";
+    private static final String END_BLOCK = "\u001c\r";
+
+    /**
+     * 执行并发测试
+     *
+     * @param port 服务器监听端口
+     * @param clientCount 并发客户端数量
+     * @param messagesPerClient 每个客户端发送的消息数
+     * @param protocol 服务器协议（TCP或MLLP）
+     * @return 是否全部消息完整接收
+     */
+    public static boolean testConcurrentClients(int port, int clientCount, int messagesPerClient, String protocol) {
+        log.info("=== 开始多客户端并发测试 ===");
+        log.info("端口: {}, 协议: {}, 客户端数: {}, 每客户端消息数: {}", port, protocol, clientCount, messagesPerClient);
+
+        int expectedCount = clientCount * messagesPerClient;
+        CountDownLatch allReceived = new CountDownLatch(expectedCount);
+        Map<String, AtomicInteger> receivedMessages = new ConcurrentHashMap<>();
+
+        NettyServerAdapter serverAdapter = new NettyServerAdapter();
+        serverAdapter.setMessageHandlerDelegate(new RecordingDelegate(receivedMessages, allReceived));
+        serverAdapter.initialize(createServerDevice(port, protocol));
+
+        if (!serverAdapter.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+
+        Set<String> expectedMessages = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        ExecutorService clients = Executors.newFixedThreadPool(clientCount);
+        CountDownLatch startSignal = new CountDownLatch(1);
+
+        try {
+            for (int c = 0; c < clientCount; c++) {
+                final int clientId = c;
+                clients.submit(() -> {
+                    HL7DeviceSimulator simulator = new HL7DeviceSimulator("localhost", port);
+                    try {
+                        if (!simulator.connect()) {
+                            log.error("客户端 {} 连接失败", clientId);
+                            return;
+                        }
+                        simulator.getSocket().setTcpNoDelay(true);
+
+                        List<String> messages = new ArrayList<>();
+                        for (int i = 0; i < messagesPerClient; i++) {
+                            String hl7 = HL7DeviceSimulator.generateORU_R01(
+                                    "C" + clientId + "-" + i, "患者" + clientId, "GLU", String.valueOf(100 + i));
+                            expectedMessages.add(hl7);
+                            messages.add(hl7);
+                        }
+
+                        startSignal.await();
+                        // 同一连接内逐条发送，等服务器收到上一条再发下一条；
+                        // 所有客户端同时交错发送，验证的是连接之间的隔离
+                        for (String hl7 : messages) {
+                            if (!simulator.sendMessage(START_BLOCK + hl7 + END_BLOCK)
+                                    || !waitReceived(receivedMessages, hl7, 10000)) {
+                                log.error("客户端 {} 的消息未被服务器接收", clientId);
+                                return;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        log.error("客户端 {} 发送异常: {}", clientId, e.getMessage());
+                    } finally {
+                        simulator.disconnect();
+                    }
+                });
+            }
+
+            long start = System.currentTimeMillis();
+            startSignal.countDown();
+            boolean completed = allReceived.await(60, TimeUnit.SECONDS);
+            long elapsed = System.currentTimeMillis() - start;
+
+            // 校验：每条发送的消息恰好被完整接收一次，且没有多余或被拼接的帧
+            int missing = 0;
+            for (String expected : expectedMessages) {
+                AtomicInteger count = receivedMessages.get(expected);
+                if (count == null || count.get() != 1) {
+                    missing++;
+                }
+            }
+            int unexpected = 0;
+            for (String received : receivedMessages.keySet()) {
+                if (!expectedMessages.contains(received)) {
+                    unexpected++;
+                    log.error("收到损坏或串扰的帧: {}", received.replace('\r', '|'));
+                }
+            }
+
+            boolean passed = completed && missing == 0 && unexpected == 0
+                    && expectedMessages.size() == expectedCount;
+            log.info("接收 {}/{} 条消息，缺失: {}，异常帧: {}，耗时: {}ms",
+                    expectedCount - allReceived.getCount(), expectedCount, missing, unexpected, elapsed);
+            log.info("=== 多客户端并发测试{} ===", passed ? "通过" : "失败");
+            return passed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            clients.shutdownNow();
+            serverAdapter.disconnect();
+        }
+    }
+
+    /**
+     * 等待服务器记录指定消息
+     *
+     * @param receivedMessages 已接收消息
+     * @param message 消息内容
+     * @param timeoutMillis 超时时间（毫秒）
+     * @return 是否在超时前收到
+     */
+    private static boolean waitReceived(Map<String, AtomicInteger> receivedMessages, String message, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!receivedMessages.containsKey(message)) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * 记录完整消息的处理委托
+     * TCP模式下以MLLP结束符判断消息完整；MLLP模式下收到的已是去掉帧头帧尾的完整帧
+     */
+    private static class RecordingDelegate implements MessageHandlerDelegate {
+
+        private final Map<String, AtomicInteger> receivedMessages;
+        private final CountDownLatch allReceived;
+
+        RecordingDelegate(Map<String, AtomicInteger> receivedMessages, CountDownLatch allReceived) {
+            this.receivedMessages = receivedMessages;
+            this.allReceived = allReceived;
+        }
+
+        @Override
+        public boolean processMessage(Device device, String rawMessage) {
+            String content = rawMessage;
+            if (content.startsWith(START_BLOCK) && content.endsWith(END_BLOCK)) {
+                content = content.substring(START_BLOCK.length(), content.length() - END_BLOCK.length());
+            }
+            receivedMessages.computeIfAbsent(content, k -> new AtomicInteger()).incrementAndGet();
+            allReceived.countDown();
+            return true;
+        }
+
+        @Override
+        public String isMessageComplete(Message message) {
+            // 返回null表示消息完整，返回空串表示不完整
+            return message.getRawContent().endsWith(END_BLOCK) ? null : "";
+        }
+    }
+
+    /**
+     * 创建服务器设备对象
+     *
+     * @param port 监听端口
+     * @param protocol 协议
+     * @return 服务器设备
+     */
+    private static Device createServerDevice(int port, String protocol) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("并发测试服务器")
+                .model("SERVER_TEST")
+                .connectionType("NETWORK")
+                .connectionParams(String.format("%d:%s:SERVER", port, protocol))
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18088;
+        int clientCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int messagesPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String protocol = args.length > 3 ? args[3] : "TCP";
+
+        boolean passed = testConcurrentClients(port, clientCount, messagesPerClient, protocol);
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,173 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.adapter.network.ServerListenerRegistry;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多端口监听测试
+ * 验证大量服务器模式设备共用一个ServerBootstrap和固定的线程组，新连接按本地端口路由到对应设备，
+ * 运行时绑定和解绑端口互不影响
+ */
+@Slf4j
+public class MultiPortListenerTest {
+
+    /**
+     * 绑定大量端口，检查线程数、消息路由以及解绑后的端口状态
+     */
+    public static boolean testManyPorts(int basePort, int portCount) throws Exception {
+        Map<String, String> receivedByDevice = new ConcurrentHashMap<>();
+        List<NettyServerAdapter> servers = new ArrayList<>();
+        ServerListenerRegistry registry = ServerListenerRegistry.getDefault();
+
+        try {
+            // 先绑定一个端口，让共享线程组创建出来
+            servers.add(startServer(basePort, receivedByDevice));
+            int threadsBefore = countNettyThreads();
+
+            long start = System.nanoTime();
+            for (int i = 1; i < portCount; i++) {
+                servers.add(startServer(basePort + i, receivedByDevice));
+            }
+            long bindMillis = (System.nanoTime() - start) / 1_000_000;
+            int threadsAfter = countNettyThreads();
+            int boundPorts = registry.getBoundPorts().size();
+            log.info("绑定 {} 个端口耗时 {}ms，监听端口数 {}，Netty线程数 {} -> {}", portCount, bindMillis,
+                    boundPorts, threadsBefore, threadsAfter);
+
+            // 每个端口发送一条带端口号的消息，检查是否交给了对应的设备
+            for (int i = 0; i < portCount; i++) {
+                try (Socket socket = new Socket("localhost", basePort + i)) {
+                    write(socket, "PORT-" + (basePort + i) + "\n");
+                }
+            }
+            waitFor(receivedByDevice, portCount, 10000);
+            boolean routed = receivedByDevice.size() == portCount;
+            for (NettyServerAdapter server : servers) {
+                String expected = "PORT-" + server.getDevice().getName().substring("监听设备-".length()) + "\n";
+                routed &= expected.equals(receivedByDevice.get(server.getDevice().getId()));
+            }
+            // 线程数受共享线程组大小限制（1个Boss + 默认处理器核数个Worker），与端口数无关
+            int threadsWithTraffic = countNettyThreads();
+            int threadBudget = 1 + Runtime.getRuntime().availableProcessors();
+            log.info("{} 个端口的消息按本地端口路由到对应设备: {}，Netty线程数 {}（上限 {}）", portCount, routed,
+                    threadsWithTraffic, threadBudget);
+
+            // 解绑一半端口，剩余端口继续工作
+            start = System.nanoTime();
+            for (int i = 0; i < portCount; i += 2) {
+                servers.get(i).disconnect();
+            }
+            long unbindMillis = (System.nanoTime() - start) / 1_000_000;
+            boolean unboundRefused = refused(basePort);
+            receivedByDevice.clear();
+            try (Socket socket = new Socket("localhost", basePort + 1)) {
+                write(socket, "PORT-" + (basePort + 1) + "\n");
+            }
+            waitFor(receivedByDevice, 1, 2000);
+            boolean othersAlive = receivedByDevice.size() == 1;
+            int remaining = registry.getBoundPorts().size();
+            log.info("解绑 {} 个端口耗时 {}ms，剩余监听端口 {}，已解绑端口拒绝连接: {}，其余端口正常: {}",
+                    (portCount + 1) / 2, unbindMillis, remaining, unboundRefused, othersAlive);
+
+            // 解绑的端口可以立即重新绑定
+            boolean rebound = servers.get(0).connect();
+
+            boolean passed = boundPorts == portCount && threadsAfter == threadsBefore
+                    && threadsWithTraffic <= threadBudget && routed
+                    && unboundRefused && othersAlive && remaining == portCount / 2 && rebound
+                    && bindMillis < 5000 && unbindMillis < 5000;
+            log.info("多端口监听测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            servers.forEach(NettyServerAdapter::disconnect);
+        }
+    }
+
+    private static NettyServerAdapter startServer(int port, Map<String, String> receivedByDevice) {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.setMessageHandlerDelegate(new MessageHandlerDelegate() {
+            @Override
+            public boolean processMessage(Device device, String rawMessage) {
+                receivedByDevice.put(device.getId(), rawMessage);
+                return true;
+            }
+
+            @Override
+            public String isMessageComplete(Message message) {
+                // 返回null表示消息完整，返回空串表示不完整
+                return message.getRawContent().endsWith("\n") ? null : "";
+            }
+        });
+        server.initialize(Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("监听设备-" + port)
+                .model("MULTI_PORT_TEST")
+                .connectionType("NETWORK")
+                .connectionParams(port + ":TCP:SERVER")
+                .status(DeviceStatus.DISCONNECTED)
+                .build());
+        if (!server.connect()) {
+            throw new IllegalStateException("端口绑定失败: " + port);
+        }
+        return server;
+    }
+
+    private static int countNettyThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("hl7-netty")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean refused(int port) throws Exception {
+        try (Socket ignored = new Socket("localhost", port)) {
+            return false;
+        } catch (ConnectException e) {
+            return true;
+        }
+    }
+
+    private static void write(Socket socket, String data) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void waitFor(Map<String, String> received, int count, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int basePort = args.length > 0 ? Integer.parseInt(args[0]) : 18200;
+        int portCount = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        log.info("=== 开始多端口监听测试 ===");
+        boolean passed = testManyPorts(basePort, portCount);
+        log.info("=== 多端口监听测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
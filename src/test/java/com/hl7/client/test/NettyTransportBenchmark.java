@@ -0,0 +1,111 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.adapter.network.NettySocketAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Netty传输层基准测试
+ * 启动多台服务器模式设备并各连接一个客户端模式设备，统计线程数和重连耗时
+ */
+@Slf4j
+public class NettyTransportBenchmark {
+
+    /**
+     * 执行基准测试
+     *
+     * @param basePort 起始端口
+     * @param deviceCount 设备数量
+     * @param reconnectRounds 重连次数
+     * @return 是否全部连接成功
+     */
+    public static boolean run(int basePort, int deviceCount, int reconnectRounds) throws InterruptedException {
+        log.info("=== 开始Netty传输层基准测试 ===");
+        int threadsBefore = Thread.activeCount();
+        int fdsBefore = openFileDescriptors();
+
+        List<NettyServerAdapter> servers = new ArrayList<>();
+        List<NettySocketAdapter> clients = new ArrayList<>();
+        boolean allConnected = true;
+        try {
+            for (int i = 0; i < deviceCount; i++) {
+                NettyServerAdapter server = new NettyServerAdapter();
+                server.initialize(createDevice("服务器" + i, (basePort + i) + ":TCP:SERVER"));
+                allConnected &= server.connect();
+                servers.add(server);
+
+                NettySocketAdapter client = new NettySocketAdapter();
+                client.initialize(createDevice("客户端" + i, "localhost:" + (basePort + i) + ":TCP:CLIENT"));
+                allConnected &= client.connect();
+                clients.add(client);
+            }
+            // 等待所有通道注册到事件循环
+            Thread.sleep(500);
+            int threadsConnected = Thread.activeCount() - threadsBefore;
+            int fdsConnected = openFileDescriptors() - fdsBefore;
+
+            long serverStart = System.nanoTime();
+            for (int i = 0; i < reconnectRounds; i++) {
+                allConnected &= servers.get(0).connect();
+            }
+            long serverReconnectMicros = (System.nanoTime() - serverStart) / 1000 / reconnectRounds;
+
+            long clientStart = System.nanoTime();
+            for (int i = 0; i < reconnectRounds; i++) {
+                allConnected &= clients.get(1 % deviceCount).connect();
+            }
+            long clientReconnectMicros = (System.nanoTime() - clientStart) / 1000 / reconnectRounds;
+
+            log.info("设备数: {}，处理器核数: {}，新增线程数: {}，新增文件描述符: {}", deviceCount,
+                    Runtime.getRuntime().availableProcessors(), threadsConnected, fdsConnected);
+            log.info("服务器重连平均耗时: {}us，客户端重连平均耗时: {}us", serverReconnectMicros, clientReconnectMicros);
+        } finally {
+            clients.forEach(NettySocketAdapter::disconnect);
+            servers.forEach(NettyServerAdapter::disconnect);
+        }
+
+        log.info("=== Netty传输层基准测试{} ===", allConnected ? "完成" : "失败");
+        return allConnected;
+    }
+
+    /**
+     * 统计进程打开的文件描述符数量（每个事件循环的Selector都会占用描述符），非Linux系统返回-1
+     */
+    private static int openFileDescriptors() {
+        String[] fds = new File("/proc/self/fd").list();
+        return fds != null ? fds.length : -1;
+    }
+
+    /**
+     * 创建测试设备
+     */
+    private static Device createDevice(String name, String connectionParams) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name(name)
+                .model("BENCHMARK")
+                .connectionType("NETWORK")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int basePort = args.length > 0 ? Integer.parseInt(args[0]) : 19100;
+        int deviceCount = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int reconnectRounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        boolean passed = run(basePort, deviceCount, reconnectRounds);
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,285 @@
+package com.hl7.client.test;
+
+import cn.hutool.json.JSONUtil;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.model.MessageStatus;
+import com.hl7.client.domain.service.MessageParser;
+import com.hl7.client.domain.service.MessageParserFactory;
+import com.hl7.client.domain.service.MessageProcessService;
+import com.hl7.client.domain.service.ParseResult;
+import com.hl7.client.domain.service.impl.Hl7MessageParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 解析结果测试
+ * 位置索引直接填充的解析结果，写出的处理结果JSON与原来对HAPI解析的Map调用JSONUtil.toJsonStr的内容相同、
+ * 字段按固定顺序写出，转换回的Map也与之相等；返回Map的解析器通过adopt接入时状态识别与原来一致；
+ * 同一个实例反复使用不残留上一条消息的内容；再对比原来的Map加JSONUtil与重复使用解析结果的耗时和内存分配
+ */
+@Slf4j
+public class ParseResultTest {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** 防止结果被优化掉 */
+    private static volatile int sink;
+
+    private static final Map<String, String> MESSAGES = new LinkedHashMap<>();
+
+    static {
+        MESSAGES.put("标准ORU", oru(3));
+        MESSAGES.put("超过初始容量的观察结果", oru(40));
+        MESSAGES.put("需要转义的字符", String.join("\r",
+                "MSH|^~\\&|LAB\"1\"|HOSP\t2|LIS|HOSP|20240101120000||ORU^R01|MSG\\E\\002|P|2.5",
+                "PID|1|P002|P002||\"张\"^三",
+                "OBR|1|ORD002||CBC^血常规",
+                "OBX|1|ST|NOTE^备注\\T\\说明||a\\S\\b \\F\\ \"q\"||||||F",
+                "OBX|2|FT|TEXT^Text||line1\\.br\\line2||||||F"));
+        MESSAGES.put("空字段和缺少段", String.join("\r",
+                "MSH|^~\\&|||||||ORU^R01|MSG003|P|2.5",
+                "OBR|1",
+                "OBX|1|NM|||||||||"));
+        MESSAGES.put("没有医嘱", String.join("\r",
+                "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG004|P|2.5",
+                "PID|1|P004"));
+        MESSAGES.put("HAPI处理的ADT", String.join("\r",
+                "MSH|^~\\&|HIS|HOSP|LIS|HOSP|20240101120000||ADT^A01|MSG005|P|2.5",
+                "EVN|A01|20240101120000",
+                "PID|1|P005|P005||李^四"));
+    }
+
+    /**
+     * v2.5的ORU^R01结果消息，带指定数量的观察结果
+     */
+    static String oru(int observations) {
+        StringBuilder message = new StringBuilder();
+        message.append("MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|MSG001|P|2.5\r");
+        message.append("PID|1|P001|P001^^^HOSP^MR||张^三||19800101|M\r");
+        message.append("OBR|1|ORD001|FIL001|CBC^Complete Blood Count|||20240101113000\r");
+        for (int i = 1; i <= observations; i++) {
+            message.append("OBX|").append(i).append("|NM|T").append(i).append("^Test ").append(i)
+                    .append("||").append(i).append(".5|10*9/L|4.0-10.0|N|||F\r");
+        }
+        return message.toString();
+    }
+
+    private static Message message(String raw) {
+        return Message.builder().id("MSG-1").messageType("HL7").rawContent(raw).build();
+    }
+
+    private static MessageProcessService service(MessageParser parser) {
+        return new MessageProcessService(new MessageParserFactory(Collections.singletonList(parser)), null);
+    }
+
+    /**
+     * 处理结果JSON和转换回的Map与HAPI解析的Map一致
+     */
+    public static boolean testSameAsLegacy() {
+        Hl7MessageParser hapi = new Hl7MessageParser();
+        hapi.setFastPathEnabled(false);
+        Hl7MessageParser fast = new Hl7MessageParser();
+        MessageProcessService service = service(fast);
+        boolean passed = true;
+        for (Map.Entry<String, String> entry : MESSAGES.entrySet()) {
+            Map<String, Object> legacy = hapi.parse(message(entry.getValue()));
+            String expected = JSONUtil.toJsonStr(legacy);
+            String actual = service.processMessage(message(entry.getValue())).getProcessResult();
+            boolean same = JSONUtil.parseObj(expected).equals(JSONUtil.parseObj(actual))
+                    && legacy.equals(fast.parse(message(entry.getValue())));
+            if (!same) {
+                log.warn("{}: 原结果 {}", entry.getKey(), expected);
+                log.warn("{}: 新结果 {}", entry.getKey(), actual);
+            }
+            log.info("{}: {}", entry.getKey(), same ? "一致" : "不一致");
+            passed &= same;
+        }
+        log.info("与原结果一致测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 字段按文档约定的固定顺序写出，与HashMap的遍历顺序无关
+     */
+    public static boolean testFixedOrder() {
+        ParseResult result = new ParseResult();
+        result.setMessageType("ORU_R01");
+        result.setSendingApplication("LAB");
+        result.setMessageControlId("MSG001");
+        result.setPatientId("P001");
+        result.setUniversalServiceID("CBC");
+        result.addObservation("1", "WBC", "White Blood Cells", "6.5", "10*9/L", null, "F");
+        String expected = "{\"messageType\":\"ORU_R01\",\"sendingApplication\":\"LAB\",\"messageControlId\":\"MSG001\","
+                + "\"patientId\":\"P001\",\"universalServiceID\":\"CBC\",\"observations\":[{\"sequence\":\"1\","
+                + "\"testId\":\"WBC\",\"testName\":\"White Blood Cells\",\"value\":\"6.5\",\"units\":\"10*9/L\","
+                + "\"status\":\"F\"}]}";
+        boolean passed = expected.equals(result.toJson());
+        if (!passed) {
+            log.warn("字段顺序: {}", result.toJson());
+        }
+        log.info("固定字段顺序测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 同一个实例依次解析不同的消息，结果与新实例相同
+     */
+    public static boolean testReuse() {
+        Hl7MessageParser parser = new Hl7MessageParser();
+        ParseResult reused = new ParseResult();
+        boolean passed = true;
+        for (int round = 0; round < 2; round++) {
+            for (Map.Entry<String, String> entry : MESSAGES.entrySet()) {
+                String expected = parser.parse(message(entry.getValue()), new ParseResult()).toJson();
+                String actual = parser.parse(message(entry.getValue()), reused).toJson();
+                if (!expected.equals(actual)) {
+                    log.warn("{}: 重复使用后结果不同 {}", entry.getKey(), actual);
+                    passed = false;
+                }
+            }
+        }
+
+        parser.parse(message(oru(40)), reused);
+        passed &= reused.getObservationCount() == 40
+                && "T40".equals(reused.getObservation(39, ParseResult.Column.TEST_ID))
+                && "39.5".equals(reused.getObservation(38, ParseResult.Column.VALUE));
+        reused.reset();
+        passed &= reused.getObservationCount() == 0 && reused.getStatus() == ParseResult.Status.PARSED
+                && reused.getMessageControlId() == null && !reused.isOrderResult() && "{}".equals(reused.toJson());
+        try {
+            reused.getObservation(0, ParseResult.Column.SEQUENCE);
+            passed = false;
+        } catch (IndexOutOfBoundsException e) {
+            // 清空后不能再取到上一条消息的观察结果
+        }
+        log.info("重复使用测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 只实现parse(Message)的解析器，返回指定的Map
+     */
+    private static MessageParser mapParser(Map<String, Object> result) {
+        return new MessageParser() {
+            @Override
+            public Map<String, Object> parse(Message message) {
+                return result;
+            }
+
+            @Override
+            public String getType() {
+                return "HL7";
+            }
+
+            @Override
+            public boolean supports(Message message) {
+                return true;
+            }
+
+            @Override
+            public String checkMessageCompleteness(Message message) {
+                return null;
+            }
+        };
+    }
+
+    private static Map<String, Object> map(Object... entries) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], entries[i + 1]);
+        }
+        return map;
+    }
+
+    private static boolean adopted(String name, Map<String, Object> map, MessageStatus status, String processResult) {
+        Message processed = service(mapParser(map)).processMessage(message("MSH|"));
+        boolean same = status.name().equals(processed.getStatus())
+                && Objects.equals(processResult, processed.getProcessResult());
+        log.info("{}: {} {}", name, processed.getStatus(), same ? "一致" : "不一致: " + processed.getProcessResult());
+        return same;
+    }
+
+    /**
+     * 返回Map的解析器通过adopt接入，状态和处理结果与原来相同；
+     * error为字符串时原来会类型转换失败抛出异常，现在按解析失败处理
+     */
+    public static boolean testAdapter() {
+        boolean passed = adopted("解析失败", map("error", true, "errorMessage", "坏消息"),
+                MessageStatus.ERROR, "解析失败: 坏消息");
+        passed &= adopted("错误信息在error中", map("error", "坏消息", "COMPLETE", false),
+                MessageStatus.ERROR, "解析失败: 坏消息");
+        passed &= adopted("不完整", map("INCOMPLETE", false), MessageStatus.INCOMPLETE, null);
+        passed &= adopted("普通结果", map("error", false, "a", 1, "b", null, "c", "x\"y"),
+                MessageStatus.PROCESSED, JSONUtil.toJsonStr(map("error", false, "a", 1, "c", "x\"y")));
+        passed &= adopted("已序列化的结果", map(MessageParser.SERIALIZED_RESULT, "{\"x\":1}", "COMPLETE", true),
+                MessageStatus.PROCESSED, "{\"x\":1}");
+        log.info("Map接入测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    @FunctionalInterface
+    private interface Pipeline {
+        String run(Message message);
+    }
+
+    /**
+     * 测量一种流程，返回[每条纳秒, 每条分配字节]
+     */
+    private static long[] measure(Pipeline pipeline, String raw, int iterations) {
+        Message message = message(raw);
+        for (int i = 0; i < iterations; i++) {
+            sink += pipeline.run(message).length();
+        }
+        long allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += pipeline.run(message).length();
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+        return new long[]{nanos / iterations, allocated / iterations};
+    }
+
+    /**
+     * 对比原来的Map加JSONUtil与重复使用解析结果，从原始消息到处理结果JSON的耗时和内存分配
+     */
+    public static boolean benchmark(int iterations) {
+        Hl7MessageParser parser = new Hl7MessageParser();
+        ParseResult reused = new ParseResult();
+        boolean passed = true;
+        for (int observations : new int[]{3, 50}) {
+            String raw = oru(observations);
+            int rounds = Math.max(1, iterations * 3 / observations);
+            long[] before = measure(message -> JSONUtil.toJsonStr(parser.parse(message)), raw, rounds);
+            long[] after = measure(message -> parser.parse(message, reused).toJson(), raw, rounds);
+            log.info("{} 个观察结果: Map {}us/条、{}KB/条；ParseResult {}us/条、{}KB/条；耗时降至 {}%，分配降至 {}%",
+                    observations, before[0] / 1000, before[1] / 1024, after[0] / 1000, after[1] / 1024,
+                    after[0] * 100 / Math.max(1, before[0]), after[1] * 100 / Math.max(1, before[1]));
+            passed &= after[1] < before[1];
+        }
+        log.info("性能对比{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        log.info("=== 开始解析结果测试 ===");
+        boolean passed = testSameAsLegacy();
+        passed &= testFixedOrder();
+        passed &= testReuse();
+        passed &= testAdapter();
+        passed &= benchmark(iterations);
+        log.info("=== 解析结果测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,200 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.service.impl.Test01Parser;
+import com.hl7.client.infrastructure.adapter.common.AstmLinkLayer;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.adapter.network.message.BG800MessageCompletionStrategy;
+import com.hl7.client.infrastructure.adapter.network.message.MessageCompletionStrategy;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 连续发送消息测试
+ * 仪器不等应答连续发送多条消息，一次写出1000条，验证每次读取切出多条完整消息、剩余部分留到下次，
+ * 消息不合并、不丢失、不乱序
+ */
+@Slf4j
+public class PipelinedMessageTest {
+
+    /**
+     * 不带封装的HL7文本，Test01解析器按段首MSH|切分
+     */
+    public static boolean testHl7Text(int port, int count) throws Exception {
+        Test01Parser parser = new Test01Parser();
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add("MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|" + i + "|P|2.5\r"
+                    + "PID|1||P" + i + "\r"
+                    + "OBX|1|NM|GLU^Glucose||" + (i % 100) + "|mmol/L|3.9-6.1|N|||F\r");
+        }
+        return run("HL7文本", port, "TCP", "Test01", messages, String.join("", messages),
+                (chunk, state, device) -> parser.onData(chunk, state, device));
+    }
+
+    /**
+     * ASTM会话，BG800策略在每个EOT处切分
+     */
+    public static boolean testAstmSessions(int port, int count) throws Exception {
+        MessageCompletionStrategy strategy = new BG800MessageCompletionStrategy();
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add((char) AstmLinkLayer.ENQ
+                    + astmFrame(1, "H|\\^&|||BG800^1.0\r")
+                    + astmFrame(2, "R|1|^^^GLU|" + i + "|mmol/L\r")
+                    + astmFrame(3, "L|1|N\r")
+                    + (char) AstmLinkLayer.EOT);
+        }
+        return run("ASTM会话", port, "TCP", "BG800", messages, String.join("", messages),
+                strategy::onData);
+    }
+
+    /**
+     * MLLP帧，帧解码器一次读取输出多帧
+     */
+    public static boolean testMllpFrames(int port, int count) throws Exception {
+        List<String> messages = new ArrayList<>();
+        StringBuilder wire = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String message = "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|" + i + "|P|2.5\r"
+                    + "OBX|1|NM|GLU^Glucose||" + (i % 100) + "|mmol/L|3.9-6.1|N|||F\r";
+            messages.add(message);
+            wire.append('\u000b').append(message).append("\u001c\r");
+        }
+        return run("MLLP帧", port, "MLLP", "PIPELINE_TEST", messages, wire.toString(), null);
+    }
+
+    /**
+     * 增量检查接口，对应策略和解析器的onData
+     */
+    private interface Framer {
+        FrameResult onData(CharSequence chunk, FrameState state, Device device);
+    }
+
+    private static boolean run(String name, int port, String protocol, String model, List<String> messages,
+                               String wire, Framer framer) throws Exception {
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port + ":" + protocol + ":SERVER", model, received, framer);
+        try (Socket socket = new Socket("localhost", port)) {
+            Thread replyReader = drainReplies(socket);
+
+            long start = System.nanoTime();
+            OutputStream out = socket.getOutputStream();
+            out.write(wire.getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (received.size() < messages.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+            Thread.sleep(200);
+            replyReader.interrupt();
+
+            List<String> receivedList = new ArrayList<>(received);
+            boolean passed = receivedList.equals(messages);
+            if (!passed) {
+                log.warn("{}: 期望 {} 条，收到 {} 条", name, messages.size(), receivedList.size());
+            }
+            log.info("{}: 一次写出 {} 条共 {} 字节，收到 {} 条，顺序内容一致: {}，耗时 {}ms，{} 条/秒", name,
+                    messages.size(), wire.length(), receivedList.size(), passed, micros / 1000,
+                    micros > 0 ? messages.size() * 1_000_000L / micros : 0);
+            log.info("{}连续发送测试{}", name, passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            server.disconnect();
+        }
+    }
+
+    private static NettyServerAdapter startServer(String connectionParams, String model, Queue<String> received,
+                                                  Framer framer) {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.setMessageHandlerDelegate(new MessageHandlerDelegate() {
+            @Override
+            public boolean processMessage(Device device, String rawMessage) {
+                received.add(rawMessage);
+                return true;
+            }
+
+            @Override
+            public String isMessageComplete(Message message) {
+                throw new IllegalStateException("读取路径应使用增量接口");
+            }
+
+            @Override
+            public FrameResult onData(Device device, CharSequence chunk, FrameState state) {
+                return framer.onData(chunk, state, device);
+            }
+        });
+        server.initialize(Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("连续发送测试服务器")
+                .model(model)
+                .connectionType("NETWORK")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build());
+        if (!server.connect()) {
+            throw new IllegalStateException("服务器启动失败: " + connectionParams);
+        }
+        return server;
+    }
+
+    /**
+     * 后台读取服务器的应答，避免客户端接收缓冲区写满
+     */
+    private static Thread drainReplies(Socket socket) throws Exception {
+        InputStream in = socket.getInputStream();
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[4096];
+            try {
+                while (!Thread.currentThread().isInterrupted() && in.read(buffer) >= 0) {
+                    // 只读取，不检查应答内容
+                }
+            } catch (Exception ignored) {
+                // 连接关闭
+            }
+        }, "pipelined-reply-reader");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static String astmFrame(int frameNumber, String text) {
+        StringBuilder body = new StringBuilder();
+        body.append((char) ('0' + frameNumber % 8)).append(text).append((char) AstmLinkLayer.ETX);
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum += body.charAt(i);
+        }
+        return (char) AstmLinkLayer.STX + body.toString() + String.format("%02X", checksum & 0xFF) + "\r\n";
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18540;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        log.info("=== 开始连续发送消息测试 ===");
+        boolean passed = testHl7Text(port, count);
+        passed &= testAstmSessions(port + 1, count);
+        passed &= testMllpFrames(port + 2, count);
+        log.info("=== 连续发送消息测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
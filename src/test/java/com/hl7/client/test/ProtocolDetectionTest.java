@@ -0,0 +1,204 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.common.AstmLinkLayer;
+import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 协议自动识别测试
+ * 同一个AUTO端口同时接入MLLP、ASTM、裸HL7、JSON、XML和普通文本仪器，
+ * 验证每个连接按前几个字节安装了正确的解码器，消息类型按连接确定
+ */
+@Slf4j
+public class ProtocolDetectionTest {
+
+    private static final String HL7 = "MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|1|P|2.5\rPID|1||12345\r";
+    private static final String ASTM_HEADER = "H|\\^&|||BG800^1.0|||||||P|1|20240101120000\r";
+    private static final String ASTM_TERMINATOR = "L|1|N\r";
+
+    /**
+     * 接收到的消息：消息类型和内容
+     */
+    private static final class Received {
+        private final String messageType;
+        private final String content;
+
+        private Received(String messageType, String content) {
+            this.messageType = messageType;
+            this.content = content;
+        }
+
+        @Override
+        public String toString() {
+            return messageType + ":" + content.length() + "字节";
+        }
+    }
+
+    /**
+     * 多种协议的仪器同时连入同一个端口
+     */
+    public static boolean testMixedProtocols(int port) throws Exception {
+        Queue<Received> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port + ":AUTO:SERVER", received);
+
+        // 期望的内容 -> 消息类型
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put(HL7, "HL7");
+        expected.put((ASTM_HEADER + ASTM_TERMINATOR).replace("\r", "\r\n"), "ASTM");
+        expected.put("MSH|^~\\&|BARE|||||20240101120000||ORU^R01|2|P|2.5\r", "HL7");
+        expected.put("{\"sampleId\":\"S1\",\"value\":12.5}\n", "JSON");
+        expected.put("  <result sample=\"S1\">12.5</result>\n", "XML");
+        expected.put("PLAIN 12.5\n", null);
+
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < expected.size(); i++) {
+                sockets.add(new Socket("localhost", port));
+            }
+
+            // MLLP：整帧一次写出
+            write(sockets.get(0), "\u000b" + HL7 + "\u001c\r");
+
+            // ASTM：ENQ、数据帧、EOT分开发送
+            write(sockets.get(1), String.valueOf((char) AstmLinkLayer.ENQ));
+            write(sockets.get(1), astmFrame(1, ASTM_HEADER) + astmFrame(2, ASTM_TERMINATOR));
+            write(sockets.get(1), String.valueOf((char) AstmLinkLayer.EOT));
+
+            // 裸HL7：前缀拆成两段，识别器需要等到MSH|完整
+            String bare = new ArrayList<>(expected.keySet()).get(2);
+            write(sockets.get(2), bare.substring(0, 2));
+            Thread.sleep(100);
+            write(sockets.get(2), bare.substring(2));
+
+            List<String> contents = new ArrayList<>(expected.keySet());
+            for (int i = 3; i < contents.size(); i++) {
+                write(sockets.get(i), contents.get(i));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.size() < expected.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Thread.sleep(200);
+
+            boolean passed = received.size() == expected.size();
+            for (Received message : received) {
+                boolean matched = expected.containsKey(message.content)
+                        && Objects.equals(expected.get(message.content), message.messageType);
+                if (!matched) {
+                    log.warn("识别结果不符: 类型 {}，内容 {}", message.messageType, message.content);
+                }
+                passed &= matched;
+            }
+            log.info("同一端口 {} 种协议的连接收到 {} 条消息: {}", expected.size(), received.size(), received);
+            log.info("混合协议识别测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.disconnect();
+        }
+    }
+
+    /**
+     * 固定协议的端口不经过识别，消息类型由配置的协议确定
+     */
+    public static boolean testConfiguredProtocol(int port) throws Exception {
+        Queue<Received> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port + ":MLLP:SERVER", received);
+        try (Socket socket = new Socket("localhost", port)) {
+            write(socket, "\u000b" + HL7 + "\u001c\r");
+            long deadline = System.currentTimeMillis() + 3000;
+            while (received.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Received message = received.peek();
+            boolean passed = message != null && "HL7".equals(message.messageType) && HL7.equals(message.content);
+            log.info("固定MLLP协议消息类型: {}", message);
+            log.info("固定协议消息类型测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            server.disconnect();
+        }
+    }
+
+    private static NettyServerAdapter startServer(String connectionParams, Queue<Received> received) {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.setMessageHandlerDelegate(new MessageHandlerDelegate() {
+            @Override
+            public boolean processMessage(Device device, String rawMessage) {
+                return processMessage(device, rawMessage, null);
+            }
+
+            @Override
+            public boolean processMessage(Device device, String rawMessage, String messageType) {
+                received.add(new Received(messageType, rawMessage));
+                return true;
+            }
+
+            @Override
+            public String isMessageComplete(Message message) {
+                // 返回null表示消息完整，返回空串表示不完整
+                String content = message.getRawContent();
+                return content.endsWith("\r") || content.endsWith("\n") ? null : "";
+            }
+        });
+        server.initialize(Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name("协议识别测试服务器")
+                .model("PROTOCOL_DETECTION_TEST")
+                .connectionType("NETWORK")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build());
+        if (!server.connect()) {
+            throw new IllegalStateException("服务器启动失败: " + connectionParams);
+        }
+        return server;
+    }
+
+    private static String astmFrame(int frameNumber, String text) {
+        StringBuilder body = new StringBuilder();
+        body.append((char) ('0' + frameNumber % 8)).append(text).append((char) AstmLinkLayer.ETX);
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum += body.charAt(i);
+        }
+        return (char) AstmLinkLayer.STX + body.toString() + String.format("%02X", checksum & 0xFF) + "\r\n";
+    }
+
+    private static void write(Socket socket, String data) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write(data.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18520;
+        log.info("=== 开始协议自动识别测试 ===");
+        boolean passed = testMixedProtocols(port);
+        passed &= testConfiguredProtocol(port + 1);
+        log.info("=== 协议自动识别测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,360 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import com.hl7.client.infrastructure.adapter.network.NettyTransportService;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.adapter.network.NettySocketAdapter;
+import com.hl7.client.infrastructure.factory.DeviceAdapterFactory;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 客户端模式重连测试
+ * 验证connectAsync()不阻塞调用线程，服务端短暂中断后大量客户端模式设备并行自动恢复，
+ * 反复调用connect()时不会因旧通道的断开回调多建立连接；阻塞式连接的适配器不依赖公共线程池，进行中的连接不重复发起；
+ * 工厂为每台客户端模式设备创建独立的适配器，EventLoop线程中发送不阻塞、同步连接被拒绝
+ */
+@Slf4j
+public class ReconnectTest {
+
+    /**
+     * 连接不可达地址：调用立即返回，首轮尝试用完后future以false完成
+     */
+    public static boolean testUnreachable(int port) throws Exception {
+        NettySocketAdapter client = createClient(port);
+        client.setReconnectBackoff(3, 100, 400);
+        try {
+            // 预热：首次连接会创建共享的EventLoop线程组，不计入调用耗时
+            client.connectAsync().get(10, TimeUnit.SECONDS);
+            client.disconnect();
+
+            long start = System.nanoTime();
+            CompletableFuture<Boolean> future = client.connectAsync();
+            long callMicros = (System.nanoTime() - start) / 1000;
+
+            boolean result = future.get(10, TimeUnit.SECONDS);
+            long completeMillis = (System.nanoTime() - start) / 1_000_000;
+            boolean stillRetrying = client.isReconnecting();
+
+            boolean passed = callMicros < 50_000 && !result && stillRetrying;
+            log.info("connectAsync调用耗时 {}us，{}ms后返回 {}，后台继续重连: {}", callMicros, completeMillis,
+                    result, stillRetrying);
+            log.info("不可达地址测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    /**
+     * 服务端中断后恢复：所有客户端通过channelInactive触发重连，按退避并行重试，服务端恢复后全部重新连上
+     */
+    public static boolean testServerBlip(int port, int clientCount, long downMillis) throws Exception {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.initialize(createDevice("重连测试服务器", port + ":TCP:SERVER"));
+        if (!server.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+
+        List<NettySocketAdapter> clients = new ArrayList<>();
+        try {
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < clientCount; i++) {
+                NettySocketAdapter client = createClient(port);
+                client.setReconnectBackoff(3, 200, 2000);
+                clients.add(client);
+                futures.add(client.connectAsync());
+            }
+            long submitMillis = (System.nanoTime() - start) / 1_000_000;
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            boolean allConnected = futures.stream().allMatch(CompletableFuture::join);
+            log.info("{} 个客户端发起连接耗时 {}ms，全部连上: {}", clientCount, submitMillis, allConnected);
+
+            // 模拟网络中断：服务端关闭所有连接并停止监听
+            server.disconnect();
+            Thread.sleep(downMillis);
+            long recoverStart = System.nanoTime();
+            if (!server.connect()) {
+                log.error("服务器重启失败！");
+                return false;
+            }
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (connectedCount(clients) < clientCount && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            long recoverMillis = (System.nanoTime() - recoverStart) / 1_000_000;
+            int recovered = connectedCount(clients);
+
+            boolean passed = allConnected && recovered == clientCount && recoverMillis < 5000;
+            log.info("中断 {}ms 后服务端恢复，{}ms 内 {}/{} 个客户端重新连上", downMillis, recoverMillis,
+                    recovered, clientCount);
+            log.info("服务端中断恢复测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            clients.forEach(NettySocketAdapter::disconnect);
+            server.disconnect();
+        }
+    }
+
+    /**
+     * 反复调用connect()：旧通道的断开回调晚于新的连接尝试到达时被忽略，服务端始终只保留一个连接
+     */
+    public static boolean testRepeatedConnect(int port, int rounds) throws Exception {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.initialize(createDevice("重复连接测试服务器", port + ":TCP:SERVER"));
+        if (!server.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+        NettySocketAdapter client = createClient(port);
+        client.setReconnectBackoff(3, 50, 200);
+        try {
+            boolean allConnected = true;
+            for (int i = 0; i < rounds; i++) {
+                allConnected &= client.connect();
+            }
+            // 等待旧通道的断开事件都处理完，以及可能被错误安排的重连发生
+            Thread.sleep(1000);
+            int serverConnections = server.getClientCount();
+            boolean passed = allConnected && client.isConnected() && serverConnections == 1;
+            log.info("连续 {} 次connect()，全部成功: {}，服务端连接数: {}", rounds, allConnected, serverConnections);
+            log.info("重复连接测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            client.disconnect();
+            server.disconnect();
+        }
+    }
+
+    /**
+     * 工厂创建的客户端模式适配器：每台设备一个实例，重连一台设备不影响另一台的目标地址和通道
+     */
+    public static boolean testFactoryClients(int port) throws Exception {
+        NettyServerAdapter serverA = new NettyServerAdapter();
+        serverA.initialize(createDevice("客户端A的服务器", port + ":TCP:SERVER"));
+        NettyServerAdapter serverB = new NettyServerAdapter();
+        serverB.initialize(createDevice("客户端B的服务器", (port + 1) + ":TCP:SERVER"));
+        if (!serverA.connect() || !serverB.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+
+        DeviceAdapterFactory factory = new DeviceAdapterFactory(new DefaultListableBeanFactory());
+        DeviceAdapter clientA = factory.createAdapter(createDevice("客户端A", "localhost:" + port + ":TCP:CLIENT"));
+        DeviceAdapter clientB = factory.createAdapter(createDevice("客户端B", "localhost:" + (port + 1) + ":TCP:CLIENT"));
+        try {
+            boolean distinct = clientA != clientB && clientA instanceof NettySocketAdapter
+                    && clientB instanceof NettySocketAdapter;
+            boolean connected = clientA.connectAsync().get(10, TimeUnit.SECONDS)
+                    && clientB.connectAsync().get(10, TimeUnit.SECONDS);
+
+            // 重连客户端A，共享实例时会连到客户端B的地址并关闭B的通道
+            clientA.disconnect();
+            boolean reconnected = clientA.connectAsync().get(10, TimeUnit.SECONDS);
+            Thread.sleep(500);
+            int clientsA = serverA.getClientCount();
+            int clientsB = serverB.getClientCount();
+
+            boolean passed = distinct && connected && reconnected && clientA.isConnected() && clientB.isConnected()
+                    && clientsA == 1 && clientsB == 1;
+            log.info("两台设备的适配器为不同实例: {}，重连A后服务器A连接数 {}，服务器B连接数 {}，B仍连接: {}", distinct,
+                    clientsA, clientsB, clientB.isConnected());
+            log.info("独立客户端适配器测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            factory.disposeAdapter(clientA);
+            factory.disposeAdapter(clientB);
+            serverA.disconnect();
+            serverB.disconnect();
+        }
+    }
+
+    /**
+     * 在EventLoop线程中调用：send()写入后立即返回，同步connect()被拒绝
+     */
+    public static boolean testEventLoopCalls(int port) throws Exception {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.initialize(createDevice("EventLoop测试服务器", port + ":TCP:SERVER"));
+        if (!server.connect()) {
+            log.error("服务器启动失败！");
+            return false;
+        }
+        NettySocketAdapter client = createClient(port);
+        try {
+            boolean connected = client.connectAsync().get(10, TimeUnit.SECONDS);
+            boolean sent = NettyTransportService.getDefault().workerGroup().next()
+                    .submit(() -> client.send("MSH|^~\\&|LAB|HOSP\r")).get(5, TimeUnit.SECONDS);
+            boolean rejected;
+            try {
+                NettyTransportService.getDefault().workerGroup().next().submit(client::connect).get(5, TimeUnit.SECONDS);
+                rejected = false;
+            } catch (ExecutionException e) {
+                rejected = e.getCause() instanceof IllegalStateException;
+            }
+
+            boolean passed = connected && sent && rejected && client.isConnected();
+            log.info("EventLoop中发送: {}，同步连接被拒绝: {}，仍保持连接: {}", sent, rejected, client.isConnected());
+            log.info("EventLoop调用测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            client.disconnect();
+            server.disconnect();
+        }
+    }
+
+    /**
+     * 默认的connectAsync()：公共线程池被占满时仍能连接，连接完成前重复调用只连接一次
+     */
+    public static boolean testBlockingConnect() throws Exception {
+        // 模拟消息处理占满公共线程池
+        CountDownLatch release = new CountDownLatch(1);
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        for (int i = 0; i < parallelism * 2; i++) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        BlockingAdapter adapter = new BlockingAdapter(300);
+        try {
+            long start = System.nanoTime();
+            CompletableFuture<Boolean> first = adapter.connectAsync();
+            CompletableFuture<Boolean> second = adapter.connectAsync();
+            boolean result = first.get(5, TimeUnit.SECONDS);
+            long completeMillis = (System.nanoTime() - start) / 1_000_000;
+            // 上一次连接完成后再调用，发起新的连接
+            boolean again = adapter.connectAsync().get(5, TimeUnit.SECONDS);
+
+            boolean passed = result && again && first == second && adapter.connects.get() == 2
+                    && completeMillis < 2000;
+            log.info("公共线程池占满时 {}ms 完成连接，重复调用返回同一结果: {}，共连接 {} 次", completeMillis,
+                    first == second, adapter.connects.get());
+            log.info("阻塞式连接测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * 只有阻塞式connect()的适配器，使用默认的connectAsync()
+     */
+    private static final class BlockingAdapter implements DeviceAdapter {
+        private final long connectMillis;
+        private final AtomicInteger connects = new AtomicInteger();
+        private volatile boolean connected;
+
+        BlockingAdapter(long connectMillis) {
+            this.connectMillis = connectMillis;
+        }
+
+        @Override
+        public void initialize(Device device) {
+        }
+
+        @Override
+        public boolean connect() {
+            connects.incrementAndGet();
+            try {
+                Thread.sleep(connectMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            connected = true;
+            return true;
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+
+        @Override
+        public boolean send(String data) {
+            return connected;
+        }
+
+        @Override
+        public String receive() {
+            return null;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public Device getDevice() {
+            return null;
+        }
+
+        @Override
+        public String processReceivedData(String rawData) {
+            return rawData;
+        }
+    }
+
+    private static int connectedCount(List<NettySocketAdapter> clients) {
+        int count = 0;
+        for (NettySocketAdapter client : clients) {
+            if (client.isConnected()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static NettySocketAdapter createClient(int port) {
+        NettySocketAdapter client = new NettySocketAdapter();
+        client.initialize(createDevice("重连测试客户端", "localhost:" + port + ":TCP:CLIENT:true"));
+        return client;
+    }
+
+    private static Device createDevice(String name, String connectionParams) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name(name)
+                .model("RECONNECT_TEST")
+                .connectionType("NETWORK")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18180;
+        int clientCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        log.info("=== 开始客户端重连测试 ===");
+        boolean passed = testUnreachable(port);
+        passed &= testServerBlip(port + 1, clientCount, 3000);
+        passed &= testRepeatedConnect(port + 2, 50);
+        passed &= testBlockingConnect();
+        passed &= testFactoryClients(port + 3);
+        passed &= testEventLoopCalls(port + 5);
+        log.info("=== 客户端重连测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
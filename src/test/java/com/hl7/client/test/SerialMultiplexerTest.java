@@ -0,0 +1,382 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.service.impl.Test01Parser;
+import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.serial.SerialMultiplexer;
+import com.hl7.client.infrastructure.adapter.serial.SerialPortAdapter;
+import com.hl7.client.infrastructure.adapter.serial.SerialReadOptions;
+import com.hl7.client.infrastructure.adapter.serial.SerialReader;
+import com.hl7.client.infrastructure.factory.DeviceAdapterFactory;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 串口多路复用测试
+ * 验证每个串口设备创建独立的适配器实例，24个串口共用固定数量的读取线程和处理线程，
+ * 每个串口的消息不丢失、不乱序，暂停读取生效，并输出每个串口的吞吐；
+ * 空闲时轮询间隔加长、吞吐按固定窗口统计、读取出错的串口报告出错
+ */
+@Slf4j
+public class SerialMultiplexerTest {
+
+    /**
+     * 按固定速率到达数据的模拟串口输入流
+     */
+    private static final class TricklingInputStream extends InputStream {
+        private final byte[] data;
+        private final long bytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        private int position;
+
+        TricklingInputStream(byte[] data, long bytesPerSecond) {
+            this.data = data;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int available() {
+            long arrived = (System.nanoTime() - startNanos) * bytesPerSecond / TimeUnit.SECONDS.toNanos(1);
+            return (int) Math.min(data.length, arrived) - position;
+        }
+
+        @Override
+        public int read() {
+            return available() > 0 ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = Math.min(len, available());
+            if (n <= 0) {
+                return position >= data.length ? -1 : 0;
+            }
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+
+    /**
+     * 由测试控制数据到达和读取出错的模拟串口输入流，统计查询可读字节数的次数
+     */
+    private static final class ControlledInputStream extends InputStream {
+        private final AtomicInteger availableCalls = new AtomicInteger();
+        private volatile byte[] data = new byte[0];
+        private volatile boolean broken;
+        private int position;
+
+        void arrive(String text) {
+            data = text.getBytes(StandardCharsets.US_ASCII);
+            position = 0;
+        }
+
+        @Override
+        public int available() throws IOException {
+            availableCalls.incrementAndGet();
+            if (broken) {
+                throw new IOException("模拟串口断开");
+            }
+            return data.length - position;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = Math.min(len, data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+
+    /**
+     * 一个模拟串口：按Test01解析器分帧，处理线程上收集消息
+     */
+    private static final class Port implements SerialReader.Handler {
+        private final String text;
+        private final Test01Parser parser = new Test01Parser();
+        private final FrameState state = new FrameState("port");
+        private final StringBuilder received = new StringBuilder();
+        private volatile int receivedLength;
+        private volatile boolean processedOnMuxThread = true;
+
+        Port(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public FrameResult onText(CharSequence chunk) {
+            state.append(chunk);
+            return parser.onData(chunk, state, null);
+        }
+
+        @Override
+        public void reply(String reply) {
+            // 模拟串口没有对端，应答直接丢弃
+        }
+
+        @Override
+        public void process(String frame) {
+            processedOnMuxThread &= Thread.currentThread().getName().startsWith("hl7-serial-mux-worker");
+            received.append(frame);
+            receivedLength = received.length();
+        }
+
+        boolean complete() {
+            return receivedLength >= text.length();
+        }
+    }
+
+    private static String messages(int port, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("MSH|^~\\&|LAB").append(port).append("|HOSP|LIS|HOSP|20240101120000||ORU^R01|")
+                    .append(i).append("|P|2.5\r")
+                    .append("PID|1||P").append(port).append('-').append(i).append("\r")
+                    .append("OBX|1|NM|GLU^Glucose||").append(i % 100).append("|mmol/L|3.9-6.1|N|||F\r");
+        }
+        return text.toString();
+    }
+
+    /**
+     * 每个串口设备创建独立的适配器实例，重新初始化时按新的连接参数解析
+     */
+    public static boolean testAdapterPerPort() {
+        DeviceAdapterFactory factory = new DeviceAdapterFactory(new DefaultListableBeanFactory());
+        DeviceAdapter first = factory.createAdapter(createDevice("分析仪1", "COM1:9600:8:1:0:ASTM"));
+        DeviceAdapter second = factory.createAdapter(createDevice("分析仪2", "COM2:115200:8:1:0:readMode=MUX"));
+
+        boolean passed = first != second
+                && "COM1".equals(((SerialPortAdapter) first).getPortName())
+                && "ASTM".equals(((SerialPortAdapter) first).getProtocol())
+                && "COM2".equals(((SerialPortAdapter) second).getPortName())
+                && ((SerialPortAdapter) second).getProtocol() == null
+                && ((SerialPortAdapter) second).getReadOptions().getReadMode() == SerialReadOptions.ReadMode.MUX;
+
+        first.initialize(createDevice("分析仪1", "COM3:9600:8:1:0"));
+        passed &= "COM3".equals(((SerialPortAdapter) first).getPortName())
+                && ((SerialPortAdapter) first).getProtocol() == null;
+
+        factory.disposeAdapter(first);
+        factory.disposeAdapter(second);
+        log.info("每个串口独立适配器测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 多个串口共用固定线程，消息完整有序
+     */
+    public static boolean testManyPorts(int portCount, int messagesPerPort, long bytesPerSecond) throws Exception {
+        int threadsBefore = Thread.activeCount();
+        SerialMultiplexer multiplexer = new SerialMultiplexer(2, 4);
+        SerialReadOptions options = SerialReadOptions.builder()
+                .readMode(SerialReadOptions.ReadMode.MUX)
+                .charset(StandardCharsets.US_ASCII)
+                .build();
+
+        List<Port> ports = new ArrayList<>();
+        List<SerialMultiplexer.Channel> channels = new ArrayList<>();
+        long totalBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < portCount; i++) {
+            Port port = new Port(messages(i, messagesPerPort));
+            byte[] data = port.text.getBytes(StandardCharsets.US_ASCII);
+            totalBytes += data.length;
+            ports.add(port);
+            channels.add(multiplexer.register("COM" + (i + 1), new TricklingInputStream(data, bytesPerSecond),
+                    options, port));
+        }
+        int threadsAdded = Thread.activeCount() - threadsBefore;
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline && !ports.stream().allMatch(Port::complete)) {
+            Thread.sleep(5);
+        }
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        boolean passed = threadsAdded <= 6;
+        for (int i = 0; i < portCount; i++) {
+            Port port = ports.get(i);
+            boolean matched = port.received.toString().equals(port.text) && port.processedOnMuxThread;
+            if (!matched) {
+                log.warn("串口 COM{} 期望 {} 字节，收到 {} 字节", i + 1, port.text.length(), port.received.length());
+            }
+            passed &= matched;
+        }
+
+        Map<String, Object> stats = multiplexer.getStatistics();
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> portStats = (Map<String, Map<String, Object>>) stats.get("ports");
+        for (String name : new String[]{"COM1", "COM" + portCount}) {
+            Map<String, Object> port = portStats.get(name);
+            log.info("{}: 读取线程 {}，{} 字节，{} 条消息，{} 字节/秒，{} 条/秒", name, port.get("readerThread"),
+                    port.get("bytesRead"), port.get("framesRead"), port.get("bytesPerSecond"),
+                    port.get("framesPerSecond"));
+            passed &= (Long) port.get("bytesRead") > 0;
+        }
+        log.info("{} 个串口共 {} 字节，{}ms 收完，合计 {} 字节/秒，新增线程 {} 个（读取 {}、处理 {}）", portCount,
+                totalBytes, millis, totalBytes * 1000 / millis, threadsAdded, stats.get("readerThreads"),
+                stats.get("workerThreads"));
+
+        channels.forEach(SerialMultiplexer.Channel::close);
+        multiplexer.shutdown();
+        log.info("多串口共用线程测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 暂停期间不读取数据，恢复后继续
+     */
+    public static boolean testPause() throws Exception {
+        SerialMultiplexer multiplexer = new SerialMultiplexer(1, 1);
+        Port port = new Port(messages(0, 2000));
+        SerialMultiplexer.Channel channel = multiplexer.register("COM1",
+                new TricklingInputStream(port.text.getBytes(StandardCharsets.US_ASCII), 200_000),
+                SerialReadOptions.builder().charset(StandardCharsets.US_ASCII).build(), port);
+
+        Thread.sleep(50);
+        channel.setReadingEnabled(false);
+        Thread.sleep(20);
+        long pausedAt = (Long) channel.getStatistics().get("bytesRead");
+        Thread.sleep(100);
+        long afterPause = (Long) channel.getStatistics().get("bytesRead");
+        channel.setReadingEnabled(true);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!port.complete() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        boolean passed = pausedAt > 0 && pausedAt == afterPause && port.received.toString().equals(port.text);
+        log.info("暂停时已读取 {} 字节，暂停100ms后 {} 字节，恢复后收完 {}", pausedAt, afterPause, port.complete());
+        channel.close();
+        multiplexer.shutdown();
+        log.info("暂停读取测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 空闲时轮询间隔逐次加长，不再每毫秒查询可读字节数；数据到达后仍能及时读取
+     */
+    public static boolean testIdleBackoff() throws Exception {
+        SerialMultiplexer multiplexer = new SerialMultiplexer(1, 1);
+        ControlledInputStream in = new ControlledInputStream();
+        String text = messages(0, 1);
+        Port port = new Port(text);
+        SerialMultiplexer.Channel channel = multiplexer.register("COM1", in,
+                SerialReadOptions.builder().charset(StandardCharsets.US_ASCII).build(), port);
+
+        Thread.sleep(500);
+        int idleCalls = in.availableCalls.get();
+        long start = System.nanoTime();
+        in.arrive(text);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!port.complete() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        channel.close();
+        multiplexer.shutdown();
+
+        // 固定1ms间隔时空闲500ms约查询500次
+        boolean passed = idleCalls < 100 && port.complete() && latencyMillis < 200;
+        log.info("空闲500ms查询可读字节数 {} 次，空闲后数据到达 {}ms 处理完", idleCalls, latencyMillis);
+        log.info("空闲轮询退避测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 吞吐按固定窗口统计：适配器和多路复用服务先后查询，得到相同的吞吐，且接近实际到达速率
+     */
+    public static boolean testFixedStatisticsWindow() throws Exception {
+        SerialMultiplexer multiplexer = new SerialMultiplexer(1, 1);
+        long rate = 100_000;
+        Port port = new Port(messages(0, 20000));
+        SerialMultiplexer.Channel channel = multiplexer.register("COM1",
+                new TricklingInputStream(port.text.getBytes(StandardCharsets.US_ASCII), rate),
+                SerialReadOptions.builder().charset(StandardCharsets.US_ASCII).build(), port);
+
+        Thread.sleep(2500);
+        long first = (Long) channel.getStatistics().get("bytesPerSecond");
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> ports =
+                (Map<String, Map<String, Object>>) multiplexer.getStatistics().get("ports");
+        long second = (Long) ports.get("COM1").get("bytesPerSecond");
+        channel.close();
+        multiplexer.shutdown();
+
+        boolean passed = first == second && Math.abs(first - rate) < rate * 3 / 10;
+        log.info("到达速率 {} 字节/秒，串口统计 {} 字节/秒，随后多路复用服务统计 {} 字节/秒", rate, first, second);
+        log.info("固定统计窗口测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 读取出错的串口停止读取并报告出错，适配器据此报告连接已断开
+     */
+    public static boolean testReadError() throws Exception {
+        SerialMultiplexer multiplexer = new SerialMultiplexer(1, 1);
+        ControlledInputStream in = new ControlledInputStream();
+        SerialMultiplexer.Channel channel = multiplexer.register("COM1", in,
+                SerialReadOptions.builder().charset(StandardCharsets.US_ASCII).build(), new Port(""));
+
+        Thread.sleep(50);
+        boolean failedBefore = channel.isFailed();
+        in.broken = true;
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!channel.isFailed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        boolean passed = !failedBefore && channel.isFailed() && (Boolean) channel.getStatistics().get("failed");
+        log.info("读取出错前出错状态 {}，出错后 {}", failedBefore, channel.isFailed());
+        channel.close();
+        multiplexer.shutdown();
+        log.info("串口读取出错测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    private static Device createDevice(String name, String connectionParams) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name(name)
+                .model("Test01")
+                .connectionType("SERIAL")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int portCount = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        int messagesPerPort = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        log.info("=== 开始串口多路复用测试 ===");
+        boolean passed = testAdapterPerPort();
+        passed &= testManyPorts(portCount, messagesPerPort, 100_000);
+        passed &= testPause();
+        passed &= testIdleBackoff();
+        passed &= testFixedStatisticsWindow();
+        passed &= testReadError();
+        log.info("=== 串口多路复用测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
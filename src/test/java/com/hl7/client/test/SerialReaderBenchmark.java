@@ -0,0 +1,333 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.service.impl.Test01Parser;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.serial.SerialReadOptions;
+import com.hl7.client.infrastructure.adapter.serial.SerialReader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 串口读取基准测试
+ * 用分块返回数据的输入流模拟串口驱动，对比原有事件监听方式（每次读取新建字节数组和字符串，在读取线程上分帧并处理）
+ * 与专用读取线程方式（复用缓冲区，完整消息交给处理线程）的吞吐和每条消息的内存分配，
+ * 并验证多字节字符跨两次读取到达时解码正确、读取出错后读取线程报告已停止
+ */
+@Slf4j
+public class SerialReaderBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * 模拟串口输入流，每次最多返回chunkSize字节，读完返回-1
+     */
+    private static final class ChunkedInputStream extends InputStream {
+        private final byte[] data;
+        private final int chunkSize;
+        private int position;
+        private long firstReadAllocated = -1;
+        private long endAllocated = -1;
+
+        ChunkedInputStream(byte[] data, int chunkSize) {
+            this.data = data;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (firstReadAllocated < 0) {
+                firstReadAllocated = allocatedBytes();
+            }
+            if (position >= data.length) {
+                if (endAllocated < 0) {
+                    endAllocated = allocatedBytes();
+                }
+                return -1;
+            }
+            int n = Math.min(Math.min(len, chunkSize), data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        long allocated() {
+            return endAllocated - firstReadAllocated;
+        }
+    }
+
+    /**
+     * 模拟读取中途断开的串口：先返回全部数据，放行后抛出IOException
+     */
+    private static final class FailingInputStream extends InputStream {
+        private final byte[] data;
+        private final CountDownLatch fail = new CountDownLatch(1);
+        private int position;
+
+        FailingInputStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position < data.length) {
+                int n = Math.min(len, data.length - position);
+                System.arraycopy(data, position, b, off, n);
+                position += n;
+                return n;
+            }
+            try {
+                fail.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("模拟串口断开");
+        }
+    }
+
+    /**
+     * 一轮测试的结果
+     */
+    private static final class Result {
+        private long frames;
+        private long nanos;
+        private long allocatedBytes;
+        private final StringBuilder joined = new StringBuilder();
+    }
+
+    /**
+     * 原有事件监听方式：每次读取新建字节数组和字符串，在同一线程上分帧并处理消息
+     */
+    private static Result runListener(byte[] wire, int chunkSize, int readSize, Charset charset, boolean keep) {
+        Test01Parser parser = new Test01Parser();
+        FrameState state = new FrameState("listener");
+        ChunkedInputStream in = new ChunkedInputStream(wire, chunkSize);
+        Result result = new Result();
+
+        long start = System.nanoTime();
+        while (true) {
+            byte[] readBuffer = new byte[readSize];
+            int n = in.read(readBuffer, 0, readBuffer.length);
+            if (n < 0) {
+                break;
+            }
+            String data = new String(readBuffer, 0, n, charset);
+            state.getBuffer().append(data);
+            FrameResult frames = parser.onData(data, state, null);
+            for (String frame : frames.getFrames()) {
+                record(result, frame, keep);
+            }
+        }
+        result.nanos = System.nanoTime() - start;
+        result.allocatedBytes = in.allocated();
+        return result;
+    }
+
+    /**
+     * 专用读取线程方式
+     */
+    private static Result runReader(byte[] wire, int chunkSize, int readSize, Charset charset, boolean keep) {
+        Test01Parser parser = new Test01Parser();
+        FrameState state = new FrameState("reader");
+        ChunkedInputStream in = new ChunkedInputStream(wire, chunkSize);
+        Result result = new Result();
+        AtomicLong workerFirst = new AtomicLong(-1);
+        AtomicLong workerLast = new AtomicLong(-1);
+
+        SerialReadOptions options = SerialReadOptions.builder()
+                .readMode(SerialReadOptions.ReadMode.THREAD)
+                .readSize(readSize)
+                .charset(charset)
+                .build();
+        SerialReader reader = new SerialReader("BENCH", in, options, new SerialReader.Handler() {
+            @Override
+            public FrameResult onText(CharSequence text) {
+                state.append(text);
+                return parser.onData(text, state, null);
+            }
+
+            @Override
+            public void reply(String reply) {
+                // 模拟串口没有对端，应答直接丢弃
+            }
+
+            @Override
+            public void process(String frame) {
+                workerFirst.compareAndSet(-1, allocatedBytes());
+                record(result, frame, keep);
+                workerLast.set(allocatedBytes());
+            }
+        });
+
+        long start = System.nanoTime();
+        reader.start();
+        if (!reader.awaitCompletion(60000)) {
+            log.warn("读取线程未在60秒内结束");
+        }
+        result.nanos = System.nanoTime() - start;
+        reader.stop();
+        result.allocatedBytes = in.allocated() + Math.max(0, workerLast.get() - workerFirst.get());
+        return result;
+    }
+
+    private static void record(Result result, String frame, boolean keep) {
+        result.frames++;
+        if (keep) {
+            result.joined.append(frame);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String buildMessages(int bytes, String patientName) {
+        StringBuilder wire = new StringBuilder();
+        for (int i = 0; wire.length() < bytes; i++) {
+            wire.append("MSH|^~\\&|LAB|HOSP|LIS|HOSP|20240101120000||ORU^R01|").append(i).append("|P|2.5\r")
+                    .append("PID|1||P").append(i).append("||").append(patientName).append("\r");
+            for (int j = 0; j < 3; j++) {
+                wire.append("OBX|").append(j + 1).append("|NM|GLU^Glucose||").append(i % 100)
+                        .append("|mmol/L|3.9-6.1|N|||F\r");
+            }
+        }
+        return wire.toString();
+    }
+
+    /**
+     * 多字节字符跨两次读取到达时，专用读取线程解码结果与原文一致
+     */
+    public static boolean testMultiByteSplit() {
+        boolean passed = true;
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, Charset.forName("GBK")}) {
+            String text = buildMessages(64 * 1024, "张三^李四");
+            byte[] wire = text.getBytes(charset);
+            for (int chunkSize : new int[]{1, 7, 33}) {
+                Result reader = runReader(wire, chunkSize, 64, charset, true);
+                Result listener = runListener(wire, chunkSize, 64, charset, true);
+                boolean matched = reader.joined.toString().equals(text);
+                log.info("{} 按 {} 字节到达: 读取线程解码一致 {}，原监听方式解码一致 {}", charset, chunkSize,
+                        matched, listener.joined.toString().equals(text));
+                passed &= matched;
+            }
+        }
+        log.info("多字节字符解码测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 吞吐和每条消息的内存分配对比
+     */
+    public static boolean testThroughput(int megabytes, int readSize) {
+        byte[] wire = buildMessages(megabytes * 1024 * 1024, "ZHANG^SAN").getBytes(StandardCharsets.ISO_8859_1);
+        Charset charset = StandardCharsets.ISO_8859_1;
+
+        // 预热
+        runListener(wire, readSize, readSize, charset, false);
+        runReader(wire, readSize, readSize, charset, false);
+
+        Result listener = runListener(wire, readSize, readSize, charset, false);
+        Result reader = runReader(wire, readSize, readSize, charset, false);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(describe("原事件监听", wire.length, listener));
+        lines.add(describe("专用读取线程", wire.length, reader));
+        lines.forEach(log::info);
+
+        boolean passed = listener.frames > 0 && listener.frames == reader.frames;
+        log.info("吞吐测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 读取出错后读取线程退出，isRunning返回false，适配器据此报告连接已断开；出错前切出的消息都已处理
+     */
+    public static boolean testReadError() throws InterruptedException {
+        // 最后一条消息以回车结尾，随数据一起切出
+        String text = buildMessages(16 * 1024, "ZHANG^SAN");
+        FailingInputStream in = new FailingInputStream(text.getBytes(StandardCharsets.ISO_8859_1));
+        Test01Parser parser = new Test01Parser();
+        FrameState state = new FrameState("failing");
+        AtomicInteger processed = new AtomicInteger();
+        SerialReadOptions options = SerialReadOptions.builder()
+                .readMode(SerialReadOptions.ReadMode.THREAD)
+                .charset(StandardCharsets.ISO_8859_1)
+                .build();
+        SerialReader reader = new SerialReader("FAILING", in, options, new SerialReader.Handler() {
+            @Override
+            public FrameResult onText(CharSequence text) {
+                state.append(text);
+                return parser.onData(text, state, null);
+            }
+
+            @Override
+            public void reply(String reply) {
+                // 模拟串口没有对端，应答直接丢弃
+            }
+
+            @Override
+            public void process(String frame) {
+                processed.incrementAndGet();
+            }
+        });
+
+        reader.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (processed.get() == 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        boolean runningBefore = reader.isRunning();
+        in.fail.countDown();
+        boolean finished = reader.awaitCompletion(5000);
+        boolean runningAfter = reader.isRunning();
+        reader.stop();
+
+        boolean passed = processed.get() > 0 && runningBefore && finished && !runningAfter;
+        log.info("读取出错前处理 {} 条消息，出错前运行中 {}，出错后运行中 {}", processed.get(), runningBefore, runningAfter);
+        log.info("读取出错测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    private static String describe(String name, int bytes, Result result) {
+        long micros = Math.max(1, result.nanos / 1000);
+        return String.format("%s: %d 字节，%d 条消息，%d MB/s，每条消息分配 %d 字节", name, bytes, result.frames,
+                (long) bytes / micros, result.frames > 0 ? result.allocatedBytes / result.frames : 0);
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int readSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        log.info("=== 开始串口读取基准测试 ===");
+        boolean passed = testMultiByteSplit();
+        passed &= testThroughput(megabytes, readSize);
+        passed &= testReadError();
+        log.info("=== 串口读取基准测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,255 @@
+package com.hl7.client.test;
+
+import com.hl7.client.infrastructure.adapter.serial.SerialWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 串口异步发送测试
+ * 用按波特率限速的输出流模拟串口，下发大块工作单的同时回复ACK，验证应答优先写出、只插在行结束之后、
+ * 大块数据不丢不乱，对比原同步写出方式的应答时延，并验证发送队列有界、写入出错后报告已停止并统计丢弃的数据
+ */
+@Slf4j
+public class SerialWriterTest {
+
+    private static final byte ACK = 0x06;
+
+    /**
+     * 按固定速率写出的输出流，记录写出的全部字节
+     */
+    private static final class LineOutputStream extends OutputStream {
+        private final long nanosPerByte;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        LineOutputStream(long bytesPerSecond) {
+            this.nanosPerByte = TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            long until = System.nanoTime() + len * nanosPerByte;
+            synchronized (written) {
+                written.write(b, off, len);
+            }
+            while (System.nanoTime() < until) {
+                LockSupport.parkNanos(until - System.nanoTime());
+            }
+        }
+
+        byte[] toByteArray() {
+            synchronized (written) {
+                return written.toByteArray();
+            }
+        }
+    }
+
+    /**
+     * 模拟写出中途断开的串口：写入等到放行后抛出IOException
+     */
+    private static final class BrokenOutputStream extends OutputStream {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch fail = new CountDownLatch(1);
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writing.countDown();
+            try {
+                fail.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("模拟串口断开");
+        }
+    }
+
+    private static List<String> worklist(int count) {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder message = new StringBuilder("H|\\^&|||LIS^1.0\r\n");
+            for (int j = 0; j < 40; j++) {
+                message.append("O|").append(j + 1).append("|S").append(i).append('-').append(j)
+                        .append("||^^^GLU\\^^^HBA1C|R||20240101120000\r\n");
+            }
+            message.append("L|1|N\r\n");
+            messages.add(message.toString());
+        }
+        return messages;
+    }
+
+    /**
+     * 下发工作单的同时回复ACK，应答优先写出
+     */
+    public static boolean testAckDuringBulk(int bytesPerSecond, int messageCount, int ackCount) throws Exception {
+        List<String> messages = worklist(messageCount);
+        LineOutputStream line = new LineOutputStream(bytesPerSecond);
+        SerialWriter writer = new SerialWriter("TEST", line, StandardCharsets.US_ASCII, messageCount, 5000);
+        writer.start();
+
+        Thread bulkSender = new Thread(() -> messages.forEach(writer::send), "bulk-sender");
+        bulkSender.start();
+        Thread.sleep(5);
+        for (int i = 0; i < ackCount; i++) {
+            writer.reply(String.valueOf((char) ACK));
+            Thread.sleep(2);
+        }
+        bulkSender.join();
+        writer.stop();
+
+        byte[] wire = line.toByteArray();
+        StringBuilder bulk = new StringBuilder();
+        int acks = 0;
+        boolean ackAtLineEnd = true;
+        for (int i = 0; i < wire.length; i++) {
+            if (wire[i] == ACK) {
+                acks++;
+                ackAtLineEnd &= i == 0 || wire[i - 1] == '\n' || wire[i - 1] == ACK;
+            } else {
+                bulk.append((char) wire[i]);
+            }
+        }
+
+        Map<String, Object> stats = writer.getStatistics();
+        long avgAck = (Long) stats.get("avgControlLatencyMicros");
+        boolean passed = bulk.toString().equals(String.join("", messages)) && acks == ackCount && ackAtLineEnd
+                && avgAck < 1000;
+        log.info("异步发送: 工作单 {} 条共 {} 字节，ACK {} 个，均在行结束后 {}，ACK平均时延 {}us，最大 {}us，"
+                        + "工作单平均时延 {}us，最大队列深度 {}，flush {} 次", messageCount, bulk.length(), acks,
+                ackAtLineEnd, avgAck, stats.get("maxControlLatencyMicros"), stats.get("avgBulkLatencyMicros"),
+                stats.get("maxQueueDepth"), stats.get("flushes"));
+        log.info("应答优先测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 原同步方式：调用方线程直接写出并flush，应答要等正在写出的整条工作单
+     */
+    public static void logSynchronousBaseline(int bytesPerSecond, int messageCount, int ackCount) throws Exception {
+        List<String> messages = worklist(messageCount);
+        LineOutputStream line = new LineOutputStream(bytesPerSecond);
+
+        Thread bulkSender = new Thread(() -> {
+            for (String message : messages) {
+                synchronized (line) {
+                    line.write(message.getBytes(StandardCharsets.US_ASCII), 0, message.length());
+                }
+            }
+        }, "bulk-sender-sync");
+        bulkSender.start();
+        Thread.sleep(5);
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < ackCount; i++) {
+            long start = System.nanoTime();
+            synchronized (line) {
+                line.write(ACK);
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+            total += micros;
+            max = Math.max(max, micros);
+            Thread.sleep(2);
+        }
+        bulkSender.join();
+        log.info("原同步发送: ACK平均时延 {}us，最大 {}us", total / ackCount, max);
+    }
+
+    /**
+     * 发送队列有界，写不出去时调用方等待超时后返回失败
+     */
+    public static boolean testBoundedQueue() throws Exception {
+        LineOutputStream line = new LineOutputStream(1000);
+        SerialWriter writer = new SerialWriter("BOUNDED", line, StandardCharsets.US_ASCII, 4, 50);
+        writer.start();
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (writer.send("O|" + i + "|" + repeat('X', 200) + "\r\n")) {
+                accepted++;
+            }
+        }
+        Map<String, Object> stats = writer.getStatistics();
+        boolean passed = accepted < 10 && (Long) stats.get("rejected") == 10 - accepted
+                && (Integer) stats.get("maxQueueDepth") <= 4;
+        log.info("有界队列: 提交 10 条，接受 {} 条，拒绝 {} 条，最大队列深度 {}", accepted, stats.get("rejected"),
+                stats.get("maxQueueDepth"));
+        writer.stop();
+        log.info("有界队列测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 写入出错后发送线程退出：isRunning返回false，适配器据此报告连接已断开；
+     * 队列中未发出的数据计入rejected，之后的发送直接失败
+     */
+    public static boolean testWriteError() throws Exception {
+        BrokenOutputStream broken = new BrokenOutputStream();
+        SerialWriter writer = new SerialWriter("BROKEN", broken, StandardCharsets.US_ASCII, 8, 50);
+        writer.start();
+        writer.send("O|0\r\n");
+        broken.writing.await(5, TimeUnit.SECONDS);
+        // 第一条正在写出，其余4条留在队列中
+        for (int i = 1; i <= 4; i++) {
+            writer.send("O|" + i + "\r\n");
+        }
+        boolean runningBefore = writer.isRunning();
+        broken.fail.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((writer.isRunning() || (Long) writer.getStatistics().get("rejected") < 4)
+                && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Map<String, Object> stats = writer.getStatistics();
+        long dropped = (Long) stats.get("rejected");
+        boolean sentAfter = writer.send("O|5\r\n");
+        writer.stop();
+
+        boolean passed = runningBefore && !writer.isRunning() && dropped == 4
+                && (Long) stats.get("writeErrors") == 1 && !sentAfter && writer.getQueueDepth() == 0;
+        log.info("写入出错: 出错前运行中 {}，出错后运行中 {}，丢弃 {} 条，写入错误 {} 次，出错后发送{}",
+                runningBefore, writer.isRunning(), dropped, stats.get("writeErrors"), sentAfter ? "成功" : "失败");
+        log.info("写入出错测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int bytesPerSecond = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int messageCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int ackCount = 100;
+        log.info("=== 开始串口异步发送测试 ===");
+        boolean passed = testAckDuringBulk(bytesPerSecond, messageCount, ackCount);
+        logSynchronousBaseline(bytesPerSecond, messageCount, ackCount);
+        passed &= testBoundedQueue();
+        passed &= testWriteError();
+        log.info("=== 串口异步发送测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,263 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.infrastructure.adapter.DeviceAdapter;
+import com.hl7.client.infrastructure.adapter.file.SharedFolderAdapter;
+import com.hl7.client.infrastructure.factory.DeviceAdapterFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享目录轮询测试
+ * 用poll:前缀的本地目录代替SMB共享目录，验证列表索引只下载新文件和有变化的文件，
+ * 保留大量历史文件时每轮轮询不再下载；重启后不重复处理，未取完的文件从中断的消息继续；正在写入的文件写完后才下载
+ */
+@Slf4j
+public class SharedFolderPollingTest {
+
+    private static String message(int file, int index) {
+        return "MSH|^~\\&|SHARE|HOSP|LIS|HOSP|20240101120000||ORU^R01|" + file + "-" + index + "|P|2.5\n"
+                + "OBX|1|NM|GLU^Glucose||" + index + "|mmol/L|3.9-6.1|N|||F";
+    }
+
+    /**
+     * 写入结果文件并设置修改时间，段之间用回车分隔
+     */
+    private static List<String> writeFile(Path file, int fileIndex, int messages, long lastModified) throws Exception {
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < messages; i++) {
+            String message = message(fileIndex, i);
+            expected.add(message);
+            content.append(message.replace('\n', '\r')).append('\r');
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+        return expected;
+    }
+
+    private static List<String> receive(DeviceAdapter adapter, int count, long timeoutMillis) {
+        List<String> received = new ArrayList<>(count);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            String message = adapter.receive();
+            if (message != null) {
+                adapter.commit(message, true);
+                received.add(message);
+            }
+        }
+        return received;
+    }
+
+    /**
+     * 等待轮询线程再完成指定轮数
+     */
+    private static void waitPolls(SharedFolderAdapter adapter, int polls) throws InterruptedException {
+        long target = adapter.getPolls() + polls;
+        long deadline = System.currentTimeMillis() + 30000;
+        while (adapter.getPolls() < target && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static SharedFolderAdapter createAdapter(String id, Path dir, File state) {
+        SharedFolderAdapter adapter = new SharedFolderAdapter();
+        adapter.setPollIntervalMillis(100);
+        adapter.setStableMillis(200);
+        adapter.setStateDirectory(state.getPath());
+        adapter.initialize(createDevice(id, "poll:" + dir + ":*.hl7"));
+        return adapter;
+    }
+
+    private static Device createDevice(String id, String connectionParams) {
+        return Device.builder()
+                .id(id)
+                .name("共享目录" + id)
+                .model("Test01")
+                .connectionType("FILE")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 大量历史文件处理完后，每轮轮询只列目录、不再下载；新文件和有变化的文件只下载一次
+     */
+    public static boolean testIncremental(File root, int fileCount) throws Exception {
+        Path dir = new File(root, "history").toPath();
+        Files.createDirectories(dir);
+        File state = new File(root, "state");
+        List<String> expected = new ArrayList<>();
+        long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < fileCount; i++) {
+            expected.addAll(writeFile(dir.resolve(String.format("result-%06d.hl7", i)), i, 1, oldest + i * 1000L));
+        }
+
+        SharedFolderAdapter adapter = createAdapter("history", dir, state);
+        long start = System.nanoTime();
+        adapter.connect();
+        List<String> received = receive(adapter, expected.size(), 120000);
+        long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 历史文件全部处理完后再轮询几轮
+        waitPolls(adapter, 5);
+        long downloadedAfterBacklog = adapter.getDownloadedFiles();
+        long steadyPollMillis = adapter.getLastPollMillis();
+        int listed = adapter.getLastListedFiles();
+
+        // 一个新文件，一个历史文件被重新导出
+        List<String> changes = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        changes.addAll(writeFile(dir.resolve("result-000007.hl7"), 7, 2, now - 2000));
+        changes.addAll(writeFile(dir.resolve("result-new.hl7"), fileCount, 1, now - 1000));
+        List<String> receivedChanges = receive(adapter, changes.size(), 10000);
+        waitPolls(adapter, 5);
+        long downloadedAfterChanges = adapter.getDownloadedFiles();
+        adapter.disconnect();
+
+        boolean passed = received.equals(expected) && downloadedAfterBacklog == fileCount && listed == fileCount
+                && receivedChanges.equals(changes) && downloadedAfterChanges == fileCount + 2;
+        log.info("{} 个历史文件 {}ms 处理完；之后每轮列出 {} 个文件耗时 {}ms，不再下载（共下载 {} 个）",
+                fileCount, drainMillis, listed, steadyPollMillis, downloadedAfterBacklog);
+        log.info("新文件和重新导出的文件收到 {} 条消息，共下载 {} 个文件", receivedChanges.size(), downloadedAfterChanges);
+        log.info("增量轮询测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 重启后按列表索引跳过已处理的文件，只处理停止期间新增的文件
+     */
+    public static boolean testRestart(File root) throws Exception {
+        Path dir = new File(root, "restart").toPath();
+        Files.createDirectories(dir);
+        File state = new File(root, "state");
+        long oldest = System.currentTimeMillis() - 60000;
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            expected.addAll(writeFile(dir.resolve(String.format("result-%02d.hl7", i)), i, 2, oldest + i * 10L));
+        }
+
+        SharedFolderAdapter first = createAdapter("restart", dir, state);
+        first.connect();
+        List<String> received = receive(first, expected.size(), 10000);
+        first.disconnect();
+
+        List<String> added = writeFile(dir.resolve("result-added.hl7"), 50, 1, System.currentTimeMillis() - 1000);
+        SharedFolderAdapter second = createAdapter("restart", dir, state);
+        second.connect();
+        // 重复处理旧文件时，先收到的是旧文件的消息
+        List<String> receivedAfterRestart = receive(second, added.size(), 10000);
+        waitPolls(second, 3);
+        long downloaded = second.getDownloadedFiles();
+        second.disconnect();
+
+        boolean passed = received.equals(expected) && receivedAfterRestart.equals(added) && downloaded == 1;
+        log.info("重启后下载 {} 个文件，收到 {} 条消息", downloaded, receivedAfterRestart.size());
+        log.info("重启测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 文件的消息没有全部确认时停止，重启后重新下载该文件并从中断的消息继续
+     */
+    public static boolean testResume(File root) throws Exception {
+        Path dir = new File(root, "resume").toPath();
+        Files.createDirectories(dir);
+        File state = new File(root, "state");
+        List<String> expected = writeFile(dir.resolve("result.hl7"), 0, 10, System.currentTimeMillis() - 60000);
+
+        SharedFolderAdapter first = createAdapter("resume", dir, state);
+        first.connect();
+        List<String> received = new ArrayList<>(receive(first, 4, 10000));
+        first.disconnect();
+
+        SharedFolderAdapter second = createAdapter("resume", dir, state);
+        second.connect();
+        received.addAll(receive(second, expected.size() - 4, 10000));
+        waitPolls(second, 3);
+        long downloaded = second.getDownloadedFiles();
+        second.disconnect();
+
+        boolean passed = received.equals(expected) && downloaded == 1;
+        log.info("中断后共收到 {} 条消息", received.size());
+        log.info("中断恢复测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 正在写入的文件大小和修改时间不再变化后才下载
+     */
+    public static boolean testSlowWriter(File root) throws Exception {
+        Path dir = new File(root, "slow").toPath();
+        Files.createDirectories(dir);
+        SharedFolderAdapter adapter = createAdapter("slow", dir, new File(root, "state"));
+        adapter.connect();
+
+        List<String> expected = new ArrayList<>();
+        long writeDone;
+        try (OutputStream out = Files.newOutputStream(dir.resolve("slow.hl7"), StandardOpenOption.CREATE_NEW)) {
+            for (int i = 0; i < 4; i++) {
+                String message = message(0, i);
+                expected.add(message);
+                out.write((message.replace('\n', '\r') + "\r").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(150);
+            }
+            writeDone = System.currentTimeMillis();
+        }
+
+        List<String> received = receive(adapter, expected.size(), 10000);
+        long receivedAt = System.currentTimeMillis();
+        long downloaded = adapter.getDownloadedFiles();
+        adapter.disconnect();
+
+        boolean passed = received.equals(expected) && receivedAt >= writeDone && downloaded == 1;
+        log.info("写完 {}ms 后收到 {} 条消息，下载 {} 次", receivedAt - writeDone, received.size(), downloaded);
+        log.info("慢速写入测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * smb://和poll:开头的文件设备使用共享目录轮询适配器
+     */
+    public static boolean testFactory(File root) throws Exception {
+        DeviceAdapterFactory factory = new DeviceAdapterFactory(new DefaultListableBeanFactory());
+        DeviceAdapter smb = factory.createAdapter(createDevice("smb",
+                "smb://LAB;user:p@ss@192.168.1.20/results/analyzer/:*.hl7"));
+        DeviceAdapter mounted = factory.createAdapter(createDevice("mounted",
+                "poll:" + new File(root, "mounted").getPath() + ":*.hl7"));
+        boolean passed = smb instanceof SharedFolderAdapter && mounted instanceof SharedFolderAdapter;
+        factory.disposeAdapter(smb);
+        factory.disposeAdapter(mounted);
+        log.info("适配器选择测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File root = Files.createTempDirectory("hl7-share").toFile();
+        log.info("=== 开始共享目录轮询测试 ===");
+        boolean passed = testIncremental(root, fileCount);
+        passed &= testRestart(root);
+        passed &= testResume(root);
+        passed &= testSlowWriter(root);
+        passed &= testFactory(root);
+        log.info("=== 共享目录轮询测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
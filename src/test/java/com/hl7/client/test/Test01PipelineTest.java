@@ -0,0 +1,304 @@
+package com.hl7.client.test;
+
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.text.CharSequenceUtil;
+import cn.hutool.json.JSONUtil;
+import com.hl7.client.domain.model.Hl7StorageModel;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.domain.model.MessageStatus;
+import com.hl7.client.domain.service.MessageParserFactory;
+import com.hl7.client.domain.service.MessageProcessService;
+import com.hl7.client.domain.service.impl.Test01Parser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test01解析流程测试
+ * 与原来按正则分割、多次序列化的流程对比：处理结果和发送给服务端的请求体内容必须相同（字段按固定顺序写出，
+ * 不再跟随HashMap的遍历顺序，按JSON内容比较；models字符串值本身仍逐字节比较），
+ * 覆盖各种通道和单位、条码与样本号、段数不足、空白行、需要转义的字符；再对比两种流程的单条耗时和内存分配
+ */
+@Slf4j
+public class Test01PipelineTest {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** 防止结果被优化掉 */
+    private static volatile int sink;
+
+    private static final Map<String, String> MESSAGES = new LinkedHashMap<>();
+
+    static {
+        MESSAGES.put("凝血四项", coagulation("123456789", 4));
+        MESSAGES.put("样本号", coagulation("0012", 4).replace("\r\n", "\n"));
+        MESSAGES.put("单位不匹配和其他通道", String.join("\r\n",
+                "H|\\^&|||CA600^1.0|||||||P|1|20240102083000",
+                "O|1|^0007^|||",
+                "R|1|^^^PT|12.5|%|",
+                "R|2|^^^FIB|2.9|mg/dL|",
+                "R|3|^^^D-Dimer|0.5|mg/L|",
+                "R|4|^^^APTT |31.2|s|",
+                "R|5|^^^TT^^|16.8|s",
+                ""));
+        MESSAGES.put("段数不足", String.join("\n",
+                "H|\\^&|||CA600^1.0|||||||P|1|2024",
+                "H|short",
+                "O|1",
+                "O|1|nobarcode",
+                "R|1|^^^PT|12.5",
+                "R|2|^^|3.0|s",
+                "R|3|^^^|3.0|s",
+                "||||",
+                "   ",
+                "R|4|^^^INR|1.02|INR||"));
+        MESSAGES.put("需要转义的字符", String.join("\r\n",
+                "\u0002H|\\^&|||CA600^1.0|||||||P|1|20240103",
+                "O|1|^条码\"A\\B^|||",
+                "R|1|^^^中文\t通道|含\"引号\\和\u0001控制 字符|单位",
+                "R|2|^^^PT|<12.0>|INR|\u0003"));
+    }
+
+    /**
+     * 凝血仪的ASTM消息，每个通道一条结果记录
+     */
+    static String coagulation(String sampleId, int repeat) {
+        StringBuilder message = new StringBuilder();
+        message.append("H|\\^&|||CA600^1.0|||||||P|1|20240101120000\r\n");
+        message.append("P|1\r\n");
+        message.append("O|1|^").append(sampleId).append("^|||^^^PT\\^^^FIB|R||||||N\r\n");
+        int n = 1;
+        for (int r = 0; r < repeat; r++) {
+            message.append("R|").append(n++).append("|^^^PT|12.").append(r).append("|s||N||F\r\n");
+            message.append("R|").append(n++).append("|^^^PT|1.0").append(r).append("|INR||N||F\r\n");
+            message.append("R|").append(n++).append("|^^^FIB|2.8").append(r).append("|g/L||N||F\r\n");
+            message.append("R|").append(n++).append("|^^^D-Dimer|0.3").append(r).append("|ug/mL||N||F\r\n");
+            message.append("R|").append(n++).append("|^^^APTT|30.").append(r).append("|s||N||F\r\n");
+        }
+        message.append("L|1|N\r\n");
+        return message.toString();
+    }
+
+    private static Message message(String raw) {
+        return Message.builder()
+                .id("MSG-1")
+                .deviceId("coag-1")
+                .deviceModel("Test01Parser")
+                .messageType("CUSTOM")
+                .rawContent(raw)
+                .build();
+    }
+
+    // ---- 原来的流程：正则分割，模型序列化进Map，日志再序列化一次，处理结果和请求体又各序列化一次 ----
+
+    /**
+     * 原来的流程，返回[处理结果, 请求体]，没有结果时处理结果为null
+     */
+    static String[] legacy(Message message) {
+        List<Hl7StorageModel> models = legacyParse(message.getRawContent());
+        if (models.isEmpty()) {
+            return new String[]{null, null};
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("models", JSONUtil.toJsonStr(models));
+        result.put("targetDatabase", "EMIS");
+        result.put("COMPLETE", true);
+        // 原来以INFO级别输出的解析结果
+        sink += JSONUtil.toJsonStr(models).length();
+        String processResult = JSONUtil.toJsonStr(result);
+
+        Map<String, Object> requestBody = MapUtil.builder(new HashMap<String, Object>(5))
+                .put("messageId", message.getId())
+                .put("deviceId", message.getDeviceId())
+                .put("deviceModel", message.getDeviceModel())
+                .put("content", message.getRawContent())
+                .put("processResult", processResult)
+                .put("type", message.getMessageType())
+                .build();
+        return new String[]{processResult, JSONUtil.toJsonStr(requestBody)};
+    }
+
+    private static List<Hl7StorageModel> legacyParse(String messageContent) {
+        List<Hl7StorageModel> models = new ArrayList<>();
+        Hl7StorageModel model = new Hl7StorageModel();
+        List<Hl7StorageModel.Item> resultItems = new ArrayList<>();
+        for (String line : messageContent.split("\n")) {
+            if (CharSequenceUtil.isBlank(line)) {
+                continue;
+            }
+            String[] segments = line.split("\\|");
+            if (segments.length == 0) {
+                continue;
+            }
+            String recordType = segments[0];
+            if (recordType.contains("R")) {
+                if (segments.length <= 4) {
+                    continue;
+                }
+                String[] channelParts = segments[2].split("\\^");
+                if (channelParts.length <= 3) {
+                    continue;
+                }
+                String channelType = channelParts[3].trim();
+                String resultValue = segments[3];
+                String resultUnit = segments[4];
+                Hl7StorageModel.Item item = new Hl7StorageModel.Item();
+                if ("PT".equals(channelType)) {
+                    if (resultUnit.contains("s") || resultUnit.contains("INR")) {
+                        item.setChannelCode(resultUnit.trim());
+                        item.setResult(resultValue);
+                        resultItems.add(item);
+                    }
+                } else if (channelType.contains("FIB")) {
+                    if (resultUnit.contains("g/L")) {
+                        item.setChannelCode(channelType);
+                        item.setResult(resultValue);
+                        resultItems.add(item);
+                    }
+                } else if (channelType.contains("D-Dimer")) {
+                    if (resultUnit.contains("ug/mL")) {
+                        item.setChannelCode(channelType);
+                        item.setResult(resultValue);
+                        resultItems.add(item);
+                    }
+                } else {
+                    item.setChannelCode(channelType);
+                    item.setResult(resultValue);
+                    resultItems.add(item);
+                }
+            } else if (recordType.contains("H")) {
+                if (segments.length > 13 && segments[13].length() >= 8) {
+                    model.setTestDate(segments[13].substring(0, 8));
+                }
+            } else if (recordType.contains("O")) {
+                if (segments.length <= 2) {
+                    continue;
+                }
+                String[] barcodeParts = segments[2].split("\\^");
+                if (barcodeParts.length <= 1) {
+                    continue;
+                }
+                String sampleId = barcodeParts[1];
+                if (sampleId.length() < 5) {
+                    model.setSampleCode(sampleId);
+                } else {
+                    model.setBarcode(sampleId);
+                }
+            }
+        }
+        if (!resultItems.isEmpty()) {
+            model.setItemList(resultItems);
+            models.add(model);
+        }
+        return models;
+    }
+
+    // ---- 新流程：扫描一遍，处理结果生成一次，原样写进请求体 ----
+
+    private static String[] current(MessageProcessService service, Message message) {
+        Message processed = service.processMessage(message);
+        if (!MessageStatus.PROCESSED.name().equals(processed.getStatus())) {
+            return new String[]{null, null};
+        }
+        return new String[]{processed.getProcessResult(), MessageProcessService.requestBody(processed)};
+    }
+
+    private static MessageProcessService service() {
+        MessageParserFactory factory = new MessageParserFactory(Collections.singletonList(new Test01Parser()));
+        return new MessageProcessService(factory, null);
+    }
+
+    /**
+     * 处理结果和请求体与原来的流程内容相同
+     */
+    public static boolean testSameOutput() {
+        MessageProcessService service = service();
+        boolean passed = true;
+        for (Map.Entry<String, String> entry : MESSAGES.entrySet()) {
+            String[] expected = legacy(message(entry.getValue()));
+            String[] actual = current(service, message(entry.getValue()));
+            boolean same = sameJson(expected[0], actual[0]) && sameJson(expected[1], actual[1]);
+            if (!same) {
+                log.warn("{}: 原流程 {}", entry.getKey(), String.join("\n", String.valueOf(expected[0]),
+                        String.valueOf(expected[1])));
+                log.warn("{}: 新流程 {}", entry.getKey(), String.join("\n", String.valueOf(actual[0]),
+                        String.valueOf(actual[1])));
+            }
+            log.info("{}: {}", entry.getKey(), same ? "一致" : "不一致");
+            passed &= same;
+        }
+        // 没有结果时仍然标记为不完整
+        Message empty = service.processMessage(message("H|\\^&|||CA600^1.0\r\n"));
+        passed &= MessageStatus.PROCESSED.name().equals(empty.getStatus())
+                && "{\"COMPLETE\":false}".equals(empty.getProcessResult());
+        log.info("输出一致测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    private static boolean sameJson(String expected, String actual) {
+        if (expected == null || actual == null) {
+            return expected == null && actual == null;
+        }
+        return JSONUtil.parseObj(expected).equals(JSONUtil.parseObj(actual));
+    }
+
+    @FunctionalInterface
+    private interface Pipeline {
+        String[] run(Message message);
+    }
+
+    /**
+     * 测量一种流程，返回[每条纳秒, 每条分配字节]
+     */
+    private static long[] measure(Pipeline pipeline, String raw, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            sink += pipeline.run(message(raw))[1].length();
+        }
+        long allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += pipeline.run(message(raw))[1].length();
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+        return new long[]{nanos / iterations, allocated / iterations};
+    }
+
+    /**
+     * 对比两种流程从原始消息到请求体的耗时和内存分配
+     */
+    public static boolean benchmark(int iterations) {
+        MessageProcessService service = service();
+        boolean passed = true;
+        for (int repeat : new int[]{1, 20}) {
+            String raw = coagulation("123456789", repeat);
+            long[] before = measure(Test01PipelineTest::legacy, raw, iterations / repeat);
+            long[] after = measure(message -> current(service, message), raw, iterations / repeat);
+            log.info("{} 条结果记录: 原流程 {}us/条、{}KB/条；新流程 {}us/条、{}KB/条；耗时降至 {}%，分配降至 {}%",
+                    repeat * 5, before[0] / 1000, before[1] / 1024, after[0] / 1000, after[1] / 1024,
+                    after[0] * 100 / Math.max(1, before[0]), after[1] * 100 / Math.max(1, before[1]));
+            passed &= after[1] < before[1];
+        }
+        log.info("性能对比{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        log.info("=== 开始Test01解析流程测试 ===");
+        boolean passed = testSameOutput();
+        passed &= benchmark(iterations);
+        log.info("=== Test01解析流程测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}
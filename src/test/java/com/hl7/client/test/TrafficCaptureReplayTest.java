@@ -0,0 +1,334 @@
+package com.hl7.client.test;
+
+import com.hl7.client.domain.model.Device;
+import com.hl7.client.domain.model.DeviceStatus;
+import com.hl7.client.domain.model.Message;
+import com.hl7.client.infrastructure.adapter.capture.CapturingInputStream;
+import com.hl7.client.infrastructure.adapter.capture.CapturingOutputStream;
+import com.hl7.client.infrastructure.adapter.capture.ReplayReport;
+import com.hl7.client.infrastructure.adapter.capture.TrafficCaptureReader;
+import com.hl7.client.infrastructure.adapter.capture.TrafficCaptureService;
+import com.hl7.client.infrastructure.adapter.capture.TrafficRecord;
+import com.hl7.client.infrastructure.adapter.capture.TrafficRecorder;
+import com.hl7.client.infrastructure.adapter.capture.TrafficReplayer;
+import com.hl7.client.infrastructure.adapter.common.FrameResult;
+import com.hl7.client.infrastructure.adapter.common.FrameState;
+import com.hl7.client.infrastructure.adapter.common.Hl7TextFramer;
+import com.hl7.client.infrastructure.adapter.network.MessageHandlerDelegate;
+import com.hl7.client.infrastructure.adapter.network.NettyServerAdapter;
+import com.hl7.client.infrastructure.util.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流量录制与回放测试
+ * 录制服务器模式多个连接的收发字节，验证录制文件内容、顺序和时间戳；
+ * 再把录制回放到适配器和TCP端口，验证消息数、应答数一致，10倍速回放的耗时约为录制时长的十分之一
+ */
+@Slf4j
+public class TrafficCaptureReplayTest {
+
+    private static final String ACK = "ACK";
+
+    /** 服务器写出应答时追加回车 */
+    private static final String WIRE_ACK = ACK + "\r";
+
+    private static String message(int client, int i) {
+        return "MSH|^~\\&|LAB" + client + "|HOSP|LIS|HOSP|20240101120000||ORU^R01|" + i + "|P|2.5\r"
+                + "PID|1||P" + client + "-" + i + "||张三\r"
+                + "OBX|1|NM|GLU^Glucose||" + (i % 100) + "|mmol/L|3.9-6.1|N|||F\r";
+    }
+
+    /**
+     * 录制服务器上两个连接的流量，检查录制内容
+     */
+    public static File testCapture(File dir, int port, int messagesPerClient) throws Exception {
+        TrafficCaptureService capture = TrafficCaptureService.getDefault();
+        capture.setDirectory(dir.getPath());
+        capture.setEnabled(true);
+
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port, received);
+        capture.setEnabled(false);
+
+        Map<String, StringBuilder> sent = new LinkedHashMap<>();
+        try {
+            List<Thread> clients = new ArrayList<>();
+            for (int c = 0; c < 2; c++) {
+                final int client = c;
+                Thread thread = new Thread(() -> {
+                    try (Socket socket = new Socket("localhost", port)) {
+                        socket.setTcpNoDelay(true);
+                        StringBuilder text = new StringBuilder();
+                        synchronized (sent) {
+                            sent.put(String.valueOf(socket.getLocalSocketAddress()), text);
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        InputStream in = socket.getInputStream();
+                        byte[] reply = new byte[WIRE_ACK.length()];
+                        for (int i = 0; i < messagesPerClient; i++) {
+                            String message = message(client, i);
+                            text.append(message);
+                            out.write(message.getBytes(StandardCharsets.UTF_8));
+                            out.flush();
+                            readFully(in, reply);
+                            Thread.sleep(2);
+                        }
+                    } catch (Exception e) {
+                        log.error("客户端 {} 发送失败: {}", client, e.getMessage());
+                    }
+                });
+                thread.start();
+                clients.add(thread);
+            }
+            for (Thread client : clients) {
+                client.join(30000);
+            }
+            // 等服务器处理完客户端断开
+            Thread.sleep(200);
+        } finally {
+            server.disconnect();
+        }
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(TrafficCaptureService.FILE_EXTENSION));
+        if (files == null || files.length != 1) {
+            log.error("期望一个录制文件，实际: {}", files == null ? 0 : files.length);
+            return null;
+        }
+        File file = files[0];
+
+        boolean passed = received.size() == 2 * messagesPerClient;
+        Map<String, ByteArrayOutputStream> inbound = new LinkedHashMap<>();
+        Map<String, Integer> replies = new LinkedHashMap<>();
+        int opens = 0;
+        int closes = 0;
+        long lastTimestamp = -1;
+        try (TrafficCaptureReader reader = new TrafficCaptureReader(file)) {
+            passed &= "录制测试服务器".equals(reader.getDeviceName()) && "Test01".equals(reader.getModel());
+            TrafficRecord record;
+            while ((record = reader.next()) != null) {
+                passed &= record.getTimestampNanos() >= lastTimestamp;
+                lastTimestamp = record.getTimestampNanos();
+                switch (record.getType()) {
+                    case OPEN:
+                        opens++;
+                        break;
+                    case CLOSE:
+                        closes++;
+                        break;
+                    case IN:
+                        inbound.computeIfAbsent(record.getConnection(), k -> new ByteArrayOutputStream())
+                                .write(record.getData());
+                        break;
+                    case OUT:
+                        passed &= WIRE_ACK.equals(new String(record.getData(), StandardCharsets.UTF_8));
+                        replies.merge(record.getConnection(), 1, Integer::sum);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        passed &= opens == 2 && closes == 2 && inbound.size() == 2;
+        for (Map.Entry<String, ByteArrayOutputStream> entry : inbound.entrySet()) {
+            // 录制的连接标识是服务器看到的远端地址，即客户端的本地地址
+            StringBuilder expected = sent.get(entry.getKey());
+            boolean matched = expected != null
+                    && expected.toString().equals(new String(entry.getValue().toByteArray(), StandardCharsets.UTF_8))
+                    && replies.getOrDefault(entry.getKey(), 0) == messagesPerClient;
+            if (!matched) {
+                log.warn("连接 {} 录制内容与发送内容不一致", entry.getKey());
+            }
+            passed &= matched;
+        }
+        log.info("录制文件 {}：{} 字节，录制时长 {}ms，连接 {} 个", file.getName(), file.length(),
+                TimeUnit.NANOSECONDS.toMillis(lastTimestamp), inbound.size());
+        log.info("录制测试{}", passed ? "通过" : "失败");
+        return passed ? file : null;
+    }
+
+    /**
+     * 尽快回放到未连接的适配器
+     */
+    public static boolean testReplayToAdapter(File file, int expectedMessages) throws Exception {
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter adapter = createServer(0, received);
+        ReplayReport report = new TrafficReplayer(file, 0).replayTo(adapter, StandardCharsets.UTF_8);
+        log.info("{}", report);
+
+        boolean passed = received.size() == expectedMessages
+                && report.getReplies() == expectedMessages
+                && report.getExpectedReplies() == expectedMessages;
+        log.info("回放到适配器测试{}", passed ? "通过" : "失败");
+        return passed;
+    }
+
+    /**
+     * 10倍速回放到TCP端口，耗时约为录制时长的十分之一
+     */
+    public static boolean testReplayOverTcp(File file, int port, int expectedMessages) throws Exception {
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        NettyServerAdapter server = startServer(port, received);
+        try {
+            TrafficReplayer replayer = new TrafficReplayer(file, 10);
+            ReplayReport report = replayer.replayOverTcp("localhost", port);
+            log.info("{}", report);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.size() < expectedMessages && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            long scheduled = report.getRecordedNanos() / 10;
+            boolean passed = received.size() == expectedMessages
+                    && report.getReplies() == expectedMessages
+                    && report.getElapsedNanos() >= scheduled * 9 / 10
+                    && report.getElapsedNanos() < report.getRecordedNanos() / 2;
+            log.info("10倍速回放耗时 {}ms，按录制时长计划 {}ms", TimeUnit.NANOSECONDS.toMillis(report.getElapsedNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(scheduled));
+            log.info("回放到TCP端口测试{}", passed ? "通过" : "失败");
+            return passed;
+        } finally {
+            server.disconnect();
+        }
+    }
+
+    /**
+     * 串口流录制，多字节字符被拆到两次读取中，回放时仍能正确解码
+     */
+    public static boolean testSerialStreams(File dir) throws Exception {
+        Charset gbk = Charset.forName("GBK");
+        String text = message(9, 1) + message(9, 2);
+        byte[] data = text.getBytes(gbk);
+        Device device = createDevice("串口录制测试", "COM1:9600:8:1:0");
+        File file = new File(dir, "serial" + TrafficCaptureService.FILE_EXTENSION);
+
+        try (TrafficRecorder recorder = TrafficRecorder.create(file, device)) {
+            InputStream in = new CapturingInputStream(new ByteArrayInputStream(data), recorder, "COM1");
+            OutputStream out = new CapturingOutputStream(new ByteArrayOutputStream(), recorder, "COM1");
+            // 每次读5个字节，"张三"的GBK编码会被拆开
+            byte[] buffer = new byte[5];
+            while (in.read(buffer) > 0) {
+                // 只读取
+            }
+            out.write(WIRE_ACK.getBytes(StandardCharsets.US_ASCII));
+            out.write(WIRE_ACK.getBytes(StandardCharsets.US_ASCII));
+            in.close();
+        }
+
+        List<TrafficRecord> records = TrafficCaptureReader.readAll(file);
+        ByteArrayOutputStream inbound = new ByteArrayOutputStream();
+        for (TrafficRecord record : records) {
+            if (record.getType() == TrafficRecord.Type.IN) {
+                inbound.write(record.getData());
+            }
+        }
+
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        ReplayReport report = new TrafficReplayer(records, 0).replayTo(createServer(0, received), gbk);
+        boolean passed = Arrays.equals(data, inbound.toByteArray())
+                && records.get(0).getType() == TrafficRecord.Type.OPEN
+                && records.get(records.size() - 1).getType() == TrafficRecord.Type.CLOSE
+                && String.join("", received).equals(text)
+                && report.getExpectedReplies() == 2;
+        log.info("串口流录制测试{}，{} 条记录", passed ? "通过" : "失败", records.size());
+        return passed;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws Exception {
+        int read = 0;
+        while (read < buffer.length) {
+            int n = in.read(buffer, read, buffer.length - read);
+            if (n < 0) {
+                throw new IllegalStateException("连接已关闭");
+            }
+            read += n;
+        }
+    }
+
+    private static NettyServerAdapter startServer(int port, Queue<String> received) {
+        NettyServerAdapter server = createServer(port, received);
+        if (!server.connect()) {
+            throw new IllegalStateException("服务器启动失败: " + port);
+        }
+        return server;
+    }
+
+    /**
+     * 创建按HL7文本分帧、每次切出消息应答ACK的服务器适配器
+     */
+    private static NettyServerAdapter createServer(int port, Queue<String> received) {
+        NettyServerAdapter server = new NettyServerAdapter();
+        server.setMessageHandlerDelegate(new MessageHandlerDelegate() {
+            @Override
+            public boolean processMessage(Device device, String rawMessage) {
+                received.add(rawMessage);
+                return true;
+            }
+
+            @Override
+            public String isMessageComplete(Message message) {
+                throw new IllegalStateException("读取路径应使用增量接口");
+            }
+
+            @Override
+            public FrameResult onData(Device device, CharSequence chunk, FrameState state) {
+                // 按消息最后一段OBX的结尾切分，TCP拆包时不提前切出半条消息
+                List<String> frames = new ArrayList<>(Hl7TextFramer.takeCompleteMessages(state));
+                if (state.getBuffer().toString().endsWith("|F\r")) {
+                    frames.add(state.takeAll());
+                }
+                return frames.isEmpty() ? FrameResult.none() : FrameResult.of(frames, ACK);
+            }
+        });
+        server.initialize(createDevice("录制测试服务器", (port > 0 ? port : 18599) + ":TCP:SERVER"));
+        return server;
+    }
+
+    private static Device createDevice(String name, String connectionParams) {
+        return Device.builder()
+                .id(String.valueOf(SnowflakeIdGenerator.getInstance().nextId()))
+                .name(name)
+                .model("Test01")
+                .connectionType("NETWORK")
+                .connectionParams(connectionParams)
+                .status(DeviceStatus.DISCONNECTED)
+                .build();
+    }
+
+    /**
+     * 主方法，执行测试
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18590;
+        int messagesPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        File dir = Files.createTempDirectory("hl7-capture").toFile();
+        log.info("=== 开始流量录制与回放测试 ===");
+        File file = testCapture(dir, port, messagesPerClient);
+        boolean passed = file != null;
+        if (passed) {
+            passed &= testReplayToAdapter(file, 2 * messagesPerClient);
+            passed &= testReplayOverTcp(file, port + 1, 2 * messagesPerClient);
+        }
+        passed &= testSerialStreams(dir);
+        log.info("=== 流量录制与回放测试{} ===", passed ? "通过" : "失败");
+        System.exit(passed ? 0 : 1);
+    }
+}